@@ -0,0 +1,153 @@
+package com.atakmap.android.cot;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.android.maps.Marker;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Verifies that the deadlines computed for the stale scheduler agree with
+ * the state changes made by the stale check.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MarkerStaleSchedulerTest extends ATAKInstrumentedTest {
+
+    private static final int DELETE_AFTER = 5 * 60 * 1000;
+    private static final CotMarkerRefresher.StaleSettings EXPIRE_ALL = new CotMarkerRefresher.StaleSettings(
+            true, true, DELETE_AFTER);
+    private static final CotMarkerRefresher.StaleSettings EXPIRE_UNKNOWNS = new CotMarkerRefresher.StaleSettings(
+            true, false, DELETE_AFTER);
+
+    @Test
+    public void team_member_stales_then_expires() {
+        Marker m = createMarker("team", "a-f-G-U-C");
+        m.setMetaString("team", "Cyan");
+        m.setMetaLong("lastUpdateTime", 1000L);
+
+        // team members default to a 10 second stale duration
+        long next = CotMarkerRefresher.getNextStaleCheck(m, EXPIRE_ALL,
+                1000L);
+        Assert.assertEquals(11000L, next);
+        assertNoChange(m, EXPIRE_ALL, next - 1);
+
+        List<Marker> deleteList = new ArrayList<>();
+        Assert.assertTrue(CotMarkerRefresher.checkStale(null, m, EXPIRE_ALL,
+                next, deleteList));
+        Assert.assertTrue(m.getMetaBoolean("stale", false));
+        Assert.assertTrue(deleteList.isEmpty());
+
+        next = CotMarkerRefresher.getNextStaleCheck(m, EXPIRE_ALL, 11000L);
+        Assert.assertEquals(11000L + DELETE_AFTER, next);
+        assertNoChange(m, EXPIRE_ALL, next - 1);
+        CotMarkerRefresher.checkStale(null, m, EXPIRE_ALL, next, deleteList);
+        Assert.assertEquals(1, deleteList.size());
+
+        // stale team members are kept when not expiring everything
+        Assert.assertEquals(Long.MAX_VALUE, CotMarkerRefresher
+                .getNextStaleCheck(m, EXPIRE_UNKNOWNS, next));
+    }
+
+    @Test
+    public void update_clears_stale() {
+        Marker m = createMarker("refreshed", "a-f-G");
+        m.setMetaLong("autoStaleDuration", 5000L);
+        m.setMetaLong("lastUpdateTime", 0L);
+        CotMarkerRefresher.checkStale(null, m, EXPIRE_UNKNOWNS, 5000L,
+                new ArrayList<Marker>());
+        Assert.assertTrue(m.getMetaBoolean("stale", false));
+
+        // a friendly atom is never removed unless expiring everything
+        Assert.assertEquals(Long.MAX_VALUE, CotMarkerRefresher
+                .getNextStaleCheck(m, EXPIRE_UNKNOWNS, 6000L));
+
+        m.setMetaLong("lastUpdateTime", 6000L);
+        Assert.assertEquals(6000L, CotMarkerRefresher.getNextStaleCheck(m,
+                EXPIRE_UNKNOWNS, 6000L));
+        CotMarkerRefresher.checkStale(null, m, EXPIRE_UNKNOWNS, 6000L,
+                new ArrayList<Marker>());
+        Assert.assertFalse(m.getMetaBoolean("stale", false));
+        Assert.assertEquals(11000L, CotMarkerRefresher.getNextStaleCheck(m,
+                EXPIRE_UNKNOWNS, 6000L));
+    }
+
+    @Test
+    public void unknown_atom_expires() {
+        Marker m = createMarker("unknown", "a-u-G");
+        m.setMetaLong("autoStaleDuration", 5000L);
+        m.setMetaLong("lastUpdateTime", 0L);
+        CotMarkerRefresher.checkStale(null, m, EXPIRE_UNKNOWNS, 5000L,
+                new ArrayList<Marker>());
+
+        long next = CotMarkerRefresher.getNextStaleCheck(m, EXPIRE_UNKNOWNS,
+                5000L);
+        Assert.assertEquals(5000L + DELETE_AFTER, next);
+        assertNoChange(m, EXPIRE_UNKNOWNS, next - 1);
+        List<Marker> deleteList = new ArrayList<>();
+        CotMarkerRefresher.checkStale(null, m, EXPIRE_UNKNOWNS, next,
+                deleteList);
+        Assert.assertEquals(1, deleteList.size());
+    }
+
+    @Test
+    public void non_atom_removed_when_stale() {
+        Marker m = createMarker("point", "b-m-p-s-m");
+        m.setMetaLong("autoStaleDuration", 5000L);
+        m.setMetaLong("lastUpdateTime", 1000L);
+
+        long next = CotMarkerRefresher.getNextStaleCheck(m, EXPIRE_UNKNOWNS,
+                1000L);
+        Assert.assertEquals(6000L, next);
+        List<Marker> deleteList = new ArrayList<>();
+        CotMarkerRefresher.checkStale(null, m, EXPIRE_UNKNOWNS, next,
+                deleteList);
+        Assert.assertEquals(1, deleteList.size());
+    }
+
+    @Test
+    public void force_stale_is_immediate() {
+        Marker m = createMarker("forced", "a-f-G");
+        m.setMetaLong("autoStaleDuration", 60000L);
+        m.setMetaLong("lastUpdateTime", 1000L);
+        m.setMetaBoolean("forceStale", true);
+
+        Assert.assertEquals(2000L, CotMarkerRefresher.getNextStaleCheck(m,
+                EXPIRE_UNKNOWNS, 2000L));
+        CotMarkerRefresher.checkStale(null, m, EXPIRE_UNKNOWNS, 2000L,
+                new ArrayList<Marker>());
+        Assert.assertTrue(m.getMetaBoolean("stale", false));
+        Assert.assertFalse(m.hasMetaValue("forceStale"));
+    }
+
+    @Test
+    public void untracked_markers_are_not_scheduled() {
+        // non team members without a stale duration are never staled
+        Marker m = createMarker("legacy", "a-f-G");
+        m.setMetaLong("lastUpdateTime", 0L);
+        Assert.assertEquals(Long.MAX_VALUE, CotMarkerRefresher
+                .getNextStaleCheck(m, EXPIRE_ALL, Long.MAX_VALUE / 2));
+        assertNoChange(m, EXPIRE_ALL, Long.MAX_VALUE / 2);
+    }
+
+    private static Marker createMarker(String uid, String type) {
+        Marker m = new Marker(uid);
+        m.setType(type);
+        return m;
+    }
+
+    private static void assertNoChange(Marker m,
+            CotMarkerRefresher.StaleSettings settings, long time) {
+        final boolean stale = m.getMetaBoolean("stale", false);
+        List<Marker> deleteList = new ArrayList<>();
+        Assert.assertFalse(CotMarkerRefresher.checkStale(null, m, settings,
+                time, deleteList));
+        Assert.assertEquals(stale, m.getMetaBoolean("stale", false));
+        Assert.assertTrue(deleteList.isEmpty());
+    }
+}
@@ -0,0 +1,338 @@
+
+package com.atakmap.android.maps;
+
+import com.atakmap.android.hierarchy.filters.FOVFilter;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.coremap.maps.coords.GeoBounds;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.util.Diagnostic;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Verifies that the spatial queries of {@link DefaultMapGroup} return the
+ * same items as a linear scan of the group as items are added, moved and
+ * removed.
+ */
+public class DefaultMapGroupSpatialIndexTest {
+
+    private static final String TAG = "DefaultMapGroupSpatialIndexTest";
+    private static final boolean ENABLED = false;
+
+    @Test
+    public void find_items_radius() {
+        Random r = new Random(1);
+        DefaultMapGroup group = new DefaultMapGroup("group");
+        populate(group, r, 2000, 38d, -77d, 1d);
+
+        for (int i = 0; i < 50; ++i) {
+            GeoPoint p = randomPoint(r, 38d, -77d, 1d);
+            double radius = r.nextDouble() * 50000d;
+            assertSameItems(linearFindItems(group, p, radius, null),
+                    group.findItems(p, radius, null));
+        }
+    }
+
+    @Test
+    public void find_items_radius_metadata() {
+        Random r = new Random(2);
+        DefaultMapGroup group = new DefaultMapGroup("group");
+        populate(group, r, 1000, 38d, -77d, 1d);
+
+        Map<String, String> meta = new HashMap<>();
+        meta.put("type", "a-h-G");
+        GeoPoint p = new GeoPoint(38d, -77d);
+        assertSameItems(linearFindItems(group, p, 40000d, meta),
+                group.findItems(p, 40000d, meta));
+    }
+
+    @Test
+    public void find_items_radius_anti_meridian_and_poles() {
+        Random r = new Random(3);
+        DefaultMapGroup group = new DefaultMapGroup("group");
+        populate(group, r, 500, 0d, 179.5d, 1d);
+        populate(group, r, 500, 89d, 0d, 1d);
+
+        GeoPoint[] centers = new GeoPoint[] {
+                new GeoPoint(0d, 179.9d), new GeoPoint(0d, -179.9d),
+                new GeoPoint(89.5d, 90d), new GeoPoint(-89.5d, 0d)
+        };
+        for (GeoPoint p : centers) {
+            for (double radius : new double[] {
+                    1000d, 50000d, 250000d, 5000000d,
+                    Double.POSITIVE_INFINITY, Double.NaN
+            }) {
+                assertSameItems(linearFindItems(group, p, radius, null),
+                        group.findItems(p, radius, null));
+            }
+        }
+    }
+
+    @Test
+    public void find_closest_item() {
+        Random r = new Random(4);
+        DefaultMapGroup group = new DefaultMapGroup("group");
+        populate(group, r, 2000, 38d, -77d, 1d);
+
+        for (int i = 0; i < 50; ++i) {
+            // include locations far from any item
+            GeoPoint p = randomPoint(r, 38d, -77d, (i % 5 == 0) ? 60d : 1d);
+            for (double threshold : new double[] {
+                    0d, 500d, 20000d, Double.NaN
+            }) {
+                MapItem expected = linearFindClosestItem(group, p, threshold,
+                        null);
+                MapItem actual = group.findClosestItem(p, threshold, null);
+                if (expected == null) {
+                    Assert.assertNull(actual);
+                } else {
+                    Assert.assertNotNull(actual);
+                    Assert.assertEquals(MapItem.computeDistance(expected, p),
+                            MapItem.computeDistance(actual, p), 0d);
+                }
+            }
+        }
+
+        // exact match
+        Marker m = new Marker(new GeoPoint(10d, 10d), "exact");
+        group.addItem(m);
+        Assert.assertSame(m,
+                group.findClosestItem(new GeoPoint(10d, 10d), 0d, null));
+    }
+
+    @Test
+    public void find_items_bounds() {
+        Random r = new Random(5);
+        DefaultMapGroup group = new DefaultMapGroup("group");
+        populate(group, r, 2000, 38d, -77d, 1d);
+        populate(group, r, 200, 0d, 179.5d, 1d);
+
+        List<GeoBounds> queries = new LinkedList<>();
+        for (int i = 0; i < 20; ++i) {
+            GeoPoint a = randomPoint(r, 38d, -77d, 1d);
+            GeoPoint b = randomPoint(r, 38d, -77d, 1d);
+            queries.add(new GeoBounds(a, b));
+        }
+        GeoBounds idl = new GeoBounds(1d, 179.5d, -1d, -179.5d);
+        idl.setWrap180(true);
+        queries.add(idl);
+
+        for (GeoBounds bounds : queries) {
+            assertSameItems(linearFindItems(group, bounds, null),
+                    group.findItems(bounds, null));
+        }
+    }
+
+    @Test
+    public void point_changes_update_index() {
+        DefaultMapGroup group = new DefaultMapGroup("group");
+        Marker m = new Marker(new GeoPoint(38d, -77d), "m");
+        group.addItem(m);
+
+        GeoPoint here = new GeoPoint(38d, -77d);
+        GeoPoint there = new GeoPoint(-20d, 40d);
+        Assert.assertTrue(group.findItems(here, 10d, null).contains(m));
+
+        m.setPoint(there);
+        Assert.assertFalse(group.findItems(here, 10d, null).contains(m));
+        Assert.assertTrue(group.findItems(there, 10d, null).contains(m));
+        Assert.assertSame(m, group.findClosestItem(here, Double.NaN, null));
+
+        group.removeItem(m);
+        Assert.assertTrue(group.findItems(there, 10d, null).isEmpty());
+
+        // items moved after removal are no longer tracked
+        m.setPoint(here);
+        Assert.assertTrue(group.findItems(here, 10d, null).isEmpty());
+    }
+
+    @Test
+    public void shape_changes_update_index() {
+        DefaultMapGroup group = new DefaultMapGroup("group");
+        Polyline line = new Polyline("line");
+        line.setPoints(new GeoPoint[] {
+                new GeoPoint(38d, -77d), new GeoPoint(38.1d, -76.9d)
+        });
+        group.addItem(line);
+
+        GeoBounds near = new GeoBounds(37.9d, -77.1d, 38.2d, -76.8d);
+        GeoBounds far = new GeoBounds(9.9d, 9.9d, 10.2d, 10.2d);
+        Assert.assertTrue(group.findItems(near, null).contains(line));
+        Assert.assertFalse(group.findItems(far, null).contains(line));
+
+        line.setPoints(new GeoPoint[] {
+                new GeoPoint(10d, 10d), new GeoPoint(10.1d, 10.1d)
+        });
+        Assert.assertFalse(group.findItems(near, null).contains(line));
+        Assert.assertTrue(group.findItems(far, null).contains(line));
+
+        group.clearItems();
+        Assert.assertTrue(group.findItems(far, null).isEmpty());
+    }
+
+    @Test
+    public void benchmark_find_items() {
+        if (ENABLED) {
+            Random r = new Random(6);
+            DefaultMapGroup group = new DefaultMapGroup("group");
+            populate(group, r, 50000, 38d, -77d, 5d);
+
+            final int count = 200;
+            GeoPoint[] locations = new GeoPoint[count];
+            GeoBounds[] bounds = new GeoBounds[count];
+            for (int i = 0; i < count; ++i) {
+                locations[i] = randomPoint(r, 38d, -77d, 5d);
+                bounds[i] = new GeoBounds(locations[i],
+                        new GeoPoint(locations[i].getLatitude() + 0.1d,
+                                locations[i].getLongitude() + 0.1d));
+            }
+            // build the index outside of the measurement
+            group.findItems(locations[0], 1d, null);
+
+            Diagnostic indexed = new Diagnostic();
+            Diagnostic linear = new Diagnostic();
+            for (int i = 0; i < count; ++i) {
+                indexed.start();
+                group.findItems(locations[i], 5000d, null);
+                indexed.stop();
+                linear.start();
+                linearFindItems(group, locations[i], 5000d, null);
+                linear.stop();
+            }
+            report("findItems(radius)", indexed, linear);
+
+            indexed = new Diagnostic();
+            linear = new Diagnostic();
+            for (int i = 0; i < count; ++i) {
+                indexed.start();
+                group.findClosestItem(locations[i], Double.NaN, null);
+                indexed.stop();
+                linear.start();
+                linearFindClosestItem(group, locations[i], Double.NaN, null);
+                linear.stop();
+            }
+            report("findClosestItem", indexed, linear);
+
+            indexed = new Diagnostic();
+            linear = new Diagnostic();
+            for (int i = 0; i < count; ++i) {
+                indexed.start();
+                group.findItems(bounds[i], null);
+                indexed.stop();
+                linear.start();
+                linearFindItems(group, bounds[i], null);
+                linear.stop();
+            }
+            report("findItems(bounds)", indexed, linear);
+        }
+    }
+
+    private static void report(String name, Diagnostic indexed,
+            Diagnostic linear) {
+        Log.i(TAG, name + " 50000 items indexed duration= "
+                + (indexed.getDuration() / indexed.getCount())
+                + "ns linear duration= "
+                + (linear.getDuration() / linear.getCount()) + "ns");
+    }
+
+    private static void populate(MapGroup group, Random r, int count,
+            double lat, double lng, double span) {
+        for (int i = 0; i < count; ++i) {
+            Marker m = new Marker(randomPoint(r, lat, lng, span),
+                    group.getFriendlyName() + "-" + lat + "-" + lng + "-"
+                            + i);
+            m.setType((i % 3 == 0) ? "a-h-G" : "a-f-G");
+            group.addItem(m);
+        }
+    }
+
+    private static GeoPoint randomPoint(Random r, double lat, double lng,
+            double span) {
+        double la = lat + (r.nextDouble() - 0.5d) * 2d * span;
+        double ln = lng + (r.nextDouble() - 0.5d) * 2d * span;
+        la = Math.max(-90d, Math.min(90d, la));
+        if (ln > 180d)
+            ln -= 360d;
+        else if (ln < -180d)
+            ln += 360d;
+        return new GeoPoint(la, ln);
+    }
+
+    private static void assertSameItems(Collection<MapItem> expected,
+            Collection<MapItem> actual) {
+        Set<MapItem> e = Collections
+                .newSetFromMap(new IdentityHashMap<MapItem, Boolean>());
+        e.addAll(expected);
+        Set<MapItem> a = Collections
+                .newSetFromMap(new IdentityHashMap<MapItem, Boolean>());
+        a.addAll(actual);
+        Assert.assertEquals(expected.size(), actual.size());
+        Assert.assertEquals(e, a);
+    }
+
+    /**
+     * The scans performed before the spatial index was introduced
+     */
+    private static Collection<MapItem> linearFindItems(MapGroup group,
+            GeoPoint location, double radius, Map<String, String> metadata) {
+        Collection<MapItem> retval = new LinkedList<>();
+        DefaultMapGroup.MetaDataMapItemFilter filter = new DefaultMapGroup.MetaDataMapItemFilter(
+                metadata);
+        for (MapItem i : group.getItems()) {
+            double distance = MapItem.computeDistance(i, location);
+            if (Double.isNaN(distance) || distance > radius)
+                continue;
+            if (!filter.onItemFunction(i))
+                continue;
+            retval.add(i);
+        }
+        return retval;
+    }
+
+    private static MapItem linearFindClosestItem(MapGroup group,
+            GeoPoint location, double threshold,
+            Map<String, String> metadata) {
+        MapItem candidate = null;
+        double candidateDistance = Double.NaN;
+        DefaultMapGroup.MetaDataMapItemFilter filter = new DefaultMapGroup.MetaDataMapItemFilter(
+                metadata);
+        for (MapItem i : group.getItems()) {
+            double distance = MapItem.computeDistance(i, location);
+            if (Double.isNaN(distance) || distance > threshold)
+                continue;
+            if (!Double.isNaN(candidateDistance)
+                    && distance >= candidateDistance)
+                continue;
+            if (!filter.onItemFunction(i))
+                continue;
+            candidate = i;
+            candidateDistance = distance;
+        }
+        return candidate;
+    }
+
+    private static Collection<MapItem> linearFindItems(MapGroup group,
+            GeoBounds bounds, Map<String, String> metadata) {
+        Collection<MapItem> retval = new LinkedList<>();
+        FOVFilter filter = new FOVFilter(bounds);
+        DefaultMapGroup.MetaDataMapItemFilter metafilter = new DefaultMapGroup.MetaDataMapItemFilter(
+                metadata);
+        for (MapItem i : group.getItems()) {
+            if (!filter.accept(i) || !metafilter.onItemFunction(i))
+                continue;
+            retval.add(i);
+        }
+        return retval;
+    }
+}
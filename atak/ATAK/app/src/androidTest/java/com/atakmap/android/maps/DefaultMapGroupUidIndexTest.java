@@ -0,0 +1,211 @@
+
+package com.atakmap.android.maps;
+
+import com.atakmap.coremap.log.Log;
+import com.atakmap.util.Diagnostic;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Verifies that the UID index maintained by {@link DefaultMapGroup} tracks
+ * item and group membership changes anywhere in the group tree.
+ */
+public class DefaultMapGroupUidIndexTest {
+
+    private static final String TAG = "DefaultMapGroupUidIndexTest";
+    private static final boolean ENABLED = false;
+
+    @Test
+    public void deep_find_uid_nested() {
+        DefaultMapGroup root = new DefaultMapGroup("root");
+        MapGroup a = root.addGroup("a");
+        MapGroup b = a.addGroup("b");
+
+        Marker m1 = new Marker("m1");
+        Marker m2 = new Marker("m2");
+        root.addItem(m1);
+        b.addItem(m2);
+
+        Assert.assertSame(m1, root.deepFindUID("m1"));
+        Assert.assertSame(m2, root.deepFindUID("m2"));
+        Assert.assertSame(m2, a.deepFindUID("m2"));
+        Assert.assertSame(m2, root.deepFindItem("uid", "m2"));
+        Assert.assertNull(a.deepFindUID("m1"));
+        Assert.assertNull(root.deepFindUID("missing"));
+        Assert.assertNull(root.deepFindUID(null));
+
+        b.removeItem(m2);
+        Assert.assertNull(root.deepFindUID("m2"));
+        Assert.assertNull(b.deepFindUID("m2"));
+    }
+
+    @Test
+    public void deep_find_uid_item_transfer() {
+        DefaultMapGroup root = new DefaultMapGroup("root");
+        MapGroup a = root.addGroup("a");
+        MapGroup b = root.addGroup("b");
+
+        Marker m = new Marker("m");
+        a.addItem(m);
+        b.addItem(m);
+
+        Assert.assertSame(m, root.deepFindUID("m"));
+        Assert.assertSame(m, b.deepFindUID("m"));
+        Assert.assertNull(a.deepFindUID("m"));
+    }
+
+    @Test
+    public void deep_find_uid_group_reparent() {
+        DefaultMapGroup root = new DefaultMapGroup("root");
+        MapGroup a = root.addGroup("a");
+        MapGroup b = root.addGroup("b");
+
+        // populate a detached subtree, then attach it
+        DefaultMapGroup sub = new DefaultMapGroup("sub");
+        MapGroup leaf = sub.addGroup("leaf");
+        Marker m = new Marker("m");
+        leaf.addItem(m);
+        a.addGroup(sub);
+
+        Assert.assertSame(m, root.deepFindUID("m"));
+        Assert.assertSame(m, a.deepFindUID("m"));
+
+        // move the subtree
+        b.addGroup(sub);
+        Assert.assertSame(m, root.deepFindUID("m"));
+        Assert.assertSame(m, b.deepFindUID("m"));
+        Assert.assertNull(a.deepFindUID("m"));
+
+        // items added below an attached subtree propagate to the root
+        Marker n = new Marker("n");
+        leaf.addItem(n);
+        Assert.assertSame(n, root.deepFindUID("n"));
+
+        b.removeGroup(sub);
+        Assert.assertNull(root.deepFindUID("m"));
+        Assert.assertNull(root.deepFindUID("n"));
+    }
+
+    @Test
+    public void deep_find_uid_clear() {
+        DefaultMapGroup root = new DefaultMapGroup("root");
+        MapGroup a = root.addGroup("a");
+        a.addItem(new Marker("m1"));
+        root.addItem(new Marker("m2"));
+
+        root.clearGroups();
+        Assert.assertNull(root.deepFindUID("m1"));
+        Assert.assertNotNull(root.deepFindUID("m2"));
+
+        root.clearItems();
+        Assert.assertNull(root.deepFindUID("m2"));
+    }
+
+    @Test
+    public void deep_find_uid_concurrent() throws Exception {
+        final DefaultMapGroup root = new DefaultMapGroup("root");
+        final int threads = 4;
+        final int count = 500;
+        final List<MapGroup> groups = new ArrayList<>();
+        for (int i = 0; i < threads; ++i)
+            groups.add(root.addGroup("g" + i));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; ++t) {
+                final int thread = t;
+                results.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        MapGroup group = groups.get(thread);
+                        for (int i = 0; i < count; ++i) {
+                            Marker m = new Marker(thread + "-" + i);
+                            group.addItem(m);
+                            // bounce items between sibling groups
+                            if (i % 2 == 0)
+                                groups.get((thread + 1) % threads).addItem(m);
+                            if (i % 3 == 0)
+                                m.removeFromGroup();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : results)
+                f.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int t = 0; t < threads; ++t) {
+            for (int i = 0; i < count; ++i) {
+                MapItem item = root.deepFindUID(t + "-" + i);
+                if (i % 3 == 0) {
+                    Assert.assertNull(item);
+                } else {
+                    Assert.assertNotNull(item);
+                    Assert.assertTrue(item.getGroup().containsItem(item));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void benchmark_deep_find_uid() {
+        if (ENABLED) {
+            for (int size : new int[] {
+                    1000, 10000, 100000
+            }) {
+                DefaultMapGroup root = new DefaultMapGroup("root");
+                List<MapGroup> groups = new ArrayList<>();
+                for (int i = 0; i < 16; ++i)
+                    groups.add(root.addGroup("g" + i).addGroup("child"));
+                for (int i = 0; i < size; ++i)
+                    groups.get(i % groups.size()).addItem(new Marker("uid-" + i));
+
+                doBench(size + " indexed", root, size, true);
+                doBench(size + " linear", root, size, false);
+            }
+        }
+    }
+
+    private void doBench(String name, MapGroup root, int size,
+            boolean indexed) {
+        Diagnostic diag = new Diagnostic();
+        for (int i = 0; i < 1000; ++i) {
+            // every other lookup misses, as for a newly received UID
+            String uid = "uid-" + ((i % 2 == 0) ? (i * 7919) % size : -i);
+            diag.start();
+            if (indexed)
+                root.deepFindUID(uid);
+            else
+                linearFindUID(root, uid);
+            diag.stop();
+        }
+        long duration = (diag.getDuration() / diag.getCount());
+        Log.i(TAG, name + " duration= " + duration + "ns");
+    }
+
+    /**
+     * The traversal performed before the UID index was introduced
+     */
+    private static MapItem linearFindUID(MapGroup group, String uid) {
+        for (MapItem item : group.getItems()) {
+            if (item.getUID().equals(uid))
+                return item;
+        }
+        for (MapGroup child : group.getChildGroups()) {
+            MapItem m = linearFindUID(child, uid);
+            if (m != null)
+                return m;
+        }
+        return null;
+    }
+}
@@ -3,6 +3,9 @@ package com.atakmap.android.maps;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.atakmap.coremap.log.Log;
+import com.atakmap.util.Diagnostic;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -20,6 +23,9 @@ import gov.tak.platform.marshal.MarshalManager;
 
 @RunWith(AndroidJUnit4.class)
 public class DefaultMetaDataHolderTests {
+    private static final String TAG = "DefaultMetaDataHolderTests";
+    private static final boolean ENABLED = false;
+
     private DefaultMetaDataHolder _defaultMetaDataHolder;
 
     private static final String BOOL = "boolean";
@@ -276,6 +282,150 @@ public class DefaultMetaDataHolderTests {
                         AttributeSet.class,
                         MetaDataHolderMarshalTestClass.class));
     }
+
+    //region well-known keys
+    @Test
+    public void wellKnownKeys_setThroughAttributeSet_returnsNewValue() {
+        _defaultMetaDataHolder.setMetaLong("lastUpdateTime", LONG_VALUE);
+        _defaultMetaDataHolder.setMetaString("team", STRING_VALUE);
+        Assert.assertEquals(LONG_VALUE,
+                _defaultMetaDataHolder.getMetaLong("lastUpdateTime", 0L));
+        Assert.assertEquals(STRING_VALUE,
+                _defaultMetaDataHolder.getMetaString("team", null));
+
+        // the kernel detail handlers modify the marshaled attribute set
+        AttributeSet attrs = MarshalManager.marshal(_defaultMetaDataHolder,
+                MetaDataHolder2.class, AttributeSet.class);
+        attrs.setAttribute("lastUpdateTime", 1L);
+        attrs.removeAttribute("team");
+        Assert.assertEquals(1L,
+                _defaultMetaDataHolder.getMetaLong("lastUpdateTime", 0L));
+        Assert.assertNull(_defaultMetaDataHolder.getMetaString("team", null));
+        Assert.assertFalse(_defaultMetaDataHolder.hasMetaValue("team"));
+
+        attrs.clear();
+        Assert.assertEquals(0L,
+                _defaultMetaDataHolder.getMetaLong("lastUpdateTime", 0L));
+
+        AttributeSet source = new AttributeSet();
+        source.setAttribute("stale", true);
+        source.setAttribute("Speed", DOUBLE_VALUE);
+        _defaultMetaDataHolder.getMetaBoolean("stale", false);
+        attrs.putAll(source);
+        Assert.assertTrue(_defaultMetaDataHolder.getMetaBoolean("stale",
+                false));
+        Assert.assertEquals(DOUBLE_VALUE,
+                _defaultMetaDataHolder.getMetaDouble("Speed", 0d), 0d);
+    }
+
+    @Test
+    public void wellKnownKeys_removeMetaData_returnsDefault() {
+        _defaultMetaDataHolder.setMetaBoolean("readiness", true);
+        _defaultMetaDataHolder.setMetaDouble("Speed", DOUBLE_VALUE);
+        Assert.assertTrue(_defaultMetaDataHolder.getMetaBoolean("readiness",
+                false));
+        _defaultMetaDataHolder.removeMetaData("readiness");
+        _defaultMetaDataHolder.removeMetaData("Speed");
+        Assert.assertFalse(_defaultMetaDataHolder.getMetaBoolean("readiness",
+                false));
+        Assert.assertEquals(DOUBLE_VALUE,
+                _defaultMetaDataHolder.getMetaDouble("Speed", DOUBLE_VALUE),
+                0d);
+        Assert.assertFalse(_defaultMetaDataHolder.hasMetaValue("Speed"));
+    }
+
+    @Test
+    public void wellKnownKeys_unchangedValue_keepsValue() {
+        _defaultMetaDataHolder.setMetaString("how", "m-g");
+        _defaultMetaDataHolder.setMetaString("how", "m-g");
+        _defaultMetaDataHolder.setMetaDouble("Speed", Double.NaN);
+        _defaultMetaDataHolder.setMetaDouble("Speed", Double.NaN);
+        Assert.assertEquals("m-g",
+                _defaultMetaDataHolder.getMetaString("how", null));
+        Assert.assertTrue(Double.isNaN(
+                _defaultMetaDataHolder.getMetaDouble("Speed", 0d)));
+        Assert.assertEquals("m-g", _defaultMetaDataHolder.getAttributes()
+                .getStringAttribute("how"));
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void wellKnownKeys_keyMapsToWrongType_throwsClassCastException() {
+        _defaultMetaDataHolder.setMetaString("lastUpdateTime", STRING_VALUE);
+        _defaultMetaDataHolder.getMetaLong("lastUpdateTime", LONG_VALUE);
+    }
+
+    @Test
+    public void benchmark_update() {
+        if (ENABLED) {
+            final int count = 20000;
+            // warm up
+            doUpdates(new DefaultMetaDataHolder(), null, count);
+            doUpdates(null, new AttributeSet(), count);
+
+            doBench("slots", new DefaultMetaDataHolder(), null, count);
+            doBench("attribute set", null, new AttributeSet(), count);
+        }
+    }
+
+    private static void doBench(String name, DefaultMetaDataHolder holder,
+            AttributeSet attrs, int count) {
+        final Runtime rt = Runtime.getRuntime();
+        System.gc();
+        final long heap = rt.totalMemory() - rt.freeMemory();
+        Diagnostic diag = new Diagnostic();
+        diag.start();
+        doUpdates(holder, attrs, count);
+        diag.stop();
+        final long allocated = (rt.totalMemory() - rt.freeMemory()) - heap;
+        Log.i(TAG, name + " update duration= " + (diag.getDuration() / count)
+                + "ns allocated= " + (allocated / count) + " bytes");
+    }
+
+    /**
+     * Applies the metadata writes and reads made for a CoT update of a
+     * marker, either through the holder or directly against an attribute set
+     * as the holder did before the well-known keys were given slots.
+     */
+    private static void doUpdates(DefaultMetaDataHolder holder,
+            AttributeSet attrs, int count) {
+        for (int i = 0; i < count; ++i) {
+            final long time = i / 4;
+            final double speed = (i % 8) * 0.5d;
+            final boolean stale = (i % 16) == 0;
+            if (holder != null) {
+                holder.setMetaLong("lastUpdateTime", time);
+                holder.setMetaDouble("Speed", speed);
+                holder.setMetaString("team", "Cyan");
+                holder.setMetaString("how", "m-g");
+                holder.setMetaBoolean("stale", stale);
+                holder.setMetaBoolean("readiness", true);
+                for (int j = 0; j < 4; ++j) {
+                    holder.getMetaLong("lastUpdateTime", 0L);
+                    holder.getMetaDouble("Speed", 0d);
+                    holder.getMetaString("team", null);
+                    holder.getMetaString("how", null);
+                    holder.getMetaBoolean("stale", false);
+                    holder.getMetaBoolean("readiness", false);
+                }
+            } else {
+                attrs.setAttribute("lastUpdateTime", time);
+                attrs.setAttribute("Speed", speed);
+                attrs.setAttribute("team", "Cyan");
+                attrs.setAttribute("how", "m-g");
+                attrs.setAttribute("stale", stale);
+                attrs.setAttribute("readiness", true);
+                for (int j = 0; j < 4; ++j) {
+                    AttributeSetUtils.get(attrs, "lastUpdateTime");
+                    AttributeSetUtils.get(attrs, "Speed");
+                    AttributeSetUtils.get(attrs, "team");
+                    AttributeSetUtils.get(attrs, "how");
+                    AttributeSetUtils.get(attrs, "stale");
+                    AttributeSetUtils.get(attrs, "readiness");
+                }
+            }
+        }
+    }
+    //endregion
 }
 
 class MetaDataHolderMarshalTestClass {
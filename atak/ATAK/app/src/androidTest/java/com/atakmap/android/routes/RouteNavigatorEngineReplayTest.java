@@ -0,0 +1,263 @@
+
+package com.atakmap.android.routes;
+
+import android.util.Pair;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.android.maps.PointMapItem;
+import com.atakmap.android.routes.nav.NavigationCue;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.coremap.maps.coords.GeoPointMetaData;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Replays a drive along a synthetic route through the in-memory
+ * {@link RouteNavigatorEngine} and the SpatiaLite backed reference engine and
+ * verifies that both produce the same cues, arrivals and positions.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RouteNavigatorEngineReplayTest extends ATAKInstrumentedTest {
+
+    private static final String TAG = "RouteNavigatorEngineReplayTest";
+    private static final boolean ENABLED = false;
+
+    private static final double BUBBLE_RADIUS = 30d;
+
+    @Test
+    public void replay_matches_spatialite_engine() throws Exception {
+        final TestRoute route = createRoute(400, 20, 1L);
+        final RouteNavigatorEngine engine = new RouteNavigatorEngine();
+        final SpatialiteRouteNavigatorEngine reference = new SpatialiteRouteNavigatorEngine();
+        try {
+            engine.addRoutePoints(route.points, route.positions, route.cues);
+            reference.addRoutePoints(route.points, route.positions,
+                    route.cues);
+
+            int hits = 0;
+            for (GeoPoint fix : replay(route, 10d, 15d, 2L)) {
+                Assert.assertEquals(
+                        reference.getLocationOfPointAlongRoute(fix),
+                        engine.getLocationOfPointAlongRoute(fix), 1e-9);
+
+                final Pair<Integer, Integer> expectedHit = reference
+                        .findTriggerHit(fix);
+                Assert.assertEquals(expectedHit, engine.findTriggerHit(fix));
+                if (expectedHit != null)
+                    hits++;
+
+                Assert.assertEquals(reference.findNextClosestWaypoint(fix),
+                        engine.findNextClosestWaypoint(fix));
+                Assert.assertEquals(
+                        reference.findNextClosestIndexWithTrigger(fix),
+                        engine.findNextClosestIndexWithTrigger(fix));
+                Assert.assertEquals(reference.findIndexOfClosestPoint(fix),
+                        engine.findIndexOfClosestPoint(fix));
+                Assert.assertEquals(
+                        reference.findIndexOfPointsWithinDistance(fix,
+                                BUBBLE_RADIUS, BUBBLE_RADIUS),
+                        engine.findIndexOfPointsWithinDistance(fix,
+                                BUBBLE_RADIUS, BUBBLE_RADIUS));
+                Assert.assertEquals(reference.findDistanceFromRoute(fix),
+                        engine.findDistanceFromRoute(fix), 0.01d);
+            }
+            Assert.assertTrue(hits > 0);
+        } finally {
+            engine.shutdown();
+            reference.shutdown();
+        }
+    }
+
+    @Test
+    public void route_sections_match_spatialite_engine() throws Exception {
+        final TestRoute route = createRoute(200, 25, 3L);
+        final RouteNavigatorEngine engine = new RouteNavigatorEngine();
+        final SpatialiteRouteNavigatorEngine reference = new SpatialiteRouteNavigatorEngine();
+        try {
+            engine.addRoutePoints(route.points, route.positions, route.cues);
+            reference.addRoutePoints(route.points, route.positions,
+                    route.cues);
+
+            final GeoPoint first = route.points.get(0).getPoint();
+            for (GeoPoint fix : replay(route, 250d, 10d, 4L)) {
+                final List<GeoPoint> expected = reference
+                        .getGeometryOfRouteSection(fix, 0, 200d, 500d);
+                final List<GeoPoint> actual = engine
+                        .getGeometryOfRouteSection(fix, 0, 200d, 500d);
+                Assert.assertNotNull(actual);
+                Assert.assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    Assert.assertEquals(expected.get(i).getLatitude(),
+                            actual.get(i).getLatitude(), 1e-7);
+                    Assert.assertEquals(expected.get(i).getLongitude(),
+                            actual.get(i).getLongitude(), 1e-7);
+                }
+
+                final double expectedLength = reference
+                        .getDistanceBetweenTwoPointsAlongRoute(first, fix);
+                Assert.assertEquals(expectedLength,
+                        engine.getDistanceBetweenTwoPointsAlongRoute(first,
+                                fix),
+                        Math.max(0.01d, expectedLength * 1e-4));
+            }
+        } finally {
+            engine.shutdown();
+            reference.shutdown();
+        }
+    }
+
+    @Test
+    public void empty_route_has_no_triggers() {
+        final RouteNavigatorEngine engine = new RouteNavigatorEngine();
+        try {
+            engine.addRoutePoints(new ArrayList<>(), new int[0],
+                    new HashMap<>());
+            final GeoPoint pt = new GeoPoint(38d, -77d);
+            Assert.assertNull(engine.findTriggerHit(pt));
+            Assert.assertEquals(0d, engine.getLocationOfPointAlongRoute(pt),
+                    0d);
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void benchmark_replay() throws Exception {
+        if (ENABLED) {
+            benchmark(5000, 50);
+        }
+    }
+
+    private void benchmark(int numPoints, int waypointInterval)
+            throws Exception {
+        final TestRoute route = createRoute(numPoints, waypointInterval, 5L);
+        final List<GeoPoint> fixes = replay(route, 5d, 15d, 6L);
+
+        final RouteNavigatorEngine engine = new RouteNavigatorEngine();
+        final SpatialiteRouteNavigatorEngine reference = new SpatialiteRouteNavigatorEngine();
+        try {
+            long start = System.nanoTime();
+            engine.addRoutePoints(route.points, route.positions, route.cues);
+            final long engineSetup = System.nanoTime() - start;
+            start = System.nanoTime();
+            reference.addRoutePoints(route.points, route.positions,
+                    route.cues);
+            final long referenceSetup = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (GeoPoint fix : fixes) {
+                engine.findTriggerHit(fix);
+                engine.findIndexOfPointsWithinDistance(fix, BUBBLE_RADIUS,
+                        BUBBLE_RADIUS);
+            }
+            final long engineReplay = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (GeoPoint fix : fixes) {
+                reference.findTriggerHit(fix);
+                reference.findIndexOfPointsWithinDistance(fix,
+                        BUBBLE_RADIUS, BUBBLE_RADIUS);
+            }
+            final long referenceReplay = System.nanoTime() - start;
+
+            Log.d(TAG, "route of " + numPoints + " points, "
+                    + fixes.size() + " fixes");
+            Log.d(TAG, "in-memory setup " + (engineSetup / 1000000L)
+                    + "ms, " + (engineReplay / 1000L / fixes.size())
+                    + "us/fix");
+            Log.d(TAG, "spatialite setup " + (referenceSetup / 1000000L)
+                    + "ms, " + (referenceReplay / 1000L / fixes.size())
+                    + "us/fix");
+        } finally {
+            engine.shutdown();
+            reference.shutdown();
+        }
+    }
+
+    /**
+     * Creates a meandering route with a waypoint carrying near and far
+     * distance cues at every <code>waypointInterval</code> points.
+     */
+    private static TestRoute createRoute(int numPoints, int waypointInterval,
+            long seed) {
+        final Random r = new Random(seed);
+        final TestRoute route = new TestRoute(numPoints);
+        double lat = 38.85d;
+        double lng = -77.05d;
+        double heading = 0d;
+        for (int i = 0; i < numPoints; i++) {
+            final String uid = "route-nav-test-" + seed + "-" + i;
+            final PointMapItem item;
+            if (i == 0 || i == numPoints - 1 || i % waypointInterval == 0) {
+                item = Route.createWayPoint(
+                        new GeoPointMetaData(new GeoPoint(lat, lng)), uid);
+                if (i > 0) {
+                    final NavigationCue cue = new NavigationCue(uid,
+                            "turn " + i, "turn " + i);
+                    cue.addCue(NavigationCue.TriggerMode.DISTANCE, 200);
+                    cue.addCue(NavigationCue.TriggerMode.DISTANCE, 50);
+                    route.cues.put(uid, cue);
+                }
+            } else {
+                item = Route.createControlPoint(new GeoPoint(lat, lng), uid);
+            }
+            route.points.add(item);
+            route.positions[i] = i;
+
+            heading += (r.nextDouble() - 0.5d) * 60d;
+            final double step = 0.0002d + r.nextDouble() * 0.0008d;
+            lat += step * Math.cos(Math.toRadians(heading));
+            lng += step * Math.sin(Math.toRadians(heading));
+        }
+        return route;
+    }
+
+    /**
+     * Returns fixes spaced <code>spacing</code> meters apart along the route,
+     * offset laterally by up to <code>jitter</code> meters.
+     */
+    private static List<GeoPoint> replay(TestRoute route, double spacing,
+            double jitter, long seed) {
+        final Random r = new Random(seed);
+        final List<GeoPoint> fixes = new ArrayList<>();
+        for (int i = 1; i < route.points.size(); i++) {
+            final GeoPoint a = route.points.get(i - 1).getPoint();
+            final GeoPoint b = route.points.get(i).getPoint();
+            final int steps = Math.max(1, (int) (a.distanceTo(b) / spacing));
+            for (int s = 0; s < steps; s++) {
+                final double t = (double) s / steps;
+                final GeoPoint p = new GeoPoint(
+                        a.getLatitude() + t * (b.getLatitude()
+                                - a.getLatitude()),
+                        a.getLongitude() + t * (b.getLongitude()
+                                - a.getLongitude()));
+                final double offset = (r.nextDouble() * 2d - 1d) * jitter;
+                fixes.add(new GeoPoint(
+                        p.getLatitude() + offset / 111320d,
+                        p.getLongitude() + offset / 111320d));
+            }
+        }
+        return fixes;
+    }
+
+    private static final class TestRoute {
+        final List<PointMapItem> points;
+        final int[] positions;
+        final Map<String, NavigationCue> cues = new HashMap<>();
+
+        TestRoute(int numPoints) {
+            this.points = new ArrayList<>(numPoints);
+            this.positions = new int[numPoints];
+        }
+    }
+}
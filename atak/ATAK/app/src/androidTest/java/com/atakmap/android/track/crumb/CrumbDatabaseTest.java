@@ -0,0 +1,178 @@
+
+package com.atakmap.android.track.crumb;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.android.maps.Marker;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.util.Diagnostic;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Verifies that the current segment of a user follows the segments that are
+ * created and deleted, and measures the crumb insert throughput.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CrumbDatabaseTest extends ATAKInstrumentedTest {
+
+    private static final String TAG = "CrumbDatabaseTest";
+    private static final boolean ENABLED = false;
+
+    @Test
+    public void current_segment_follows_create_and_delete() {
+        final CrumbDatabase db = CrumbDatabase.instance();
+        final String uid = "crumb-test-" + UUID.randomUUID();
+
+        Assert.assertEquals(-1, db.getCurrentSegmentId(uid,
+                CrumbDatabase.SEG_COLUMN_TIMESTAMP));
+
+        db.createSegment(1000L, 0, "first", "Arrows", "test", uid, false);
+        final int first = db.getCurrentSegmentId(uid,
+                CrumbDatabase.SEG_COLUMN_TIMESTAMP);
+        Assert.assertTrue(first >= 0);
+        Assert.assertEquals(first, db.getCurrentSegmentId(uid,
+                CrumbDatabase.SEG_COLUMN_TIMESTAMP));
+
+        db.createSegment(2000L, 0, "second", "Arrows", "test", uid, false);
+        final int second = db.getCurrentSegmentId(uid,
+                CrumbDatabase.SEG_COLUMN_TIMESTAMP);
+        Assert.assertNotEquals(first, second);
+
+        db.deleteSegment(second);
+        Assert.assertEquals(first, db.getCurrentSegmentId(uid,
+                CrumbDatabase.SEG_COLUMN_TIMESTAMP));
+
+        db.deleteSegment(first);
+        Assert.assertEquals(-1, db.getCurrentSegmentId(uid,
+                CrumbDatabase.SEG_COLUMN_TIMESTAMP));
+    }
+
+    @Test
+    public void persisted_crumbs_are_written() throws InterruptedException {
+        final CrumbDatabase db = CrumbDatabase.instance();
+        final String uid = "crumb-test-" + UUID.randomUUID();
+        db.createSegment(1000L, 0, "track", "Arrows", "test", uid, false);
+        final int trackId = db.getCurrentSegmentId(uid,
+                CrumbDatabase.SEG_COLUMN_TIMESTAMP);
+        try {
+            Marker m = new Marker(new GeoPoint(38d, -77d), uid);
+            for (int i = 0; i < 10; ++i) {
+                m.setPoint(new GeoPoint(38d + i * 0.001d, -77d));
+                db.persist(m, 2000L + i, null);
+            }
+            Assert.assertTrue(awaitCrumb(db, trackId, 2009L, 10000L));
+            Assert.assertEquals(10, db.getCrumbPoints(trackId).size());
+        } finally {
+            db.deleteSegment(trackId);
+        }
+    }
+
+    @Test
+    public void failed_batch_is_kept_for_retry() {
+        final List<Integer> crumbs = new ArrayList<>();
+        for (int i = 0; i < 10; ++i)
+            crumbs.add(i);
+
+        // the second transaction fails
+        final List<Integer> written = new ArrayList<>();
+        final int[] transactions = new int[1];
+        final CrumbDatabase.BatchWriter<Integer> writer =
+                new CrumbDatabase.BatchWriter<Integer>() {
+                    @Override
+                    public boolean insert(List<Integer> items, int start,
+                            int end) {
+                        if (++transactions[0] == 2)
+                            return false;
+                        written.addAll(items.subList(start, end));
+                        return true;
+                    }
+                };
+        Assert.assertEquals(4, CrumbDatabase.insertBatches(crumbs, 4, writer));
+        Assert.assertEquals(2, transactions[0]);
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3), written);
+        Assert.assertEquals(Arrays.asList(4, 5, 6, 7, 8, 9), crumbs);
+
+        // the next pass retries the remaining crumbs in order
+        Assert.assertEquals(6, CrumbDatabase.insertBatches(crumbs, 4, writer));
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9),
+                written);
+        Assert.assertTrue(crumbs.isEmpty());
+    }
+
+    @Test
+    public void benchmark_persist() throws InterruptedException {
+        if (ENABLED) {
+            benchmark(100, 50);
+            benchmark(1000, 10);
+        }
+    }
+
+    private static void benchmark(int tracks, int crumbsPerTrack)
+            throws InterruptedException {
+        final CrumbDatabase db = CrumbDatabase.instance();
+        final String prefix = "crumb-bench-" + UUID.randomUUID() + "-";
+        final Marker[] markers = new Marker[tracks];
+        final int[] trackIds = new int[tracks];
+        for (int i = 0; i < tracks; ++i) {
+            markers[i] = new Marker(new GeoPoint(38d, -77d), prefix + i);
+            db.createSegment(1000L, 0, "bench", "Arrows", "bench",
+                    prefix + i, false);
+            trackIds[i] = db.getCurrentSegmentId(prefix + i,
+                    CrumbDatabase.SEG_COLUMN_TIMESTAMP);
+        }
+
+        try {
+            final Diagnostic diagnostic = new Diagnostic();
+            final long start = System.nanoTime();
+            long timestamp = 2000L;
+            for (int j = 0; j < crumbsPerTrack; ++j) {
+                for (int i = 0; i < tracks; ++i) {
+                    markers[i].setPoint(new GeoPoint(38d + j * 0.001d,
+                            -77d + i * 0.001d));
+                    diagnostic.start();
+                    db.persist(markers[i], timestamp, null);
+                    diagnostic.stop();
+                }
+                timestamp++;
+            }
+            Assert.assertTrue(awaitCrumb(db, trackIds[tracks - 1],
+                    timestamp - 1, 60000L));
+            final long elapsed = System.nanoTime() - start;
+
+            final int count = tracks * crumbsPerTrack;
+            Log.i(TAG, tracks + " tracks " + count + " crumbs persist duration= "
+                    + (diagnostic.getDuration() / diagnostic.getCount())
+                    + "ns throughput= " + (count * 1000000000L / elapsed)
+                    + " crumbs/s");
+        } finally {
+            for (int trackId : trackIds)
+                db.deleteSegment(trackId);
+        }
+    }
+
+    /**
+     * Waits for the crumb with the given timestamp to be written, as crumbs
+     * are written to the database asynchronously
+     */
+    private static boolean awaitCrumb(CrumbDatabase db, int trackId,
+            long timestamp, long timeout) throws InterruptedException {
+        final long end = System.currentTimeMillis() + timeout;
+        while (System.currentTimeMillis() < end) {
+            CrumbPoint last = db.getLastCrumb(trackId);
+            if (last != null && last.timestamp == timestamp)
+                return true;
+            Thread.sleep(50);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,139 @@
+
+package com.atakmap.android.viewshed;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.coremap.filesystem.FileSystemUtils;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.map.elevation.ElevationData;
+import com.atakmap.map.elevation.ElevationManager;
+import com.atakmap.map.gdal.GdalLibrary;
+
+import org.gdal.gdal.Band;
+import org.gdal.gdal.Dataset;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconst;
+import org.gdal.ogr.DataSource;
+import org.gdal.ogr.Driver;
+import org.gdal.ogr.FieldDefn;
+import org.gdal.ogr.ogr;
+import org.gdal.ogr.ogrConstants;
+import org.gdal.osr.SpatialReference;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the Java {@link ContourGenerator} against the GDAL contour
+ * generation it replaced over a single 1x1 degree DTED2 cell. The cell must
+ * be installed in the DTED directory for the benchmark to run.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ContourGeneratorBenchmarkTest extends ATAKInstrumentedTest {
+
+    private static final String TAG = "ContourGeneratorBenchmarkTest";
+    private static final boolean ENABLED = false;
+
+    // w078/n38.dt2, the cell covering 38N 78W
+    private static final String CELL = "DTED/w078/n38.dt2";
+    private static final double NORTH = 39d;
+    private static final double WEST = -78d;
+    private static final double SOUTH = 38d;
+    private static final double EAST = -77d;
+
+    private static final double INTERVAL = 20d;
+
+    @Test
+    public void benchmark_dted2_cell() {
+        if (ENABLED) {
+            final File cell = FileSystemUtils.getItem(CELL);
+            if (!cell.exists()) {
+                Log.w(TAG, "missing " + cell + ", skipping benchmark");
+                return;
+            }
+            final long gdalStart = System.nanoTime();
+            final int gdalCount = generateWithGdal(cell);
+            final long gdalElapsed = System.nanoTime() - gdalStart;
+
+            final long javaStart = System.nanoTime();
+            final int javaCount = generateWithJava();
+            final long javaElapsed = System.nanoTime() - javaStart;
+
+            Log.d(TAG, "gdal: " + gdalCount + " contours in "
+                    + (gdalElapsed / 1000000L) + "ms");
+            Log.d(TAG, "java: " + javaCount + " contours in "
+                    + (javaElapsed / 1000000L) + "ms");
+            Assert.assertTrue(javaCount > 0);
+        }
+    }
+
+    private static int generateWithJava() {
+        final ElevationManager.QueryParameters filter = new ElevationManager.QueryParameters();
+        filter.elevationModel = ElevationData.MODEL_TERRAIN;
+        filter.types = Collections.singleton("DTED2");
+
+        final ContourGenerator generator = new ContourGenerator(INTERVAL,
+                ContourGenerator.DEFAULT_TILE_SIZE, filter);
+        final AtomicInteger count = new AtomicInteger();
+        final ForkJoinPool pool = new ForkJoinPool();
+        try {
+            generator.generate(NORTH, WEST, SOUTH, EAST, 1d / 3600d, pool,
+                    new AtomicBoolean(false),
+                    new ContourGenerator.Sink() {
+                        @Override
+                        public void onContour(double elevation,
+                                double[] lons, double[] lats, int num) {
+                            count.incrementAndGet();
+                        }
+
+                        @Override
+                        public void onTileComplete(int completed,
+                                int total) {
+                        }
+                    });
+        } finally {
+            pool.shutdown();
+        }
+        return count.get();
+    }
+
+    // the previous implementation, writing to an in-memory OGR layer so the
+    // comparison does not include the shapefile I/O
+    private static int generateWithGdal(File cell) {
+        final Dataset dataset = GdalLibrary.openDatasetFromFile(cell,
+                gdalconst.GA_ReadOnly);
+        Assert.assertNotNull(dataset);
+        final Driver driver = ogr.GetDriverByName("Memory");
+        final DataSource dataSource = driver.CreateDataSource("contours");
+        try {
+            final Band band = dataset.GetRasterBand(1);
+            final org.gdal.ogr.Layer layer = dataSource.CreateLayer(
+                    "contours",
+                    new SpatialReference(dataset.GetProjection()),
+                    ogr.wkbLineString, null);
+            final FieldDefn field = new FieldDefn("ELEVATION",
+                    ogrConstants.OFTReal);
+            layer.CreateField(field, 0);
+
+            final Double[] noDataValue = new Double[1];
+            band.GetNoDataValue(noDataValue);
+            gdal.ContourGenerate(band, INTERVAL, 0, null,
+                    ((noDataValue[0] == null) ? 0 : 1),
+                    ((noDataValue[0] == null) ? 0 : noDataValue[0]),
+                    layer,
+                    -1,
+                    layer.GetLayerDefn().GetFieldIndex("ELEVATION"));
+            return (int) layer.GetFeatureCount(1);
+        } finally {
+            dataSource.delete();
+            dataset.delete();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+
+package com.atakmap.android.viewshed;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.map.elevation.ElevationData;
+import com.atakmap.map.elevation.ElevationManager;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(AndroidJUnit4.class)
+public class ContourGeneratorTest extends ATAKInstrumentedTest {
+
+    private static ContourGenerator newGenerator(int tileSize) {
+        final ElevationManager.QueryParameters filter = new ElevationManager.QueryParameters();
+        filter.elevationModel = ElevationData.MODEL_TERRAIN;
+        return new ContourGenerator(20d, tileSize, filter);
+    }
+
+    @Test
+    public void generate_on_shutdown_pool_is_cancelled() {
+        final ContourGenerator generator = newGenerator(
+                ContourGenerator.DEFAULT_TILE_SIZE);
+        final ForkJoinPool pool = new ForkJoinPool();
+        pool.shutdownNow();
+
+        // the overlay may be disposed while a generation is starting
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        final AtomicInteger count = new AtomicInteger();
+        generator.generate(39d, -78d, 38d, -77d, 1d / 1200d, pool,
+                cancelled, new ContourGenerator.Sink() {
+                    @Override
+                    public void onContour(double elevation, double[] lons,
+                            double[] lats, int num) {
+                        count.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onTileComplete(int completed, int total) {
+                        count.incrementAndGet();
+                    }
+                });
+        Assert.assertTrue(cancelled.get());
+        Assert.assertEquals(0, count.get());
+    }
+
+    @Test
+    public void generate_reports_each_tile() {
+        // 0.1 degrees at 0.01 degree spacing, 11x11 posts in 4x4 tiles
+        final ContourGenerator generator = newGenerator(4);
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger maxCompleted = new AtomicInteger();
+        final AtomicInteger tiles = new AtomicInteger();
+        try {
+            generator.generate(38.1d, -78d, 38d, -77.9d, 0.01d, pool,
+                    new AtomicBoolean(false), new ContourGenerator.Sink() {
+                        @Override
+                        public void onContour(double elevation,
+                                double[] lons, double[] lats, int num) {
+                        }
+
+                        @Override
+                        public void onTileComplete(int completed,
+                                int total) {
+                            calls.incrementAndGet();
+                            tiles.set(total);
+                            synchronized (maxCompleted) {
+                                maxCompleted.set(Math.max(
+                                        maxCompleted.get(), completed));
+                            }
+                        }
+                    });
+        } finally {
+            pool.shutdown();
+        }
+        Assert.assertTrue(tiles.get() > 1);
+        Assert.assertEquals(tiles.get(), calls.get());
+        Assert.assertEquals(tiles.get(), maxCompleted.get());
+    }
+}
@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 
@@ -58,6 +59,14 @@ public abstract class Contact extends AbstractHierarchyListItem2
     private Bundle extras;
     private boolean bDispatch;
 
+    // Indexed attributes as of the last change event, so changes to other
+    // extras (i.e. the stale time) leave the contact index intact
+    private final Object indexLock = new Object();
+    private String indexedName;
+    private String indexedTeam;
+    private String indexedRole;
+    private boolean indexedFakeGroup;
+
     Contact(String name) {
         this(name, UUID.randomUUID().toString());
     }
@@ -121,6 +130,7 @@ public abstract class Contact extends AbstractHierarchyListItem2
      */
     protected void setUid(final String uid) {
         contactUUID = uid;
+        Contacts.invalidateIndex();
         dispatchChangeEvent();
     }
 
@@ -134,13 +144,44 @@ public abstract class Contact extends AbstractHierarchyListItem2
     }
 
     public void dispatchChangeEvent() {
+        invalidateIndexIfChanged();
         if (bDispatch)
             Contacts.getInstance().dispatchContactChangedEvent(getUID());
     }
 
+    /**
+     * Invalidate the contact index if the name, team, role or group flag of
+     * this contact changed since the last change event
+     */
+    private void invalidateIndexIfChanged() {
+        final Bundle extras = this.extras;
+        final String team = (extras != null) ? extras.getString("team") : null;
+        final String role = (extras != null) ? extras.getString("role") : null;
+        final boolean fakeGroup = extras != null
+                && extras.getBoolean("fakeGroup");
+        final String name = getName();
+        synchronized (indexLock) {
+            if (Objects.equals(indexedName, name)
+                    && Objects.equals(indexedTeam, team)
+                    && Objects.equals(indexedRole, role)
+                    && indexedFakeGroup == fakeGroup)
+                return;
+            indexedName = name;
+            indexedTeam = team;
+            indexedRole = role;
+            indexedFakeGroup = fakeGroup;
+        }
+        Contacts.invalidateIndex();
+    }
+
     public void setUpdateStatus(UpdateStatus status) {
         //Log.d(TAG, "setUpdateStatus: " + status);
+        // write before invalidating so an index built in between is not
+        // tagged with the new version
+        UpdateStatus old = getUpdateStatus();
         this.extras.putSerializable("updateStatus", status);
+        if (old != status)
+            Contacts.invalidateIndex();
     }
 
     public UpdateStatus getUpdateStatus() {
@@ -0,0 +1,102 @@
+
+package com.atakmap.android.contact;
+
+import android.os.Bundle;
+
+import com.atakmap.android.contact.Contact.UpdateStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gov.tak.api.contact.IContact;
+
+/**
+ * Immutable lookup tables over a snapshot of the contact store, used by
+ * {@link Contacts} to answer team, role, status and callsign queries without
+ * scanning every contact. An index is built once per change to the store or to
+ * an indexed contact attribute and then shared by all readers.
+ */
+final class ContactIndex {
+
+    final long storeVersion;
+    final long attributeVersion;
+
+    /** uids of contacts by their "team" extra, "none" if unset */
+    final Map<String, List<String>> byTeam = new HashMap<>();
+    /** uids of contacts by their "role" extra, "none" if unset */
+    final Map<String, List<String>> byRole = new HashMap<>();
+    /** uids of contacts by update status */
+    final Map<UpdateStatus, List<String>> byStatus = new HashMap<>();
+    /** the first contact encountered with a given callsign */
+    final Map<String, Contact> byCallsign = new HashMap<>();
+
+    /** uids of all contacts, excluding those with no or an NA update status */
+    final List<String> active;
+    /** uids of active individual contacts, excluding fake groups */
+    final List<String> individuals;
+
+    ContactIndex(List<IContact> snapshot, long storeVersion,
+            long attributeVersion) {
+        this.storeVersion = storeVersion;
+        this.attributeVersion = attributeVersion;
+
+        final List<String> active = new ArrayList<>(snapshot.size());
+        final List<String> individuals = new ArrayList<>(snapshot.size());
+        for (IContact c : snapshot) {
+            final String uid = c.getUid();
+            if (!(c instanceof Contact)) {
+                active.add(uid);
+                continue;
+            }
+
+            final Contact contact = (Contact) c;
+            final Bundle extras = contact.getExtras();
+            add(byTeam, getString(extras, "team"), uid);
+            add(byRole, getString(extras, "role"), uid);
+
+            final String callsign = contact.getName();
+            if (callsign != null && !byCallsign.containsKey(callsign))
+                byCallsign.put(callsign, contact);
+
+            final UpdateStatus status = contact.getUpdateStatus();
+            if (status == null)
+                continue;
+            add(byStatus, status, uid);
+            if (status == UpdateStatus.NA)
+                continue;
+            active.add(uid);
+            if (contact instanceof IndividualContact
+                    && (extras == null || !extras.getBoolean("fakeGroup")))
+                individuals.add(uid);
+        }
+        this.active = Collections.unmodifiableList(active);
+        this.individuals = Collections.unmodifiableList(individuals);
+    }
+
+    /**
+     * Returns a modifiable copy of the uids stored under the key
+     * @param index the index to query
+     * @param key the key
+     * @return the list of uids, empty if there are none
+     */
+    static <K> List<String> lookup(Map<K, List<String>> index, K key) {
+        final List<String> uids = index.get(key);
+        return (uids != null) ? new ArrayList<>(uids) : new ArrayList<>();
+    }
+
+    private static <K> void add(Map<K, List<String>> index, K key,
+            String uid) {
+        List<String> uids = index.get(key);
+        if (uids == null)
+            index.put(key, uids = new ArrayList<>());
+        uids.add(uid);
+    }
+
+    private static String getString(Bundle extras, String key) {
+        final String value = (extras != null) ? extras.getString(key) : null;
+        return (value != null) ? value : "none";
+    }
+}
@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 import gov.tak.api.contact.IContact;
 import gov.tak.api.contact.IContactListener;
@@ -46,6 +47,14 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
 
     private final ConcurrentLinkedQueue<OnContactsChangedListener> contactsChangedListeners = new ConcurrentLinkedQueue<>();
 
+    /**
+     * Incremented when an indexed attribute (name, team, role, update status)
+     * of a contact changes in place, without the contact store itself being
+     * modified.
+     */
+    private static final AtomicLong attributeVersion = new AtomicLong();
+    private volatile ContactIndex index;
+
     private static Contacts instance;
     private final String selfUid;
     private final Executor executor;
@@ -118,9 +127,7 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
         if (c == null) {
             return false;
         }
-        synchronized (contactStore) {
-            return contactStore.getContact(c.getUid()) != null;
-        }
+        return contactStore.getContact(c.getUid()) != null;
     }
 
     /**
@@ -229,13 +236,12 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
      * @return a copy of all of the contacts
      */
     public List<Contact> getAllContacts() {
-        synchronized (contactStore) {
-            List<Contact> allContacts = new ArrayList<>();
-            for (IContact contact : contactStore.getAllContacts()) {
-                allContacts.add((Contact) contact);
-            }
-            return allContacts;
+        List<IContact> snapshot = contactStore.getContactsSnapshot();
+        List<Contact> allContacts = new ArrayList<>(snapshot.size());
+        for (IContact contact : snapshot) {
+            allContacts.add((Contact) contact);
         }
+        return allContacts;
     }
 
     /**
@@ -243,23 +249,7 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
      * @return the list of uids to representing the contacts
      */
     public List<String> getAllIndividualContactUuids() {
-        return getAllContactsOfClass(IndividualContact.class);
-    }
-
-    private List<String> getAllContactsOfClass(Class<?> classType) {
-        List<String> uuidsToReturn = new ArrayList<>();
-        synchronized (contactStore) {
-            for (IContact c : contactStore.getAllContacts()) {
-                Contact contact = (Contact) c;
-                UpdateStatus status = contact.getUpdateStatus();
-                if (classType.isInstance(contact) && status != null
-                        && !status.equals(UpdateStatus.NA)
-                        && !contact.getExtras().getBoolean("fakeGroup")) {
-                    uuidsToReturn.add(contact.getUID());
-                }
-            }
-            return uuidsToReturn;
-        }
+        return new ArrayList<>(getIndex().individuals);
     }
 
     /**
@@ -276,9 +266,7 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
                 && FileSystemUtils.isEquals(this.rootGroup.getUID(), uuid))
             return this.rootGroup;
 
-        synchronized (contactStore) {
-            return (Contact) contactStore.getContact(uuid);
-        }
+        return (Contact) contactStore.getContact(uuid);
     }
 
     /**
@@ -331,12 +319,10 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
      */
     public IndividualContact[] getIndividualContactsByUuid(List<String> uuids) {
         Set<IndividualContact> ret = new HashSet<>();
-        synchronized (contactStore) {
-            for (String uuid : uuids) {
-                IContact contact = contactStore.getContact(uuid);
-                if (contact instanceof IndividualContact)
-                    ret.add((IndividualContact) contact);
-            }
+        for (String uuid : uuids) {
+            IContact contact = contactStore.getContact(uuid);
+            if (contact instanceof IndividualContact)
+                ret.add((IndividualContact) contact);
         }
         return ret.toArray(new IndividualContact[0]);
     }
@@ -350,14 +336,7 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
     public Contact getFirstContactWithCallsign(final String callsign) {
         if (FileSystemUtils.isEmpty(callsign))
             return null;
-        synchronized (contactStore) {
-            for (IContact contact : contactStore.getAllContacts()) {
-                if (callsign.equals(contact.getName())) {
-                    return (Contact) contact;
-                }
-            }
-        }
-        return null;
+        return getIndex().byCallsign.get(callsign);
     }
 
     /**
@@ -366,15 +345,7 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
      * @return an array list of the contacts that are in the team
      */
     public List<String> getAllContactsInTeam(final String team) {
-        List<String> ret = new ArrayList<>();
-        synchronized (contactStore) {
-            for (IContact contact : contactStore.getAllContacts()) {
-                if (((Contact) contact).getExtras().getString("team", "none")
-                        .equals(team))
-                    ret.add(contact.getUid());
-            }
-        }
-        return ret;
+        return ContactIndex.lookup(getIndex().byTeam, team);
     }
 
     /**
@@ -383,15 +354,16 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
      * @return the list of contacts
      */
     public List<String> getAllContactsWithRole(final String role) {
-        List<String> ret = new ArrayList<>();
-        synchronized (contactStore) {
-            for (IContact contact : contactStore.getAllContacts()) {
-                if (((Contact) contact).getExtras().getString("role", "none")
-                        .equals(role))
-                    ret.add(contact.getUid());
-            }
-            return ret;
-        }
+        return ContactIndex.lookup(getIndex().byRole, role);
+    }
+
+    /**
+     * Return a list of all contacts with a given update status
+     * @param status the update status
+     * @return the list of contact uids
+     */
+    public List<String> getAllContactsWithStatus(final UpdateStatus status) {
+        return ContactIndex.lookup(getIndex().byStatus, status);
     }
 
     /**
@@ -400,19 +372,46 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
      * @return a list of all uids
      */
     public List<String> getAllContactUuids() {
-        List<String> uuidsToReturn = new ArrayList<>();
-        synchronized (contactStore) {
-            for (IContact contact : contactStore.getAllContacts()) {
-                if (contact instanceof Contact) {
-                    UpdateStatus status = ((Contact) contact).getUpdateStatus();
-                    if (status == null || status.equals(UpdateStatus.NA))
-                        continue;
-                }
-                uuidsToReturn.add(contact.getUid());
-            }
+        return new ArrayList<>(getIndex().active);
+    }
+
+    /**
+     * Signal that an indexed attribute of a contact (name, team, role or
+     * update status) has changed, so the team, role, status and callsign
+     * lookups are rebuilt on their next use.
+     */
+    static void invalidateIndex() {
+        attributeVersion.incrementAndGet();
+    }
 
-            return uuidsToReturn;
+    /**
+     * @return the number of times the indexed attributes have been
+     * invalidated
+     */
+    static long getAttributeVersion() {
+        return attributeVersion.get();
+    }
+
+    /**
+     * Returns the lookup tables for the current state of the contact store,
+     * rebuilding them if the store or any indexed attribute has changed since
+     * they were last built. Queries never hold the store lock, so lookups do
+     * not stall the threads adding and updating contacts.
+     */
+    private ContactIndex getIndex() {
+        // sample the versions before taking the snapshot; a concurrent
+        // change leaves the index tagged stale and it is rebuilt next time
+        final long storeVersion = contactStore.getContactsVersion();
+        final long attrVersion = attributeVersion.get();
+        ContactIndex idx = index;
+        if (idx == null || storeVersion < 0
+                || idx.storeVersion != storeVersion
+                || idx.attributeVersion != attrVersion) {
+            idx = new ContactIndex(contactStore.getContactsSnapshot(),
+                    storeVersion, attrVersion);
+            index = idx;
         }
+        return idx;
     }
 
     /**
@@ -107,8 +107,6 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -117,6 +115,7 @@ import gov.tak.api.cot.detail.GroupDetailHandler;
 import gov.tak.api.cot.detail.Role;
 import gov.tak.api.cot.detail.RolesManager;
 import gov.tak.api.util.AttributeSet;
+import gov.tak.platform.symbology.milstd2525.MilSymIconCache;
 
 /**
  *  Per-MapItem properties * entry - always "CoT"
@@ -129,10 +128,10 @@ public class CotMapComponent extends AbstractMapComponent implements
     public static final String TAG = "CotMapComponent";
     public static final String PREF_API_SECURE_PORT = "apiSecureServerPort";
     public static final String PREF_API_UNSECURE_PORT = "apiUnsecureServerPort";
+    public static final String PREF_COALESCE_INBOUND_COT = "coalesceInboundCot";
 
     private final AtomicInteger batteryPct = new AtomicInteger(0);
 
-    private Timer _checkStaleTimer = null;
 
     private static final CotDispatcher externalDispatcher = new CotDispatcher();
     private static final CotDispatcher internalDispatcher = new CotDispatcher();
@@ -220,7 +219,6 @@ public class CotMapComponent extends AbstractMapComponent implements
 
     private ReportingRate _reportingRate;
     private RolesManager rolesManager;
-    private final static int STALE_CHECK_RATE = 2000;
 
     @Override
     public void onCreate(Context context, Intent intent, final MapView view) {
@@ -229,6 +227,8 @@ public class CotMapComponent extends AbstractMapComponent implements
         _notificationId = new NotificationIdRecycler(8880, 5);
 
         _prefs = AtakPreferences.getInstance(_context);
+        parallelInternalDispatcher.setCoalescing(
+                _prefs.get(PREF_COALESCE_INBOUND_COT, false));
         //String team = preferences.getString("locationTeam", "NOTSET");
         // Start listening for the location marker
         // _listenForLocationMarker();
@@ -508,9 +508,8 @@ public class CotMapComponent extends AbstractMapComponent implements
         view.getMapEventDispatcher().addMapEventListener(MapEvent.ITEM_IMPORTED,
                 _cotCacheManager);
 
-        _checkStaleTimer = new Timer("CheckStaleTimerThread");
-        _checkStaleTimer.schedule(_checkStaleTask, 0,
-                STALE_CHECK_RATE);
+        _adapter.getCotMarkerSet().startStaleScheduler(_context,
+                _prefs.getSharedPrefs());
 
         _takvDetail = new CotDetail(TakVersionDetailHandler.VERSION_DETAIL);
         _takvDetail.setAttribute(TakVersionDetailHandler.ATTR_PLATFORM,
@@ -621,11 +620,7 @@ public class CotMapComponent extends AbstractMapComponent implements
         AtakBroadcast.getInstance().unregisterReceiver(radialItemSendReceiver);
         AtakBroadcast.getInstance().unregisterReceiver(onStartUriReceiver);
 
-        if (_checkStaleTimer != null) {
-            _checkStaleTimer.cancel();
-            _checkStaleTimer.purge();
-            _checkStaleTimer = null;
-        }
+        _adapter.getCotMarkerSet().stopStaleScheduler();
 
         NotificationUtil.getInstance().cancelAll();
 
@@ -697,6 +692,10 @@ public class CotMapComponent extends AbstractMapComponent implements
 
         }
 
+        // Render the unit icon for this type in the background ahead of
+        // marker creation (only done once per type)
+        MilSymIconCache.getInstance().prerenderCotType(event.getType());
+
         ImportResult result = _adapter.adaptCotEvent(event,
                 extra);
 
@@ -748,14 +747,6 @@ public class CotMapComponent extends AbstractMapComponent implements
         }
     }
 
-    private final TimerTask _checkStaleTask = new TimerTask() {
-        @Override
-        public void run() {
-            _adapter.getCotMarkerSet().checkStaleTeams(_context,
-                    _prefs.getSharedPrefs());
-        }
-    };
-
     private BroadcastReceiver batteryRcvr = new BroadcastReceiver() {
         @NonNull
         public String toString() {
@@ -1215,6 +1206,11 @@ public class CotMapComponent extends AbstractMapComponent implements
             if (key == null)
                 return;
 
+            if (key.equals(PREF_COALESCE_INBOUND_COT)) {
+                parallelInternalDispatcher.setCoalescing(
+                        cotPrefs.getBoolean(key, false));
+            }
+
             if (key.equals("dispatchLocationCotExternal") ||
                     key.equals("dispatchLocationHidden") ||
                     key.equals("mockingOption") ||
@@ -45,6 +45,7 @@ public class CotMarkerRefresher implements Disposable {
     private CotDispatcher external;
     private final Map<String, Marker> _markers = new ConcurrentHashMap<>();
     private final MapView _mapView;
+    private MarkerStaleScheduler _staleScheduler;
 
     public CotMarkerRefresher(final MapView mapView) {
         _mapView = mapView;
@@ -74,6 +75,8 @@ public class CotMarkerRefresher implements Disposable {
                 _markers.put(uid, marker);
                 _mapView.getMapEventDispatcher().addMapItemEventListener(
                         marker, _mapItemEventListener);
+                if (_staleScheduler != null)
+                    _staleScheduler.add(marker);
             }
         }
     }
@@ -82,6 +85,46 @@ public class CotMarkerRefresher implements Disposable {
         return _markers.get(uid);
     }
 
+    /**
+     * Starts checking the stale state of the markers as each one comes due,
+     * in place of periodic calls to {@link #checkStaleTeams}.
+     *
+     * @param context the context used to broadcast stale state changes
+     * @param prefs the preferences that control stale item expiration
+     */
+    public void startStaleScheduler(final Context context,
+            final SharedPreferences prefs) {
+        synchronized (_markers) {
+            if (_staleScheduler != null)
+                return;
+            _staleScheduler = new MarkerStaleScheduler(context, prefs);
+            _staleScheduler.start();
+            for (Marker m : _markers.values())
+                _staleScheduler.add(m);
+        }
+    }
+
+    /**
+     * Stops the checks started by {@link #startStaleScheduler}
+     */
+    public void stopStaleScheduler() {
+        final MarkerStaleScheduler scheduler;
+        synchronized (_markers) {
+            scheduler = _staleScheduler;
+            _staleScheduler = null;
+        }
+        if (scheduler != null)
+            scheduler.stop();
+    }
+
+    /**
+     * @return the scheduler running the stale checks, providing its metrics,
+     *         or <code>null</code> if it has not been started
+     */
+    public MarkerStaleScheduler getStaleScheduler() {
+        return _staleScheduler;
+    }
+
     private static int makeTransparent(final int color,
             final float transparency) {
         return Color.argb(
@@ -128,163 +171,254 @@ public class CotMarkerRefresher implements Disposable {
 
     public void checkStaleTeams(final Context context,
             final SharedPreferences prefs) {
-        boolean expireUnknowns = prefs.getBoolean("expireUnknowns", true);
-        boolean expireEverything = prefs.getBoolean("expireEverything", true);
-
-        int deleteStaleAfterMillis = 5 * 60 * 1000; //20 minute default
-        try {
-            deleteStaleAfterMillis = Integer.parseInt(prefs.getString(
-                    "expireStaleItemsTime", "5")) * 60 * 1000;
-        } catch (NumberFormatException e) {
-            Log.w(TAG, "Failed to parse expireStaleItemsTime", e);
-        }
+        final StaleSettings settings = new StaleSettings(prefs);
 
         List<Marker> deleteList = new LinkedList<>();
 
         Collection<Marker> markers = _markers.values();
         final long now = new CoordinatedTime().getMilliseconds();
-        for (Marker m : markers) {
-            final boolean forceStale = m
-                    .getMetaBoolean("forceStale", false);
-            final boolean stale = m.getMetaBoolean("stale", false);
-            //final long staleTime = m.getMetaLong("staleTime", -1);
+        for (Marker m : markers)
+            checkStale(context, m, settings, now, deleteList);
 
-            final boolean bTeamMember = m.hasMetaValue("team");
+        // remove items
+        for (Marker m : deleteList)
+            m.removeFromGroup();
+    }
 
-            long lastUpdate = m.getMetaLong("lastUpdateTime", 0L);
-            if (m.hasMetaValue("autoStaleDuration")) {
-                lastUpdate += m.getMetaLong("autoStaleDuration", 0L);
+    /**
+     * Updates the stale state of a single marker, adding it to
+     * <code>deleteList</code> if it has been stale long enough to be removed.
+     *
+     * @return true if the marker became stale
+     */
+    static boolean checkStale(final Context context, final Marker m,
+            final StaleSettings settings, final long now,
+            final List<Marker> deleteList) {
+        boolean becameStale = false;
+        final boolean forceStale = m
+                .getMetaBoolean("forceStale", false);
+        final boolean stale = m.getMetaBoolean("stale", false);
+        //final long staleTime = m.getMetaLong("staleTime", -1);
+
+        final boolean bTeamMember = m.hasMetaValue("team");
+
+        long lastUpdate = m.getMetaLong("lastUpdateTime", 0L);
+        if (m.hasMetaValue("autoStaleDuration")) {
+            lastUpdate += m.getMetaLong("autoStaleDuration", 0L);
+        } else {
+            if (!bTeamMember) {
+                //preserving legacy behavior for non team members without autoStaleDuration
+                return false;
             } else {
-                if (!bTeamMember) {
-                    //preserving legacy behavior for non team members without autoStaleDuration
-                    continue;
+                // default to 10 sec
+                lastUpdate += 10000;
+            }
+        }
+
+        if (!forceStale && stale && lastUpdate > now) {
+            //Log.d(TAG, "Marker no longer stale " + m.getUID() + " now=" + now + ", stale since: " + staleTime);
+            //marker was stale, but is no longer stale
+            m.setMetaBoolean("stale", false);
+            m.removeMetaData("staleTime");
+
+            Icon icon = m.getIcon();
+            if (icon != null) {
+                if (bTeamMember) {
+                    int teamColor = m.getMetaInteger("teamColor",
+                            Color.WHITE);
+                    Icon newIcon = icon.buildUpon()
+                            .setColor(0, teamColor)
+                            .build();
+                    m.setIcon(newIcon);
                 } else {
-                    // default to 10 sec
-                    lastUpdate += 10000;
+                    int iconColor = icon.getColor(1);
+                    Icon newIcon = icon
+                            .buildUpon()
+                            .setColor(0,
+                                    makeTransparent(iconColor, 1.0f))
+                            .build();
+                    m.setIcon(newIcon);
                 }
             }
 
-            if (!forceStale && stale && lastUpdate > now) {
-                //Log.d(TAG, "Marker no longer stale " + m.getUID() + " now=" + now + ", stale since: " + staleTime);
-                //marker was stale, but is no longer stale
-                m.setMetaBoolean("stale", false);
-                m.removeMetaData("staleTime");
-
-                Icon icon = m.getIcon();
+            if (bTeamMember && context != null) {
+                Intent intent = new Intent();
+                intent.setAction(ContactStatusReceiver.ITEM_REFRESHED);
+                intent.putExtra("uid", m.getUID());
+                AtakBroadcast.getInstance().sendBroadcast(intent);
+            }
+        } else if (forceStale || stale || (lastUpdate <= now)) {
+            //Log.d(TAG, "Marker is stale " + m.getUID() + " now=" + now + ", stale since: " + staleTime);
+            //marker is stale
+            if (!stale) {
+                //Log.d(TAG, "Marker initial stale " + m.getUID() + " now=" + now + ", stale since: " + staleTime);
+                //item is now stale for first time
+                m.setMetaBoolean("stale", true);
+                m.setMetaLong("staleTime", now);
+
+                final Icon icon = m.getIcon();
                 if (icon != null) {
                     if (bTeamMember) {
-                        int teamColor = m.getMetaInteger("teamColor",
-                                Color.WHITE);
+                        int teamColor = icon.getColor(0);
                         Icon newIcon = icon.buildUpon()
-                                .setColor(0, teamColor)
-                                .build();
+                                .setColor(0, Color.GRAY).build();
                         m.setIcon(newIcon);
+                        m.setMetaInteger("teamColor", teamColor);
                     } else {
-                        int iconColor = icon.getColor(1);
-                        Icon newIcon = icon
-                                .buildUpon()
-                                .setColor(0,
-                                        makeTransparent(iconColor, 1.0f))
-                                .build();
+                        int iconColor = icon.getColor(0);
+                        Icon newIcon = icon.buildUpon()
+                                .setColor(1, iconColor)
+                                .setColor(0, Color.DKGRAY).build();
                         m.setIcon(newIcon);
                     }
                 }
 
+                if (forceStale) {
+                    m.setMetaLong("autoStaleDuration", 0L);
+                    m.removeMetaData("forceStale");
+                    // See ATAK-8256
+                    // No reason to clear lastUpdateTime if
+                    // autoStaleDuration is set to 0
+                    //m.removeMetaData("lastUpdateTime");
+                }
+
                 if (bTeamMember && context != null) {
                     Intent intent = new Intent();
-                    intent.setAction(ContactStatusReceiver.ITEM_REFRESHED);
+                    intent.setAction(ContactStatusReceiver.ITEM_STALE);
                     intent.putExtra("uid", m.getUID());
+                    intent.putExtra("ttl", 0);
                     AtakBroadcast.getInstance().sendBroadcast(intent);
                 }
-            } else if (forceStale || stale || (lastUpdate <= now)) {
-                //Log.d(TAG, "Marker is stale " + m.getUID() + " now=" + now + ", stale since: " + staleTime);
-                //marker is stale
-                if (!stale) {
-                    //Log.d(TAG, "Marker initial stale " + m.getUID() + " now=" + now + ", stale since: " + staleTime);
-                    //item is now stale for first time
-                    m.setMetaBoolean("stale", true);
-                    m.setMetaLong("staleTime", now);
-
-                    final Icon icon = m.getIcon();
-                    if (icon != null) {
-                        if (bTeamMember) {
-                            int teamColor = icon.getColor(0);
-                            Icon newIcon = icon.buildUpon()
-                                    .setColor(0, Color.GRAY).build();
-                            m.setIcon(newIcon);
-                            m.setMetaInteger("teamColor", teamColor);
-                        } else {
-                            int iconColor = icon.getColor(0);
-                            Icon newIcon = icon.buildUpon()
-                                    .setColor(1, iconColor)
-                                    .setColor(0, Color.DKGRAY).build();
-                            m.setIcon(newIcon);
-                        }
-                    }
-
-                    if (forceStale) {
-                        m.setMetaLong("autoStaleDuration", 0L);
-                        m.removeMetaData("forceStale");
-                        // See ATAK-8256
-                        // No reason to clear lastUpdateTime if
-                        // autoStaleDuration is set to 0
-                        //m.removeMetaData("lastUpdateTime");
-                    }
-
-                    if (bTeamMember && context != null) {
-                        Intent intent = new Intent();
-                        intent.setAction(ContactStatusReceiver.ITEM_STALE);
-                        intent.putExtra("uid", m.getUID());
-                        intent.putExtra("ttl", 0);
-                        AtakBroadcast.getInstance().sendBroadcast(intent);
-                    }
-                } //end first stale
-
-                //see if it has been stale long enough to delete
-                if (bTeamMember) {
-                    if (expireEverything
-                            && (now - m.getMetaLong("staleTime",
-                                    0) >= deleteStaleAfterMillis)) {
+                becameStale = true;
+            } //end first stale
+
+            //see if it has been stale long enough to delete
+            if (bTeamMember) {
+                if (settings.expireEverything
+                        && (now - m.getMetaLong("staleTime",
+                                0) >= settings.deleteStaleAfterMillis)) {
+                    //Log.d(TAG, "Deleting " + m.getUID()
+                    //        + " stale for: " + (now - staleTime)
+                    //        + " threshold=" + deleteStaleAfterMillis);
+                    deleteList.add(m);
+                } else {
+                    //Log.d(TAG, "Not yet time to delete " + m.getUID() + " stale for: " + (now - staleTime));
+                }
+            } else {
+                final String type = m.getType();
+
+                if (type != null) {
+                    if ((!type.startsWith("a-"))
+                            ||
+                            ((settings.expireEverything ||
+                                    (type.startsWith("a-u")
+                                            && settings.expireUnknowns))
+                                    && (now - m.getMetaLong("staleTime",
+                                            0) >= settings.deleteStaleAfterMillis))) {
+                        // If the type isn't an atom delete as soon as stale
+                        // If it is an atom and has been stale long enough, then delete
                         //Log.d(TAG, "Deleting " + m.getUID()
                         //        + " stale for: " + (now - staleTime)
-                        //        + " threshold=" + deleteStaleAfterMillis);
+                        //        + " threshold="
+                        //        + deleteStaleAfterMillis);
                         deleteList.add(m);
                     } else {
                         //Log.d(TAG, "Not yet time to delete " + m.getUID() + " stale for: " + (now - staleTime));
+                        //Log.d(TAG, "Stale Item " + m.getTitle());
                     }
-                } else {
-                    final String type = m.getType();
-
-                    if (type != null) {
-                        if ((!type.startsWith("a-"))
-                                ||
-                                ((expireEverything ||
-                                        (type.startsWith("a-u")
-                                                && expireUnknowns))
-                                        && (now - m.getMetaLong("staleTime",
-                                                0) >= deleteStaleAfterMillis))) {
-                            // If the type isn't an atom delete as soon as stale
-                            // If it is an atom and has been stale long enough, then delete
-                            //Log.d(TAG, "Deleting " + m.getUID()
-                            //        + " stale for: " + (now - staleTime)
-                            //        + " threshold="
-                            //        + deleteStaleAfterMillis);
-                            deleteList.add(m);
-                        } else {
-                            //Log.d(TAG, "Not yet time to delete " + m.getUID() + " stale for: " + (now - staleTime));
-                            //Log.d(TAG, "Stale Item " + m.getTitle());
-                        }
-                    }
-                } //end delete time check
-            } //end stale
-            else {
-                //no change in stale status, no-op
+                }
+            } //end delete time check
+        } //end stale
+        else {
+            //no change in stale status, no-op
+        }
+        return becameStale;
+    }
+
+    /**
+     * Returns the time at which {@link #checkStale} next needs to run for the
+     * marker, based on its current state.
+     *
+     * @return the time in milliseconds, <code>now</code> if the check is due
+     *         or {@link Long#MAX_VALUE} if the marker will not change state
+     *         until it is updated
+     */
+    static long getNextStaleCheck(final Marker m, final StaleSettings settings,
+            final long now) {
+        if (m.getMetaBoolean("forceStale", false))
+            return now;
+
+        final boolean bTeamMember = m.hasMetaValue("team");
+        long lastUpdate = m.getMetaLong("lastUpdateTime", 0L);
+        if (m.hasMetaValue("autoStaleDuration"))
+            lastUpdate += m.getMetaLong("autoStaleDuration", 0L);
+        else if (bTeamMember)
+            lastUpdate += 10000;
+        else
+            return Long.MAX_VALUE;
+
+        if (!m.getMetaBoolean("stale", false))
+            return Math.max(lastUpdate, now);
+        if (lastUpdate > now)
+            return now; // no longer stale
+
+        // stale, find the time it is removed
+        final long deleteTime = m.getMetaLong("staleTime", 0)
+                + settings.deleteStaleAfterMillis;
+        if (bTeamMember)
+            return settings.expireEverything ? Math.max(deleteTime, now)
+                    : Long.MAX_VALUE;
+
+        final String type = m.getType();
+        if (type == null)
+            return Long.MAX_VALUE;
+        if (!type.startsWith("a-"))
+            return now;
+        if (settings.expireEverything
+                || (type.startsWith("a-u") && settings.expireUnknowns))
+            return Math.max(deleteTime, now);
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * The preferences controlling when stale markers are removed
+     */
+    static final class StaleSettings {
+        final boolean expireUnknowns;
+        final boolean expireEverything;
+        final int deleteStaleAfterMillis;
+
+        StaleSettings(final boolean expireUnknowns,
+                final boolean expireEverything,
+                final int deleteStaleAfterMillis) {
+            this.expireUnknowns = expireUnknowns;
+            this.expireEverything = expireEverything;
+            this.deleteStaleAfterMillis = deleteStaleAfterMillis;
+        }
+
+        StaleSettings(final SharedPreferences prefs) {
+            this(prefs.getBoolean("expireUnknowns", true),
+                    prefs.getBoolean("expireEverything", true),
+                    getDeleteStaleAfterMillis(prefs));
+        }
+
+        private static int getDeleteStaleAfterMillis(
+                final SharedPreferences prefs) {
+            int deleteStaleAfterMillis = 5 * 60 * 1000; //20 minute default
+            try {
+                deleteStaleAfterMillis = Integer.parseInt(prefs.getString(
+                        "expireStaleItemsTime", "5")) * 60 * 1000;
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Failed to parse expireStaleItemsTime", e);
             }
-        } //end marker loop
+            return deleteStaleAfterMillis;
+        }
 
-        // remove items
-        for (Marker m : deleteList)
-            m.removeFromGroup();
+        static boolean isStaleSetting(final String key) {
+            return key.equals("expireUnknowns")
+                    || key.equals("expireEverything")
+                    || key.equals("expireStaleItemsTime");
+        }
     }
 
     private final MapEventDispatcher.OnMapEventListener _mapItemEventListener = new MapEventDispatcher.OnMapEventListener() {
@@ -315,6 +449,9 @@ public class CotMarkerRefresher implements Disposable {
                 _mapView.getMapEventDispatcher()
                         .removeMapItemEventListener(item,
                                 _mapItemEventListener);
+                final MarkerStaleScheduler scheduler = _staleScheduler;
+                if (scheduler != null)
+                    scheduler.remove((Marker) item);
 
             }
         }
@@ -347,6 +484,7 @@ public class CotMarkerRefresher implements Disposable {
 
     @Override
     public void dispose() {
+        stopStaleScheduler();
         AtakBroadcast.getInstance().unregisterReceiver(timeDriftDetected);
     }
 
@@ -0,0 +1,312 @@
+
+package com.atakmap.android.cot;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.atakmap.android.maps.MapItem;
+import com.atakmap.android.maps.Marker;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.coremap.maps.time.CoordinatedTime;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the stale checks of the markers tracked by {@link CotMarkerRefresher}
+ * at the time each marker is next due to change state, rather than checking
+ * every marker on a fixed period. Markers are rescheduled whenever one of the
+ * properties that their stale state is derived from changes, so idle markers
+ * cost nothing until their deadline.
+ */
+public class MarkerStaleScheduler implements
+        MapItem.OnMetadataChangedListener,
+        MapItem.OnTypeChangedListener,
+        SharedPreferences.OnSharedPreferenceChangeListener {
+
+    private static final String TAG = "MarkerStaleScheduler";
+
+    /**
+     * The metadata that the stale state of a marker is derived from
+     */
+    private static final String[] STALE_KEYS = {
+            "lastUpdateTime", "autoStaleDuration", "forceStale", "stale",
+            "staleTime", "team"
+    };
+
+    private final Context _context;
+    private final SharedPreferences _prefs;
+
+    private final PriorityQueue<Deadline> _queue = new PriorityQueue<>();
+    private final Map<Marker, Deadline> _scheduled = new IdentityHashMap<>();
+    private final Map<Marker, Boolean> _tracked = new IdentityHashMap<>();
+
+    private CotMarkerRefresher.StaleSettings _settings;
+    private Thread _thread;
+    private boolean _running;
+
+    private final AtomicLong _staleCount = new AtomicLong();
+    private final AtomicLong _deletedCount = new AtomicLong();
+    private final AtomicLong _checkCount = new AtomicLong();
+
+    MarkerStaleScheduler(Context context, SharedPreferences prefs) {
+        _context = context;
+        _prefs = prefs;
+        _settings = new CotMarkerRefresher.StaleSettings(prefs);
+    }
+
+    /**
+     * Starts the thread that processes the markers as their deadlines pass
+     */
+    synchronized void start() {
+        if (_running)
+            return;
+        _running = true;
+        _prefs.registerOnSharedPreferenceChangeListener(this);
+        _thread = new Thread(TAG) {
+            @Override
+            public void run() {
+                runImpl();
+            }
+        };
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /**
+     * Stops processing and releases all of the tracked markers
+     */
+    void stop() {
+        final List<Marker> markers;
+        synchronized (this) {
+            if (!_running)
+                return;
+            _running = false;
+            _thread.interrupt();
+            _thread = null;
+            markers = new ArrayList<>(_tracked.keySet());
+            _tracked.clear();
+            _scheduled.clear();
+            _queue.clear();
+            this.notifyAll();
+        }
+        _prefs.unregisterOnSharedPreferenceChangeListener(this);
+        for (Marker m : markers)
+            removeListeners(m);
+    }
+
+    /**
+     * Starts tracking the stale state of the marker
+     */
+    void add(Marker m) {
+        synchronized (this) {
+            if (!_running || _tracked.put(m, Boolean.TRUE) != null)
+                return;
+        }
+        for (String key : STALE_KEYS)
+            m.addOnMetadataChangedListener(key, this);
+        m.addOnTypeChangedListener(this);
+        schedule(m);
+    }
+
+    /**
+     * Stops tracking the stale state of the marker
+     */
+    void remove(Marker m) {
+        synchronized (this) {
+            if (_tracked.remove(m) == null)
+                return;
+            _scheduled.remove(m);
+        }
+        removeListeners(m);
+    }
+
+    /**
+     * @return the number of markers whose stale state is tracked
+     */
+    public synchronized int getTrackedCount() {
+        return _tracked.size();
+    }
+
+    /**
+     * @return the number of markers with a pending stale or expiry deadline
+     */
+    public synchronized int getScheduledCount() {
+        return _scheduled.size();
+    }
+
+    /**
+     * @return the number of markers that have gone stale
+     */
+    public long getStaleCount() {
+        return _staleCount.get();
+    }
+
+    /**
+     * @return the number of stale markers that have expired and been removed
+     */
+    public long getExpiredCount() {
+        return _deletedCount.get();
+    }
+
+    /**
+     * @return the number of individual marker checks performed
+     */
+    public long getCheckCount() {
+        return _checkCount.get();
+    }
+
+    @Override
+    public void onMetadataChanged(MapItem item, String field) {
+        if (item instanceof Marker)
+            schedule((Marker) item);
+    }
+
+    @Override
+    public void onTypeChanged(MapItem item) {
+        if (item instanceof Marker)
+            schedule((Marker) item);
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences prefs,
+            String key) {
+        if (key == null || !CotMarkerRefresher.StaleSettings
+                .isStaleSetting(key))
+            return;
+
+        final List<Marker> markers;
+        synchronized (this) {
+            _settings = new CotMarkerRefresher.StaleSettings(prefs);
+            markers = new ArrayList<>(_tracked.keySet());
+        }
+        for (Marker m : markers)
+            schedule(m);
+    }
+
+    /**
+     * Computes the next deadline of the marker from its current state
+     */
+    private synchronized void schedule(Marker m) {
+        if (!_tracked.containsKey(m))
+            return;
+
+        final long now = new CoordinatedTime().getMilliseconds();
+        final long time = CotMarkerRefresher.getNextStaleCheck(m, _settings,
+                now);
+        Deadline d = _scheduled.get(m);
+        if (d != null && d.time == time)
+            return;
+        if (time == Long.MAX_VALUE) {
+            _scheduled.remove(m);
+            return;
+        }
+
+        d = new Deadline(m, time);
+        _scheduled.put(m, d);
+        _queue.add(d);
+
+        // drop the superseded deadlines once they make up most of the queue
+        if (_queue.size() > 2 * _scheduled.size() + 64) {
+            _queue.clear();
+            _queue.addAll(_scheduled.values());
+        }
+
+        if (_queue.peek() == d)
+            this.notifyAll();
+    }
+
+    private void runImpl() {
+        final List<Marker> due = new ArrayList<>();
+        while (true) {
+            final CotMarkerRefresher.StaleSettings settings;
+            final long now;
+            synchronized (this) {
+                if (!_running)
+                    break;
+                final Deadline next = peek();
+                final long current = new CoordinatedTime().getMilliseconds();
+                if (next == null || next.time > current) {
+                    try {
+                        if (next == null)
+                            this.wait();
+                        else
+                            this.wait(next.time - current);
+                    } catch (InterruptedException ignored) {
+                    }
+                    continue;
+                }
+
+                while (!_queue.isEmpty() && _queue.peek().time <= current) {
+                    final Deadline d = _queue.poll();
+                    if (_scheduled.get(d.marker) == d) {
+                        _scheduled.remove(d.marker);
+                        due.add(d.marker);
+                    }
+                }
+                settings = _settings;
+                now = current;
+            }
+
+            final List<Marker> deleteList = new LinkedList<>();
+            for (Marker m : due) {
+                try {
+                    if (CotMarkerRefresher.checkStale(_context, m, settings,
+                            now, deleteList))
+                        _staleCount.incrementAndGet();
+                } catch (Exception e) {
+                    Log.e(TAG, "failed to check stale state of "
+                            + m.getUID(), e);
+                }
+                _checkCount.incrementAndGet();
+            }
+
+            for (Marker m : deleteList) {
+                remove(m);
+                m.removeFromGroup();
+                _deletedCount.incrementAndGet();
+            }
+
+            // markers that did not change state still need to be rescheduled
+            for (Marker m : due)
+                schedule(m);
+            due.clear();
+        }
+    }
+
+    /**
+     * @return the earliest deadline that has not been superseded
+     */
+    private Deadline peek() {
+        Deadline d;
+        while ((d = _queue.peek()) != null && _scheduled.get(d.marker) != d)
+            _queue.poll();
+        return d;
+    }
+
+    private void removeListeners(Marker m) {
+        for (String key : STALE_KEYS)
+            m.removeOnMetadataChangedListener(key, this);
+        m.removeOnTypeChangedListener(this);
+    }
+
+    private static final class Deadline implements Comparable<Deadline> {
+        final Marker marker;
+        final long time;
+
+        Deadline(Marker marker, long time) {
+            this.marker = marker;
+            this.time = time;
+        }
+
+        @Override
+        public int compareTo(Deadline other) {
+            return Long.compare(time, other.time);
+        }
+    }
+}
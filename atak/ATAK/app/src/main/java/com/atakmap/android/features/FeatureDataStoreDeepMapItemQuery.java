@@ -439,11 +439,7 @@ public class FeatureDataStoreDeepMapItemQuery implements DeepMapItemQuery,
         } else if (geom instanceof LineString) {
             LineString line = (LineString) geom;
 
-            GeoPointMetaData[] pts = new GeoPointMetaData[line.getNumPoints()];
-            for (int i = 0; i < line.getNumPoints(); i++) {
-                pts[i] = GeoPointMetaData
-                        .wrap(new GeoPoint(line.getY(i), line.getX(i)));
-            }
+            GeoPointMetaData[] pts = toGeoPoints(line);
 
             Polyline poly;
             if (pts.length < 1) {
@@ -496,13 +492,7 @@ public class FeatureDataStoreDeepMapItemQuery implements DeepMapItemQuery,
                 return null;
             }
 
-            GeoPointMetaData[] pts = new GeoPointMetaData[exteriorRing
-                    .getNumPoints()];
-            for (int i = 0; i < exteriorRing.getNumPoints(); i++) {
-                pts[i] = GeoPointMetaData
-                        .wrap(new GeoPoint(exteriorRing.getY(i),
-                                exteriorRing.getX(i)));
-            }
+            GeoPointMetaData[] pts = toGeoPoints(exteriorRing);
 
             Polyline poly;
             if (pts.length < 1) {
@@ -1096,8 +1086,20 @@ public class FeatureDataStoreDeepMapItemQuery implements DeepMapItemQuery,
 
     private static void getPoints(LineString linestring,
             Collection<GeoPoint> points) {
-        for (int i = 0; i < linestring.getNumPoints(); i++)
-            points.add(new GeoPoint(linestring.getY(i), linestring.getX(i)));
+        final int dim = linestring.getDimension();
+        final double[] xy = linestring.getPoints();
+        for (int i = 0; i < xy.length; i += dim)
+            points.add(new GeoPoint(xy[i + 1], xy[i]));
+    }
+
+    private static GeoPointMetaData[] toGeoPoints(LineString linestring) {
+        final int dim = linestring.getDimension();
+        final double[] xy = linestring.getPoints();
+        final GeoPointMetaData[] pts = new GeoPointMetaData[xy.length / dim];
+        for (int i = 0; i < pts.length; i++)
+            pts[i] = GeoPointMetaData.wrap(
+                    new GeoPoint(xy[i * dim + 1], xy[i * dim]));
+        return pts;
     }
 
     static MetaDataHolder2 attributesToMetadata(AttributeSet attribs,
@@ -37,7 +37,6 @@ import com.atakmap.coremap.concurrent.NamedThreadFactory;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.locale.LocaleUtil;
 import com.atakmap.coremap.log.Log;
-import com.atakmap.spatial.SpatialCalculator;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -88,12 +87,6 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
      */
     private long _monitorIteration;
 
-    /**
-     * Spatial Calc not thread safe, but we check all monitors on a single thread, so we resuse
-     * a single SpatialCalculator instance
-     */
-    private final SpatialCalculator _spatialCalc;
-
     /**
      * Map the geo fence map item's (shape) UID to the monitor
      */
@@ -128,7 +121,6 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
         _component.addGeoFenceChangedListener(this);
         _toRemove = new ArrayList<>();
         _deferredAdds = new ConcurrentHashMap<>();
-        _spatialCalc = new SpatialCalculator.Builder().inMemory().build();
         _monitorIteration = 0;
         initialize();
     }
@@ -146,7 +138,6 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
                 MapEvent.ITEM_ADDED, this);
         if (_alerting != null)
             _alerting.dispose();
-        _spatialCalc.dispose();
         _instance = null;
     }
 
@@ -185,7 +176,7 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
         }
 
         final GeoFenceMonitor monitor = GeoFenceMonitor.Factory.Create(_view,
-                _group, _spatialCalc, fence, item);
+                _group, fence, item);
         if (monitor == null || !monitor.isValid()) {
             Log.w(TAG, "onFenceAdded monitor invalid");
             return;
@@ -32,6 +32,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import gov.tak.api.annotation.DeprecatedApi;
+
 public abstract class GeoFenceMonitor {
 
     private static final String TAG = "GeoFenceMonitor";
@@ -494,8 +496,19 @@ public abstract class GeoFenceMonitor {
     public static class Factory {
         private static final String TAG = "GeoFenceMonitor.Factory";
 
+        /**
+         * @deprecated containment is tested in memory, use
+         * {@link #Create(MapView, MapGroup, GeoFence, MapItem)}
+         */
+        @Deprecated
+        @DeprecatedApi(since = "5.5", forRemoval = true, removeAt = "5.8")
         public static GeoFenceMonitor Create(MapView view, MapGroup group,
                 SpatialCalculator spatialCalc, GeoFence fence, MapItem item) {
+            return Create(view, group, fence, item);
+        }
+
+        public static GeoFenceMonitor Create(MapView view, MapGroup group,
+                GeoFence fence, MapItem item) {
             if (fence == null || !fence.isValid()) {
                 Log.w(TAG, "Unable to Create monitor for invalid fence");
                 return null;
@@ -521,7 +534,7 @@ public abstract class GeoFenceMonitor {
                 return monitor;
             } else if (shape instanceof Rectangle) {
                 RectangleGeoFenceMonitor monitor = new RectangleGeoFenceMonitor(
-                        view, spatialCalc, fence, (Rectangle) shape);
+                        view, fence, (Rectangle) shape);
                 if (!monitor.isValid()) {
                     Log.w(TAG, "Invalid RectangleGeoFenceMonitor");
                     return monitor;
@@ -533,7 +546,7 @@ public abstract class GeoFenceMonitor {
                 return monitor;
             } else if (shape instanceof DrawingEllipse) {
                 EllipseGeoFenceMonitor monitor = new EllipseGeoFenceMonitor(
-                        view, spatialCalc, fence, (DrawingEllipse) shape);
+                        view, fence, (DrawingEllipse) shape);
                 if (!monitor.isValid()) {
                     Log.w(TAG, "Invalid EllipseGeoFenceMonitor");
                     return monitor;
@@ -554,7 +567,7 @@ public abstract class GeoFenceMonitor {
                 }
 
                 ClosedShapeGeoFenceMonitor monitor = new ClosedShapeGeoFenceMonitor(
-                        view, spatialCalc, fence, freeform);
+                        view, fence, freeform);
                 if (!monitor.isValid()) {
                     Log.w(TAG, "Invalid ClosedShapeGeoFenceMonitor");
                     return monitor;
@@ -0,0 +1,343 @@
+
+package com.atakmap.android.hierarchy.items;
+
+import com.atakmap.android.hierarchy.HierarchyListFilter;
+import com.atakmap.android.hierarchy.HierarchyListItem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sorted list of child items keyed by their source object (i.e. a map item)
+ * which is kept up to date by applying add and remove events as diffs, instead
+ * of re-creating and re-sorting every child on each refresh.
+ *
+ * Items whose sort key has changed since the last update (i.e. a callsign
+ * change) are found with a single pass over neighboring items and inserted
+ * back into place along with any additions. Source objects are checked
+ * against {@link Source#accept(Object)} on every update, since whether an
+ * object is listed may change without an add or remove event. A full rebuild
+ * is only performed on the first update, after {@link #invalidate()} or when
+ * the sort order changes.
+ *
+ * @param <K> Source object type
+ */
+public class IncrementalItemList<K> {
+
+    /**
+     * Provides the source objects and the list items created from them
+     * @param <K> Source object type
+     */
+    public interface Source<K> {
+
+        /**
+         * Get every source object, used for a full rebuild
+         * @return Collection of source objects
+         */
+        Collection<K> getKeys();
+
+        /**
+         * Check if a source object should be listed. Called for every source
+         * object on each update, so this should be cheap.
+         * @param key Source object
+         * @return True to list the source object
+         */
+        boolean accept(K key);
+
+        /**
+         * Create the list item for a source object
+         * @param key Source object
+         * @return List item or null to exclude the source object
+         */
+        HierarchyListItem createItem(K key);
+    }
+
+    private final Source<K> source;
+
+    // Pending diffs - true if added, false if removed
+    private final Map<K, Boolean> pending = new HashMap<>();
+    private boolean invalid = true;
+
+    // Every created item, sorted by the current order (unfiltered)
+    private final Map<K, HierarchyListItem> items = new HashMap<>();
+    // Source objects which were not accepted by the source
+    private final Set<K> excluded = new HashSet<>();
+    private List<HierarchyListItem> sorted = new ArrayList<>();
+    private Comparator<HierarchyListItem> order;
+
+    // Items accepted by the last filter or null if all are accepted
+    private Set<HierarchyListItem> accepted;
+
+    public IncrementalItemList(Source<K> source) {
+        this.source = source;
+    }
+
+    /**
+     * Notify that a source object has been added
+     * @param key Source object
+     */
+    public void add(K key) {
+        synchronized (pending) {
+            pending.put(key, true);
+        }
+    }
+
+    /**
+     * Notify that a source object has been removed
+     * @param key Source object
+     */
+    public void remove(K key) {
+        synchronized (pending) {
+            pending.put(key, false);
+        }
+    }
+
+    /**
+     * Rebuild the entire list on the next update
+     */
+    public void invalidate() {
+        synchronized (pending) {
+            invalid = true;
+            pending.clear();
+        }
+    }
+
+    /**
+     * Apply pending diffs and return the sorted, filtered list of items
+     * @param order Sort order; a different comparator forces a full rebuild
+     * @param filter Filter to run on the items (null to accept all)
+     * @return New list of items
+     */
+    public synchronized List<HierarchyListItem> update(
+            Comparator<HierarchyListItem> order, HierarchyListFilter filter) {
+        final boolean rebuild;
+        final Map<K, Boolean> diffs;
+        synchronized (pending) {
+            rebuild = invalid || order != this.order;
+            diffs = rebuild ? null : new HashMap<>(pending);
+            invalid = false;
+            pending.clear();
+        }
+
+        this.order = order;
+        if (rebuild)
+            rebuild();
+        else
+            merge(diffs);
+
+        // Filter the sorted list, which keeps the order intact
+        if (filter == null || filter.isDefaultFilter()) {
+            this.accepted = null;
+            return new ArrayList<>(this.sorted);
+        }
+        List<HierarchyListItem> ret = new ArrayList<>();
+        Set<HierarchyListItem> accepted = Collections.newSetFromMap(
+                new IdentityHashMap<HierarchyListItem, Boolean>());
+        for (HierarchyListItem item : this.sorted) {
+            if (filter.accept(item)) {
+                ret.add(item);
+                accepted.add(item);
+            }
+        }
+        this.accepted = accepted;
+        return ret;
+    }
+
+    /**
+     * Check if the item for a source object passed the last update
+     * Used for quick lookups while searching
+     * @param key Source object
+     * @return True if the item is in the last returned list
+     */
+    public synchronized boolean contains(K key) {
+        HierarchyListItem item = this.items.get(key);
+        return item != null && (this.accepted == null
+                || this.accepted.contains(item));
+    }
+
+    /**
+     * Release all items
+     */
+    public synchronized void clear() {
+        this.items.clear();
+        this.excluded.clear();
+        this.sorted = new ArrayList<>();
+        this.accepted = null;
+        invalidate();
+    }
+
+    private void rebuild() {
+        this.items.clear();
+        this.excluded.clear();
+        List<HierarchyListItem> sorted = new ArrayList<>();
+        for (K key : this.source.getKeys()) {
+            if (!this.source.accept(key)) {
+                this.excluded.add(key);
+                continue;
+            }
+            HierarchyListItem item = this.source.createItem(key);
+            if (item == null)
+                continue;
+            this.items.put(key, item);
+            sorted.add(item);
+        }
+        sort(sorted);
+        this.sorted = sorted;
+    }
+
+    /**
+     * Remove and re-insert the items affected by a set of diffs, as well as
+     * any items which are no longer in sort order or whose acceptance changed
+     * @param diffs Pending diffs
+     */
+    private void merge(Map<K, Boolean> diffs) {
+        Set<HierarchyListItem> removed = Collections.newSetFromMap(
+                new IdentityHashMap<HierarchyListItem, Boolean>());
+        List<HierarchyListItem> inserts = new ArrayList<>();
+        for (Map.Entry<K, Boolean> e : diffs.entrySet()) {
+            K key = e.getKey();
+            HierarchyListItem old = this.items.remove(key);
+            if (old != null)
+                removed.add(old);
+            this.excluded.remove(key);
+            if (e.getValue())
+                add(key, inserts);
+        }
+
+        // Source objects may be hidden or shown without being removed from
+        // or added to the source (i.e. the "addToObjList" meta flag)
+        List<K> rejected = new ArrayList<>();
+        Iterator<Map.Entry<K, HierarchyListItem>> it = this.items.entrySet()
+                .iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, HierarchyListItem> e = it.next();
+            if (!this.source.accept(e.getKey())) {
+                removed.add(e.getValue());
+                rejected.add(e.getKey());
+                it.remove();
+            }
+        }
+        Iterator<K> eit = this.excluded.iterator();
+        while (eit.hasNext()) {
+            K key = eit.next();
+            if (this.source.accept(key)) {
+                eit.remove();
+                add(key, inserts);
+            }
+        }
+        this.excluded.addAll(rejected);
+
+        List<HierarchyListItem> current = this.sorted;
+        if (!removed.isEmpty()) {
+            current = new ArrayList<>(this.sorted.size());
+            for (HierarchyListItem item : this.sorted) {
+                if (!removed.contains(item))
+                    current.add(item);
+            }
+        }
+
+        // Keep the items which are still in order and pull out the rest.
+        // An item which sorts after its next neighbor is pulled out when the
+        // items on either side are in order, so a single item that moved
+        // toward the end doesn't pull out every item behind it.
+        final int size = current.size();
+        List<HierarchyListItem> kept = new ArrayList<>(size);
+        HierarchyListItem last = null;
+        for (int i = 0; i < size; i++) {
+            HierarchyListItem item = current.get(i);
+            if (last != null && compare(last, item) > 0) {
+                inserts.add(item);
+                continue;
+            }
+            if (i + 1 < size) {
+                HierarchyListItem next = current.get(i + 1);
+                if (compare(item, next) > 0
+                        && (last == null || compare(last, next) <= 0)) {
+                    inserts.add(item);
+                    continue;
+                }
+            }
+            kept.add(item);
+            last = item;
+        }
+        if (inserts.isEmpty()) {
+            this.sorted = kept;
+            return;
+        }
+        sort(inserts);
+
+        // Binary search for each insert position and copy the ranges between
+        List<HierarchyListItem> merged = new ArrayList<>(
+                kept.size() + inserts.size());
+        int start = 0;
+        for (HierarchyListItem item : inserts) {
+            int idx = insertIndex(kept, start, item);
+            merged.addAll(kept.subList(start, idx));
+            merged.add(item);
+            start = idx;
+        }
+        merged.addAll(kept.subList(start, kept.size()));
+        this.sorted = merged;
+    }
+
+    /**
+     * Create the item for an added source object
+     * @param key Source object
+     * @param inserts List of items to insert
+     */
+    private void add(K key, List<HierarchyListItem> inserts) {
+        if (!this.source.accept(key)) {
+            this.excluded.add(key);
+            return;
+        }
+        HierarchyListItem item = this.source.createItem(key);
+        if (item == null)
+            return;
+        this.items.put(key, item);
+        inserts.add(item);
+    }
+
+    /**
+     * Find the index to insert an item into a sorted list
+     * @param items Sorted list
+     * @param start Index to start searching at
+     * @param item Item to insert
+     * @return Index of the first item which sorts after the given item
+     */
+    private int insertIndex(List<HierarchyListItem> items, int start,
+            HierarchyListItem item) {
+        int lo = start, hi = items.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(items.get(mid), item) <= 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private int compare(HierarchyListItem lhs, HierarchyListItem rhs) {
+        return this.order != null ? this.order.compare(lhs, rhs) : 0;
+    }
+
+    private void sort(List<HierarchyListItem> items) {
+        if (this.order == null)
+            return;
+        try {
+            Collections.sort(items, this.order);
+        } catch (Exception ignored) {
+            // Items may be updated during the sort, which leaves the list
+            // partially sorted until the next update puts it back in order
+        }
+    }
+}
@@ -29,6 +29,7 @@ import com.atakmap.spatial.file.export.OGRFeatureExportWrapper;
 import com.ekito.simpleKML.model.Folder;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -68,8 +69,30 @@ public class MapGroupHierarchyListItem extends AbstractHierarchyListItem2
     protected int deepCount;
     protected final Map<MapGroup, HierarchyListItem> groupMap = new HashMap<>();
 
+    // Filtered map group children from the last refresh
+    private volatile List<HierarchyListItem> groupItems = new ArrayList<>();
+
     protected Comparator<HierarchyListItem> order;
 
+    // Sorted map item children, updated using item added/removed events
+    protected final IncrementalItemList<MapItem> itemList = new IncrementalItemList<>(
+            new IncrementalItemList.Source<MapItem>() {
+                @Override
+                public Collection<MapItem> getKeys() {
+                    return group.getItems();
+                }
+
+                @Override
+                public boolean accept(MapItem item) {
+                    return itemFilter.onItemFunction(item);
+                }
+
+                @Override
+                public HierarchyListItem createItem(MapItem item) {
+                    return createChild(item);
+                }
+            });
+
     public MapGroupHierarchyListItem(MapGroupHierarchyListItem parent,
             MapView mapView,
             MapGroup group, HierarchyListFilter filter, BaseAdapter listener) {
@@ -104,6 +127,7 @@ public class MapGroupHierarchyListItem extends AbstractHierarchyListItem2
                 this.group.removeOnItemListChangedListener(this);
                 this.group.removeOnGroupListChangedListener(this);
                 groupMap.clear();
+                itemList.clear();
                 this.disposed = true;
             }
         }
@@ -229,18 +253,11 @@ public class MapGroupHierarchyListItem extends AbstractHierarchyListItem2
         }
 
         Collections.sort(filteredGroups, HierarchyListAdapter.MENU_ITEM_COMP);
+        this.groupItems = filteredGroups;
 
-        // Filter and sort map items
-        List<HierarchyListItem> filteredItems = new ArrayList<>();
-        for (MapItem child : this.group.getItems()) {
-            if (!this.itemFilter.onItemFunction(child))
-                continue;
-            HierarchyListItem childItem = this.createChild(child);
-            if (this.filter.accept(childItem))
-                filteredItems.add(childItem);
-        }
-
-        Collections.sort(filteredItems, this.order);
+        // Filter and sort map items (only items that changed are re-sorted)
+        List<HierarchyListItem> filteredItems = this.itemList.update(
+                this.order, this.filter);
 
         List<HierarchyListItem> filtered = new ArrayList<>(filteredGroups);
         filtered.addAll(filteredItems);
@@ -339,13 +356,11 @@ public class MapGroupHierarchyListItem extends AbstractHierarchyListItem2
      * @return True if the map item is part of this list
      */
     private boolean itemContained(MapItem item) {
-        List<HierarchyListItem> children = getChildren();
-        for (HierarchyListItem hli : children) {
-            if (hli instanceof MapItemHierarchyListItem
-                    && hli.getUID().equals(item.getUID())
-                    || hli instanceof MapGroupHierarchyListItem
-                            && ((MapGroupHierarchyListItem) hli)
-                                    .itemContained(item))
+        if (item.getGroup() == this.group)
+            return this.itemList.contains(item);
+        for (HierarchyListItem hli : this.groupItems) {
+            if (hli instanceof MapGroupHierarchyListItem
+                    && ((MapGroupHierarchyListItem) hli).itemContained(item))
                 return true;
         }
         return false;
@@ -357,6 +372,7 @@ public class MapGroupHierarchyListItem extends AbstractHierarchyListItem2
     public void onItemAdded(MapItem item, MapGroup group) {
         Log.d(TAG, "onItemAdded(" + MapItem.getUniqueMapItemName(item) + ", "
                 + group + ")");
+        this.itemList.add(item);
         this.invalidate(false);
     }
 
@@ -364,6 +380,7 @@ public class MapGroupHierarchyListItem extends AbstractHierarchyListItem2
     public void onItemRemoved(MapItem item, MapGroup group) {
         Log.d(TAG, "onItemRemoved(" + MapItem.getUniqueMapItemName(item) + ", "
                 + group + ")");
+        this.itemList.remove(item);
         this.invalidate(false);
     }
 
@@ -383,6 +383,9 @@ public class DownloadAndCacheService {
 
             this.currentRequest.maxThreads = NUM_DOWNLOAD_THREADS;
             this.currentRequest.mode = CacheRequest.CacheMode.Append;
+            // an interrupted download of the same region picks up where it
+            // left off
+            this.currentRequest.resumable = true;
 
             LineString geomString = new LineString(2);
             for (GeoPoint gp : this.geometry)
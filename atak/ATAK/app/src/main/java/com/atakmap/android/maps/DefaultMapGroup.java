@@ -61,7 +61,11 @@ public class DefaultMapGroup extends MapGroup {
         final boolean hasItemListChangedListeners = this
                 .hasItemListChangedListeners();
         _items.clear();
+        final MapItemSpatialIndex spatialIndex = _spatialIndex;
+        if (spatialIndex != null)
+            spatialIndex.clear();
         for (MapItem item : items) {
+            unindexItem(item);
             item.onRemoved(this);
             if (hasItemListChangedListeners)
                 this.dispatchItemRemoved(item);
@@ -79,7 +83,7 @@ public class DefaultMapGroup extends MapGroup {
             toRemove.clearGroups();
             if (!toRemove.getMetaBoolean("permaGroup", false)) {
                 iter.remove();
-                toRemove.onRemovedNoSync();
+                detachGroup(toRemove);
                 this.dispatchGroupRemoved(toRemove);
             }
         }
@@ -139,7 +143,7 @@ public class DefaultMapGroup extends MapGroup {
             final boolean perma = group.getMetaBoolean("permaGroup", false);
             if (referenceOnly) {
                 _groups.remove(group.getSerialId());
-                group.onRemovedNoSync();
+                detachGroup(group);
                 this.dispatchGroupRemoved(group);
                 return true;
             } else {
@@ -147,7 +151,7 @@ public class DefaultMapGroup extends MapGroup {
                 group.clearItems();
                 if (!perma) {
                     _groups.remove(group.getSerialId());
-                    group.onRemovedNoSync();
+                    detachGroup(group);
                     this.dispatchGroupRemoved(group);
                 }
                 return !perma;
@@ -174,7 +178,7 @@ public class DefaultMapGroup extends MapGroup {
         _groups.put(group.getSerialId(), group);
         if (!_visible && group.getVisible())
             setVisibleIgnoreChildren(true);
-        group.onAddedNoSync(this);
+        attachGroup(group);
         this.dispatchGroupAdded(group);
         return group;
     }
@@ -222,6 +226,10 @@ public class DefaultMapGroup extends MapGroup {
     @Override
     protected void addItemImpl(MapItem item) {
         _items.put(item.getSerialId(), item);
+        indexItem(item);
+        final MapItemSpatialIndex spatialIndex = _spatialIndex;
+        if (spatialIndex != null)
+            addToSpatialIndex(spatialIndex, item);
 
         // Adding a new item to an invisible group
         // This will NOT turn on visibility for existing
@@ -230,25 +238,31 @@ public class DefaultMapGroup extends MapGroup {
             setVisibleIgnoreChildren(true);
     }
 
+    /**
+     * Looks up the item with the given UID in this group and all of its
+     * descendants using the UID index, only searching descendant groups that
+     * are not a DefaultMapGroup and so do not keep an index of their own.
+     */
     @Override
     public MapItem deepFindUID(final String uid) {
-        Collection<MapItem> items = this.getItems();
-        for (MapItem item : items) {
-            if (item.getUID().equals(uid))
-                return item;
-        }
-        Collection<MapGroup> children = this.getChildGroups();
-        for (MapGroup child : children) {
-            if (child instanceof DefaultMapGroup) {
-                MapItem m = child.deepFindUID(uid);
-                if (m != null)
-                    return m;
-            } else {
-                MapItem m = child.deepFindItem("uid", uid);
-                if (m != null)
-                    return m;
-            }
-
+        if (uid == null)
+            return null;
+        final MapItem item = _uidIndex.get(uid);
+        if (item != null || _foreignGroups == 0)
+            return item;
+        return deepFindForeignUID(this, uid);
+    }
+
+    private static MapItem deepFindForeignUID(DefaultMapGroup group,
+            String uid) {
+        for (MapGroup child : group._groups.values()) {
+            MapItem m = null;
+            if (!(child instanceof DefaultMapGroup))
+                m = child.deepFindUID(uid);
+            else if (((DefaultMapGroup) child)._foreignGroups > 0)
+                m = deepFindForeignUID((DefaultMapGroup) child, uid);
+            if (m != null)
+                return m;
         }
         return null;
     }
@@ -259,6 +273,11 @@ public class DefaultMapGroup extends MapGroup {
      */
     @Override
     public MapItem deepFindItem(Map<String, String> metadata) {
+        if (metadata != null && metadata.size() == 1) {
+            final String uid = metadata.get("uid");
+            if (uid != null)
+                return deepFindUID(uid);
+        }
         return MapGroup.deepFindItemWithMetaString(this, metadata);
     }
 
@@ -348,12 +367,165 @@ public class DefaultMapGroup extends MapGroup {
     protected final Map<Long, MapItem> _items = new ConcurrentHashMap<>();
     protected final Map<Long, MapGroup> _groups = new ConcurrentHashMap<>();
 
+    /**
+     * UID index over the items of this group and, transitively, of every
+     * DefaultMapGroup below it. The index of each group is updated along with
+     * those of its DefaultMapGroup ancestors whenever an item is added or
+     * removed or a group is attached or detached, under {@link #_indexLock}.
+     */
+    private final Map<String, MapItem> _uidIndex = new ConcurrentHashMap<>();
+
+    /**
+     * The number of groups below this one that are not a DefaultMapGroup and
+     * must still be searched on an index miss.
+     */
+    private volatile int _foreignGroups;
+
+    /**
+     * Guards the structure of the UID indices and the parent links they are
+     * propagated along. Reads of an index are not locked.
+     */
+    private static final Object _indexLock = new Object();
+
+    /**
+     * Initial radius, in meters, of the search for the closest item
+     */
+    private static final double CLOSEST_SEARCH_RADIUS = 1000d;
+
+    /**
+     * Radius, in meters, beyond which the search for the closest item covers
+     * the whole world
+     */
+    private static final double MAX_SEARCH_RADIUS = 20037508d;
+
+    /**
+     * Spatial index over the items of this group, created on the first
+     * spatial query
+     */
+    private volatile MapItemSpatialIndex _spatialIndex;
+
     @Override
     protected boolean removeItemImpl(MapItem item) {
         MapItem mi = _items.remove(item.getSerialId());
+        if (mi != null) {
+            unindexItem(mi);
+            final MapItemSpatialIndex spatialIndex = _spatialIndex;
+            if (spatialIndex != null)
+                spatialIndex.remove(mi);
+        }
         return (mi != null);
     }
 
+    /**
+     * Returns the spatial index of this group, creating and populating it if
+     * this is the first spatial query.
+     */
+    private MapItemSpatialIndex spatialIndex() {
+        MapItemSpatialIndex spatialIndex = _spatialIndex;
+        if (spatialIndex != null)
+            return spatialIndex;
+        synchronized (this) {
+            spatialIndex = _spatialIndex;
+            if (spatialIndex != null)
+                return spatialIndex;
+            // publish first so that items added while populating are not
+            // missed
+            spatialIndex = new MapItemSpatialIndex();
+            _spatialIndex = spatialIndex;
+            for (MapItem item : _items.values())
+                addToSpatialIndex(spatialIndex, item);
+        }
+        return spatialIndex;
+    }
+
+    private void addToSpatialIndex(MapItemSpatialIndex spatialIndex,
+            MapItem item) {
+        spatialIndex.add(item);
+        // undo if the item was removed concurrently, as its removal may have
+        // been processed before it was added
+        if (!containsItem(item))
+            spatialIndex.remove(item);
+    }
+
+    private static DefaultMapGroup indexedParent(DefaultMapGroup group) {
+        final MapGroup parent = group.getParentGroup();
+        return (parent instanceof DefaultMapGroup) ? (DefaultMapGroup) parent
+                : null;
+    }
+
+    private void indexItem(MapItem item) {
+        final String uid = item.getUID();
+        synchronized (_indexLock) {
+            for (DefaultMapGroup g = this; g != null; g = indexedParent(g))
+                g._uidIndex.put(uid, item);
+        }
+    }
+
+    private void unindexItem(MapItem item) {
+        final String uid = item.getUID();
+        synchronized (_indexLock) {
+            for (DefaultMapGroup g = this; g != null; g = indexedParent(g))
+                g._uidIndex.remove(uid, item);
+        }
+    }
+
+    /**
+     * Sets this group as the parent of the given group and merges the index
+     * of the new subtree into this group and its ancestors.
+     */
+    private void attachGroup(MapGroup group) {
+        synchronized (_indexLock) {
+            group.onAddedNoSync(this);
+            if (group instanceof DefaultMapGroup) {
+                final DefaultMapGroup child = (DefaultMapGroup) group;
+                for (DefaultMapGroup g = this; g != null; g = indexedParent(
+                        g)) {
+                    g._uidIndex.putAll(child._uidIndex);
+                    g._foreignGroups += child._foreignGroups;
+                }
+            } else {
+                for (DefaultMapGroup g = this; g != null; g = indexedParent(
+                        g))
+                    g._foreignGroups++;
+            }
+        }
+    }
+
+    /**
+     * Removes the index of the given subtree from this group and its
+     * ancestors and clears the parent of the given group.
+     */
+    private void detachGroup(MapGroup group) {
+        synchronized (_indexLock) {
+            if (group instanceof DefaultMapGroup) {
+                final DefaultMapGroup child = (DefaultMapGroup) group;
+                for (DefaultMapGroup g = this; g != null; g = indexedParent(
+                        g)) {
+                    for (Map.Entry<String, MapItem> e : child._uidIndex
+                            .entrySet())
+                        g._uidIndex.remove(e.getKey(), e.getValue());
+                    g._foreignGroups -= child._foreignGroups;
+                }
+            } else {
+                for (DefaultMapGroup g = this; g != null; g = indexedParent(
+                        g))
+                    g._foreignGroups--;
+            }
+            group.onRemovedNoSync();
+        }
+    }
+
+    /**
+     * Drops the UID index without notifying any ancestor, for use when the
+     * whole tree is being disposed.
+     */
+    void clearUidIndex() {
+        synchronized (_indexLock) {
+            _uidIndex.clear();
+            _foreignGroups = 0;
+        }
+    }
+
     @Override
     public Collection<MapGroup> getChildGroups() {
         return Collections.unmodifiableCollection(_groups.values());
@@ -406,19 +578,44 @@ public class DefaultMapGroup extends MapGroup {
         MapItem candidate = null;
         double candidateDistance = Double.NaN;
 
+        if (location == null)
+            return null;
+
+        // a NaN threshold does not exclude any item
+        final double limit = Double.isNaN(threshold) ? Double.POSITIVE_INFINITY
+                : threshold;
+
         MetaDataMapItemFilter filter = new MetaDataMapItemFilter(metadata);
+        MapItemSpatialIndex spatialIndex = spatialIndex();
+        Collection<MapItem> items = new ArrayList<>();
         double distance;
-        for (MapItem i : _items.values()) {
-            distance = MapItem.computeDistance(i, location);
-            if (Double.isNaN(distance) || distance > threshold)
-                continue;
-            if (!Double.isNaN(candidateDistance)
-                    && distance >= candidateDistance)
-                continue;
-            if (!filter.onItemFunction(i))
-                continue;
-            candidate = i;
-            candidateDistance = distance;
+
+        // widen the search until an item is found within the searched radius,
+        // as anything outside of it must be further away
+        double radius = Math.min(limit, CLOSEST_SEARCH_RADIUS);
+        while (true) {
+            items.clear();
+            spatialIndex.query(location, radius, items);
+            for (MapItem i : items) {
+                distance = MapItem.computeDistance(i, location);
+                if (Double.isNaN(distance) || distance > limit)
+                    continue;
+                if (!Double.isNaN(candidateDistance)
+                        && distance >= candidateDistance)
+                    continue;
+                if (!filter.onItemFunction(i))
+                    continue;
+                candidate = i;
+                candidateDistance = distance;
+            }
+            if ((candidate != null && candidateDistance <= radius)
+                    || radius >= limit)
+                break;
+            radius *= 8d;
+            if (radius >= MAX_SEARCH_RADIUS)
+                radius = Double.POSITIVE_INFINITY;
+            else
+                radius = Math.min(radius, limit);
         }
         return candidate;
     }
@@ -430,11 +627,13 @@ public class DefaultMapGroup extends MapGroup {
 
         final Collection<MapItem> candidates = new LinkedList<>();
 
-        if (location != null) {
+        if (location != null && !(radius < 0d)) {
             final MetaDataMapItemFilter filter = new MetaDataMapItemFilter(
                     metadata);
+            final Collection<MapItem> items = new ArrayList<>();
+            spatialIndex().query(location, radius, items);
             double distance;
-            for (MapItem i : _items.values()) {
+            for (MapItem i : items) {
                 distance = MapItem.computeDistance(i, location);
                 if (Double.isNaN(distance) || distance > radius)
                     continue;
@@ -455,8 +654,27 @@ public class DefaultMapGroup extends MapGroup {
                         ? null
                         : new MetaDataMapItemFilter(metadata);
 
+        Collection<MapItem> items;
+        if (boundsfilter != null) {
+            // narrow down to the items within the axis-aligned bounds checked
+            // by the filter
+            items = new ArrayList<>();
+            FOVFilter.MapState fov = boundsfilter.getMapState();
+            if (fov.crossesIDL) {
+                spatialIndex().query(fov.southBound,
+                        Math.max(fov.eastBound, fov.westBound),
+                        fov.northBound,
+                        Math.min(fov.eastBound, fov.westBound), items);
+            } else {
+                spatialIndex().query(fov.southBound, fov.westBound,
+                        fov.northBound, fov.eastBound, items);
+            }
+        } else {
+            items = _items.values();
+        }
+
         Collection<MapItem> candidates = new LinkedList<>();
-        for (MapItem i : _items.values()) {
+        for (MapItem i : items) {
             if (boundsfilter != null && !boundsfilter.accept(i))
                 continue;
 
@@ -30,7 +30,7 @@ public class DefaultMetaDataHolder implements MetaDataHolder3 {
 
     public DefaultMetaDataHolder(final Map<String, Object> bundle) {
         _serializableData = bundle;
-        _attrs = new AttributeSet();
+        _attrs = new SlottedAttributeSet();
         AttributeSetUtils.putAll(_attrs, bundle, true);
     }
 
@@ -60,6 +60,15 @@ public class DefaultMetaDataHolder implements MetaDataHolder3 {
     @Override
     public final String getMetaString(final String key,
             final String fallbackValue) {
+        final Slot slot = loadSlot(key);
+        if (slot != null) {
+            synchronized (slot) {
+                if (slot.cached && slot.type == null)
+                    return fallbackValue;
+                if (slot.cached && slot.type == String.class)
+                    return slot.stringValue;
+            }
+        }
         return typedGet(_attrs, key, String.class, fallbackValue);
     }
 
@@ -67,8 +76,26 @@ public class DefaultMetaDataHolder implements MetaDataHolder3 {
     public final void setMetaString(final String key, final String value) {
         if (value == null) {
             _attrs.removeAttribute(key);
-        } else {
+            return;
+        }
+        final Slot slot = getSlot(key);
+        if (slot == null) {
             _attrs.setAttribute(key, value);
+            return;
+        }
+        final int gen;
+        synchronized (slot) {
+            if (slot.cached && slot.type == String.class
+                    && value.equals(slot.stringValue))
+                return;
+            gen = slot.gen;
+        }
+        _attrs.setAttribute(key, value);
+        synchronized (slot) {
+            if (slot.gen == gen + 1) {
+                slot.set(String.class);
+                slot.stringValue = value;
+            }
         }
     }
 
@@ -86,18 +113,56 @@ public class DefaultMetaDataHolder implements MetaDataHolder3 {
     @Override
     public final double getMetaDouble(final String key,
             final double fallbackValue) {
+        final Slot slot = loadSlot(key);
+        if (slot != null) {
+            synchronized (slot) {
+                if (slot.cached && slot.type == null)
+                    return fallbackValue;
+                if (slot.cached && slot.type == Double.class)
+                    return slot.doubleValue;
+            }
+        }
         Double r = typedGet(_attrs, key, Double.class);
         return (r != null) ? r : fallbackValue;
     }
 
     @Override
     public final void setMetaDouble(final String key, final double value) {
+        final Slot slot = getSlot(key);
+        if (slot == null) {
+            _attrs.setAttribute(key, value);
+            return;
+        }
+        final int gen;
+        synchronized (slot) {
+            // matches the equality test the attribute set applies to values
+            if (slot.cached && slot.type == Double.class
+                    && Double.doubleToLongBits(slot.doubleValue) == Double
+                            .doubleToLongBits(value))
+                return;
+            gen = slot.gen;
+        }
         _attrs.setAttribute(key, value);
+        synchronized (slot) {
+            if (slot.gen == gen + 1) {
+                slot.set(Double.class);
+                slot.doubleValue = value;
+            }
+        }
     }
 
     @Override
     public final boolean getMetaBoolean(final String key,
             final boolean fallbackValue) {
+        final Slot slot = loadSlot(key);
+        if (slot != null) {
+            synchronized (slot) {
+                if (slot.cached && slot.type == null)
+                    return fallbackValue;
+                if (slot.cached && slot.type == Boolean.class)
+                    return slot.booleanValue;
+            }
+        }
         Boolean r = typedGet(_attrs, key, Boolean.class);
         return (r != null) ? r : fallbackValue;
     }
@@ -109,11 +174,36 @@ public class DefaultMetaDataHolder implements MetaDataHolder3 {
 
     @Override
     public final void setMetaBoolean(final String key, final boolean value) {
+        final Slot slot = getSlot(key);
+        if (slot == null) {
+            _attrs.setAttribute(key, value);
+            return;
+        }
+        final int gen;
+        synchronized (slot) {
+            if (slot.cached && slot.type == Boolean.class
+                    && slot.booleanValue == value)
+                return;
+            gen = slot.gen;
+        }
         _attrs.setAttribute(key, value);
+        synchronized (slot) {
+            if (slot.gen == gen + 1) {
+                slot.set(Boolean.class);
+                slot.booleanValue = value;
+            }
+        }
     }
 
     @Override
     public final boolean hasMetaValue(final String key) {
+        final Slot slot = loadSlot(key);
+        if (slot != null) {
+            synchronized (slot) {
+                if (slot.cached && slot.type != null)
+                    return true;
+            }
+        }
         return (_attrs != null && _attrs.containsAttribute(key)) ||
                 (_serializableData != null
                         && _serializableData.containsKey(key));
@@ -121,13 +211,40 @@ public class DefaultMetaDataHolder implements MetaDataHolder3 {
 
     @Override
     public final long getMetaLong(final String key, final long fallbackValue) {
+        final Slot slot = loadSlot(key);
+        if (slot != null) {
+            synchronized (slot) {
+                if (slot.cached && slot.type == null)
+                    return fallbackValue;
+                if (slot.cached && slot.type == Long.class)
+                    return slot.longValue;
+            }
+        }
         Long r = typedGet(_attrs, key, Long.class);
         return (r != null) ? r : fallbackValue;
     }
 
     @Override
     public final void setMetaLong(final String key, final long value) {
+        final Slot slot = getSlot(key);
+        if (slot == null) {
+            _attrs.setAttribute(key, value);
+            return;
+        }
+        final int gen;
+        synchronized (slot) {
+            if (slot.cached && slot.type == Long.class
+                    && slot.longValue == value)
+                return;
+            gen = slot.gen;
+        }
         _attrs.setAttribute(key, value);
+        synchronized (slot) {
+            if (slot.gen == gen + 1) {
+                slot.set(Long.class);
+                slot.longValue = value;
+            }
+        }
     }
 
     @Override
@@ -228,8 +345,153 @@ public class DefaultMetaDataHolder implements MetaDataHolder3 {
         }
     }
 
+    /**
+     * Returns the slot holding the value of a well-known key, or
+     * <code>null</code> if the key is stored only in the attribute set.
+     * These are the keys that are read and written for every update of a
+     * map item.
+     */
+    private Slot getSlot(final String key) {
+        switch (key) {
+            case "lastUpdateTime":
+                return _slots[0];
+            case "Speed":
+                return _slots[1];
+            case "team":
+                return _slots[2];
+            case "stale":
+                return _slots[3];
+            case "readiness":
+                return _slots[4];
+            case "how":
+                return _slots[5];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the slot for the key, populating it from the attribute set if
+     * the key is well-known and the slot was invalidated.
+     */
+    private Slot loadSlot(final String key) {
+        final Slot slot = getSlot(key);
+        if (slot == null)
+            return null;
+        final int gen;
+        synchronized (slot) {
+            if (slot.cached)
+                return slot;
+            gen = slot.gen;
+        }
+
+        // read outside of the slot lock, the value is only kept if the key
+        // was not modified in the meantime
+        final Object value;
+        try {
+            value = AttributeSetUtils.get(_attrs, key);
+        } catch (IllegalArgumentException e) {
+            // removed while reading
+            return slot;
+        }
+        synchronized (slot) {
+            if (slot.gen != gen)
+                return slot;
+            if (value == null) {
+                slot.set(null);
+            } else if (value instanceof Long) {
+                slot.set(Long.class);
+                slot.longValue = (Long) value;
+            } else if (value instanceof Double) {
+                slot.set(Double.class);
+                slot.doubleValue = (Double) value;
+            } else if (value instanceof Boolean) {
+                slot.set(Boolean.class);
+                slot.booleanValue = (Boolean) value;
+            } else if (value instanceof String) {
+                slot.set(String.class);
+                slot.stringValue = (String) value;
+            } else {
+                // any other type is read from the attribute set
+                slot.set(Object.class);
+            }
+        }
+        return slot;
+    }
+
+    private void invalidateSlot(final String key) {
+        final Slot slot = getSlot(key);
+        if (slot != null)
+            slot.invalidate();
+    }
+
+    private void invalidateSlots() {
+        for (Slot slot : _slots)
+            slot.invalidate();
+    }
+
+    /**
+     * Cached, unboxed value of a well-known key. The attribute set remains
+     * the authoritative store, as it is shared with the kernel detail
+     * handlers; the slot is invalidated whenever the key is modified through
+     * any path and repopulated on the next read.
+     */
+    private static final class Slot {
+        /** incremented on every modification of the key */
+        int gen;
+        boolean cached;
+        /** type of the cached value, <code>null</code> if not present */
+        Class<?> type;
+        long longValue;
+        double doubleValue;
+        boolean booleanValue;
+        String stringValue;
+
+        void set(final Class<?> type) {
+            this.cached = true;
+            this.type = type;
+            this.stringValue = null;
+        }
+
+        synchronized void invalidate() {
+            gen++;
+            cached = false;
+            stringValue = null;
+        }
+    }
+
+    /**
+     * Attribute set that reports every modification of its contents to the
+     * slots of the holder, including those made by holders of the marshaled
+     * attribute set.
+     */
+    private final class SlottedAttributeSet extends AttributeSet {
+        @Override
+        protected void contentsChanged(String name, Object oldValue,
+                Object newValue) {
+            invalidateSlot(name);
+            super.contentsChanged(name, oldValue, newValue);
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            invalidateSlots();
+        }
+
+        @Override
+        public void putAll(AttributeSet source) {
+            super.putAll(source);
+            invalidateSlots();
+        }
+    }
+
     private final Map<String, Object> _serializableData;
     private final AttributeSet _attrs;
+    private final Slot[] _slots = {
+            new Slot(), new Slot(), new Slot(), new Slot(), new Slot(),
+            new Slot()
+    };
 
     public static void metaMapToBundle(final Map<String, Object> map,
             final Bundle bundle,
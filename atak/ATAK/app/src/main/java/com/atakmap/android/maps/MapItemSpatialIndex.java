@@ -0,0 +1,309 @@
+
+package com.atakmap.android.maps;
+
+import com.atakmap.android.hierarchy.filters.FOVFilter;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.math.PointD;
+import com.atakmap.util.Quadtree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Spatial index over the items of a single {@link DefaultMapGroup}, keyed on
+ * the location of a {@link PointMapItem} or the extent of the points of a
+ * {@link Shape}. Entries are updated as the items report point changes.
+ *
+ * Items whose location cannot be represented by a bounding box (anchored
+ * shapes, items that implement their own FOV filtering and other item types)
+ * are not indexed and are returned by every query, leaving the caller to
+ * apply the exact test.
+ */
+final class MapItemSpatialIndex implements
+        PointMapItem.OnPointChangedListener,
+        Shape.OnPointsChangedListener {
+
+    /**
+     * Approximate number of meters per degree of latitude, rounded down so
+     * that radius queries always cover the requested area
+     */
+    private static final double METERS_PER_DEGREE = 110000d;
+
+    private static final int NODE_LIMIT = 32;
+
+    private final Quadtree<Entry> _tree = new Quadtree<>(
+            new Quadtree.Function<Entry>() {
+                @Override
+                public void getBounds(Entry entry, PointD min, PointD max) {
+                    min.x = entry.minLng;
+                    min.y = entry.minLat;
+                    max.x = entry.maxLng;
+                    max.y = entry.maxLat;
+                }
+            }, NODE_LIMIT, -180d, -90d, 180d, 90d);
+
+    private final Map<MapItem, Entry> _entries = new IdentityHashMap<>();
+    private final Set<MapItem> _unindexed = Collections
+            .newSetFromMap(new IdentityHashMap<MapItem, Boolean>());
+
+    void add(MapItem item) {
+        if (!isIndexable(item)) {
+            synchronized (this) {
+                _unindexed.add(item);
+            }
+            return;
+        }
+        final Entry entry;
+        synchronized (this) {
+            if (_entries.containsKey(item))
+                return;
+            entry = new Entry(item);
+            _entries.put(item, entry);
+            _unindexed.add(item);
+        }
+        // register before reading the location so that no change is missed
+        register(item);
+        refresh(item);
+    }
+
+    void remove(MapItem item) {
+        final Entry entry;
+        synchronized (this) {
+            entry = _entries.remove(item);
+            _unindexed.remove(item);
+            if (entry == null)
+                return;
+            if (entry.indexed)
+                _tree.remove(entry);
+        }
+        release(item);
+    }
+
+    void clear() {
+        final Collection<MapItem> items;
+        synchronized (this) {
+            items = new ArrayList<>(_entries.keySet());
+            for (Entry entry : _entries.values()) {
+                if (entry.indexed)
+                    _tree.remove(entry);
+            }
+            _entries.clear();
+            _unindexed.clear();
+        }
+        for (MapItem item : items)
+            release(item);
+    }
+
+    /**
+     * Collects the items whose indexed bounds intersect the given box, along
+     * with every item that is not indexed. A box whose minimum longitude is
+     * greater than its maximum longitude crosses the anti-meridian.
+     */
+    synchronized void query(double minLat, double minLng, double maxLat,
+            double maxLng, Collection<MapItem> retval) {
+        if (minLng <= maxLng) {
+            collect(retval, minLat, minLng, maxLat, maxLng);
+        } else {
+            collect(retval, minLat, minLng, maxLat, 180d,
+                    minLat, -180d, maxLat, maxLng);
+        }
+    }
+
+    /**
+     * Collects the candidates for the items within {@code radius} meters of
+     * {@code location}, along with every item that is not indexed.
+     */
+    synchronized void query(GeoPoint location, double radius,
+            Collection<MapItem> retval) {
+        final double lat = location.getLatitude();
+        final double lng = location.getLongitude();
+        if (!(radius < Double.POSITIVE_INFINITY)) {
+            collect(retval, -90d, -180d, 90d, 180d);
+            return;
+        }
+
+        final double dLat = radius / METERS_PER_DEGREE;
+        final double minLat = lat - dLat;
+        final double maxLat = lat + dLat;
+        final double poleward = Math.max(Math.abs(minLat), Math.abs(maxLat));
+        final double dLng = (poleward >= 90d) ? 180d
+                : dLat / Math.cos(Math.toRadians(poleward));
+        if (dLng >= 180d) {
+            collect(retval, minLat, -180d, maxLat, 180d);
+        } else if (lng - dLng < -180d) {
+            collect(retval, minLat, -180d, maxLat, lng + dLng,
+                    minLat, lng - dLng + 360d, maxLat, 180d);
+        } else if (lng + dLng > 180d) {
+            collect(retval, minLat, lng - dLng, maxLat, 180d,
+                    minLat, -180d, maxLat, lng + dLng - 360d);
+        } else {
+            collect(retval, minLat, lng - dLng, maxLat, lng + dLng);
+        }
+    }
+
+    @Override
+    public void onPointChanged(PointMapItem item) {
+        refresh(item);
+    }
+
+    @Override
+    public void onPointsChanged(Shape s) {
+        refresh(s);
+    }
+
+    /**
+     * Re-reads the location of the item and updates its entry. The location
+     * is read without holding the index lock, as items may notify listeners
+     * while holding their own lock; the most recently requested update wins.
+     */
+    private void refresh(MapItem item) {
+        final Entry entry;
+        final int request;
+        synchronized (this) {
+            entry = _entries.get(item);
+            if (entry == null)
+                return;
+            request = ++entry.requested;
+        }
+        final double[] bounds = computeBounds(item);
+        synchronized (this) {
+            if (_entries.get(item) != entry || request < entry.applied)
+                return;
+            entry.applied = request;
+            if (bounds != null) {
+                entry.minLat = bounds[0];
+                entry.minLng = bounds[1];
+                entry.maxLat = bounds[2];
+                entry.maxLng = bounds[3];
+                if (entry.indexed) {
+                    _tree.refresh(entry);
+                } else {
+                    _unindexed.remove(item);
+                    _tree.add(entry);
+                    entry.indexed = true;
+                }
+            } else {
+                // no valid location, leave it to the exact test
+                if (entry.indexed) {
+                    _tree.remove(entry);
+                    entry.indexed = false;
+                }
+                _unindexed.add(item);
+            }
+        }
+    }
+
+    /**
+     * Collects the items in the tree intersecting any of the boxes, given as
+     * <code>minLat, minLng, maxLat, maxLng</code>, followed by the items that
+     * are not indexed.
+     */
+    private void collect(Collection<MapItem> retval, double... boxes) {
+        if (_tree.size() > 0) {
+            // shapes spanning multiple boxes are only reported once
+            final Collection<Entry> hits = (boxes.length > 4)
+                    ? new LinkedHashSet<Entry>()
+                    : new ArrayList<Entry>();
+            for (int i = 0; i < boxes.length; i += 4)
+                _tree.get(boxes[i + 1], boxes[i], boxes[i + 3], boxes[i + 2],
+                        hits);
+            for (Entry entry : hits)
+                retval.add(entry.item);
+        }
+        retval.addAll(_unindexed);
+    }
+
+    private static boolean isIndexable(MapItem item) {
+        if (item instanceof FOVFilter.Filterable)
+            return false;
+        if (item instanceof PointMapItem)
+            return true;
+        // the anchor of an anchored shape is tested alongside its points
+        return item instanceof Shape && !(item instanceof AnchoredMapItem);
+    }
+
+    private void register(MapItem item) {
+        if (item instanceof PointMapItem)
+            ((PointMapItem) item).addOnPointChangedListener(this);
+        else
+            ((Shape) item).addOnPointsChangedListener(this);
+    }
+
+    /**
+     * Unregisters from an item that was removed. Listeners are not modified
+     * under the index lock, as items may hold their listener lock while
+     * calling into the index, so an item that was re-added in the meantime is
+     * registered again.
+     */
+    private void release(MapItem item) {
+        if (item instanceof PointMapItem)
+            ((PointMapItem) item).removeOnPointChangedListener(this);
+        else
+            ((Shape) item).removeOnPointsChangedListener(this);
+        final boolean readded;
+        synchronized (this) {
+            readded = _entries.containsKey(item);
+        }
+        if (readded) {
+            register(item);
+            refresh(item);
+        }
+    }
+
+    /**
+     * @return the bounds of the item as <code>{minLat, minLng, maxLat,
+     *         maxLng}</code> or <code>null</code> if it has no valid location
+     */
+    private static double[] computeBounds(MapItem item) {
+        if (item instanceof PointMapItem) {
+            final GeoPoint p = ((PointMapItem) item).getPoint();
+            if (p == null || !p.isValid())
+                return null;
+            return new double[] {
+                    p.getLatitude(), p.getLongitude(),
+                    p.getLatitude(), p.getLongitude()
+            };
+        }
+
+        final GeoPoint[] points = ((Shape) item).getPoints();
+        if (points == null || points.length == 0)
+            return null;
+        double minLat = Double.POSITIVE_INFINITY;
+        double minLng = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY;
+        for (GeoPoint p : points) {
+            if (p == null || !p.isValid())
+                return null;
+            minLat = Math.min(minLat, p.getLatitude());
+            maxLat = Math.max(maxLat, p.getLatitude());
+            minLng = Math.min(minLng, p.getLongitude());
+            maxLng = Math.max(maxLng, p.getLongitude());
+        }
+        // shapes that cross the anti-meridian are treated as spanning every
+        // longitude
+        if (maxLng - minLng > 180d) {
+            minLng = -180d;
+            maxLng = 180d;
+        }
+        return new double[] {
+                minLat, minLng, maxLat, maxLng
+        };
+    }
+
+    private static final class Entry {
+        final MapItem item;
+        double minLat, minLng, maxLat, maxLng;
+        boolean indexed;
+        int requested, applied;
+
+        Entry(MapItem item) {
+            this.item = item;
+        }
+    }
+}
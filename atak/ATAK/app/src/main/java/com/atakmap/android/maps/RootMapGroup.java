@@ -50,6 +50,7 @@ public final class RootMapGroup extends DefaultMapGroup
     synchronized void dispose() {
         this._groups.clear();
         this._items.clear();
+        this.clearUidIndex();
     }
 
     /************************************************************************/
@@ -59,7 +60,13 @@ public final class RootMapGroup extends DefaultMapGroup
      * Stock implementation of searching for a UID.
      */
     public @Nullable MapItem deepFindUID(final String uid) {
-        final MapItem byUid = this.uidIndex.get(uid);
+        // items anywhere in the group tree
+        MapItem byUid = super.deepFindUID(uid);
+        if (byUid != null)
+            return byUid;
+
+        // items announced through the map event dispatcher
+        byUid = this.uidIndex.get(uid);
         if (byUid != null)
             return byUid;
         return deepFindItemImpl(Collections.singletonMap("uid", uid), true);
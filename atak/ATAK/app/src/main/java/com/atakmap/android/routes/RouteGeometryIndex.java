@@ -0,0 +1,555 @@
+
+package com.atakmap.android.routes;
+
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.math.MathUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, in-memory index over the line geometry of a route. Vertices are
+ * held in packed longitude/latitude arrays along with the cumulative planar,
+ * web mercator and geodesic lengths at each vertex. Segments are bulk loaded
+ * into a packed STR-tree so that the nearest segment to a location can be
+ * found without visiting every segment of the route.
+ *
+ * Planar computations treat longitude/latitude as cartesian coordinates,
+ * consistent with the SpatiaLite functions (ST_Line_Locate_Point,
+ * Line_Substring, ClosestPoint) previously used by the navigator engine.
+ * Instances may be shared between threads.
+ */
+final class RouteGeometryIndex {
+
+    private static final int NODE_CAPACITY = 8;
+
+    private static final double MERCATOR_RADIUS = 6378137d;
+    private static final double MAX_MERCATOR_LATITUDE = 85.0511287798066d;
+
+    private final double[] lons;
+    private final double[] lats;
+    private final int numPoints;
+
+    /** cumulative planar (degree) length at each vertex */
+    private final double[] planar;
+    /** cumulative web mercator length at each vertex */
+    private final double[] mercator;
+    /** cumulative geodesic length at each vertex */
+    private final double[] geodesic;
+
+    // STR-tree, stored level by level with the leaves first. Each node holds
+    // a range of children in the level below; leaf children are segment
+    // indices into 'segments'.
+    private final int[] segments;
+    private final double[] nodeMinX;
+    private final double[] nodeMinY;
+    private final double[] nodeMaxX;
+    private final double[] nodeMaxY;
+    private final int[] nodeFirstChild;
+    private final int[] nodeChildCount;
+    private final int numLeaves;
+    private final int root;
+
+    /**
+     * Creates a new index over the specified line.
+     *
+     * @param lons The longitudes of the line vertices
+     * @param lats The latitudes of the line vertices
+     * @param count The number of vertices
+     */
+    RouteGeometryIndex(double[] lons, double[] lats, int count) {
+        this.lons = Arrays.copyOf(lons, count);
+        this.lats = Arrays.copyOf(lats, count);
+        this.numPoints = count;
+
+        this.planar = new double[count];
+        this.mercator = new double[count];
+        this.geodesic = new double[count];
+        GeoPoint last = null;
+        for (int i = 0; i < count; i++) {
+            final GeoPoint pt = new GeoPoint(this.lats[i], this.lons[i]);
+            if (i > 0) {
+                this.planar[i] = this.planar[i - 1] + MathUtils.distance(
+                        this.lons[i - 1], this.lats[i - 1], this.lons[i],
+                        this.lats[i]);
+                this.mercator[i] = this.mercator[i - 1]
+                        + mercatorDistance(this.lons[i - 1], this.lats[i - 1],
+                                this.lons[i], this.lats[i]);
+                this.geodesic[i] = this.geodesic[i - 1] + last.distanceTo(pt);
+            }
+            last = pt;
+        }
+
+        // bulk load the segments
+        final int numSegments = Math.max(count - 1, 0);
+        this.segments = new int[numSegments];
+        for (int i = 0; i < numSegments; i++)
+            this.segments[i] = i;
+        sortTiles(this.segments, numSegments);
+
+        int numNodes = 0;
+        int levelSize = numSegments;
+        do {
+            levelSize = (levelSize + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            numNodes += levelSize;
+        } while (levelSize > 1);
+        this.nodeMinX = new double[numNodes];
+        this.nodeMinY = new double[numNodes];
+        this.nodeMaxX = new double[numNodes];
+        this.nodeMaxY = new double[numNodes];
+        this.nodeFirstChild = new int[numNodes];
+        this.nodeChildCount = new int[numNodes];
+
+        int nodes = 0;
+        for (int i = 0; i < numSegments; i += NODE_CAPACITY) {
+            final int n = Math.min(NODE_CAPACITY, numSegments - i);
+            this.nodeFirstChild[nodes] = i;
+            this.nodeChildCount[nodes] = n;
+            double mnx = Double.MAX_VALUE, mny = Double.MAX_VALUE;
+            double mxx = -Double.MAX_VALUE, mxy = -Double.MAX_VALUE;
+            for (int j = 0; j < n; j++) {
+                final int s = this.segments[i + j];
+                mnx = Math.min(mnx,
+                        Math.min(this.lons[s], this.lons[s + 1]));
+                mny = Math.min(mny,
+                        Math.min(this.lats[s], this.lats[s + 1]));
+                mxx = Math.max(mxx,
+                        Math.max(this.lons[s], this.lons[s + 1]));
+                mxy = Math.max(mxy,
+                        Math.max(this.lats[s], this.lats[s + 1]));
+            }
+            this.nodeMinX[nodes] = mnx;
+            this.nodeMinY[nodes] = mny;
+            this.nodeMaxX[nodes] = mxx;
+            this.nodeMaxY[nodes] = mxy;
+            nodes++;
+        }
+        this.numLeaves = nodes;
+
+        // build the upper levels; STR ordering of the leaves keeps
+        // consecutive nodes spatially coherent
+        int levelStart = 0;
+        int levelCount = nodes;
+        while (levelCount > 1) {
+            final int nextStart = nodes;
+            for (int i = 0; i < levelCount; i += NODE_CAPACITY) {
+                final int n = Math.min(NODE_CAPACITY, levelCount - i);
+                this.nodeFirstChild[nodes] = levelStart + i;
+                this.nodeChildCount[nodes] = n;
+                double mnx = Double.MAX_VALUE, mny = Double.MAX_VALUE;
+                double mxx = -Double.MAX_VALUE, mxy = -Double.MAX_VALUE;
+                for (int j = levelStart + i; j < levelStart + i + n; j++) {
+                    mnx = Math.min(mnx, this.nodeMinX[j]);
+                    mny = Math.min(mny, this.nodeMinY[j]);
+                    mxx = Math.max(mxx, this.nodeMaxX[j]);
+                    mxy = Math.max(mxy, this.nodeMaxY[j]);
+                }
+                this.nodeMinX[nodes] = mnx;
+                this.nodeMinY[nodes] = mny;
+                this.nodeMaxX[nodes] = mxx;
+                this.nodeMaxY[nodes] = mxy;
+                nodes++;
+            }
+            levelStart = nextStart;
+            levelCount = nodes - nextStart;
+        }
+        this.root = (numSegments > 0) ? nodes - 1 : -1;
+    }
+
+    /**
+     * @return The number of vertices in the line
+     */
+    int getNumPoints() {
+        return this.numPoints;
+    }
+
+    /**
+     * @param index The index of a vertex
+     * @return The planar length of the line up to the vertex, in degrees
+     */
+    double getPlanarDistance(int index) {
+        return this.planar[index];
+    }
+
+    /**
+     * @return The planar length of the line, in degrees
+     */
+    double getPlanarLength() {
+        return (this.numPoints > 0) ? this.planar[this.numPoints - 1] : 0d;
+    }
+
+    /**
+     * @return The length of the line in web mercator, in meters
+     */
+    double getMercatorLength() {
+        return (this.numPoints > 0) ? this.mercator[this.numPoints - 1] : 0d;
+    }
+
+    /**
+     * Finds the segment nearest to the specified location. Ties are resolved
+     * in favor of the earliest segment along the line.
+     *
+     * @param lon The longitude of the location
+     * @param lat The latitude of the location
+     * @return The index of the nearest segment or <code>-1</code> if the line
+     *         has no segments
+     */
+    int findNearestSegment(double lon, double lat) {
+        if (this.root < 0)
+            return -1;
+        final double[] best = new double[] {
+                Double.MAX_VALUE, -1
+        };
+        this.nearestSegment(this.root, lon, lat, best);
+        return (int) best[1];
+    }
+
+    /**
+     * Computes the location of the closest point on the line as a fraction of
+     * the planar length of the line.
+     *
+     * @param lon The longitude of the location
+     * @param lat The latitude of the location
+     * @return The fraction along the line, between 0 and 1
+     */
+    double locate(double lon, double lat) {
+        final int seg = this.findNearestSegment(lon, lat);
+        final double length = this.getPlanarLength();
+        if (seg < 0 || length <= 0d)
+            return 0d;
+        final double t = project(this.lons[seg], this.lats[seg],
+                this.lons[seg + 1], this.lats[seg + 1], lon, lat);
+        final double segLength = this.planar[seg + 1] - this.planar[seg];
+        return Math.min(1d, (this.planar[seg] + t * segLength) / length);
+    }
+
+    /**
+     * Computes the closest point on the line to the specified location.
+     *
+     * @param lon The longitude of the location
+     * @param lat The latitude of the location
+     * @return The closest point or <code>null</code> if the line is empty
+     */
+    GeoPoint getClosestPoint(double lon, double lat) {
+        if (this.numPoints == 1)
+            return new GeoPoint(this.lats[0], this.lons[0]);
+        final int seg = this.findNearestSegment(lon, lat);
+        if (seg < 0)
+            return null;
+        final double t = project(this.lons[seg], this.lats[seg],
+                this.lons[seg + 1], this.lats[seg + 1], lon, lat);
+        return new GeoPoint(
+                this.lats[seg] + t * (this.lats[seg + 1] - this.lats[seg]),
+                this.lons[seg] + t * (this.lons[seg + 1] - this.lons[seg]));
+    }
+
+    /**
+     * Finds the vertex nearest to the specified location, in planar distance.
+     * Ties are resolved in favor of the earliest vertex along the line.
+     *
+     * @param lon The longitude of the location
+     * @param lat The latitude of the location
+     * @return The index of the nearest vertex or <code>-1</code> if the line
+     *         is empty
+     */
+    int findNearestVertex(double lon, double lat) {
+        if (this.numPoints == 1)
+            return 0;
+        if (this.root < 0)
+            return -1;
+        final double[] best = new double[] {
+                Double.MAX_VALUE, -1
+        };
+        this.nearestVertex(this.root, lon, lat, best);
+        return (int) best[1];
+    }
+
+    /**
+     * Returns the geodesic length of the line between the two fractions of
+     * its planar length.
+     *
+     * @param start The start fraction, between 0 and 1
+     * @param end The end fraction, between 0 and 1
+     * @return The geodesic length, in meters
+     */
+    double getGeodesicLength(double start, double end) {
+        if (this.numPoints < 2)
+            return 0d;
+        final double a = Math.min(start, end) * this.getPlanarLength();
+        final double b = Math.max(start, end) * this.getPlanarLength();
+
+        final int sa = this.segmentAt(a);
+        final int sb = this.segmentAt(b);
+        final GeoPoint pa = this.interpolate(sa, a);
+        final GeoPoint pb = this.interpolate(sb, b);
+        if (sa == sb)
+            return pa.distanceTo(pb);
+
+        return pa.distanceTo(new GeoPoint(this.lats[sa + 1],
+                this.lons[sa + 1]))
+                + (this.geodesic[sb] - this.geodesic[sa + 1])
+                + new GeoPoint(this.lats[sb], this.lons[sb]).distanceTo(pb);
+    }
+
+    /**
+     * Returns the portion of the line between the two fractions of its planar
+     * length. The start and end points are interpolated; consecutive
+     * duplicate points are dropped.
+     *
+     * @param start The start fraction, between 0 and 1
+     * @param end The end fraction, between 0 and 1
+     * @return The points of the sub-line
+     */
+    List<GeoPoint> getSubstring(double start, double end) {
+        final List<GeoPoint> retval = new ArrayList<>();
+        if (this.numPoints == 0)
+            return retval;
+        if (this.numPoints == 1) {
+            retval.add(new GeoPoint(this.lats[0], this.lons[0]));
+            return retval;
+        }
+        final double a = Math.min(start, end) * this.getPlanarLength();
+        final double b = Math.max(start, end) * this.getPlanarLength();
+        final int sa = this.segmentAt(a);
+        final int sb = this.segmentAt(b);
+
+        append(retval, this.interpolate(sa, a));
+        for (int i = sa + 1; i <= sb; i++)
+            append(retval, new GeoPoint(this.lats[i], this.lons[i]));
+        append(retval, this.interpolate(sb, b));
+        return retval;
+    }
+
+    /**
+     * Returns the web mercator distance from the specified location to the
+     * portion of the line between the two fractions of its planar length.
+     *
+     * @param lon The longitude of the location
+     * @param lat The latitude of the location
+     * @param start The start fraction, between 0 and 1
+     * @param end The end fraction, between 0 and 1
+     * @param limit Segments further than this distance, in meters, need not
+     *              be measured exactly
+     * @return The distance in meters, or a value of at least
+     *         <code>limit</code>
+     */
+    double getMercatorDistance(double lon, double lat, double start,
+            double end, double limit) {
+        if (this.numPoints < 2)
+            return Double.MAX_VALUE;
+        final double a = Math.min(start, end) * this.getPlanarLength();
+        final double b = Math.max(start, end) * this.getPlanarLength();
+        final int sa = this.segmentAt(a);
+        final int sb = this.segmentAt(b);
+
+        // convert the limit to a search window in degrees. Mercator x is
+        // linear in longitude and the y scale only grows away from the
+        // equator, so limit/R radians bounds the window in both axes.
+        final double window = Math.toDegrees(limit / MERCATOR_RADIUS);
+        final double px = mercatorX(lon);
+        final double py = mercatorY(lat);
+
+        final double[] best = new double[] {
+                Double.MAX_VALUE
+        };
+        this.visitSegments(this.root, lon - window, lat - window,
+                lon + window, lat + window, sa, sb, a, b, px, py, best);
+        return best[0];
+    }
+
+    /**************************************************************************/
+
+    private void nearestSegment(int node, double x, double y, double[] best) {
+        if (boxDistanceSq(node, x, y) > best[0])
+            return;
+        final int first = this.nodeFirstChild[node];
+        final int count = this.nodeChildCount[node];
+        if (node < this.numLeaves) {
+            for (int i = first; i < first + count; i++) {
+                final int s = this.segments[i];
+                final double d = segmentDistanceSq(this.lons[s],
+                        this.lats[s], this.lons[s + 1], this.lats[s + 1], x, y);
+                if (d < best[0] || (d == best[0] && s < best[1])) {
+                    best[0] = d;
+                    best[1] = s;
+                }
+            }
+        } else {
+            for (int i = first; i < first + count; i++)
+                this.nearestSegment(i, x, y, best);
+        }
+    }
+
+    private void nearestVertex(int node, double x, double y, double[] best) {
+        if (boxDistanceSq(node, x, y) > best[0])
+            return;
+        final int first = this.nodeFirstChild[node];
+        final int count = this.nodeChildCount[node];
+        if (node < this.numLeaves) {
+            for (int i = first; i < first + count; i++) {
+                final int s = this.segments[i];
+                for (int v = s; v <= s + 1; v++) {
+                    final double dx = this.lons[v] - x;
+                    final double dy = this.lats[v] - y;
+                    final double d = dx * dx + dy * dy;
+                    if (d < best[0] || (d == best[0] && v < best[1])) {
+                        best[0] = d;
+                        best[1] = v;
+                    }
+                }
+            }
+        } else {
+            for (int i = first; i < first + count; i++)
+                this.nearestVertex(i, x, y, best);
+        }
+    }
+
+    private void visitSegments(int node, double minX, double minY,
+            double maxX, double maxY, int sa, int sb, double a, double b,
+            double px, double py, double[] best) {
+        if (this.nodeMinX[node] > maxX || this.nodeMaxX[node] < minX
+                || this.nodeMinY[node] > maxY || this.nodeMaxY[node] < minY)
+            return;
+        final int first = this.nodeFirstChild[node];
+        final int count = this.nodeChildCount[node];
+        if (node < this.numLeaves) {
+            for (int i = first; i < first + count; i++) {
+                final int s = this.segments[i];
+                if (s < sa || s > sb)
+                    continue;
+                // clip the segment to the sub-line
+                final GeoPoint p0 = (s == sa) ? this.interpolate(s, a)
+                        : null;
+                final GeoPoint p1 = (s == sb) ? this.interpolate(s, b)
+                        : null;
+                final double x0 = mercatorX(
+                        (p0 != null) ? p0.getLongitude() : this.lons[s]);
+                final double y0 = mercatorY(
+                        (p0 != null) ? p0.getLatitude() : this.lats[s]);
+                final double x1 = mercatorX(
+                        (p1 != null) ? p1.getLongitude() : this.lons[s + 1]);
+                final double y1 = mercatorY(
+                        (p1 != null) ? p1.getLatitude() : this.lats[s + 1]);
+                final double d = Math.sqrt(
+                        segmentDistanceSq(x0, y0, x1, y1, px, py));
+                if (d < best[0])
+                    best[0] = d;
+            }
+        } else {
+            for (int i = first; i < first + count; i++)
+                this.visitSegments(i, minX, minY, maxX, maxY, sa, sb, a, b,
+                        px, py, best);
+        }
+    }
+
+    /**
+     * Returns the index of the segment containing the specified planar
+     * distance along the line.
+     */
+    private int segmentAt(double distance) {
+        int idx = Arrays.binarySearch(this.planar, 0, this.numPoints,
+                distance);
+        if (idx < 0)
+            idx = -idx - 2;
+        else
+            // exact hit on a vertex; continue from the segment that starts
+            // at the first vertex at this distance
+            while (idx > 0 && this.planar[idx - 1] == distance)
+                idx--;
+        return Math.max(0, Math.min(idx, this.numPoints - 2));
+    }
+
+    private GeoPoint interpolate(int seg, double distance) {
+        final double segLength = this.planar[seg + 1] - this.planar[seg];
+        double t = (segLength > 0d)
+                ? (distance - this.planar[seg]) / segLength
+                : 0d;
+        t = Math.max(0d, Math.min(1d, t));
+        return new GeoPoint(
+                this.lats[seg] + t * (this.lats[seg + 1] - this.lats[seg]),
+                this.lons[seg] + t * (this.lons[seg + 1] - this.lons[seg]));
+    }
+
+    private double boxDistanceSq(int node, double x, double y) {
+        final double dx = Math.max(0d, Math.max(this.nodeMinX[node] - x,
+                x - this.nodeMaxX[node]));
+        final double dy = Math.max(0d, Math.max(this.nodeMinY[node] - y,
+                y - this.nodeMaxY[node]));
+        return dx * dx + dy * dy;
+    }
+
+    private void sortTiles(int[] segs, int count) {
+        if (count <= NODE_CAPACITY)
+            return;
+        final Integer[] sorted = new Integer[count];
+        for (int i = 0; i < count; i++)
+            sorted[i] = segs[i];
+
+        // sort into vertical slices by center x, then each slice by center y
+        final int numLeaves = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        final int numSlices = (int) Math.ceil(Math.sqrt(numLeaves));
+        final int sliceSize = numSlices * NODE_CAPACITY;
+        Arrays.sort(sorted, (s0, s1) -> Double.compare(
+                this.lons[s0] + this.lons[s0 + 1],
+                this.lons[s1] + this.lons[s1 + 1]));
+        for (int i = 0; i < count; i += sliceSize) {
+            Arrays.sort(sorted, i, Math.min(i + sliceSize, count),
+                    (s0, s1) -> Double.compare(
+                            this.lats[s0] + this.lats[s0 + 1],
+                            this.lats[s1] + this.lats[s1 + 1]));
+        }
+        for (int i = 0; i < count; i++)
+            segs[i] = sorted[i];
+    }
+
+    private static void append(List<GeoPoint> points, GeoPoint pt) {
+        if (!points.isEmpty()) {
+            final GeoPoint last = points.get(points.size() - 1);
+            if (last.getLatitude() == pt.getLatitude()
+                    && last.getLongitude() == pt.getLongitude())
+                return;
+        }
+        points.add(pt);
+    }
+
+    /**
+     * Returns the parametric position of the projection of (x, y) onto the
+     * segment, clamped to [0, 1].
+     */
+    private static double project(double x0, double y0, double x1, double y1,
+            double x, double y) {
+        final double dx = x1 - x0;
+        final double dy = y1 - y0;
+        final double lenSq = dx * dx + dy * dy;
+        if (lenSq == 0d)
+            return 0d;
+        final double t = ((x - x0) * dx + (y - y0) * dy) / lenSq;
+        return Math.max(0d, Math.min(1d, t));
+    }
+
+    private static double segmentDistanceSq(double x0, double y0, double x1,
+            double y1, double x, double y) {
+        final double t = project(x0, y0, x1, y1, x, y);
+        final double dx = x0 + t * (x1 - x0) - x;
+        final double dy = y0 + t * (y1 - y0) - y;
+        return dx * dx + dy * dy;
+    }
+
+    private static double mercatorX(double lon) {
+        return MERCATOR_RADIUS * Math.toRadians(lon);
+    }
+
+    private static double mercatorY(double lat) {
+        lat = Math.max(-MAX_MERCATOR_LATITUDE,
+                Math.min(MAX_MERCATOR_LATITUDE, lat));
+        return MERCATOR_RADIUS * Math.log(Math.tan(Math.PI / 4d
+                + Math.toRadians(lat) / 2d));
+    }
+
+    private static double mercatorDistance(double lon0, double lat0,
+            double lon1, double lat1) {
+        return Math.hypot(mercatorX(lon1) - mercatorX(lon0),
+                mercatorY(lat1) - mercatorY(lat0));
+    }
+}
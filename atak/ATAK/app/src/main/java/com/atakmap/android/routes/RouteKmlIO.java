@@ -19,6 +19,7 @@ import com.atakmap.coremap.maps.coords.GeoPoint.AltitudeReference;
 import com.atakmap.coremap.maps.coords.GeoPointMetaData;
 import com.atakmap.spatial.kml.FeatureHandler;
 import com.atakmap.spatial.kml.KMLUtil;
+import com.atakmap.spatial.kml.KMLWriter;
 import com.ekito.simpleKML.Serializer;
 import com.ekito.simpleKML.model.Coordinate;
 import com.ekito.simpleKML.model.Coordinates;
@@ -37,10 +38,12 @@ import com.ekito.simpleKML.model.Point;
 import com.ekito.simpleKML.model.Style;
 import com.ekito.simpleKML.model.StyleSelector;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -279,11 +282,11 @@ public class RouteKmlIO {
             }
         }
 
-        // TODO for performance reuse Serializer? Or use PullParser
-        Serializer serializer = new Serializer();
-        StringWriter sw = new StringWriter();
-        serializer.write(kml, sw);
-        KMLUtil.write(sw.toString(), file);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                IOProviderFactory.getOutputStream(file),
+                FileSystemUtils.UTF8_CHARSET), FileSystemUtils.BUF_SIZE)) {
+            new KMLWriter(writer).write(kml);
+        }
     }
 
     /**
@@ -91,24 +91,14 @@ public final class RouteNavigationManager implements Disposable {
     public RouteNavigationManager(final Route route) {
         this.route = route;
 
-        try {
-            engine = new RouteNavigatorEngine();
-        } catch (Exception ex) {
-            throw new RuntimeException("Engine failed to initialize", ex);
-        }
+        engine = new RouteNavigatorEngine();
 
         Thread t = new Thread("route initialization") {
             @Override
             public void run() {
                 long start = SystemClock.elapsedRealtime();
                 try {
-                    // lock the engine during insert
-                    //synchronized(engine) {
-                    engine.beginMarkerTransaction();
                     engine.addRoutePoints(route);
-                    engine.setMarkerTransactionSuccessful();
-                    engine.endMarkerTransaction();
-                    //}
                     engineInitialized = true;
                     engineDirty = true;
                 } catch (Exception e) {
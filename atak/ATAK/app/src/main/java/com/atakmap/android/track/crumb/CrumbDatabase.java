@@ -39,11 +39,13 @@ import com.ekito.simpleKML.model.Track;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -61,7 +63,13 @@ public class CrumbDatabase {
     public static final double VALUE_UNKNOWN = GeoPoint.UNKNOWN;
     private static final int MAX_TITLE_LENGTH = 30;
 
-    private final Set<Crumb> crumbsToProcess = new HashSet<>();
+    /**
+     * Maximum number of crumbs written per transaction, so that readers are
+     * not blocked behind a large backlog
+     */
+    private static final int MAX_CRUMBS_PER_TRANSACTION = 256;
+
+    private List<PendingCrumb> crumbsToProcess = new ArrayList<>();
     private final ExecutorService pool = Executors
             .newSingleThreadExecutor(new NamedThreadFactory(
                     "CrumbPool"));
@@ -75,6 +83,13 @@ public class CrumbDatabase {
 
     private final Object lock = new Object();
 
+    /**
+     * Most recent segment ID for each user UID, as returned by
+     * {@link #getCurrentSegmentId(String, String)} when ordering by timestamp.
+     * Modified only while holding {@link #lock}.
+     */
+    private final Map<String, Integer> currentSegments = new ConcurrentHashMap<>();
+
     public interface OnCrumbListener {
         void onCrumbAdded(int trackId, Crumb c);
     }
@@ -230,7 +245,10 @@ public class CrumbDatabase {
         }
 
         // swap only after the newCrumbDb is good to go.
-        crumbdb = newCrumbDb;
+        synchronized (lock) {
+            crumbdb = newCrumbDb;
+            currentSegments.clear();
+        }
 
         try {
             if (oldCrumbDb != null)
@@ -536,6 +554,7 @@ public class CrumbDatabase {
         if (db != null) {
             synchronized (lock) {
                 Log.d(TAG, "dropping the database tables");
+                currentSegments.clear();
 
                 try {
                     db.execute(
@@ -572,7 +591,21 @@ public class CrumbDatabase {
      */
     public int getCurrentSegmentId(String uid, String orderBy) {
 
+        // every crumb written looks up the current segment of its user
+        final boolean cacheable = uid != null
+                && SEG_COLUMN_TIMESTAMP.equals(orderBy);
+        if (cacheable) {
+            final Integer cached = currentSegments.get(uid);
+            if (cached != null)
+                return cached;
+        }
+
         synchronized (lock) {
+            if (cacheable) {
+                final Integer cached = currentSegments.get(uid);
+                if (cached != null)
+                    return cached;
+            }
             CursorIface result = null;
             int mostRecentSegment_id = -1;
             try {
@@ -587,6 +620,8 @@ public class CrumbDatabase {
                 } //else {
                   //Log.d(TAG, "No segments found: " + sql);
                   //}
+                if (cacheable)
+                    currentSegments.put(uid, mostRecentSegment_id);
             } catch (Exception e) {
                 Log.w(TAG, "Failed to find any track segments, " + e);
                 mostRecentSegment_id = -1;
@@ -598,6 +633,18 @@ public class CrumbDatabase {
         }
     }
 
+    /**
+     * Drops the cached current segment of any user whose current segment was
+     * deleted. Must be called while holding {@link #lock}.
+     */
+    private void invalidateCurrentSegment(int trackDbId) {
+        Iterator<Integer> it = currentSegments.values().iterator();
+        while (it.hasNext()) {
+            if (it.next() == trackDbId)
+                it.remove();
+        }
+    }
+
     /**
      * Writes the crumb for a PointMapItem to the database.
      *
@@ -668,14 +715,9 @@ public class CrumbDatabase {
             //Log.d(TAG, "creating crumb: " + userUid + ", " + timestamp +
             //    ", with segment id: " + trackId);
 
-            Crumb c = new Crumb(gp, UUID.randomUUID().toString());
-            c.setDirection(bearing);
-            c.timestamp = timestamp;
-            c.speed = (float) speed;
-            c.bearing = (float) bearing;
-            c.trackDBID = trackId;
-            c.setMetaString("tmpgpSource", geopointSource);
-            c.setMetaString("tmpaltSource", altitudeSource);
+            PendingCrumb c = new PendingCrumb(gp, trackId, timestamp,
+                    (float) speed, (float) bearing, geopointSource,
+                    altitudeSource);
             synchronized (CrumbDatabase.this) {
                 if (worker == null) {
                     worker = new Handler();
@@ -693,8 +735,19 @@ public class CrumbDatabase {
                 }
             }
 
-            // Notify listeners
-            fireOnCrumbAdded(trackId, c);
+            // Notify listeners, the map item is only created when a listener
+            // needs it
+            if (!_listeners.isEmpty()) {
+                Crumb crumb = new Crumb(gp, UUID.randomUUID().toString());
+                crumb.setDirection(bearing);
+                crumb.timestamp = timestamp;
+                crumb.speed = c.speed;
+                crumb.bearing = c.bearing;
+                crumb.trackDBID = trackId;
+                crumb.setMetaString("tmpgpSource", geopointSource);
+                crumb.setMetaString("tmpaltSource", altitudeSource);
+                fireOnCrumbAdded(trackId, crumb);
+            }
 
         } catch (Exception e) {
             Log.w(TAG, "error occurred saving breadcrumb: " + timestamp, e);
@@ -783,6 +836,8 @@ public class CrumbDatabase {
                 } finally {
                     if (insertStmt != null)
                         insertStmt.close();
+                    if (userUid != null)
+                        currentSegments.remove(userUid);
                 }
 
                 if (bStitch && previousSegmentId >= 0) {
@@ -838,6 +893,7 @@ public class CrumbDatabase {
                 sql = "DELETE FROM " + SEGMENT_TABLE_NAME +
                         " WHERE " + SEG_COLUMN_ID + " = " + track_dbid;
                 crumbdb.execute(sql, null);
+                invalidateCurrentSegment(track_dbid);
                 Log.d(TAG, "Deleted segment: " + track_dbid);
             } catch (Exception e) {
                 Log.w(TAG, "Failed to delete track id: " + track_dbid, e);
@@ -1882,6 +1938,7 @@ public class CrumbDatabase {
                         sql = "DELETE FROM " + SEGMENT_TABLE_NAME +
                                 " WHERE " + SEG_COLUMN_ID + "=" + trackId;
                         crumbdb.execute(sql, null);
+                        invalidateCurrentSegment(trackId);
                     }
                 } else {
                     Log.d(TAG,
@@ -2091,9 +2148,71 @@ public class CrumbDatabase {
 
     }
 
-    class Handler implements Runnable {
+    /**
+     * Crumb waiting to be written to the database
+     */
+    private static final class PendingCrumb {
+        final GeoPoint point;
+        final int trackId;
+        final long timestamp;
+        final float speed;
+        final float bearing;
+        final String geopointSource;
+        final String altitudeSource;
+
+        PendingCrumb(GeoPoint point, int trackId, long timestamp, float speed,
+                float bearing, String geopointSource, String altitudeSource) {
+            this.point = point;
+            this.trackId = trackId;
+            this.timestamp = timestamp;
+            this.speed = speed;
+            this.bearing = bearing;
+            this.geopointSource = (geopointSource != null) ? geopointSource
+                    : GeoPointMetaData.UNKNOWN;
+            this.altitudeSource = (altitudeSource != null) ? altitudeSource
+                    : GeoPointMetaData.UNKNOWN;
+        }
+    }
+
+    /**
+     * Writes a range of items in a single transaction
+     */
+    interface BatchWriter<T> {
+
+        /**
+         * Writes the items in the range <code>[start, end)</code>
+         * @return true if the items were committed
+         */
+        boolean insert(List<T> items, int start, int end);
+    }
+
+    /**
+     * Writes the items in batches, in order, stopping at the first batch which
+     * is not committed. The committed items are removed from the list and the
+     * rest are kept so they may be retried.
+     *
+     * @param items the items to write
+     * @param batchSize the maximum number of items per transaction
+     * @param writer the writer for each batch
+     * @return the number of items committed
+     */
+    static <T> int insertBatches(List<T> items, int batchSize,
+            BatchWriter<T> writer) {
+        final int count = items.size();
+        int committed = 0;
+        while (committed < count) {
+            final int end = Math.min(count, committed + batchSize);
+            if (!writer.insert(items, committed, end))
+                break;
+            committed = end;
+        }
+        items.subList(0, committed).clear();
+        return committed;
+    }
+
+    class Handler implements Runnable, BatchWriter<PendingCrumb> {
 
-        private final Set<Crumb> localCrumbsToProcess = new HashSet<>();
+        private List<PendingCrumb> localCrumbsToProcess = new ArrayList<>();
         private boolean endTransactionError = false;
         private final StatementIface insertStmt;
 
@@ -2134,115 +2253,89 @@ public class CrumbDatabase {
                         }
                         continue;
                     }
-                    localCrumbsToProcess
-                            .addAll(CrumbDatabase.this.crumbsToProcess);
-                    CrumbDatabase.this.crumbsToProcess.clear();
+                    if (localCrumbsToProcess.isEmpty()) {
+                        // swap the queues rather than copying the pending crumbs
+                        final List<PendingCrumb> pending = crumbsToProcess;
+                        crumbsToProcess = localCrumbsToProcess;
+                        localCrumbsToProcess = pending;
+                    } else {
+                        // crumbs from a failed pass are retried first
+                        localCrumbsToProcess.addAll(crumbsToProcess);
+                        crumbsToProcess.clear();
+                    }
                 }
 
                 //long start = SystemClock.elapsedRealtime();
-                synchronized (lock) {
-                    try {
-                        crumbdb.beginTransaction();
-                        //Log.d(TAG, "processing crumbs: " + localCrumbsToProcess.size());
-                        for (Crumb c : localCrumbsToProcess) {
-                            int trackId = c.trackDBID;
-                            long timestamp = c.timestamp;
-                            GeoPoint gp = c.getPoint();
-                            double bearing = c.bearing;
-                            double speed = c.speed;
-                            String geopointSource = c.getMetaString(
-                                    "tmpgpSource", GeoPointMetaData.UNKNOWN);
-                            String altitudeSource = c.getMetaString(
-                                    "tmpaltSource", GeoPointMetaData.UNKNOWN);
-
-                            try {
-                                insertStmt.bind(1, trackId);
-                                insertStmt.bind(2, timestamp);
-                                insertStmt.bind(3, gp.getLatitude());
-                                insertStmt.bind(4, gp.getLongitude());
-                                insertStmt.bind(5, gp.getAltitude());
-                                insertStmt.bind(6, gp.getCE());
-                                insertStmt.bind(7, gp.getLE());
-                                insertStmt.bind(8, bearing);
-                                insertStmt.bind(9, speed);
-                                insertStmt.bind(10, geopointSource);
-                                insertStmt.bind(11, altitudeSource);
-                                insertStmt.bind(12, gp.getLongitude());
-                                insertStmt.bind(13, gp.getLatitude());
-                                insertStmt.execute();
-                            } finally {
-                                insertStmt.clearBindings();
-                            }
-                        }
-                        localCrumbsToProcess.clear();
-                        crumbdb.setTransactionSuccessful();
-                    } catch (Exception e) {
-                        Log.d(TAG, "transaction error", e);
-                    } finally {
-                        try {
-                            crumbdb.endTransaction();
-                            //Log.d(TAG, "success processing: " +
-                            //        (SystemClock.elapsedRealtime() - start));
-                        } catch (Exception e) {
-                            Log.d(TAG, "end transaction error", e);
-                            endTransactionError = true;
-                        }
-                    }
-                }
+                insertBatches(localCrumbsToProcess,
+                        MAX_CRUMBS_PER_TRANSACTION, this);
+                //Log.d(TAG, "success processing in " +
+                //        (SystemClock.elapsedRealtime() - start));
             }
             try {
                 insertStmt.close();
             } catch (Exception ignored) {
             }
 
-            CrumbDatabase.this.worker = null;
+            synchronized (CrumbDatabase.this) {
+                // hand the crumbs which were not written to the next worker
+                crumbsToProcess.addAll(0, localCrumbsToProcess);
+                localCrumbsToProcess.clear();
+                CrumbDatabase.this.worker = null;
+            }
+        }
+
+        void insert(PendingCrumb c) {
+            insert(Collections.singletonList(c), 0, 1);
         }
 
-        void insert(Crumb c) {
+        /**
+         * Writes the crumbs in the range <code>[start, end)</code> in a
+         * single transaction
+         * @return true if the transaction was committed
+         */
+        @Override
+        public boolean insert(List<PendingCrumb> crumbs, int start, int end) {
             synchronized (lock) {
+                boolean successful = false;
                 try {
                     crumbdb.beginTransaction();
-                    int trackId = c.trackDBID;
-                    long timestamp = c.timestamp;
-                    GeoPoint gp = c.getPoint();
-                    double bearing = c.bearing;
-                    double speed = c.speed;
-                    String geopointSource = c.getMetaString("tmpgpSource",
-                            GeoPointMetaData.UNKNOWN);
-                    String altitudeSource = c.getMetaString("tmpaltSource",
-                            GeoPointMetaData.UNKNOWN);
-
-                    try {
-                        insertStmt.bind(1, trackId);
-                        insertStmt.bind(2, timestamp);
-                        insertStmt.bind(3, gp.getLatitude());
-                        insertStmt.bind(4, gp.getLongitude());
-                        insertStmt.bind(5, gp.getAltitude());
-                        insertStmt.bind(6, gp.getCE());
-                        insertStmt.bind(7, gp.getLE());
-                        insertStmt.bind(8, bearing);
-                        insertStmt.bind(9, speed);
-                        insertStmt.bind(10, geopointSource);
-                        insertStmt.bind(11, altitudeSource);
-                        insertStmt.bind(12, gp.getLongitude());
-                        insertStmt.bind(13, gp.getLatitude());
-                        insertStmt.execute();
-                    } finally {
-                        insertStmt.clearBindings();
+                    //Log.d(TAG, "processing crumbs: " + (end - start));
+                    for (int i = start; i < end; i++) {
+                        final PendingCrumb c = crumbs.get(i);
+                        final GeoPoint gp = c.point;
+                        try {
+                            insertStmt.bind(1, c.trackId);
+                            insertStmt.bind(2, c.timestamp);
+                            insertStmt.bind(3, gp.getLatitude());
+                            insertStmt.bind(4, gp.getLongitude());
+                            insertStmt.bind(5, gp.getAltitude());
+                            insertStmt.bind(6, gp.getCE());
+                            insertStmt.bind(7, gp.getLE());
+                            insertStmt.bind(8, c.bearing);
+                            insertStmt.bind(9, c.speed);
+                            insertStmt.bind(10, c.geopointSource);
+                            insertStmt.bind(11, c.altitudeSource);
+                            insertStmt.bind(12, gp.getLongitude());
+                            insertStmt.bind(13, gp.getLatitude());
+                            insertStmt.execute();
+                        } finally {
+                            insertStmt.clearBindings();
+                        }
                     }
                     crumbdb.setTransactionSuccessful();
+                    successful = true;
                 } catch (Exception e) {
                     Log.d(TAG, "transaction error", e);
                 } finally {
                     try {
                         crumbdb.endTransaction();
-                        //Log.d(TAG, "success processing: " +
-                        //        (SystemClock.elapsedRealtime() - start));
                     } catch (Exception e) {
                         Log.d(TAG, "end transaction error", e);
                         endTransactionError = true;
+                        successful = false;
                     }
                 }
+                return successful;
             }
         }
     }
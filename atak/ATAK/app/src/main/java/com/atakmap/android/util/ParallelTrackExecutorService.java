@@ -23,6 +23,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiFunction;
@@ -80,10 +81,60 @@ public class ParallelTrackExecutorService implements ExecutorService {
      */
     public Future<?> submit(@NonNull Runnable runnable,
             @NonNull String trackId) {
+        return submit(runnable, trackId, false, 0L);
+    }
+
+    /**
+     * Submit a runnable along a given track, where only the most recent of the pending updates
+     * on the track needs to be run. If the task most recently submitted on the track was also
+     * submitted through this method and has not started yet, it is replaced by the new task
+     * when the new task has a later time. The replaced task is never run.
+     *
+     * @param runnable the runnable task
+     * @param trackId the track id
+     * @param time the time of the update applied by the task, in milliseconds
+     *
+     * @return Future to control cancellation and waiting for completion. When the task replaces
+     *         a pending task, the Future of the pending task is returned, which completes once
+     *         the new task has run.
+     */
+    public Future<?> submitCoalescing(@NonNull Runnable runnable,
+            @NonNull String trackId, long time) {
+        return submit(runnable, trackId, true, time);
+    }
+
+    /**
+     * @return the number of tasks that were replaced by a more recent task on the same track
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return the number of tasks that are queued and not yet taken by a thread
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Queue queue : queues) {
+            queue.lock.lock();
+            try {
+                depth += queue.count;
+            } finally {
+                queue.lock.unlock();
+            }
+        }
+        return depth;
+    }
+
+    private Future<?> submit(final Runnable runnable, final String trackId,
+            final boolean coalescable, final long time) {
 
         final Pending<?>[] result = {
                 null
         };
+        final boolean[] replaced = {
+                false
+        };
 
         if (!shutdownFlag) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
@@ -92,24 +143,39 @@ public class ParallelTrackExecutorService implements ExecutorService {
                             @Override
                             public Pending<?> apply(String key,
                                     Pending<?> existing) {
+                                if (coalescable && existing != null
+                                        && existing.replace(runnable, time)) {
+                                    replaced[0] = true;
+                                    return result[0] = existing;
+                                }
                                 return result[0] = new Pending<Void>(
                                         existing != null ? existing.queue
                                                 : allocateQueue(),
-                                        runnable, trackId, null);
+                                        runnable, trackId, null, coalescable,
+                                        time);
                             }
                         });
             } else {
                 synchronized (trackedTasks) {
                     Pending<?> existing = trackedTasks.get(trackId);
-                    trackedTasks.put(trackId,
-                            result[0] = new Pending<Void>(
-                                    existing != null ? existing.queue
-                                            : allocateQueue(),
-                                    runnable, trackId, null));
+                    if (coalescable && existing != null
+                            && existing.replace(runnable, time)) {
+                        replaced[0] = true;
+                        result[0] = existing;
+                    } else {
+                        trackedTasks.put(trackId,
+                                result[0] = new Pending<Void>(
+                                        existing != null ? existing.queue
+                                                : allocateQueue(),
+                                        runnable, trackId, null, coalescable,
+                                        time));
+                    }
                 }
             }
 
-            if (result[0] != null && result[0].queue != null)
+            if (replaced[0])
+                coalescedCount.incrementAndGet();
+            else if (result[0] != null && result[0].queue != null)
                 result[0].queue.submit(result[0]);
         }
 
@@ -422,6 +488,7 @@ public class ParallelTrackExecutorService implements ExecutorService {
             ? new ConcurrentHashMap<>()
             : new HashMap<>();
     private final List<Queue> queues;
+    private final AtomicLong coalescedCount = new AtomicLong();
 
     // BEGIN: terminateLock protected section
     private final ReentrantLock shutdownLock = new ReentrantLock();
@@ -432,10 +499,17 @@ public class ParallelTrackExecutorService implements ExecutorService {
     private static class Pending<T> implements Future<T> {
 
         Pending(Queue queue, Runnable task, String trackId, T result) {
+            this(queue, task, trackId, result, false, 0L);
+        }
+
+        Pending(Queue queue, Runnable task, String trackId, T result,
+                boolean coalescable, long time) {
             this.queue = queue;
             this.task = task;
             this.trackId = trackId;
             this.result = result;
+            this.coalescable = coalescable;
+            this.time = time;
         }
 
         Pending(Queue queue, Callable<T> callable, String trackId) {
@@ -443,6 +517,7 @@ public class ParallelTrackExecutorService implements ExecutorService {
             this.queue = queue;
             this.result = null;
             this.trackId = trackId;
+            this.coalescable = false;
             this.task = new Runnable() {
                 @Override
                 public void run() {
@@ -457,7 +532,9 @@ public class ParallelTrackExecutorService implements ExecutorService {
 
         final Queue queue;
         final String trackId;
-        final Runnable task;
+        volatile Runnable task;
+        final boolean coalescable;
+        long time;
         Pending<?> next;
         T result;
         Throwable error;
@@ -469,6 +546,19 @@ public class ParallelTrackExecutorService implements ExecutorService {
 
         int state;
 
+        /**
+         * Replaces the task if it has not started and the new task is more recent
+         *
+         * @return true if the task was replaced
+         */
+        synchronized boolean replace(Runnable task, long time) {
+            if (!coalescable || state != INIT || time <= this.time)
+                return false;
+            this.task = task;
+            this.time = time;
+            return true;
+        }
+
         @Override
         public synchronized boolean cancel(boolean b) {
             if (state == INIT || state == RUNNING) {
@@ -534,16 +624,18 @@ public class ParallelTrackExecutorService implements ExecutorService {
         public void run() {
 
             boolean doRun = false;
+            Runnable toRun = null;
             synchronized (this) {
                 if (state == INIT) {
                     doRun = true;
                     state = RUNNING;
+                    toRun = task;
                 }
             }
 
             if (doRun) {
                 try {
-                    task.run();
+                    toRun.run();
                 } catch (Throwable t) {
                     // nothing checks this until DONE, so we have exclusive access here
                     error = t;
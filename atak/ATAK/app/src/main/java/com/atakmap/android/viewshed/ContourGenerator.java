@@ -0,0 +1,628 @@
+
+package com.atakmap.android.viewshed;
+
+import com.atakmap.coremap.log.Log;
+import com.atakmap.map.elevation.ElevationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates contour lines over an area using marching squares. Elevations are
+ * sampled through {@link ElevationManager} on a regular latitude/longitude
+ * grid that is split into tiles. Tiles are contoured in parallel on a
+ * fork-join pool; neighbouring tiles share their boundary posts, so the lines
+ * leaving a tile are stitched to those entering its neighbour.
+ *
+ * Completed lines are streamed to a {@link Sink} as soon as both of their
+ * ends are known, either closed, on the edge of the area or at a gap in the
+ * elevation data. Elevations are reported as meters MSL, consistent with the
+ * DTED values contoured previously.
+ */
+final class ContourGenerator {
+
+    private static final String TAG = "ContourGenerator";
+
+    /** the number of cells along each side of a tile */
+    static final int DEFAULT_TILE_SIZE = 256;
+
+    /**
+     * Receives the generated contour lines. Calls may be made concurrently
+     * from multiple threads.
+     */
+    interface Sink {
+        /**
+         * @param elevation The elevation of the contour, in meters MSL
+         * @param lons The longitudes of the line
+         * @param lats The latitudes of the line
+         * @param count The number of points in the line
+         */
+        void onContour(double elevation, double[] lons, double[] lats,
+                int count);
+
+        /**
+         * Called as each tile has been contoured
+         * @param completed The number of tiles contoured so far
+         * @param total The total number of tiles
+         */
+        void onTileComplete(int completed, int total);
+    }
+
+    private final double interval;
+    private final int tileSize;
+    private final ElevationManager.QueryParameters filter;
+
+    /**
+     * Creates a new generator.
+     *
+     * @param interval The contour interval, in meters; contours are generated
+     *                 at multiples of the interval
+     * @param tileSize The number of grid cells along each side of a tile
+     * @param filter The elevation filter, may be <code>null</code>
+     */
+    ContourGenerator(double interval, int tileSize,
+            ElevationManager.QueryParameters filter) {
+        if (!(interval > 0d))
+            throw new IllegalArgumentException("Invalid interval " + interval);
+        if (tileSize < 1)
+            throw new IllegalArgumentException("Invalid tile size "
+                    + tileSize);
+        this.interval = interval;
+        this.tileSize = tileSize;
+        this.filter = filter;
+    }
+
+    /**
+     * Generates the contours over the specified area. This method blocks
+     * until all tiles have been processed or the generation is cancelled.
+     *
+     * @param north The northern bound of the area
+     * @param west The western bound of the area
+     * @param south The southern bound of the area
+     * @param east The eastern bound of the area
+     * @param spacing The spacing of the sample grid, in degrees
+     * @param pool The pool to process the tiles on
+     * @param cancelled If set, generation stops as soon as possible
+     * @param sink Receives the generated lines
+     */
+    void generate(double north, double west, double south, double east,
+            double spacing, ForkJoinPool pool, AtomicBoolean cancelled,
+            Sink sink) {
+        final long start = System.currentTimeMillis();
+
+        // snap the grid to multiples of the spacing, so that the same posts
+        // are sampled regardless of the requested area
+        final long originRow = (long) Math.floor(south / spacing);
+        final long originCol = (long) Math.floor(west / spacing);
+        final int rows = (int) ((long) Math.ceil(north / spacing) - originRow)
+                + 1;
+        final int cols = (int) ((long) Math.ceil(east / spacing) - originCol)
+                + 1;
+        if (rows < 2 || cols < 2)
+            return;
+
+        final Grid grid = new Grid(originRow, originCol, rows, cols, spacing);
+
+        final List<int[]> tiles = new ArrayList<>();
+        for (int r = 0; r < rows - 1; r += tileSize) {
+            for (int c = 0; c < cols - 1; c += tileSize) {
+                tiles.add(new int[] {
+                        r, c, Math.min(r + tileSize, rows - 1),
+                        Math.min(c + tileSize, cols - 1)
+                });
+            }
+        }
+        final Stitcher stitcher = new Stitcher(sink, tiles.size());
+
+        if (cancelled.get())
+            return;
+        try {
+            pool.invoke(new TileTask(grid, tiles, 0, tiles.size(), cancelled,
+                    stitcher));
+        } catch (RejectedExecutionException | CancellationException e) {
+            // the pool was shut down, treat as cancelled
+            cancelled.set(true);
+            return;
+        }
+        if (cancelled.get())
+            return;
+        stitcher.flush();
+
+        Log.d(TAG, "generated " + stitcher.emitted + " contours over "
+                + rows + "x" + cols + " posts in " + tiles.size()
+                + " tiles in " + (System.currentTimeMillis() - start)
+                + "ms");
+    }
+
+    /**************************************************************************/
+
+    private final class TileTask extends RecursiveAction {
+        private final Grid grid;
+        private final List<int[]> tiles;
+        private final int from;
+        private final int to;
+        private final AtomicBoolean cancelled;
+        private final Stitcher stitcher;
+
+        TileTask(Grid grid, List<int[]> tiles, int from, int to,
+                AtomicBoolean cancelled, Stitcher stitcher) {
+            this.grid = grid;
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+            this.cancelled = cancelled;
+            this.stitcher = stitcher;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled.get())
+                return;
+            if (to - from > 1) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new TileTask(grid, tiles, from, mid, cancelled,
+                        stitcher),
+                        new TileTask(grid, tiles, mid, to, cancelled,
+                                stitcher));
+                return;
+            }
+            final int[] tile = tiles.get(from);
+            try {
+                contourTile(grid, tile[0], tile[1], tile[2], tile[3],
+                        cancelled, stitcher);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "error contouring tile " + Arrays.toString(tile),
+                        e);
+            }
+            if (!cancelled.get())
+                stitcher.tileComplete();
+        }
+    }
+
+    /**
+     * Contours the posts in rows <code>[r0, r1]</code> and columns
+     * <code>[c0, c1]</code> of the grid.
+     */
+    private void contourTile(Grid grid, int r0, int c0, int r1, int c1,
+            AtomicBoolean cancelled, Stitcher stitcher) {
+        final int height = r1 - r0 + 1;
+        final int width = c1 - c0 + 1;
+        final int count = height * width;
+
+        // sample the posts, row major from the south-west corner
+        final double[] lats = new double[count];
+        final double[] lons = new double[count];
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++) {
+                lats[r * width + c] = grid.latitude(r0 + r);
+                lons[r * width + c] = grid.longitude(c0 + c);
+            }
+        }
+        final double[] values = new double[count];
+        ElevationManager.getElevation(lats, lons, count, filter, values,
+                null);
+        if (cancelled.get())
+            return;
+
+        // convert to MSL. The geoid varies slowly, so it is interpolated
+        // from the corners of the tile.
+        final double south = grid.latitude(r0);
+        final double north = grid.latitude(r1);
+        final double west = grid.longitude(c0);
+        final double east = grid.longitude(c1);
+        final double gsw = ElevationManager.getGeoidHeight(south, west);
+        final double gse = ElevationManager.getGeoidHeight(south, east);
+        final double gnw = ElevationManager.getGeoidHeight(north, west);
+        final double gne = ElevationManager.getGeoidHeight(north, east);
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (int r = 0; r < height; r++) {
+            final double v = (height > 1) ? (double) r / (height - 1) : 0d;
+            for (int c = 0; c < width; c++) {
+                final int i = r * width + c;
+                if (Double.isNaN(values[i]))
+                    continue;
+                final double u = (width > 1) ? (double) c / (width - 1) : 0d;
+                final double geoid = (1d - v) * ((1d - u) * gsw + u * gse)
+                        + v * ((1d - u) * gnw + u * gne);
+                values[i] -= geoid;
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+            }
+        }
+        if (min > max)
+            return;
+
+        final int minLevel = (int) Math.ceil(min / interval);
+        final int maxLevel = (int) Math.floor(max / interval);
+
+        final TileContours contours = new TileContours(grid, r0, c0, r1, c1);
+        final double[] x = new double[4];
+        final double[] y = new double[4];
+        final long[] keys = new long[4];
+        final boolean[] entering = new boolean[4];
+        for (int level = minLevel; level <= maxLevel; level++) {
+            if (cancelled.get())
+                return;
+            final double elevation = level * interval;
+            contours.begin(level);
+            for (int r = 0; r < height - 1; r++) {
+                for (int c = 0; c < width - 1; c++) {
+                    final int bl = r * width + c;
+                    final int br = bl + 1;
+                    final int tl = bl + width;
+                    final int tr = tl + 1;
+                    final double vbl = values[bl];
+                    final double vbr = values[br];
+                    final double vtr = values[tr];
+                    final double vtl = values[tl];
+                    if (Double.isNaN(vbl) || Double.isNaN(vbr)
+                            || Double.isNaN(vtr) || Double.isNaN(vtl))
+                        continue;
+                    final int gr = r0 + r;
+                    final int gc = c0 + c;
+
+                    // walk the cell edges counter-clockwise, recording where
+                    // the level is crossed and in which direction. Each
+                    // crossing is interpolated along the edge in grid order so
+                    // that neighbouring cells compute identical points.
+                    int n = 0;
+                    n = crossing(grid, elevation, vbl, vbr, gr, gc, gr, gc + 1,
+                            false, edgeKey(level, gr, gc, false), x, y, keys,
+                            entering, n);
+                    n = crossing(grid, elevation, vbr, vtr, gr, gc + 1, gr + 1,
+                            gc + 1, false, edgeKey(level, gr, gc + 1, true),
+                            x, y, keys, entering, n);
+                    n = crossing(grid, elevation, vtr, vtl, gr + 1, gc + 1,
+                            gr + 1, gc, true,
+                            edgeKey(level, gr + 1, gc, false), x, y, keys,
+                            entering, n);
+                    n = crossing(grid, elevation, vtl, vbl, gr + 1, gc, gr,
+                            gc, true, edgeKey(level, gr, gc, true), x, y,
+                            keys, entering, n);
+                    if (n == 0)
+                        continue;
+
+                    // segments run from a leaving crossing to an entering
+                    // crossing, keeping higher ground on the left. For a
+                    // saddle, the center decides whether the high corners
+                    // are connected.
+                    if (n == 2) {
+                        final int out = entering[0] ? 1 : 0;
+                        final int in = 1 - out;
+                        contours.add(keys[out], x[out], y[out], keys[in],
+                                x[in], y[in]);
+                    } else {
+                        final double center = (vbl + vbr + vtr + vtl) / 4d;
+                        final boolean connected = center >= elevation;
+                        for (int i = 0; i < 4; i++) {
+                            if (entering[i])
+                                continue;
+                            final int in = connected ? (i + 1) % 4
+                                    : (i + 3) % 4;
+                            contours.add(keys[i], x[i], y[i], keys[in],
+                                    x[in], y[in]);
+                        }
+                    }
+                }
+            }
+            contours.end(elevation, stitcher);
+        }
+    }
+
+    /**
+     * Records the crossing of the level along the edge from corner a to
+     * corner b, if any.
+     *
+     * @param reversed <code>true</code> if a follows b in grid order
+     * @return The updated number of crossings
+     */
+    private static int crossing(Grid grid, double level, double va,
+            double vb, int ra, int ca, int rb, int cb, boolean reversed,
+            long key, double[] x, double[] y, long[] keys,
+            boolean[] entering, int n) {
+        final boolean aboveA = va >= level;
+        final boolean aboveB = vb >= level;
+        if (aboveA == aboveB)
+            return n;
+
+        // interpolate in grid order
+        final double v0 = reversed ? vb : va;
+        final double v1 = reversed ? va : vb;
+        final int r = reversed ? rb : ra;
+        final int c = reversed ? cb : ca;
+        final double t = (level - v0) / (v1 - v0);
+        x[n] = grid.longitude(c) + ((ca != cb) ? t * grid.spacing : 0d);
+        y[n] = grid.latitude(r) + ((ra != rb) ? t * grid.spacing : 0d);
+        keys[n] = key;
+        entering[n] = aboveB;
+        return n + 1;
+    }
+
+    /**
+     * Returns a key identifying the crossing of a level along a grid edge.
+     * Horizontal edges are identified by their western post, vertical edges
+     * by their southern post.
+     */
+    private static long edgeKey(int level, int row, int col,
+            boolean vertical) {
+        return ((long) (level & 0xFFFF) << 48)
+                | ((long) row << 25)
+                | ((long) col << 1)
+                | (vertical ? 1L : 0L);
+    }
+
+    private static int keyRow(long key) {
+        return (int) ((key >>> 25) & 0x7FFFFFL);
+    }
+
+    private static int keyCol(long key) {
+        return (int) ((key >>> 1) & 0xFFFFFFL);
+    }
+
+    private static boolean keyVertical(long key) {
+        return (key & 1L) != 0L;
+    }
+
+    /**************************************************************************/
+
+    private static final class Grid {
+        final long originRow;
+        final long originCol;
+        final int rows;
+        final int cols;
+        final double spacing;
+
+        Grid(long originRow, long originCol, int rows, int cols,
+                double spacing) {
+            this.originRow = originRow;
+            this.originCol = originCol;
+            this.rows = rows;
+            this.cols = cols;
+            this.spacing = spacing;
+        }
+
+        double latitude(int row) {
+            return (originRow + row) * spacing;
+        }
+
+        double longitude(int col) {
+            return (originCol + col) * spacing;
+        }
+    }
+
+    /** A line under construction, oriented from head to tail */
+    private static final class Chain {
+        double[] lons = new double[16];
+        double[] lats = new double[16];
+        int count;
+        long head;
+        long tail;
+        boolean headOpen;
+        boolean tailOpen;
+
+        void add(double lon, double lat) {
+            if (count == lons.length) {
+                lons = Arrays.copyOf(lons, count * 2);
+                lats = Arrays.copyOf(lats, count * 2);
+            }
+            lons[count] = lon;
+            lats[count] = lat;
+            count++;
+        }
+
+        /** appends the chain, whose first point is this chain's last */
+        void append(Chain other) {
+            for (int i = 1; i < other.count; i++)
+                add(other.lons[i], other.lats[i]);
+            tail = other.tail;
+            tailOpen = other.tailOpen;
+        }
+    }
+
+    /** Collects the segments of one level within a tile and chains them */
+    private static final class TileContours {
+        private final Grid grid;
+        private final int r0, c0, r1, c1;
+
+        private int level;
+        private int count;
+        private long[] heads = new long[64];
+        private long[] tails = new long[64];
+        private double[] coords = new double[256];
+
+        TileContours(Grid grid, int r0, int c0, int r1, int c1) {
+            this.grid = grid;
+            this.r0 = r0;
+            this.c0 = c0;
+            this.r1 = r1;
+            this.c1 = c1;
+        }
+
+        void begin(int level) {
+            this.level = level;
+            this.count = 0;
+        }
+
+        void add(long head, double hx, double hy, long tail, double tx,
+                double ty) {
+            if (count == heads.length) {
+                heads = Arrays.copyOf(heads, count * 2);
+                tails = Arrays.copyOf(tails, count * 2);
+                coords = Arrays.copyOf(coords, count * 8);
+            }
+            heads[count] = head;
+            tails[count] = tail;
+            coords[count * 4] = hx;
+            coords[count * 4 + 1] = hy;
+            coords[count * 4 + 2] = tx;
+            coords[count * 4 + 3] = ty;
+            count++;
+        }
+
+        void end(double elevation, Stitcher stitcher) {
+            if (count == 0)
+                return;
+
+            // each interior edge is the tail of one segment and the head of
+            // the segment in the neighbouring cell
+            final Map<Long, Integer> byHead = new HashMap<>(count * 2);
+            final boolean[] hasPrevious = new boolean[count];
+            for (int i = 0; i < count; i++)
+                byHead.put(heads[i], i);
+            for (int i = 0; i < count; i++) {
+                final Integer next = byHead.get(tails[i]);
+                if (next != null)
+                    hasPrevious[next] = true;
+            }
+
+            final boolean[] visited = new boolean[count];
+            // open chains first, then any remaining rings
+            for (int pass = 0; pass < 2; pass++) {
+                for (int i = 0; i < count; i++) {
+                    if (visited[i] || (pass == 0 && hasPrevious[i]))
+                        continue;
+                    final Chain chain = new Chain();
+                    chain.head = heads[i];
+                    chain.add(coords[i * 4], coords[i * 4 + 1]);
+                    int seg = i;
+                    while (true) {
+                        visited[seg] = true;
+                        chain.add(coords[seg * 4 + 2], coords[seg * 4 + 3]);
+                        chain.tail = tails[seg];
+                        final Integer next = byHead.get(tails[seg]);
+                        if (next == null || visited[next])
+                            break;
+                        seg = next;
+                    }
+                    chain.headOpen = isSeam(chain.head);
+                    chain.tailOpen = isSeam(chain.tail);
+                    stitcher.add(elevation, chain);
+                }
+            }
+        }
+
+        /**
+         * Returns <code>true</code> if the edge lies on the boundary this
+         * tile shares with another tile.
+         */
+        private boolean isSeam(long key) {
+            final int r = keyRow(key);
+            final int c = keyCol(key);
+            if (keyVertical(key))
+                return (c == c0 && c0 > 0)
+                        || (c == c1 && c1 < grid.cols - 1);
+            else
+                return (r == r0 && r0 > 0)
+                        || (r == r1 && r1 < grid.rows - 1);
+        }
+    }
+
+    /** Joins lines across tile seams and emits them once complete */
+    private static final class Stitcher {
+        private final Sink sink;
+        private final Map<Long, Chain> byHead = new HashMap<>();
+        private final Map<Long, Chain> byTail = new HashMap<>();
+        private final Map<Chain, Double> elevations = new HashMap<>();
+        private final int tiles;
+        private final AtomicInteger completed = new AtomicInteger();
+        int emitted;
+
+        Stitcher(Sink sink, int tiles) {
+            this.sink = sink;
+            this.tiles = tiles;
+        }
+
+        void tileComplete() {
+            sink.onTileComplete(completed.incrementAndGet(), tiles);
+        }
+
+        void add(double elevation, Chain chain) {
+            if (!chain.headOpen && !chain.tailOpen) {
+                emit(elevation, chain, chain.head == chain.tail);
+                return;
+            }
+
+            synchronized (this) {
+                while (true) {
+                    if (chain.tailOpen) {
+                        final Chain next = byHead.remove(chain.tail);
+                        if (next != null) {
+                            if (next == chain)
+                                break;
+                            unregister(next);
+                            chain.append(next);
+                            continue;
+                        }
+                    }
+                    if (chain.headOpen) {
+                        final Chain previous = byTail.remove(chain.head);
+                        if (previous != null) {
+                            if (previous == chain)
+                                break;
+                            unregister(previous);
+                            previous.append(chain);
+                            chain = previous;
+                            continue;
+                        }
+                    }
+                    break;
+                }
+
+                if (chain.headOpen && chain.tailOpen
+                        && chain.head == chain.tail) {
+                    // a ring spanning several tiles
+                    chain.headOpen = chain.tailOpen = false;
+                } else if (chain.headOpen || chain.tailOpen) {
+                    if (chain.headOpen)
+                        byHead.put(chain.head, chain);
+                    if (chain.tailOpen)
+                        byTail.put(chain.tail, chain);
+                    elevations.put(chain, elevation);
+                    return;
+                }
+            }
+            emit(elevation, chain, chain.head == chain.tail);
+        }
+
+        private void unregister(Chain chain) {
+            if (chain.headOpen)
+                byHead.remove(chain.head);
+            if (chain.tailOpen)
+                byTail.remove(chain.tail);
+            elevations.remove(chain);
+        }
+
+        /** emits the lines left open, e.g. at gaps in the elevation data */
+        synchronized void flush() {
+            for (Map.Entry<Chain, Double> entry : elevations.entrySet())
+                emit(entry.getValue(), entry.getKey(), false);
+            elevations.clear();
+            byHead.clear();
+            byTail.clear();
+        }
+
+        private void emit(double elevation, Chain chain, boolean closed) {
+            if (closed && chain.count > 1
+                    && (chain.lons[0] != chain.lons[chain.count - 1]
+                            || chain.lats[0] != chain.lats[chain.count
+                                    - 1]))
+                chain.add(chain.lons[0], chain.lats[0]);
+            if (chain.count < 2)
+                return;
+            synchronized (this) {
+                emitted++;
+            }
+            sink.onContour(elevation, chain.lons, chain.lats, chain.count);
+        }
+    }
+}
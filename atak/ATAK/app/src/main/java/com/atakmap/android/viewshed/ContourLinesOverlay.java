@@ -30,8 +30,6 @@ import com.atakmap.android.maps.graphics.GLQuadtreeNode2;
 import com.atakmap.android.overlay.MapOverlay;
 import com.atakmap.android.preference.AtakPreferences;
 import com.atakmap.coremap.conversions.ConversionFactors;
-import com.atakmap.coremap.filesystem.FileSystemUtils;
-import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.locale.LocaleUtil;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.coremap.maps.coords.GeoBounds;
@@ -42,14 +40,13 @@ import com.atakmap.map.MapRenderer;
 import com.atakmap.map.elevation.ElevationData;
 import com.atakmap.map.elevation.ElevationManager;
 import com.atakmap.map.elevation.ElevationSource;
-import com.atakmap.map.gdal.GdalLibrary;
-import com.atakmap.map.gdal.VSIFileFileSystemHandler;
 import com.atakmap.map.layer.Layer;
+import com.atakmap.map.layer.feature.AttributeSet;
 import com.atakmap.map.layer.feature.Feature;
 import com.atakmap.map.layer.feature.FeatureCursor;
 import com.atakmap.map.layer.feature.FeatureDataStore2;
-import com.atakmap.map.layer.feature.PersistentDataSourceFeatureDataStore3;
-import com.atakmap.map.layer.feature.control.DataSourceDataStoreControl;
+import com.atakmap.map.layer.feature.FeatureSet;
+import com.atakmap.map.layer.feature.datastore.FeatureSetDatabase2;
 import com.atakmap.map.layer.feature.geometry.Envelope;
 import com.atakmap.map.layer.feature.geometry.GeometryFactory;
 import com.atakmap.map.layer.feature.geometry.LineString;
@@ -61,19 +58,6 @@ import com.atakmap.map.layer.raster.DatasetDescriptor;
 import com.atakmap.map.opengl.GLMapView;
 import com.atakmap.spatial.SpatialCalculator;
 
-import org.gdal.gdal.Band;
-import org.gdal.gdal.Dataset;
-import org.gdal.gdal.gdal;
-import org.gdal.gdalconst.gdalconst;
-import org.gdal.ogr.DataSource;
-import org.gdal.ogr.Driver;
-import org.gdal.ogr.FeatureDefn;
-import org.gdal.ogr.FieldDefn;
-import org.gdal.ogr.ogr;
-import org.gdal.ogr.ogrConstants;
-import org.gdal.osr.SpatialReference;
-
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -83,9 +67,9 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import gov.tak.api.util.Disposable;
 import gov.tak.platform.util.LimitingThread;
@@ -106,9 +90,13 @@ public class ContourLinesOverlay extends AbstractHierarchyListItem
     private final String isMajorLineKey = "isMajorLine";
 
     private boolean visible; //this is the boolean flag to determine if we are in range to generate contours or not
-    private String workingPath;
-    private PersistentDataSourceFeatureDataStore3 contourDataStore;
-    private final String myDir;
+
+    //in-memory store receiving the generated contours, and the feature set for the current generation
+    private final FeatureDataStore2 contourDataStore = new FeatureSetDatabase2(
+            null);
+    private long contourFsid = FeatureDataStore2.FEATURESET_ID_NONE;
+    private final ForkJoinPool contourPool = new ForkJoinPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
     private GLOverlay _glOverlay;
     private final GLLayerSpi2 SPI2;
     private final DefaultMapGroup mapGroup;
@@ -154,33 +142,12 @@ public class ContourLinesOverlay extends AbstractHierarchyListItem
         GLLayerFactory.register(SPI2);
 
         this.visibleChangedListeners = new HashSet<>();
-
-        myDir = FileSystemUtils.getItem(FileSystemUtils.TMP_DIRECTORY)
-                .getAbsolutePath() + "/ContourLines";
-
-        File programDataContourLinesDirectory = new File(
-                FileSystemUtils.getItem(FileSystemUtils.TMP_DIRECTORY),
-                "ContourLinesWorkingDirectory");
-        if (!IOProviderFactory.exists(programDataContourLinesDirectory))
-            if (!IOProviderFactory.mkdirs(programDataContourLinesDirectory)) {
-                Log.d(TAG, "could not make the contour lines directory: "
-                        + programDataContourLinesDirectory);
-            }
-
-        try {
-            workingPath = programDataContourLinesDirectory.getAbsolutePath()
-                    + "/" + "WrkDir";
-            if (!IOProviderFactory.exists(new File(workingPath)) &&
-                    !IOProviderFactory.mkdirs(new File(workingPath))) {
-                Log.w(TAG, "Failed to create contour lines data store");
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "error", e);
-            toast("error occurred processing the directory");
-        }
     }
 
     public void getContourData() {
+        // the pool is shut down once the overlay is disposed
+        if (contourPool.isShutdown())
+            return;
         isCancelled.set(false);
         if (!visible)
             return;
@@ -191,32 +158,8 @@ public class ContourLinesOverlay extends AbstractHierarchyListItem
             updateProgress(-1);
             return;
         }
-        File dir = new File(FileSystemUtils
-                .getItem(FileSystemUtils.EXPORT_DIRECTORY).getPath()
-                + "/testContourDir/" + "Files");
-        if (!IOProviderFactory.exists(dir) && !IOProviderFactory.mkdirs(dir)) {
-            toast("failed to create the directory");
-        }
-
-        //clear out any files added to DS to reduce size of DS when re generating
-        File[] files = IOProviderFactory.listFiles(dir);
-        if (files != null) {
-            synchronized (this) {
-                if (contourDataStore == null)
-                    contourDataStore = new PersistentDataSourceFeatureDataStore3(
-                            new File(workingPath));
-            }
-            for (File f : files) {
-                try {
-                    contourDataStore.remove(f);
-                    if (!FileSystemUtils.deleteFile(f)) {
-                        Log.d(TAG, "error deleting the file: " + f);
-                    }
-                } catch (Exception e) {
-                    toast("failed to remove the directory");
-                }
-            }
-        }
+        //clear out the contours from the previous generation
+        clearDataStore();
         if (isCancelled.get()) {
             updateProgress(-1);
             return;
@@ -266,6 +209,7 @@ public class ContourLinesOverlay extends AbstractHierarchyListItem
                 return;
             }
             final Map<String, List<DtedCell>> cells = new HashMap<>();
+            final Set<String> dtedTypes = new HashSet<>();
             while (cursor.moveToNext()) {
                 if (cursor.getType().toLowerCase(LocaleUtil.getCurrent())
                         .contains("dted")) {
@@ -274,6 +218,7 @@ public class ContourLinesOverlay extends AbstractHierarchyListItem
 
                     final DtedCell cell = new DtedCell();
                     cell.path = cursor.getUri();
+                    cell.type = cursor.getType();
                     cell.bounds = new GeoBounds(bounds.maxX, bounds.minX,
                             bounds.minY, bounds.maxX);
                     try {
@@ -300,126 +245,127 @@ public class ContourLinesOverlay extends AbstractHierarchyListItem
             //iterate and remove all cells that do not have the highest dted ranking and same areas for some reason
             //i have DTEd0,1,2,3 on the same region and i am getting 4 layers over the same area.
             //I thought the EleManager returns the best of each cell?
-            final List<String> filtered = new ArrayList<>();
+            int bestRank = 0;
             for (Map.Entry<String, List<DtedCell>> entry : cells.entrySet()) {
                 Collections.sort(entry.getValue());
-                filtered.add(entry.getValue().get(0).path);
+                final DtedCell best = entry.getValue().get(0);
+                dtedTypes.add(best.type);
+                bestRank = Math.max(bestRank, best.dtedRank);
             }
             cells.clear();
 
-            if (filtered.isEmpty()) {
+            if (dtedTypes.isEmpty()) {
                 toast("No elevation data found for current map view.");
                 updateProgress(-1);
                 return;
             }
 
-            final double progressStep = (40.0 / filtered.size());
+            double interval = prefs.get(CONTOUR_PREFERENCE_INTERVAL_KEY, 20);
+            if (prefs.get(CONTOUR_PREFERENCE_UNIT_KEY, "m")
+                    .equalsIgnoreCase("ft"))
+                interval = interval * ConversionFactors.FEET_TO_METERS;
+
+            // sample only the DTED cells, at the post spacing of the best level
+            final ElevationManager.QueryParameters filter = new ElevationManager.QueryParameters();
+            filter.elevationModel = ElevationData.MODEL_TERRAIN;
+            filter.types = dtedTypes;
+            final ContourGenerator generator = new ContourGenerator(interval,
+                    ContourGenerator.DEFAULT_TILE_SIZE, filter);
+            final double spacing = getPostSpacing(bestRank);
+            final long fsid = contourFsid;
+            final AtomicInteger reported = new AtomicInteger(30);
 
             new Thread(new Runnable() {
                 @Override
                 public void run() {
+                    generator.generate(ul.getLatitude(), ul.getLongitude(),
+                            lr.getLatitude(), lr.getLongitude(), spacing,
+                            contourPool, isCancelled,
+                            new ContourGenerator.Sink() {
+                                @Override
+                                public void onContour(double elevation,
+                                        double[] lons, double[] lats,
+                                        int count) {
+                                    insertContour(fsid, elevation, lons,
+                                            lats, count);
+                                }
 
-                    //wait for all threads to finish up their work adding their files to the DS
-                    int threadPools = filtered.size();
-                    if (filtered.size() > 4) {
-                        threadPools = (int) Math.round(filtered.size() / 2.0);
-                    }
-                    ExecutorService executor = Executors
-                            .newFixedThreadPool(threadPools);
-                    for (int i = 0; i < filtered.size(); i++) {
-                        Runnable worker = new ContourRunnable(filtered.get(i),
-                                myDir, progressStep);
-                        executor.execute(worker);
-                    }
-                    executor.shutdown();
-                    while (!executor.isTerminated()) {
-                        if (isCancelled.get()) {
-                            return;
-                        }
+                                @Override
+                                public void onTileComplete(int completed,
+                                        int total) {
+                                    // contouring covers 30 to 70 percent,
+                                    // only post when the percentage changes
+                                    final int p = 30 + (40 * completed / total);
+                                    final int last = reported.get();
+                                    if (p <= last
+                                            || !reported.compareAndSet(last, p))
+                                        return;
+                                    mapView.post(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            if (isCancelled.get())
+                                                return;
+                                            // posts from several tile
+                                            // threads may run out of order
+                                            updateProgress(reported.get());
+                                        }
+                                    });
+                                }
+                            });
+                    if (isCancelled.get()) {
+                        return;
                     }
                     buildContours();
                 }
-            }).start();
+            }, "contour-generation").start();
         } finally {
             if (cursor != null)
                 cursor.close();
         }
     }
 
-    private void WriteToDataStore(String filePath) {
-        if (isCancelled.get()) {
-            return;
-        }
-        File folder = new File(
-                FileSystemUtils.getItem(FileSystemUtils.EXPORT_DIRECTORY)
-                        .getPath() + "/testContourDir/" + "Files");
-        if (!IOProviderFactory.exists(folder)
-                && !IOProviderFactory.mkdirs(folder)) {
-            toast("failed to create the folder");
-        }
-        File[] files = IOProviderFactory.listFiles(new File(filePath));
-
-        if (files != null) {
-            for (File f : files) {
-                try {
-                    if (FileSystemUtils.getExtension(f, false, false)
-                            .equals("prj"))
-                        continue;
-                    FileSystemUtils.copyFile(f,
-                            new File(folder.getAbsolutePath() + "/"
-                                    + f.getName()));
-                } catch (Exception e) {
-                    toast("failed to copy file");
-                }
-            }
+    //clears the contours of the last generation and starts a new feature set
+    private synchronized void clearDataStore() {
+        try {
+            if (contourFsid != FeatureDataStore2.FEATURESET_ID_NONE)
+                contourDataStore.deleteFeatureSet(contourFsid);
+            contourFsid = contourDataStore.insertFeatureSet(new FeatureSet(
+                    "contours", "contours", "Contour Lines", Double.MAX_VALUE,
+                    0d));
+        } catch (Exception e) {
+            Log.e(TAG, "failed to reset the contour data store", e);
         }
-        AddDataStoreFiles();
     }
 
-    private void AddDataStoreFiles() {
-        if (isCancelled.get()) {
-            return;
-        }
-        File folder = new File(
-                FileSystemUtils.getItem(FileSystemUtils.EXPORT_DIRECTORY)
-                        .getPath() + "/testContourDir/" + "Files");
-        if (!IOProviderFactory.exists(folder)
-                && !IOProviderFactory.mkdirs(folder)) {
-            //Failed
-            toast("failed to create the folder");
-        }
-
-        synchronized (this) {
-            if (contourDataStore == null)
-                contourDataStore = new PersistentDataSourceFeatureDataStore3(
-                        new File(workingPath));
-        }
-
-        final File[] files = IOProviderFactory.listFiles(folder);
-        if (files != null) {
-            for (File f : files) {
-                try {
-                    contourDataStore.add(f);
-                } catch (Exception e) {
-                    toast("failed to add the datasource");
-                }
+    //streams a generated contour into the data store
+    private void insertContour(long fsid, double elevation, double[] lons,
+            double[] lats, int count) {
+        final LineString lineString = new LineString(2);
+        for (int i = 0; i < count; i++)
+            lineString.addPoint(lons[i], lats[i]);
+        final AttributeSet attributes = new AttributeSet();
+        attributes.setAttribute("ELEVATION", elevation);
+        try {
+            synchronized (contourDataStore) {
+                contourDataStore.insertFeature(new Feature(fsid, null,
+                        lineString, null, attributes));
             }
+        } catch (Exception e) {
+            Log.e(TAG, "failed to insert contour", e);
         }
-        try (DataSourceDataStoreControl.FileCursor result = contourDataStore
-                .queryFiles()) {
-            try {
-                contourDataStore.acquireModifyLock(true);
-                try {
-                    while (result.moveToNext()) {
-                        final File f = result.getFile();
-                        if (!IOProviderFactory.exists(f))
-                            contourDataStore.remove(f);
-                    }
-                } finally {
-                    contourDataStore.releaseModifyLock();
-                }
-            } catch (InterruptedException ignored) {
-            }
+    }
+
+    //returns the post spacing, in degrees, of the specified DTED level
+    private static double getPostSpacing(int dtedRank) {
+        switch (dtedRank) {
+            case 0:
+                return 30d / 3600d;
+            case 1:
+                return 3d / 3600d;
+            case 2:
+                return 1d / 3600d;
+            default:
+                return (1d / 3d) / 3600d;
         }
     }
 
@@ -441,11 +387,8 @@ public class ContourLinesOverlay extends AbstractHierarchyListItem
                     ul.getLongitude(), lr.getLatitude(), 0d,
                     lr.getLongitude(), ul.getLatitude(), 0d));
 
-            synchronized (this) {
-                if (contourDataStore == null)
-                    contourDataStore = new PersistentDataSourceFeatureDataStore3(
-                            new File(workingPath));
-            }
+            params.featureSetFilter = new FeatureDataStore2.FeatureSetQueryParameters();
+            params.featureSetFilter.ids = Collections.singleton(contourFsid);
 
             double totalCount = (50.0
                     / contourDataStore.queryFeaturesCount(params));
@@ -818,11 +761,8 @@ public class ContourLinesOverlay extends AbstractHierarchyListItem
     public void dispose() {
         setCancelled();
 
-        if (contourDataStore != null)
-            contourDataStore.dispose();
-
-        FileSystemUtils.deleteDirectory(new File(myDir), false);
-        FileSystemUtils.deleteDirectory(new File(workingPath), false);
+        contourPool.shutdownNow();
+        contourDataStore.dispose();
 
         clearLines();
         if (SPI2 != null)
@@ -920,142 +860,6 @@ public class ContourLinesOverlay extends AbstractHierarchyListItem
         }
     }
 
-    class ContourRunnable implements Runnable {
-
-        private final String _dtedPath;
-        private final String _myDirectory;
-        private final double _progressStep;
-
-        ContourRunnable(String dtedPath, String myDirectory,
-                double progressStep) {
-            _dtedPath = dtedPath;
-            _myDirectory = myDirectory;
-            _progressStep = progressStep;
-        }
-
-        @Override
-        public void run() {
-            double interval = prefs.get(CONTOUR_PREFERENCE_INTERVAL_KEY, 20);
-            if (prefs.get(CONTOUR_PREFERENCE_UNIT_KEY, "m")
-                    .equalsIgnoreCase("ft"))
-                interval = interval * ConversionFactors.FEET_TO_METERS;
-
-            if (_dtedPath == null)
-                return;
-
-            Dataset dataset = GdalLibrary.openDatasetFromFile(
-                    new File(_dtedPath), gdalconst.GA_ReadOnly);
-
-            if (dataset == null)
-                return;
-
-            //create a temp file to store of created shape file
-            String tempFileName = UUID.randomUUID().toString();
-            File myDir2 = new File(_myDirectory + "/" + tempFileName);
-            if (!IOProviderFactory.exists(myDir2)
-                    && !IOProviderFactory.mkdirs(myDir2)) {
-                toast("failed to create the directory");
-                return;
-            }
-
-            //get the Band of the dataset
-
-            Band band = dataset.GetRasterBand(1);
-            if (band == null)
-                return;
-
-            //specify our output type as ShapeFile
-            Driver driver = ogr.GetDriverByName("ESRI Shapefile");
-            if (driver == null)
-                return;
-
-            String path = myDir2.getAbsolutePath();
-            if (!IOProviderFactory.isDefault()) {
-                path = VSIFileFileSystemHandler.PREFIX + path;
-            }
-            //create datasource that will contain the shape features created
-            DataSource dataSource = driver
-                    .CreateDataSource(path);
-            if (dataSource == null)
-                return;
-            String projectionString = dataset.GetProjection();
-            if (projectionString == null)
-                return;
-            SpatialReference spatialReference = new SpatialReference(
-                    projectionString);
-
-            //create our layer using GDAL
-            org.gdal.ogr.Layer contourLayer = dataSource.CreateLayer(
-                    tempFileName,
-                    spatialReference,
-                    ogr.wkbLineString, null);
-
-            if (contourLayer == null)
-                return;
-
-            Double[] noDataValue = new Double[1];
-            band.GetNoDataValue(noDataValue);
-
-            FieldDefn field = new FieldDefn("ELEVATION", ogrConstants.OFTReal);
-            field.SetWidth(12);
-            field.SetPrecision(3);
-
-            contourLayer.CreateField(field, 0);
-
-            FeatureDefn feature = contourLayer.GetLayerDefn();
-            if (feature == null)
-                return;
-
-            try {
-                if (isCancelled.get()) {
-                    return;
-                }
-
-                //call to generate the contours based upon a interval count and starting elevation
-                gdal.ContourGenerate(band, interval, 0, null,
-                        ((noDataValue[0] == null) ? 0 : 1),
-                        ((noDataValue[0] == null) ? 0 : noDataValue[0]),
-                        contourLayer,
-                        feature.GetFieldIndex("ID"),
-                        feature.GetFieldIndex(field.GetName()));
-
-                if (isCancelled.get()) {
-                    return;
-                }
-
-                MapView.getMapView().post(new Runnable() {
-                    @Override
-                    public void run() {
-                        updateProgress((int) (progress + _progressStep));
-                    }
-                });
-
-                try {
-                    dataSource.FlushCache();
-                    if (contourLayer.GetFeatureCount(1) >= 0) {
-                        WriteToDataStore(myDir2.getAbsolutePath());
-                    }
-                } catch (Exception e) {
-                    Log.d(TAG, "error flushing datasource, removing", e);
-                    try {
-                        dataSource.delete();
-                    } catch (Exception ignored) {
-                        Log.e(TAG, "error deleting datasource");
-                    }
-                }
-            } finally {
-                try {
-                    contourLayer.delete();
-                    dataset.delete();
-                    band.delete();
-                    driver.delete();
-                } catch (Exception ignored) {
-                    // delete and clean up has failed, just continue
-                }
-            }
-        }
-    }
-
     public synchronized DefaultMapGroup getMapGroup() {
         return mapGroup;
     }
@@ -1067,6 +871,7 @@ public class ContourLinesOverlay extends AbstractHierarchyListItem
         private GeoBounds bounds;
         private int dtedRank;
         private String path;
+        private String type;
 
         @Override
         public boolean equals(Object o) {
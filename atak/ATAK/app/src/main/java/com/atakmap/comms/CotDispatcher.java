@@ -27,6 +27,8 @@ public class CotDispatcher {
     public static final String TAG = "CotDispatcher";
     // Determines how messages are routed (internally or externally)
     private volatile int flags = DispatchFlags.INTERNAL;
+    // Determines if pending position updates may be replaced by newer ones
+    private volatile boolean coalescing = false;
 
     private final ExecutorService internalDispatchExecutor;
     private final ParallelTrackExecutorService parallelInternalDispatchExecutor;
@@ -104,6 +106,43 @@ public class CotDispatcher {
         this.flags = flags;
     }
 
+    /**
+     * Enables or disables coalescing of internally dispatched events. When enabled and the
+     * dispatcher is backed by a ParallelTrackExecutorService, a position update that is still
+     * waiting to be processed is replaced by a newer update for the same UID, so that a burst of
+     * updates for a track only results in the most recent one being processed. Events that are
+     * not position updates, such as chat, file transfers and deletes, are never replaced.
+     *
+     * @param coalescing true to enable coalescing, false to process every event
+     */
+    public final void setCoalescing(final boolean coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * @return true if pending position updates may be replaced by newer ones
+     */
+    public final boolean isCoalescing() {
+        return coalescing;
+    }
+
+    /**
+     * Determines if an event only carries the latest state of its track, so that a pending
+     * event for the same UID may be replaced by it.
+     *
+     * @param event the cot event
+     * @return true if the event may replace or be replaced by an event with the same UID
+     */
+    static boolean isCoalescable(final CotEvent event) {
+        final String type = event.getType();
+        // chat (b-t-f), file transfers (b-f-t-*) and deletes (t-x-d-d) are not atoms
+        if (type == null || !type.startsWith("a-"))
+            return false;
+        if (event.getTime() == null)
+            return false;
+        return event.findDetail("__forcedelete") == null;
+    }
+
     /**
      * Used to dispatch a CotEvent with no additional directives passed in as a bundle.   This method
      * uses the dispatch flags set on the CoTDispatcher. If you want to pass in additional directives
@@ -320,7 +359,12 @@ public class CotDispatcher {
             if (eventUID == null)
                 return false;
 
-            future = parallelInternalDispatchExecutor.submit(task, eventUID);
+            if (coalescing && isCoalescable(eventCopy))
+                future = parallelInternalDispatchExecutor.submitCoalescing(task,
+                        eventUID, eventCopy.getTime().getMilliseconds());
+            else
+                future = parallelInternalDispatchExecutor.submit(task,
+                        eventUID);
         } else {
             future = internalDispatchExecutor.submit(task);
         }
@@ -15,22 +15,25 @@ import com.atakmap.coremap.maps.time.CoordinatedTime;
 import com.atakmap.spatial.file.KmlFileSpatialDb;
 import com.atakmap.spatial.kml.FeatureHandler;
 import com.atakmap.spatial.kml.KMLUtil;
-import com.ekito.simpleKML.Serializer;
+import com.atakmap.spatial.kml.KMLWriter;
 import com.ekito.simpleKML.model.Document;
 import com.ekito.simpleKML.model.Feature;
 import com.ekito.simpleKML.model.Folder;
-import com.ekito.simpleKML.model.Kml;
 import com.ekito.simpleKML.model.Placemark;
 import com.ekito.simpleKML.model.Style;
 import com.ekito.simpleKML.model.StyleSelector;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -141,11 +144,34 @@ public class KMLExportMarshal extends ExportFileMarshal {
         return f;
     }
 
+    /**
+     * Get the KML document containing all marshalled features and styles.
+     * The marshalled features are retained.
+     *
+     * @return the KML document
+     * @throws IOException if there are no features or writing fails
+     */
     protected String getKml() throws IOException {
+        StringWriter sw = new StringWriter();
+        writeKml(sw, false);
+        return sw.toString();
+    }
+
+    /**
+     * Stream the KML document containing all marshalled features and styles
+     *
+     * @param writer the writer to stream the KML to, flushed but not closed
+     * @param release true to release the marshalled features as they are
+     *                written, which leaves no features for a later call
+     * @throws IOException if there are no features or writing fails
+     */
+    protected void writeKml(Writer writer, boolean release)
+            throws IOException {
         if (features == null || features.isEmpty())
             throw new IOException("No features");
 
         List<Feature> documentFeatures = new ArrayList<>();
+        Map<Feature, List<Feature>> folderFeatures = new IdentityHashMap<>();
         for (Entry<String, List<Feature>> es : features.entrySet()) {
             if (es.getValue() == null || es.getValue().isEmpty()) {
                 Log.d(TAG, "Skipping empty export folder: " + es.getKey());
@@ -166,7 +192,7 @@ public class KMLExportMarshal extends ExportFileMarshal {
                 folder = new Folder();
                 folder.setName(es.getKey());
                 fList = new ArrayList<>();
-                folder.setFeatureList(fList);
+                folderFeatures.put(folder, fList);
             }
 
             //now add the features, only once
@@ -186,6 +212,8 @@ public class KMLExportMarshal extends ExportFileMarshal {
                 documentFeatures.add(folder);
             }
         } //end folder loop
+        if (release)
+            features.clear();
 
         //Simple KML wants them in a StyleSelector list
         List<StyleSelector> styleList = new ArrayList<>(styles.values());
@@ -193,9 +221,7 @@ public class KMLExportMarshal extends ExportFileMarshal {
         Log.d(TAG, "Exporting top level features: " + documentFeatures.size());
         Log.d(TAG, "Exporting styles: " + styleList.size());
 
-        Kml kml = new Kml();
         Document document = new Document();
-        kml.setFeature(document);
         document.setName(filename);
         document.setDescription(filename
                 + " generated by "
@@ -206,17 +232,26 @@ public class KMLExportMarshal extends ExportFileMarshal {
                         CoordinatedTime.currentDate()));
         document.setOpen(1);
         Collections.sort(documentFeatures, featureComparator);
-        document.setFeatureList(documentFeatures);
         document.setStyleSelector(styleList);
 
-        Serializer serializer = new Serializer();
-        StringWriter sw = new StringWriter();
-        try {
-            serializer.write(kml, sw);
-        } catch (Exception e) {
-            throw new IOException(e);
+        KMLWriter kml = new KMLWriter(writer);
+        kml.startKml();
+        kml.startContainer(document);
+        for (Feature f : documentFeatures) {
+            List<Feature> children = folderFeatures.get(f);
+            if (children == null) {
+                kml.writeFeature(f);
+                continue;
+            }
+            kml.startContainer(f);
+            for (int i = 0; i < children.size(); i++) {
+                kml.writeFeature(children.get(i));
+                if (release)
+                    children.set(i, null);
+            }
+            kml.endContainer();
         }
-        return sw.toString();
+        kml.endKml();
     }
 
     @Override
@@ -228,9 +263,10 @@ public class KMLExportMarshal extends ExportFileMarshal {
             }
         }
 
-        String kml = getKml();
-        if (FileSystemUtils.isEmpty(kml)) {
-            throw new IOException("Failed to serialize KML");
+        if (features.isEmpty())
+            throw new IOException("No features");
+        if (hasProgress()) {
+            this.progress.publish(94);
         }
 
         synchronized (this) {
@@ -239,18 +275,34 @@ public class KMLExportMarshal extends ExportFileMarshal {
                 return;
             }
         }
-        if (hasProgress()) {
-            this.progress.publish(94);
-        }
 
-        // delete existing file, and then serialize KML out to file
+        // delete existing file, and then stream KML out to file
         File file = getFile();
         if (IOProviderFactory.exists(file)) {
             FileSystemUtils.deleteFile(file);
         }
+        File parent = file.getParentFile();
+        if (parent != null && !IOProviderFactory.exists(parent)
+                && !IOProviderFactory.mkdirs(parent))
+            Log.w(TAG, "Failed to create directory(s) "
+                    + parent.getAbsolutePath());
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                IOProviderFactory.getOutputStream(file),
+                FileSystemUtils.UTF8_CHARSET), FileSystemUtils.BUF_SIZE)) {
+            writeKml(writer, true);
+        } catch (IOException e) {
+            FileSystemUtils.deleteFile(file);
+            throw e;
+        }
 
-        //TODO optimize? use XmlPullParser
-        KMLUtil.write(kml, file);
+        synchronized (this) {
+            if (this.isCancelled) {
+                Log.d(TAG, "Cancelled, in finalizeMarshal");
+                FileSystemUtils.deleteFile(file);
+                return;
+            }
+        }
         Log.d(TAG, "Exported: " + file.getAbsolutePath());
     }
 
@@ -21,11 +21,14 @@ import com.ekito.simpleKML.model.Placemark;
 import com.ekito.simpleKML.model.Style;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.ZipEntry;
@@ -139,10 +142,10 @@ public class KMZExportMarshal extends KMLExportMarshal {
             }
         }
 
-        //generate KML, zip it, include icons, attachments, etc
-        String kml = getKml();
-        if (FileSystemUtils.isEmpty(kml)) {
-            throw new IOException("Failed to serialize KML");
+        if (features.isEmpty())
+            throw new IOException("No features");
+        if (hasProgress()) {
+            this.progress.publish(94);
         }
 
         synchronized (this) {
@@ -151,16 +154,26 @@ public class KMZExportMarshal extends KMLExportMarshal {
                 return;
             }
         }
-        if (hasProgress()) {
-            this.progress.publish(94);
-        }
 
-        //TODO sits at 94% during serialization to KMZ/zip. Could serialize during marshall above
+        //stream KML into the zip, then include icons, attachments, etc
         File kmz = getFile();
         try (ZipOutputStream zos = FileSystemUtils.getZipOutputStream(kmz)) {
 
             //and doc.kml
-            addFile(zos, "doc.kml", kml);
+            zos.putNextEntry(new ZipEntry("doc.kml"));
+            // not closed, closing would close the zip stream
+            Writer writer = new BufferedWriter(new OutputStreamWriter(zos,
+                    FileSystemUtils.UTF8_CHARSET), FileSystemUtils.BUF_SIZE);
+            writeKml(writer, true);
+            writer.flush();
+            zos.closeEntry();
+
+            synchronized (this) {
+                if (this.isCancelled) {
+                    Log.d(TAG, "Cancelled, in finalizeMarshal");
+                    return;
+                }
+            }
 
             //loop and add all files
             for (Pair<String, String> file : _files) {
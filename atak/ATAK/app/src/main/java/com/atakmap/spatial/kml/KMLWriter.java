@@ -0,0 +1,912 @@
+
+package com.atakmap.spatial.kml;
+
+import com.atakmap.coremap.log.Log;
+import com.ekito.simpleKML.model.AbstractView;
+import com.ekito.simpleKML.model.BalloonStyle;
+import com.ekito.simpleKML.model.Boundary;
+import com.ekito.simpleKML.model.Camera;
+import com.ekito.simpleKML.model.ColorStyle;
+import com.ekito.simpleKML.model.Coordinate;
+import com.ekito.simpleKML.model.Coordinates;
+import com.ekito.simpleKML.model.Data;
+import com.ekito.simpleKML.model.Document;
+import com.ekito.simpleKML.model.ExtendedData;
+import com.ekito.simpleKML.model.Feature;
+import com.ekito.simpleKML.model.Folder;
+import com.ekito.simpleKML.model.Geometry;
+import com.ekito.simpleKML.model.GroundOverlay;
+import com.ekito.simpleKML.model.HotSpot;
+import com.ekito.simpleKML.model.Icon;
+import com.ekito.simpleKML.model.IconStyle;
+import com.ekito.simpleKML.model.Kml;
+import com.ekito.simpleKML.model.LabelStyle;
+import com.ekito.simpleKML.model.LatLonAltBox;
+import com.ekito.simpleKML.model.LatLonBox;
+import com.ekito.simpleKML.model.LatLonQuad;
+import com.ekito.simpleKML.model.LineString;
+import com.ekito.simpleKML.model.LineStyle;
+import com.ekito.simpleKML.model.LinearRing;
+import com.ekito.simpleKML.model.Link;
+import com.ekito.simpleKML.model.ListStyle;
+import com.ekito.simpleKML.model.Location;
+import com.ekito.simpleKML.model.Lod;
+import com.ekito.simpleKML.model.LookAt;
+import com.ekito.simpleKML.model.Model;
+import com.ekito.simpleKML.model.MultiGeometry;
+import com.ekito.simpleKML.model.MultiTrack;
+import com.ekito.simpleKML.model.NetworkLink;
+import com.ekito.simpleKML.model.Overlay;
+import com.ekito.simpleKML.model.Pair;
+import com.ekito.simpleKML.model.Placemark;
+import com.ekito.simpleKML.model.Point;
+import com.ekito.simpleKML.model.PolyStyle;
+import com.ekito.simpleKML.model.Polygon;
+import com.ekito.simpleKML.model.Region;
+import com.ekito.simpleKML.model.Schema;
+import com.ekito.simpleKML.model.SchemaData;
+import com.ekito.simpleKML.model.SimpleArrayData;
+import com.ekito.simpleKML.model.SimpleData;
+import com.ekito.simpleKML.model.SimpleField;
+import com.ekito.simpleKML.model.Style;
+import com.ekito.simpleKML.model.StyleMap;
+import com.ekito.simpleKML.model.StyleSelector;
+import com.ekito.simpleKML.model.TimePrimitive;
+import com.ekito.simpleKML.model.TimeSpan;
+import com.ekito.simpleKML.model.TimeStamp;
+import com.ekito.simpleKML.model.Track;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Writes the SimpleKML model directly to a {@link Writer}, element by element.
+ * This replaces the reflection driven {@link com.ekito.simpleKML.Serializer}
+ * for export, which composes the whole document in memory before any of it is
+ * written. Containers may be opened with {@link #startContainer(Feature)} and
+ * their features written one at a time, so the caller need only hold the
+ * feature currently being written.
+ *
+ * Output is equivalent to that of the SimpleKML serializer, including the
+ * <code>extendedData</code> element name that the SimpleKML reader expects, so
+ * exported files import back into ATAK unchanged. <code>gx</code> elements are
+ * written with the prefix declared on the root element.
+ */
+public class KMLWriter implements Flushable {
+
+    private static final String TAG = "KMLWriter";
+
+    private static final String XML_PROLOG = "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>";
+    private static final String INDENT = "   ";
+
+    /**
+     * The KML boolean fields are stored as strings and the getters map an
+     * unset value to false; the raw value is needed to omit unset elements.
+     */
+    private static final Field FEATURE_VISIBILITY = field(Feature.class,
+            "visibility");
+    private static final Field FEATURE_OPEN = field(Feature.class, "open");
+    private static final Field POINT_EXTRUDE = field(Point.class, "extrude");
+    private static final Field LINESTRING_EXTRUDE = field(LineString.class,
+            "extrude");
+    private static final Field LINESTRING_TESSELLATE = field(
+            LineString.class, "tessellate");
+    private static final Field LINEARRING_EXTRUDE = field(LinearRing.class,
+            "extrude");
+    private static final Field LINEARRING_TESSELLATE = field(
+            LinearRing.class, "tessellate");
+    private static final Field POLYGON_EXTRUDE = field(Polygon.class,
+            "extrude");
+    private static final Field POLYGON_TESSELLATE = field(Polygon.class,
+            "tessellate");
+    private static final Field POLYSTYLE_FILL = field(PolyStyle.class, "fill");
+    private static final Field POLYSTYLE_OUTLINE = field(PolyStyle.class,
+            "outline");
+    private static final Field LINESTYLE_LABEL_VISIBILITY = field(
+            LineStyle.class, "labelVisibility");
+    private static final Field NETWORKLINK_REFRESH_VISIBILITY = field(
+            NetworkLink.class, "refreshVisibility");
+    private static final Field NETWORKLINK_FLY_TO_VIEW = field(
+            NetworkLink.class, "flyToView");
+
+    private final Writer out;
+
+    /** containers opened via startContainer, innermost first */
+    private final Deque<Feature> containers = new ArrayDeque<>();
+
+    private int depth;
+
+    /** whether the innermost open element has child elements */
+    private boolean hasChildren;
+
+    public KMLWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes the XML prolog and opens the root <code>kml</code> element
+     */
+    public void startKml() throws IOException {
+        out.write(XML_PROLOG);
+        startTag("kml");
+        attribute("xmlns", "http://www.opengis.net/kml/2.2");
+        attribute("xmlns:gx", "http://www.google.com/kml/ext/2.2");
+        attribute("xmlns:kml", "http://www.opengis.net/kml/2.2");
+        attribute("xmlns:atom", "http://www.w3.org/2005/Atom");
+        attribute("xmlns:xsd", "https://www.w3.org/2001/XMLSchema");
+        endStartTag();
+    }
+
+    /**
+     * Closes any open containers and the root <code>kml</code> element, and
+     * flushes the underlying writer
+     */
+    public void endKml() throws IOException {
+        while (!containers.isEmpty())
+            endContainer();
+        end("kml");
+        out.write('\n');
+        out.flush();
+    }
+
+    /**
+     * Writes a complete KML document
+     * @param kml the document
+     */
+    public void write(Kml kml) throws IOException {
+        startKml();
+        if (kml.getNetworkLinkControl() != null)
+            Log.w(TAG, "NetworkLinkControl is not supported, skipping");
+        writeFeature(kml.getFeature());
+        endKml();
+    }
+
+    /**
+     * Opens a <code>Document</code> or <code>Folder</code> and writes its
+     * properties and styles. Any features already in the container's feature
+     * list are written; further features may then be streamed with
+     * {@link #writeFeature(Feature)} until {@link #endContainer()}.
+     *
+     * @param container the document or folder
+     */
+    public void startContainer(Feature container) throws IOException {
+        final List<Feature> features;
+        if (container instanceof Document)
+            features = ((Document) container).getFeatureList();
+        else if (container instanceof Folder)
+            features = ((Folder) container).getFeatureList();
+        else
+            throw new IllegalArgumentException(
+                    "Not a container: " + container);
+
+        start(tagName(container), container.getId());
+        writeFeatureElements(container);
+        containers.push(container);
+        if (features != null) {
+            for (Feature f : features)
+                writeFeature(f);
+        }
+    }
+
+    /**
+     * Closes the most recently opened container
+     */
+    public void endContainer() throws IOException {
+        final Feature container = containers.pop();
+        if (container instanceof Document) {
+            final List<Schema> schemas = ((Document) container)
+                    .getSchemaList();
+            if (schemas != null) {
+                for (Schema s : schemas)
+                    writeSchema(s);
+            }
+        }
+        end(tagName(container));
+    }
+
+    /**
+     * Writes a feature, including all of its children
+     * @param feature the feature
+     */
+    public void writeFeature(Feature feature) throws IOException {
+        if (feature == null)
+            return;
+
+        if (feature instanceof Document || feature instanceof Folder) {
+            startContainer(feature);
+            endContainer();
+            return;
+        }
+
+        final String tag = tagName(feature);
+        start(tag, feature.getId());
+        writeFeatureElements(feature);
+        if (feature instanceof Placemark) {
+            writeGeometries(((Placemark) feature).getGeometryList());
+        } else if (feature instanceof NetworkLink) {
+            final NetworkLink link = (NetworkLink) feature;
+            element("refreshVisibility",
+                    raw(NETWORKLINK_REFRESH_VISIBILITY, link,
+                            link.getRefreshVisibility()));
+            element("flyToView", raw(NETWORKLINK_FLY_TO_VIEW, link,
+                    link.getFlyToView()));
+            writeLink("Link", link.getLink());
+        } else if (feature instanceof Overlay) {
+            final Overlay overlay = (Overlay) feature;
+            element("color", overlay.getColor());
+            element("drawOrder", overlay.getDrawOrder());
+            writeIcon("Icon", overlay.getIcon());
+            if (overlay instanceof GroundOverlay) {
+                final GroundOverlay ground = (GroundOverlay) overlay;
+                element("altitude", ground.getAltitude());
+                element("altitudeMode", ground.getAltitudeMode());
+                writeLatLonBox(ground.getLatLonBox());
+                writeLatLonQuad(ground.getLatLonQuad());
+            } else {
+                Log.w(TAG, "Writing only common overlay properties for "
+                        + tag);
+            }
+        }
+        end(tag);
+    }
+
+    /**
+     * Writes a <code>Style</code> or <code>StyleMap</code>
+     * @param selector the style
+     */
+    public void writeStyleSelector(StyleSelector selector)
+            throws IOException {
+        if (selector instanceof Style)
+            writeStyle((Style) selector);
+        else if (selector instanceof StyleMap)
+            writeStyleMap((StyleMap) selector);
+        else if (selector != null)
+            Log.w(TAG, "Unsupported style selector: "
+                    + selector.getClass().getSimpleName());
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**************************************************************************/
+    // Features
+
+    private static String tagName(Feature feature) {
+        // the KML element names match the SimpleKML class names
+        return feature.getClass().getSimpleName();
+    }
+
+    private void writeFeatureElements(Feature f) throws IOException {
+        element("name", f.getName());
+        element("visibility", raw(FEATURE_VISIBILITY, f, f.getVisibility()));
+        element("open", raw(FEATURE_OPEN, f, f.getOpen()));
+        element("atom:author", f.getAuthor());
+        final com.ekito.simpleKML.model.atom.Link authorLink = f
+                .getAuthorLink();
+        if (authorLink != null) {
+            startTag("atom:link");
+            attribute("href", authorLink.getHref());
+            endStartTag();
+            end("atom:link");
+        }
+        element("address", f.getAddress());
+        element("xal:AddressDetails", f.getAddressDetails());
+        element("phoneNumber", f.getPhoneNumber());
+        element("Snippet", f.getSnippet());
+        element("description", f.getDescription());
+        writeAbstractView(f.getAbstractView());
+        writeTimePrimitive(f.getTimePrimitive(), "");
+        element("styleUrl", f.getStyleUrl());
+        final List<StyleSelector> styles = f.getStyleSelector();
+        if (styles != null) {
+            for (StyleSelector s : styles)
+                writeStyleSelector(s);
+        }
+        writeRegion(f.getRegion());
+        writeExtendedData("extendedData", f.getExtendedData());
+    }
+
+    private void writeAbstractView(AbstractView view) throws IOException {
+        if (view instanceof Camera) {
+            final Camera c = (Camera) view;
+            start("Camera", c.getId());
+            writeTimePrimitive(c.getTimePrimitive(), "gx:");
+            element("longitude", c.getLongitude());
+            element("latitude", c.getLatitude());
+            element("altitude", c.getAltitude());
+            element("heading", c.getHeading());
+            element("tilt", c.getTilt());
+            element("roll", c.getRoll());
+            element("altitudeMode", c.getAltitudeMode());
+            end("Camera");
+        } else if (view instanceof LookAt) {
+            final LookAt l = (LookAt) view;
+            start("LookAt", l.getId());
+            writeTimePrimitive(l.getTimePrimitive(), "gx:");
+            element("longitude", l.getLongitude());
+            element("latitude", l.getLatitude());
+            element("altitude", l.getAltitude());
+            element("heading", l.getHeading());
+            element("tilt", l.getTilt());
+            element("range", l.getRange());
+            element("altitudeMode", l.getAltitudeMode());
+            end("LookAt");
+        }
+    }
+
+    private void writeTimePrimitive(TimePrimitive time, String prefix)
+            throws IOException {
+        if (time instanceof TimeStamp) {
+            start(prefix + "TimeStamp", time.getId());
+            element("when", ((TimeStamp) time).getWhen());
+            end(prefix + "TimeStamp");
+        } else if (time instanceof TimeSpan) {
+            final TimeSpan span = (TimeSpan) time;
+            start(prefix + "TimeSpan", time.getId());
+            element("begin", span.getBegin());
+            element("end", span.getEnd());
+            end(prefix + "TimeSpan");
+        }
+    }
+
+    private void writeRegion(Region region) throws IOException {
+        if (region == null)
+            return;
+        start("Region", region.getId());
+        final LatLonAltBox box = region.getLatLonAltBox();
+        if (box != null) {
+            start("LatLonAltBox", null);
+            element("north", box.getNorth());
+            element("south", box.getSouth());
+            element("east", box.getEast());
+            element("west", box.getWest());
+            element("minAltitude", box.getMinAltitude());
+            element("maxAltitude", box.getMaxAltitude());
+            element("altitudeMode", box.getAltitudeMode());
+            end("LatLonAltBox");
+        }
+        final Lod lod = region.getLod();
+        if (lod != null) {
+            start("Lod", null);
+            element("minLodPixels", lod.getMinLodPixels());
+            element("maxLodPixels", lod.getMaxLodPixels());
+            element("minFadeExtent", lod.getMinFadeExtent());
+            element("maxFadeExtent", lod.getMaxFadeExtent());
+            end("Lod");
+        }
+        end("Region");
+    }
+
+    private void writeExtendedData(String tag, ExtendedData data)
+            throws IOException {
+        if (data == null)
+            return;
+        start(tag, null);
+        final List<SchemaData> schemaData = data.getSchemaDataList();
+        if (schemaData != null) {
+            for (SchemaData sd : schemaData)
+                writeSchemaData(sd);
+        }
+        final List<Data> dataList = data.getDataList();
+        if (dataList != null) {
+            for (Data d : dataList) {
+                startTag("Data");
+                attribute("name", d.getName());
+                endStartTag();
+                element("displayName", d.getDisplayName());
+                element("value", d.getValue());
+                end("Data");
+            }
+        }
+        end(tag);
+    }
+
+    private void writeSchemaData(SchemaData sd) throws IOException {
+        startTag("SchemaData");
+        attribute("schemaUrl", sd.getSchemaUrl());
+        endStartTag();
+        final List<SimpleData> simpleData = sd.getSimpleDataList();
+        if (simpleData != null) {
+            for (SimpleData d : simpleData) {
+                newline();
+                out.write("<SimpleData");
+                attribute("name", d.getName());
+                out.write('>');
+                text(d.getValue());
+                out.write("</SimpleData>");
+                hasChildren = true;
+            }
+        }
+        final List<?> extension = sd.getSchemaDataExtension();
+        if (extension != null) {
+            for (Object o : extension) {
+                if (!(o instanceof SimpleArrayData))
+                    continue;
+                final SimpleArrayData array = (SimpleArrayData) o;
+                startTag("gx:SimpleArrayData");
+                attribute("name", array.getName());
+                endStartTag();
+                elements("gx:value", array.getValue());
+                end("gx:SimpleArrayData");
+            }
+        }
+        end("SchemaData");
+    }
+
+    private void writeSchema(Schema schema) throws IOException {
+        startTag("Schema");
+        attribute("id", schema.getId());
+        attribute("name", schema.getName());
+        endStartTag();
+        final List<SimpleField> fields = schema.getSimpleFieldList();
+        if (fields != null) {
+            for (SimpleField f : fields) {
+                startTag("SimpleField");
+                attribute("type", f.getType());
+                attribute("name", f.getName());
+                endStartTag();
+                element("displayName", f.getDisplayName());
+                end("SimpleField");
+            }
+        }
+        end("Schema");
+    }
+
+    private void writeLink(String tag, Link link) throws IOException {
+        if (link == null)
+            return;
+        start(tag, link.getId());
+        element("href", link.getHref());
+        element("refreshMode", link.getRefreshMode());
+        element("refreshInterval", link.getRefreshInterval());
+        element("viewRefreshMode", link.getViewRefreshMode());
+        element("viewRefreshTime", link.getViewRefreshTime());
+        element("viewBoundScale", link.getViewBoundScale());
+        element("viewFormat", link.getViewFormat());
+        element("httpQuery", link.getHttpQuery());
+        end(tag);
+    }
+
+    private void writeIcon(String tag, Icon icon) throws IOException {
+        if (icon == null)
+            return;
+        start(tag, icon.getId());
+        element("state", icon.getState());
+        element("href", icon.getHref());
+        end(tag);
+    }
+
+    private void writeLatLonBox(LatLonBox box) throws IOException {
+        if (box == null)
+            return;
+        start("LatLonBox", null);
+        element("north", box.getNorth());
+        element("south", box.getSouth());
+        element("east", box.getEast());
+        element("west", box.getWest());
+        element("rotation", box.getRotation());
+        end("LatLonBox");
+    }
+
+    private void writeLatLonQuad(LatLonQuad quad) throws IOException {
+        if (quad == null)
+            return;
+        start("gx:LatLonQuad", null);
+        writeCoordinates(quad.getCoordinates());
+        end("gx:LatLonQuad");
+    }
+
+    /**************************************************************************/
+    // Styles
+
+    private void writeStyle(Style style) throws IOException {
+        start("Style", style.getId());
+
+        final IconStyle icon = style.getIconStyle();
+        if (icon != null) {
+            start("IconStyle", icon.getId());
+            writeColorStyleElements(icon);
+            element("scale", icon.getScale());
+            element("heading", icon.getHeading());
+            writeIcon("Icon", icon.getIcon());
+            final HotSpot hotSpot = icon.getHotSpot();
+            if (hotSpot != null) {
+                startTag("hotSpot");
+                attribute("x", hotSpot.getX());
+                attribute("y", hotSpot.getY());
+                attribute("xunits", hotSpot.getXunits());
+                attribute("yunits", hotSpot.getYunits());
+                endStartTag();
+                end("hotSpot");
+            }
+            end("IconStyle");
+        }
+
+        final LabelStyle label = style.getLabelStyle();
+        if (label != null) {
+            start("LabelStyle", label.getId());
+            writeColorStyleElements(label);
+            element("scale", label.getScale());
+            end("LabelStyle");
+        }
+
+        final LineStyle line = style.getLineStyle();
+        if (line != null) {
+            start("LineStyle", line.getId());
+            writeColorStyleElements(line);
+            element("width", line.getWidth());
+            element("gx:outerColor", line.getOuterColor());
+            element("gx:outerWidth", line.getOuterWidth());
+            element("gx:physicalWidth", line.getPhysicalWidth());
+            element("gx:labelVisibility",
+                    raw(LINESTYLE_LABEL_VISIBILITY, line,
+                            line.getLabelVisibility()));
+            end("LineStyle");
+        }
+
+        final PolyStyle poly = style.getPolyStyle();
+        if (poly != null) {
+            start("PolyStyle", poly.getId());
+            writeColorStyleElements(poly);
+            element("fill", raw(POLYSTYLE_FILL, poly, poly.getFill()));
+            element("outline",
+                    raw(POLYSTYLE_OUTLINE, poly, poly.getOutline()));
+            end("PolyStyle");
+        }
+
+        final BalloonStyle balloon = style.getBalloonStyle();
+        if (balloon != null) {
+            start("BalloonStyle", balloon.getId());
+            writeColorStyleElements(balloon);
+            element("bgColor", balloon.getBgColor());
+            element("textColor", balloon.getTextColor());
+            element("text", balloon.getText());
+            element("displayMode", balloon.getDisplayMode());
+            end("BalloonStyle");
+        }
+
+        final ListStyle list = style.getListStyle();
+        if (list != null) {
+            start("ListStyle", list.getId());
+            writeColorStyleElements(list);
+            element("listItemType", list.getListItemType());
+            element("bgColor", list.getBgColor());
+            final List<Icon> icons = list.getItemIcon();
+            if (icons != null) {
+                for (Icon i : icons)
+                    writeIcon("ItemIcon", i);
+            }
+            end("ListStyle");
+        }
+
+        end("Style");
+    }
+
+    private void writeColorStyleElements(ColorStyle style)
+            throws IOException {
+        element("color", style.getColor());
+        element("colorMode", style.getColorMode());
+    }
+
+    private void writeStyleMap(StyleMap map) throws IOException {
+        start("StyleMap", map.getId());
+        final List<Pair> pairs = map.getPairList();
+        if (pairs != null) {
+            for (Pair p : pairs) {
+                start("Pair", p.getId());
+                element("key", p.getKey());
+                element("styleUrl", p.getStyleUrl());
+                if (p.getStyle() != null)
+                    writeStyle(p.getStyle());
+                end("Pair");
+            }
+        }
+        end("StyleMap");
+    }
+
+    /**************************************************************************/
+    // Geometries
+
+    private void writeGeometries(List<Geometry> geometries)
+            throws IOException {
+        if (geometries == null)
+            return;
+        for (Geometry g : geometries)
+            writeGeometry(g);
+    }
+
+    private void writeGeometry(Geometry geom) throws IOException {
+        if (geom instanceof Point) {
+            final Point p = (Point) geom;
+            start("Point", p.getId());
+            element("extrude", raw(POINT_EXTRUDE, p, p.getExtrude()));
+            element("altitudeMode", p.getAltitudeMode());
+            final Coordinate c = p.getCoordinates();
+            if (c != null) {
+                newline();
+                out.write("<coordinates>");
+                writeCoordinate(c);
+                out.write("</coordinates>");
+                hasChildren = true;
+            }
+            end("Point");
+        } else if (geom instanceof LineString) {
+            final LineString ls = (LineString) geom;
+            start("LineString", ls.getId());
+            element("gx:altitudeOffset", ls.getAltitudeOffset());
+            element("extrude", raw(LINESTRING_EXTRUDE, ls, ls.getExtrude()));
+            element("tessellate",
+                    raw(LINESTRING_TESSELLATE, ls, ls.getTessellate()));
+            element("altitudeMode", ls.getAltitudeMode());
+            element("gx:drawOrder", ls.getDrawOrder());
+            writeCoordinates(ls.getCoordinates());
+            end("LineString");
+        } else if (geom instanceof LinearRing) {
+            writeLinearRing((LinearRing) geom);
+        } else if (geom instanceof Polygon) {
+            final Polygon p = (Polygon) geom;
+            start("Polygon", p.getId());
+            element("extrude", raw(POLYGON_EXTRUDE, p, p.getExtrude()));
+            element("tessellate",
+                    raw(POLYGON_TESSELLATE, p, p.getTessellate()));
+            element("altitudeMode", p.getAltitudeMode());
+            writeBoundary("outerBoundaryIs", p.getOuterBoundaryIs());
+            final List<Boundary> inner = p.getInnerBoundaryIs();
+            if (inner != null) {
+                for (Boundary b : inner)
+                    writeBoundary("innerBoundaryIs", b);
+            }
+            end("Polygon");
+        } else if (geom instanceof MultiGeometry) {
+            final MultiGeometry mg = (MultiGeometry) geom;
+            start("MultiGeometry", mg.getId());
+            writeGeometries(mg.getGeometryList());
+            end("MultiGeometry");
+        } else if (geom instanceof Track) {
+            writeTrack((Track) geom);
+        } else if (geom instanceof MultiTrack) {
+            final MultiTrack mt = (MultiTrack) geom;
+            start("gx:MultiTrack", mt.getId());
+            element("altitudeMode", mt.getAltitudeMode());
+            element("gx:interpolate", mt.getInterpolate());
+            final List<Track> tracks = mt.getTrackList();
+            if (tracks != null) {
+                for (Track t : tracks)
+                    writeTrack(t);
+            }
+            end("gx:MultiTrack");
+        } else if (geom instanceof Model) {
+            writeModel((Model) geom);
+        } else if (geom != null) {
+            Log.w(TAG, "Unsupported geometry: "
+                    + geom.getClass().getSimpleName());
+        }
+    }
+
+    private void writeLinearRing(LinearRing ring) throws IOException {
+        start("LinearRing", ring.getId());
+        element("gx:altitudeOffset", ring.getAltitudeOffset());
+        element("extrude", raw(LINEARRING_EXTRUDE, ring, ring.getExtrude()));
+        element("tessellate",
+                raw(LINEARRING_TESSELLATE, ring, ring.getTessellate()));
+        element("altitudeMode", ring.getAltitudeMode());
+        writeCoordinates(ring.getCoordinates());
+        end("LinearRing");
+    }
+
+    private void writeBoundary(String tag, Boundary boundary)
+            throws IOException {
+        if (boundary == null)
+            return;
+        start(tag, null);
+        if (boundary.getLinearRing() != null)
+            writeLinearRing(boundary.getLinearRing());
+        end(tag);
+    }
+
+    private void writeTrack(Track track) throws IOException {
+        start("gx:Track", track.getId());
+        element("altitudeMode", track.getAltitudeMode());
+        elements("when", track.getWhen());
+        elements("gx:coord", track.getCoord());
+        elements("gx:angles", track.getAngles());
+        if (track.getModel() != null)
+            writeModel(track.getModel());
+        writeExtendedData("ExtendedData", track.getExtendedData());
+        end("gx:Track");
+    }
+
+    private void writeModel(Model model) throws IOException {
+        start("Model", model.getId());
+        element("altitudeMode", model.getAltitudeMode());
+        writeLocation("Location", model.getLocation());
+        // SimpleKML models orientation, scale and link as locations
+        writeLocation("Orientation", model.getOrientation());
+        writeLocation("Scale", model.getScale());
+        writeLocation("Link", model.getLink());
+        if (model.getResourceMap() != null)
+            Log.w(TAG, "Model ResourceMap is not supported, skipping");
+        end("Model");
+    }
+
+    private void writeLocation(String tag, Location location)
+            throws IOException {
+        if (location == null)
+            return;
+        start(tag, null);
+        element("longitude", location.getLongitude());
+        element("latitude", location.getLatitude());
+        element("altitude", location.getAltitude());
+        end(tag);
+    }
+
+    private void writeCoordinates(Coordinates coords) throws IOException {
+        if (coords == null || coords.getList() == null)
+            return;
+        newline();
+        out.write("<coordinates>");
+        for (Coordinate c : coords.getList())
+            writeCoordinate(c);
+        out.write("</coordinates>");
+        hasChildren = true;
+    }
+
+    /**
+     * Writes the coordinate in the same form as {@link Coordinate#toString()}
+     * without building the intermediate strings
+     */
+    private void writeCoordinate(Coordinate c) throws IOException {
+        out.write(String.valueOf(c.getLongitude()));
+        out.write(',');
+        out.write(String.valueOf(c.getLatitude()));
+        if (c.getAltitude() != null) {
+            out.write(',');
+            out.write(String.valueOf(c.getAltitude()));
+        }
+        out.write(' ');
+    }
+
+    /**************************************************************************/
+    // XML
+
+    private void newline() throws IOException {
+        out.write('\n');
+        for (int i = 0; i < depth; i++)
+            out.write(INDENT);
+    }
+
+    private void startTag(String tag) throws IOException {
+        newline();
+        out.write('<');
+        out.write(tag);
+    }
+
+    private void attribute(String name, Object value) throws IOException {
+        if (value == null)
+            return;
+        out.write(' ');
+        out.write(name);
+        out.write("=\"");
+        escape(String.valueOf(value), true);
+        out.write('"');
+    }
+
+    private void endStartTag() throws IOException {
+        out.write('>');
+        depth++;
+        hasChildren = false;
+    }
+
+    private void start(String tag, String id) throws IOException {
+        startTag(tag);
+        attribute("id", id);
+        endStartTag();
+    }
+
+    private void end(String tag) throws IOException {
+        depth--;
+        if (hasChildren)
+            newline();
+        out.write("</");
+        out.write(tag);
+        out.write('>');
+        hasChildren = true;
+    }
+
+    private void element(String tag, Object value) throws IOException {
+        if (value == null)
+            return;
+        newline();
+        out.write('<');
+        out.write(tag);
+        out.write('>');
+        text(String.valueOf(value));
+        out.write("</");
+        out.write(tag);
+        out.write('>');
+        hasChildren = true;
+    }
+
+    private void elements(String tag, List<String> values)
+            throws IOException {
+        if (values == null)
+            return;
+        for (String v : values)
+            element(tag, v);
+    }
+
+    private void text(String value) throws IOException {
+        if (value != null)
+            escape(value, false);
+    }
+
+    private void escape(String s, boolean attribute) throws IOException {
+        int start = 0;
+        final int len = s.length();
+        for (int i = 0; i < len; i++) {
+            final String entity;
+            switch (s.charAt(i)) {
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '"':
+                    entity = attribute ? "&quot;" : null;
+                    break;
+                default:
+                    entity = null;
+                    break;
+            }
+            if (entity == null)
+                continue;
+            out.write(s, start, i - start);
+            out.write(entity);
+            start = i + 1;
+        }
+        out.write(s, start, len - start);
+    }
+
+    /**
+     * Returns the raw value of a KML boolean field, or <code>null</code> if
+     * it is not set
+     *
+     * @param field the field
+     * @param owner the object owning the field
+     * @param value the value reported by the getter, used if the field
+     *              cannot be accessed
+     */
+    private static String raw(Field field, Object owner, Boolean value) {
+        if (field != null) {
+            try {
+                return (String) field.get(owner);
+            } catch (IllegalAccessException ignored) {
+            }
+        }
+        // the getter cannot distinguish unset from false
+        return Boolean.TRUE.equals(value) ? "true" : null;
+    }
+
+    private static Field field(Class<?> c, String name) {
+        try {
+            final Field f = c.getDeclaredField(name);
+            f.setAccessible(true);
+            return f;
+        } catch (Exception e) {
+            Log.w(TAG, "Unable to access " + c.getSimpleName() + "."
+                    + name, e);
+            return null;
+        }
+    }
+}
@@ -8,6 +8,9 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
@@ -15,6 +18,7 @@ import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
+import android.os.Bundle;
 
 import com.atakmap.MapViewMocker;
 import com.atakmap.android.ipc.AtakBroadcast;
@@ -29,8 +33,12 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
+import java.io.Serializable;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -279,6 +287,144 @@ public class ContactsTest {
         assertEquals(2, uids.size());
     }
 
+    Contact setupContact(String uid, String team, String role) {
+        Contact contact = setupContact(uid);
+        Bundle extras = mock(Bundle.class);
+        when(extras.getString("team")).thenReturn(team);
+        when(extras.getString("role")).thenReturn(role);
+        when(contact.getExtras()).thenReturn(extras);
+        when(contact.getUpdateStatus())
+                .thenReturn(Contact.UpdateStatus.CURRENT);
+        return contact;
+    }
+
+    @Test
+    public void getAllContactsInTeamAndWithRole() {
+        Contacts contactsUnderTest = setupContactStore();
+        Contact contact = setupContact(DEFAULT_CONTACT_ID, "Cyan", "HQ");
+        Contact altContact1 = setupContact(ALTERNATE_CONTACT_ID1, "Cyan",
+                "Medic");
+        Contact altContact2 = setupContact(ALTERNATE_CONTACT_ID2, null, "HQ");
+
+        contactsUnderTest.addContact(contact);
+        contactsUnderTest.addContact(altContact1);
+        contactsUnderTest.addContact(altContact2);
+
+        List<String> cyan = contactsUnderTest.getAllContactsInTeam("Cyan");
+        assertEquals(2, cyan.size());
+        assertTrue(cyan.contains(contact.getUid()));
+        assertTrue(cyan.contains(altContact1.getUid()));
+        assertEquals(Collections.singletonList(altContact2.getUid()),
+                contactsUnderTest.getAllContactsInTeam("none"));
+        assertTrue(contactsUnderTest.getAllContactsInTeam("Red").isEmpty());
+
+        List<String> hq = contactsUnderTest.getAllContactsWithRole("HQ");
+        assertEquals(2, hq.size());
+        assertTrue(hq.contains(contact.getUid()));
+        assertTrue(hq.contains(altContact2.getUid()));
+        assertEquals(3, contactsUnderTest
+                .getAllContactsWithStatus(Contact.UpdateStatus.CURRENT)
+                .size());
+    }
+
+    @Test
+    public void getAllContactsInTeam_ReflectsRemovalAndAttributeChange() {
+        Contacts contactsUnderTest = setupContactStore();
+        Contact contact = setupContact(DEFAULT_CONTACT_ID, "Cyan", "HQ");
+        Contact altContact1 = setupContact(ALTERNATE_CONTACT_ID1, "Cyan",
+                "HQ");
+
+        contactsUnderTest.addContact(contact);
+        contactsUnderTest.addContact(altContact1);
+        assertEquals(2, contactsUnderTest.getAllContactsInTeam("Cyan").size());
+
+        contactsUnderTest.removeContactByUuid(altContact1.getUid());
+        assertEquals(Collections.singletonList(contact.getUid()),
+                contactsUnderTest.getAllContactsInTeam("Cyan"));
+
+        // in place change, as signalled by Contact.setExtras()
+        when(contact.getExtras().getString("team")).thenReturn("Red");
+        Contacts.invalidateIndex();
+        assertTrue(contactsUnderTest.getAllContactsInTeam("Cyan").isEmpty());
+        assertEquals(Collections.singletonList(contact.getUid()),
+                contactsUnderTest.getAllContactsInTeam("Red"));
+    }
+
+    @Test
+    public void setExtras_InvalidatesIndex_OnlyWhenIndexedAttributeChanges() {
+        Bundle extras = mock(Bundle.class);
+        when(extras.getString("team")).thenReturn("Cyan");
+        when(extras.getString("role")).thenReturn("HQ");
+        Contact contact = new Contact("callsign", DEFAULT_CONTACT_ID,
+                extras) {
+            @Override
+            protected void refreshImpl() {
+            }
+        };
+        contact.setDispatch(false);
+        contact.setExtras(extras);
+
+        // a new stale time, as set on every unreliable PLI
+        long version = Contacts.getAttributeVersion();
+        when(extras.getLong("staleTime", 15000L)).thenReturn(30000L);
+        contact.setExtras(extras);
+        contact.setName("callsign");
+        assertEquals(version, Contacts.getAttributeVersion());
+
+        when(extras.getString("team")).thenReturn("Red");
+        contact.setExtras(extras);
+        assertTrue(Contacts.getAttributeVersion() > version);
+
+        version = Contacts.getAttributeVersion();
+        contact.setName("renamed");
+        assertTrue(Contacts.getAttributeVersion() > version);
+    }
+
+    @Test
+    public void getAllContactsWithStatus_ReflectsStatusChange() {
+        final Contacts contactsUnderTest = setupContactStore();
+        final Bundle extras = mock(Bundle.class);
+        final Contact contact = new Contact("callsign", DEFAULT_CONTACT_ID,
+                extras) {
+            @Override
+            protected void refreshImpl() {
+            }
+        };
+        contact.setDispatch(false);
+        final Serializable[] status = {
+                Contact.UpdateStatus.CURRENT
+        };
+        when(extras.get("updateStatus")).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return status[0];
+            }
+        });
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                // a concurrent reader rebuilding the index mid update
+                contactsUnderTest.getAllContactUuids();
+                status[0] = invocation.getArgument(1);
+                return null;
+            }
+        }).when(extras).putSerializable(eq("updateStatus"),
+                any(Serializable.class));
+
+        contactsUnderTest.addContact(contact);
+        assertEquals(Collections.singletonList(contact.getUid()),
+                contactsUnderTest.getAllContactsWithStatus(
+                        Contact.UpdateStatus.CURRENT));
+
+        contact.setUpdateStatus(Contact.UpdateStatus.STALE);
+        assertTrue(contactsUnderTest
+                .getAllContactsWithStatus(Contact.UpdateStatus.CURRENT)
+                .isEmpty());
+        assertEquals(Collections.singletonList(contact.getUid()),
+                contactsUnderTest.getAllContactsWithStatus(
+                        Contact.UpdateStatus.STALE));
+    }
+
     @Test
     public void containsContact_ReturnsFalse_WhenContactRemovedOnMapEvent() {
         MapEventDispatcher dispatcher = new MapEventDispatcher();
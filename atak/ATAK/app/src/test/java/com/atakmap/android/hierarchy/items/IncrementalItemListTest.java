@@ -0,0 +1,307 @@
+
+package com.atakmap.android.hierarchy.items;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.atakmap.android.hierarchy.HierarchyListFilter;
+import com.atakmap.android.hierarchy.HierarchyListItem;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class IncrementalItemListTest {
+
+    private static final boolean BENCHMARK_ENABLED = false;
+
+    private static final Comparator<HierarchyListItem> TITLE_COMP = new Comparator<HierarchyListItem>() {
+        @Override
+        public int compare(HierarchyListItem lhs, HierarchyListItem rhs) {
+            return lhs.getTitle().compareTo(rhs.getTitle());
+        }
+    };
+
+    /**
+     * Source which creates a list item titled after each key
+     */
+    private static class TestSource
+            implements IncrementalItemList.Source<String> {
+
+        final Map<String, HierarchyListItem> keys = new HashMap<>();
+        final Set<String> hidden = new HashSet<>();
+        int created;
+
+        HierarchyListItem put(String key) {
+            HierarchyListItem item = mock(HierarchyListItem.class);
+            when(item.getTitle()).thenReturn(key);
+            when(item.getUID()).thenReturn(key);
+            keys.put(key, item);
+            return item;
+        }
+
+        @Override
+        public Collection<String> getKeys() {
+            return new ArrayList<>(keys.keySet());
+        }
+
+        @Override
+        public boolean accept(String key) {
+            return !hidden.contains(key);
+        }
+
+        @Override
+        public HierarchyListItem createItem(String key) {
+            created++;
+            return keys.get(key);
+        }
+    }
+
+    private static List<String> titles(List<HierarchyListItem> items) {
+        List<String> ret = new ArrayList<>();
+        for (HierarchyListItem item : items)
+            ret.add(item.getTitle());
+        return ret;
+    }
+
+    @Test
+    public void first_update_sorts_all_items() {
+        TestSource source = new TestSource();
+        source.put("c");
+        source.put("a");
+        source.put("b");
+        IncrementalItemList<String> list = new IncrementalItemList<>(source);
+
+        assertEquals(Arrays.asList("a", "b", "c"),
+                titles(list.update(TITLE_COMP, null)));
+        assertEquals(3, source.created);
+    }
+
+    @Test
+    public void diffs_only_create_changed_items() {
+        TestSource source = new TestSource();
+        source.put("b");
+        source.put("d");
+        source.put("f");
+        IncrementalItemList<String> list = new IncrementalItemList<>(source);
+        list.update(TITLE_COMP, null);
+
+        source.put("a");
+        source.put("e");
+        source.keys.remove("d");
+        list.add("a");
+        list.add("e");
+        list.remove("d");
+
+        assertEquals(Arrays.asList("a", "b", "e", "f"),
+                titles(list.update(TITLE_COMP, null)));
+        assertEquals(5, source.created);
+
+        // No diffs - nothing is created
+        assertEquals(Arrays.asList("a", "b", "e", "f"),
+                titles(list.update(TITLE_COMP, null)));
+        assertEquals(5, source.created);
+    }
+
+    @Test
+    public void renamed_items_are_moved() {
+        TestSource source = new TestSource();
+        source.put("a");
+        HierarchyListItem b = source.put("b");
+        source.put("c");
+        source.put("d");
+        IncrementalItemList<String> list = new IncrementalItemList<>(source);
+        list.update(TITLE_COMP, null);
+
+        when(b.getTitle()).thenReturn("z");
+        assertEquals(Arrays.asList("a", "c", "d", "z"),
+                titles(list.update(TITLE_COMP, null)));
+
+        when(b.getTitle()).thenReturn("0");
+        assertEquals(Arrays.asList("0", "a", "c", "d"),
+                titles(list.update(TITLE_COMP, null)));
+        assertEquals(4, source.created);
+    }
+
+    @Test
+    public void new_order_and_invalidate_rebuild() {
+        TestSource source = new TestSource();
+        source.put("a");
+        source.put("b");
+        IncrementalItemList<String> list = new IncrementalItemList<>(source);
+        list.update(TITLE_COMP, null);
+
+        assertEquals(Arrays.asList("b", "a"), titles(list.update(
+                new Comparator<HierarchyListItem>() {
+                    @Override
+                    public int compare(HierarchyListItem lhs,
+                            HierarchyListItem rhs) {
+                        return rhs.getTitle().compareTo(lhs.getTitle());
+                    }
+                }, null)));
+        assertEquals(4, source.created);
+
+        list.invalidate();
+        list.update(TITLE_COMP, null);
+        assertEquals(6, source.created);
+    }
+
+    @Test
+    public void filter_and_contains() {
+        TestSource source = new TestSource();
+        source.put("a");
+        source.put("b");
+        source.put("c");
+        IncrementalItemList<String> list = new IncrementalItemList<>(source);
+
+        HierarchyListFilter filter = new HierarchyListFilter(null) {
+            @Override
+            public boolean accept(HierarchyListItem item) {
+                return !item.getTitle().equals("b");
+            }
+        };
+        List<HierarchyListItem> items = list.update(TITLE_COMP, filter);
+        assertEquals(Arrays.asList("a", "c"), titles(items));
+        assertTrue(list.contains("a"));
+        assertFalse(list.contains("b"));
+        assertFalse(list.contains("x"));
+
+        // Default filter accepts everything
+        List<HierarchyListItem> all = list.update(TITLE_COMP,
+                new HierarchyListFilter(null));
+        assertEquals(Arrays.asList("a", "b", "c"), titles(all));
+        assertTrue(list.contains("b"));
+
+        // Returned lists are copies
+        assertNotSame(all, list.update(TITLE_COMP, null));
+        assertSame(source.keys.get("a"), all.get(0));
+    }
+
+    @Test
+    public void accept_is_rechecked_without_diffs() {
+        TestSource source = new TestSource();
+        source.put("a");
+        source.put("b");
+        source.put("c");
+        source.hidden.add("c");
+        IncrementalItemList<String> list = new IncrementalItemList<>(source);
+        assertEquals(Arrays.asList("a", "b"),
+                titles(list.update(TITLE_COMP, null)));
+
+        // i.e. the "addToObjList" flag flipped while the item stays in
+        // the group, so there's no add or remove event
+        source.hidden.add("a");
+        source.hidden.remove("c");
+        assertEquals(Arrays.asList("b", "c"),
+                titles(list.update(TITLE_COMP, null)));
+        assertFalse(list.contains("a"));
+        assertTrue(list.contains("c"));
+
+        source.hidden.remove("a");
+        assertEquals(Arrays.asList("a", "b", "c"),
+                titles(list.update(TITLE_COMP, null)));
+        assertEquals(4, source.created);
+
+        // Hidden items which are removed are not brought back
+        source.hidden.add("b");
+        list.update(TITLE_COMP, null);
+        source.keys.remove("b");
+        list.remove("b");
+        source.hidden.remove("b");
+        assertEquals(Arrays.asList("a", "c"),
+                titles(list.update(TITLE_COMP, null)));
+    }
+
+    @Test
+    public void random_diffs_match_full_sort() {
+        Random r = new Random(2024);
+        TestSource source = new TestSource();
+        IncrementalItemList<String> list = new IncrementalItemList<>(source);
+        for (int i = 0; i < 200; i++)
+            source.put("item" + r.nextInt(1000));
+        list.update(TITLE_COMP, null);
+
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 10; i++) {
+                String key = "item" + r.nextInt(1000);
+                if (source.keys.containsKey(key)) {
+                    source.keys.remove(key);
+                    list.remove(key);
+                } else {
+                    source.put(key);
+                    list.add(key);
+                }
+            }
+            List<String> expected = new ArrayList<>(source.keys.keySet());
+            Collections.sort(expected);
+            assertEquals(expected, titles(list.update(TITLE_COMP, null)));
+        }
+    }
+
+    /**
+     * Compares a full re-sort of 20,000 items against applying diffs, at 100
+     * updates per refresh (one refresh per second). Disabled by default;
+     * enable locally to collect timings.
+     */
+    @Test
+    public void benchmark_20k_items() {
+        if (!BENCHMARK_ENABLED)
+            return;
+
+        final int count = 20000;
+        final int refreshes = 60;
+        final int updatesPerRefresh = 100;
+        Random r = new Random(1);
+        TestSource source = new TestSource();
+        for (int i = 0; i < count; i++)
+            source.put("item" + i);
+        IncrementalItemList<String> list = new IncrementalItemList<>(source);
+        list.update(TITLE_COMP, null);
+
+        long full = 0, incremental = 0;
+        for (int i = 0; i < refreshes; i++) {
+            for (int j = 0; j < updatesPerRefresh; j++) {
+                String key = "item" + r.nextInt(count);
+                source.keys.remove(key);
+                list.remove(key);
+                key = "item" + r.nextInt(count);
+                if (!source.keys.containsKey(key)) {
+                    source.put(key);
+                    list.add(key);
+                }
+            }
+
+            // Re-create and sort every item, as done prior to diffs
+            long start = System.nanoTime();
+            List<HierarchyListItem> items = new ArrayList<>();
+            for (String key : source.getKeys())
+                items.add(source.createItem(key));
+            Collections.sort(items, TITLE_COMP);
+            full += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            list.update(TITLE_COMP, null);
+            incremental += System.nanoTime() - start;
+        }
+
+        System.out.println("Full sort:   "
+                + (full / refreshes / 1000L) + "us per refresh");
+        System.out.println("Incremental: "
+                + (incremental / refreshes / 1000L) + "us per refresh");
+    }
+}
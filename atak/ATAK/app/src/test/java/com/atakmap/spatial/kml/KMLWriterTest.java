@@ -0,0 +1,338 @@
+
+package com.atakmap.spatial.kml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.ekito.simpleKML.Serializer;
+import com.ekito.simpleKML.model.Boundary;
+import com.ekito.simpleKML.model.Coordinate;
+import com.ekito.simpleKML.model.Coordinates;
+import com.ekito.simpleKML.model.Data;
+import com.ekito.simpleKML.model.Document;
+import com.ekito.simpleKML.model.ExtendedData;
+import com.ekito.simpleKML.model.Feature;
+import com.ekito.simpleKML.model.Folder;
+import com.ekito.simpleKML.model.Geometry;
+import com.ekito.simpleKML.model.GroundOverlay;
+import com.ekito.simpleKML.model.HotSpot;
+import com.ekito.simpleKML.model.Icon;
+import com.ekito.simpleKML.model.IconStyle;
+import com.ekito.simpleKML.model.Kml;
+import com.ekito.simpleKML.model.LatLonBox;
+import com.ekito.simpleKML.model.LineString;
+import com.ekito.simpleKML.model.LineStyle;
+import com.ekito.simpleKML.model.LinearRing;
+import com.ekito.simpleKML.model.Link;
+import com.ekito.simpleKML.model.MultiGeometry;
+import com.ekito.simpleKML.model.NetworkLink;
+import com.ekito.simpleKML.model.Placemark;
+import com.ekito.simpleKML.model.Point;
+import com.ekito.simpleKML.model.PolyStyle;
+import com.ekito.simpleKML.model.Polygon;
+import com.ekito.simpleKML.model.SchemaData;
+import com.ekito.simpleKML.model.SimpleArrayData;
+import com.ekito.simpleKML.model.SimpleData;
+import com.ekito.simpleKML.model.Style;
+import com.ekito.simpleKML.model.StyleSelector;
+import com.ekito.simpleKML.model.TimeStamp;
+import com.ekito.simpleKML.model.Track;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class KMLWriterTest {
+
+    private static final boolean BENCHMARK_ENABLED = false;
+
+    private static String serialize(Kml kml) throws Exception {
+        StringWriter sw = new StringWriter();
+        new Serializer().write(kml, sw);
+        return sw.toString();
+    }
+
+    private static String write(Kml kml) throws IOException {
+        StringWriter sw = new StringWriter();
+        new KMLWriter(sw).write(kml);
+        return sw.toString();
+    }
+
+    /**
+     * Reads the document back with the SimpleKML reader and serializes it
+     * again, so documents may be compared independent of formatting
+     */
+    private static String normalize(String kml) throws Exception {
+        return serialize(new Serializer().read(kml));
+    }
+
+    private static Placemark point(String uid, String name, double lat,
+            double lon) {
+        Placemark p = new Placemark();
+        p.setId(uid);
+        p.setName(name);
+        p.setStyleUrl("#style1");
+        p.setVisibility(1);
+        p.setDescription("<b>" + name + "</b> & \"friends\"");
+        Point pt = new Point();
+        pt.setAltitudeMode("absolute");
+        pt.setCoordinates(new Coordinate(lon, lat, 100.5));
+        p.setGeometryList(new ArrayList<Geometry>(
+                Collections.singletonList(pt)));
+
+        Data data = new Data();
+        data.setName("type");
+        data.setValue("a-f-G");
+        ExtendedData ed = new ExtendedData();
+        ed.setDataList(new ArrayList<>(Collections.singletonList(data)));
+        p.setExtendedData(ed);
+        return p;
+    }
+
+    private static LinearRing ring(String coords) {
+        LinearRing ring = new LinearRing();
+        ring.setCoordinates(new Coordinates(coords));
+        return ring;
+    }
+
+    private static Kml sampleKml() {
+        Style style = new Style();
+        style.setId("style1");
+        IconStyle iconStyle = new IconStyle();
+        iconStyle.setColor("ff00ff00");
+        iconStyle.setScale(1.5f);
+        Icon icon = new Icon();
+        icon.setHref("icons/marker.png");
+        iconStyle.setIcon(icon);
+        HotSpot hotSpot = new HotSpot();
+        hotSpot.setX(0.5d);
+        hotSpot.setY(0d);
+        hotSpot.setXunits("fraction");
+        hotSpot.setYunits("fraction");
+        iconStyle.setHotSpot(hotSpot);
+        style.setIconStyle(iconStyle);
+        LineStyle lineStyle = new LineStyle();
+        lineStyle.setColor("ff0000ff");
+        lineStyle.setWidth(3f);
+        style.setLineStyle(lineStyle);
+        PolyStyle polyStyle = new PolyStyle();
+        polyStyle.setColor("400000ff");
+        polyStyle.setFill(1);
+        style.setPolyStyle(polyStyle);
+
+        Placemark line = new Placemark();
+        line.setId("line1");
+        line.setName("Route");
+        LineString ls = new LineString();
+        ls.setTessellate(1);
+        ls.setCoordinates(new Coordinates("1.0,2.0,3.0 4.0,5.0 6.5,7.25,8.0"));
+        Polygon polygon = new Polygon();
+        Boundary outer = new Boundary();
+        outer.setLinearRing(ring("0.0,0.0 4.0,0.0 4.0,4.0 0.0,0.0"));
+        polygon.setOuterBoundaryIs(outer);
+        Boundary inner = new Boundary();
+        inner.setLinearRing(ring("1.0,1.0 2.0,1.0 2.0,2.0 1.0,1.0"));
+        polygon.setInnerBoundaryIs(new ArrayList<>(
+                Collections.singletonList(inner)));
+        MultiGeometry mg = new MultiGeometry();
+        mg.setGeometryList(new ArrayList<>(Arrays.asList(ls, polygon)));
+        line.setGeometryList(new ArrayList<Geometry>(
+                Collections.singletonList(mg)));
+
+        Placemark crumbs = new Placemark();
+        crumbs.setName("Track");
+        TimeStamp ts = new TimeStamp();
+        ts.setWhen("2020-01-01T00:00:00Z");
+        crumbs.setTimePrimitive(ts);
+        Track track = new Track();
+        track.setAltitudeMode("absolute");
+        track.setWhen(Arrays.asList("2020-01-01T00:00:00Z",
+                "2020-01-01T00:00:01Z"));
+        track.setCoord(Arrays.asList("1.0 2.0 3.0", "1.1 2.1 3.1"));
+        SimpleArrayData speed = new SimpleArrayData();
+        speed.setName("speed");
+        speed.setValue(Arrays.asList("1.0", "2.0"));
+        SimpleData simple = new SimpleData();
+        simple.setName("callsign");
+        simple.setValue("ALPHA");
+        SchemaData sd = new SchemaData();
+        sd.setSchemaUrl("#trackschema");
+        sd.setSimpleDataList(new ArrayList<>(
+                Collections.singletonList(simple)));
+        sd.setSchemaDataExtension(new ArrayList<>(
+                Collections.singletonList(speed)));
+        ExtendedData trackData = new ExtendedData();
+        trackData.setSchemaDataList(new ArrayList<>(
+                Collections.singletonList(sd)));
+        track.setExtendedData(trackData);
+        crumbs.setGeometryList(new ArrayList<Geometry>(
+                Collections.singletonList(track)));
+
+        NetworkLink nl = new NetworkLink();
+        nl.setName("Feed");
+        Link link = new Link();
+        link.setHref("https://example.com/feed.kml");
+        link.setRefreshMode("onInterval");
+        link.setRefreshInterval(300f);
+        nl.setLink(link);
+
+        GroundOverlay overlay = new GroundOverlay();
+        overlay.setName("Image");
+        Icon image = new Icon();
+        image.setHref("images/overlay.png");
+        overlay.setIcon(image);
+        LatLonBox box = new LatLonBox();
+        box.setNorth("1.0");
+        box.setSouth("0.0");
+        box.setEast("1.0");
+        box.setWest("0.0");
+        overlay.setLatLonBox(box);
+
+        Folder folder = new Folder();
+        folder.setName("Markers");
+        folder.setFeatureList(new ArrayList<Feature>(Arrays.asList(
+                point("uid-1", "Alpha", 1d, 2d),
+                point("uid-2", "Bravo <2>", -3.5d, 4.25d))));
+
+        Document document = new Document();
+        document.setName("export & test");
+        document.setOpen(1);
+        document.setStyleSelector(new ArrayList<StyleSelector>(
+                Collections.singletonList(style)));
+        document.setFeatureList(new ArrayList<>(Arrays.asList(line, crumbs,
+                nl, overlay, folder)));
+
+        Kml kml = new Kml();
+        kml.setFeature(document);
+        return kml;
+    }
+
+    @Test
+    public void output_matches_serializer() throws Exception {
+        Kml kml = sampleKml();
+        // the serializer clears the gx prefix on gx:Track, which leaves its
+        // own output unreadable; that declaration is the only difference
+        String expected = serialize(kml).replace(" xmlns:gx=\"\"", "");
+        assertEquals(expected,
+                normalize(write(kml)).replace(" xmlns:gx=\"\"", ""));
+    }
+
+    @Test
+    public void unset_elements_are_omitted() throws Exception {
+        Placemark p = new Placemark();
+        p.setName("plain");
+        Kml kml = new Kml();
+        kml.setFeature(p);
+
+        String out = write(kml);
+        assertTrue(out.startsWith("<?xml"));
+        assertTrue(out.contains("<name>plain</name>"));
+        assertFalse(out.contains("<visibility>"));
+        assertFalse(out.contains("<open>"));
+        assertFalse(out.contains("extendedData"));
+    }
+
+    @Test
+    public void text_and_attributes_are_escaped() throws Exception {
+        Placemark p = new Placemark();
+        p.setId("a\"b&c");
+        p.setName("<x> & y");
+        Kml kml = new Kml();
+        kml.setFeature(p);
+
+        String out = write(kml);
+        assertTrue(out.contains("id=\"a&quot;b&amp;c\""));
+        assertTrue(out.contains("<name>&lt;x&gt; &amp; y</name>"));
+        Placemark read = (Placemark) new Serializer().read(out).getFeature();
+        assertEquals("a\"b&c", read.getId());
+        assertEquals("<x> & y", read.getName());
+    }
+
+    @Test
+    public void features_stream_into_open_container() throws Exception {
+        Document document = new Document();
+        document.setName("streamed");
+
+        StringWriter sw = new StringWriter();
+        KMLWriter writer = new KMLWriter(sw);
+        writer.startKml();
+        writer.startContainer(document);
+        for (int i = 0; i < 3; i++)
+            writer.writeFeature(point("uid-" + i, "P" + i, i, i));
+        writer.endKml();
+
+        Document read = (Document) new Serializer().read(sw.toString())
+                .getFeature();
+        assertEquals("streamed", read.getName());
+        assertEquals(3, read.getFeatureList().size());
+        assertEquals("P2", read.getFeatureList().get(2).getName());
+        assertEquals("uid-2", read.getFeatureList().get(2).getId());
+    }
+
+    /**
+     * Compares export of 50,000 placemarks via the SimpleKML serializer and
+     * the streaming writer. Disabled by default; enable locally to collect
+     * timings.
+     */
+    @Test
+    public void benchmark_50k_placemarks() throws Exception {
+        if (!BENCHMARK_ENABLED)
+            return;
+
+        final int count = 50000;
+        List<Feature> features = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            features.add(point("uid-" + i, "Marker " + i,
+                    (i % 180) - 90d, (i % 360) - 180d));
+        Document document = new Document();
+        document.setName("benchmark");
+        document.setFeatureList(features);
+        Kml kml = new Kml();
+        kml.setFeature(document);
+
+        CountingWriter sink = new CountingWriter();
+        long start = System.nanoTime();
+        new Serializer().write(kml, sink);
+        long serializer = System.nanoTime() - start;
+        long serializerChars = sink.count;
+
+        sink = new CountingWriter();
+        start = System.nanoTime();
+        new KMLWriter(sink).write(kml);
+        long writer = System.nanoTime() - start;
+
+        System.out.println("Serializer: " + (serializer / 1000000L) + "ms, "
+                + serializerChars + " chars");
+        System.out.println("KMLWriter:  " + (writer / 1000000L) + "ms, "
+                + sink.count + " chars");
+    }
+
+    private static final class CountingWriter extends Writer {
+        long count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -287,4 +287,88 @@ public class ParallelTrackExecutorServiceTest {
 
         shutdownService(service);
     }
+
+    @Test
+    public void coalescing_replaces_pending_task() {
+        ParallelTrackExecutorService service = new ParallelTrackExecutorService(
+                1);
+        final Gate startGate = submitGate(service);
+
+        boolean[] ran = {
+                false, false, false
+        };
+        Future<?> f0 = service.submitCoalescing(createTask(ran, 0), "uid",
+                1000L);
+        Future<?> f1 = service.submitCoalescing(createTask(ran, 1), "uid",
+                2000L);
+        Assert.assertSame(f0, f1);
+        Assert.assertEquals(1, service.getCoalescedCount());
+        Assert.assertTrue(service.getQueueDepth() >= 1);
+
+        // an older update does not replace a newer one
+        Future<?> f2 = service.submitCoalescing(createTask(ran, 2), "uid",
+                1500L);
+        Assert.assertNotSame(f1, f2);
+        Assert.assertEquals(1, service.getCoalescedCount());
+
+        startGate.start();
+        try {
+            f0.get();
+            f2.get();
+        } catch (ExecutionException | InterruptedException e) {
+            Assert.fail();
+        }
+
+        shutdownService(service);
+        Assert.assertFalse(ran[0]);
+        Assert.assertTrue(ran[1]);
+        Assert.assertTrue(ran[2]);
+        Assert.assertEquals(0, service.getQueueDepth());
+    }
+
+    @Test
+    public void coalescing_keeps_other_tasks() {
+        ParallelTrackExecutorService service = new ParallelTrackExecutorService(
+                1);
+        final Gate startGate = submitGate(service);
+
+        boolean[] ran = {
+                false, false, false, false
+        };
+        // tasks submitted without coalescing are never replaced
+        service.submit(createTask(ran, 0), "uid");
+        service.submitCoalescing(createTask(ran, 1), "uid", 1000L);
+        // nor are tasks on other tracks
+        service.submitCoalescing(createTask(ran, 2), "other", 2000L);
+        // nor do they replace a coalescable task
+        service.submit(createTask(ran, 3), "uid");
+        Assert.assertEquals(0, service.getCoalescedCount());
+
+        startGate.start();
+        shutdownService(service);
+        for (boolean r : ran)
+            Assert.assertTrue(r);
+    }
+
+    @Test
+    public void coalescing_skips_cancelled_task() {
+        ParallelTrackExecutorService service = new ParallelTrackExecutorService(
+                1);
+        final Gate startGate = submitGate(service);
+
+        boolean[] ran = {
+                false, false
+        };
+        Future<?> f0 = service.submitCoalescing(createTask(ran, 0), "uid",
+                1000L);
+        Assert.assertTrue(f0.cancel(false));
+        Future<?> f1 = service.submitCoalescing(createTask(ran, 1), "uid",
+                2000L);
+        Assert.assertNotSame(f0, f1);
+
+        startGate.start();
+        shutdownService(service);
+        Assert.assertFalse(ran[0]);
+        Assert.assertTrue(ran[1]);
+    }
 }
@@ -30,9 +30,12 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class ElevationManagerTest extends KernelJniTest {
+    private static final boolean BENCHMARK_ENABLED = false;
+
     private static final Set<ElevationSource> sources = Collections2
             .<ElevationSource> newIdentityHashSet();
 
@@ -217,6 +220,108 @@ public class ElevationManagerTest extends KernelJniTest {
         assertTrue(fetched > 0);
     }
 
+    @Test
+    public void get_elevation_array_matches_point_queries() {
+        final int numPostsLat = 9;
+        final int numPostsLng = 9;
+        // spans the w078n35, w077n35 and w077n34 tiles, and areas without coverage
+        Collection<GeoPoint> pts = createGeopointMesh(35.2, -78.2, 33.2, -76.2,
+                numPostsLat, numPostsLng);
+        final int count = pts.size();
+        double[] lat = new double[count];
+        double[] lng = new double[count];
+        int i = 0;
+        for (GeoPoint p : pts) {
+            lat[i] = p.getLatitude();
+            lng[i++] = p.getLongitude();
+        }
+
+        double[] hae = new double[count];
+        String[] sources = new String[count];
+        final boolean done = ElevationManager.getElevation(lat, lng, count,
+                null, hae, sources);
+        assertFalse(done);
+
+        for (i = 0; i < count; i++) {
+            GeoPointMetaData md = new GeoPointMetaData();
+            final double expected = ElevationManager.getElevation(lat[i],
+                    lng[i], null, md);
+            assertEquals(expected, hae[i], 0.0);
+            if (Double.isNaN(expected))
+                assertNull(sources[i]);
+            else
+                assertEquals(md.getAltitudeSource(), sources[i]);
+        }
+
+        // a second query is answered from the cached chunks
+        double[] cached = new double[count];
+        ElevationManager.getElevation(lat, lng, count, null, cached, null);
+        assertArrayEquals(hae, cached, 0.0);
+    }
+
+    @Test
+    public void get_elevation_array_invalid_locations() {
+        double[] lat = new double[] {
+                34.5, Double.NaN, 33.5
+        };
+        double[] lng = new double[] {
+                -77.5, -77.5, -76.5
+        };
+        double[] hae = new double[3];
+        String[] sources = new String[3];
+        assertFalse(ElevationManager.getElevation(lat, lng, 3, null, hae,
+                sources));
+        assertEquals(34567, hae[0], 0.0);
+        assertTrue(Double.isNaN(hae[1]));
+        assertNull(sources[1]);
+        assertEquals(56789, hae[2], 0.0);
+        assertEquals("highres", sources[2]);
+
+        // only the first count locations are queried
+        assertTrue(ElevationManager.getElevation(lat, lng, 1, null, hae,
+                null));
+        assertTrue(ElevationManager.getElevation(lat, lng, 0, null, hae,
+                null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void get_elevation_array_short_output_throws() {
+        ElevationManager.getElevation(new double[2], new double[2], 2, null,
+                new double[1], null);
+    }
+
+    @Test
+    public void benchmark_get_elevation_profile() {
+        if (!BENCHMARK_ENABLED)
+            return;
+
+        // 10k point profile across the w078n35 and w077n35 tiles
+        final int count = 10000;
+        double[] lat = new double[count];
+        double[] lng = new double[count];
+        for (int i = 0; i < count; i++) {
+            lat[i] = 34.1 + (0.8 * i) / count;
+            lng[i] = -77.8 + (1.6 * i) / count;
+        }
+        double[] hae = new double[count];
+        String[] sources = new String[count];
+
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++)
+                hae[i] = ElevationManager.getElevation(lat[i], lng[i], null);
+            final long pointNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            ElevationManager.getElevation(lat, lng, count, null, hae, sources);
+            final long arrayNanos = System.nanoTime() - start;
+
+            System.out.println("ElevationManagerTest: " + count
+                    + " point profile, per point " + (pointNanos / 1000000L)
+                    + "ms, array " + (arrayNanos / 1000000L) + "ms");
+        }
+    }
+
     @Test
     public void chunk_query_order_resolution_asc() {
         ElevationSource.QueryParameters params = new ElevationSource.QueryParameters();
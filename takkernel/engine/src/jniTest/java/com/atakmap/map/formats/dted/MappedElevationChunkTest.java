@@ -0,0 +1,156 @@
+package com.atakmap.map.formats.dted;
+
+import android.util.LruCache;
+
+import com.atakmap.android.androidtest.util.FileUtils;
+import com.atakmap.map.elevation.ElevationChunk;
+import com.atakmap.map.elevation.ElevationData;
+import com.atakmap.map.elevation.ElevationManager;
+import com.atakmap.map.gdal.GdalElevationChunk;
+import com.atakmap.map.gdal.GdalLibrary;
+
+import gov.tak.test.KernelJniTest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+public class MappedElevationChunkTest extends KernelJniTest
+{
+    private static final boolean BENCHMARK_ENABLED = false;
+
+    // SRTM3
+    private static final int NUM_POSTS = 1201;
+
+    static File writeHgt(File dir, int lat, int lng) throws IOException
+    {
+        final String name = String.format("%s%02d%s%03d.hgt",
+                (lat < 0) ? "S" : "N", Math.abs(lat),
+                (lng < 0) ? "W" : "E", Math.abs(lng));
+        final ByteBuffer buf = ByteBuffer.allocate(NUM_POSTS * NUM_POSTS * 2).order(ByteOrder.BIG_ENDIAN);
+        for (int row = 0; row < NUM_POSTS; row++)
+            for (int col = 0; col < NUM_POSTS; col++)
+                buf.putShort((row * NUM_POSTS + col) * 2, (short) (100 + ((row * 7 + col * 3) % 500)));
+        final File f = new File(dir, name);
+        try (FileOutputStream fos = new FileOutputStream(f))
+        {
+            fos.write(buf.array());
+        }
+        return f;
+    }
+
+    @Test
+    public void sample_is_post_plus_geoid() throws IOException
+    {
+        try (FileUtils.AutoDeleteFile testDir = FileUtils.AutoDeleteFile.createTempDir(getTestContext()))
+        {
+            final File f = writeHgt(testDir.file, 34, -81);
+            final ElevationChunk chunk = MappedElevationChunk.create(f, "SRTM3", 90d, new MappedPostCellCache(1));
+            Assert.assertNotNull(chunk);
+            try
+            {
+                Assert.assertEquals("SRTM3", chunk.getType());
+                Assert.assertEquals(ElevationData.MODEL_TERRAIN, chunk.getFlags());
+
+                // north-west post, first row and column of the file
+                final double expected = 100d + ElevationManager.getGeoidHeight(35d, -81d);
+                Assert.assertEquals(expected, chunk.sample(35d, -81d), 1e-6);
+                Assert.assertTrue(Double.isNaN(chunk.sample(35.5d, -81d)));
+
+                final double[] lla = new double[] {
+                        -81d, 35d, Double.NaN,
+                        -80.5d, 34.5d, Double.NaN,
+                };
+                Assert.assertTrue(chunk.sample(lla, 0, 2));
+                Assert.assertEquals(expected, lla[2], 1e-6);
+                Assert.assertEquals(chunk.sample(34.5d, -80.5d), lla[5], 1e-6);
+            } finally
+            {
+                chunk.dispose();
+            }
+        }
+    }
+
+    @Test
+    public void benchmark_profile_mapped_vs_gdal() throws IOException
+    {
+        if (!BENCHMARK_ENABLED)
+            return;
+
+        GdalLibrary.init();
+        try (FileUtils.AutoDeleteFile testDir = FileUtils.AutoDeleteFile.createTempDir(getTestContext()))
+        {
+            // 4x4 block of cells, with a chunk cache of 8, so a profile that
+            // wanders across the block revisits evicted cells
+            final int cells = 4;
+            final File[][] files = new File[cells][cells];
+            for (int i = 0; i < cells; i++)
+                for (int j = 0; j < cells; j++)
+                    files[i][j] = writeHgt(testDir.file, 34 + i, -81 + j);
+
+            final int count = 10000;
+            final double[] lat = new double[count];
+            final double[] lng = new double[count];
+            final Random r = new Random(1L);
+            double la = 34.5d;
+            double ln = -80.5d;
+            for (int i = 0; i < count; i++)
+            {
+                la = Math.max(34d, Math.min(34d + cells - 1e-6, la + (r.nextDouble() - 0.5d) * 0.05d));
+                ln = Math.max(-81d, Math.min(-81d + cells - 1e-6, ln + (r.nextDouble() - 0.5d) * 0.05d));
+                lat[i] = la;
+                lng[i] = ln;
+            }
+
+            // GDAL, as the SRTM tile source does it
+            int gdalOpens = 0;
+            final LruCache<File, ElevationChunk> gdalChunks = new LruCache<File, ElevationChunk>(8)
+            {
+                @Override
+                protected void entryRemoved(boolean evicted, File key, ElevationChunk oldValue, ElevationChunk newValue)
+                {
+                    oldValue.dispose();
+                }
+            };
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++)
+            {
+                final File f = files[(int) (lat[i] - 34d)][(int) (lng[i] + 81d)];
+                ElevationChunk chunk = gdalChunks.get(f);
+                if (chunk == null)
+                {
+                    chunk = GdalElevationChunk.create(GdalLibrary.openDatasetFromFile(f), true, "SRTM3", 90d, ElevationData.MODEL_TERRAIN);
+                    gdalOpens++;
+                    gdalChunks.put(f, chunk);
+                }
+                chunk.sample(lat[i], lng[i]);
+            }
+            final long gdalNanos = System.nanoTime() - start;
+            gdalChunks.evictAll();
+
+            final MappedPostCellCache cache = new MappedPostCellCache(8);
+            final ElevationChunk[][] mappedChunks = new ElevationChunk[cells][cells];
+            for (int i = 0; i < cells; i++)
+                for (int j = 0; j < cells; j++)
+                    mappedChunks[i][j] = MappedElevationChunk.create(files[i][j], "SRTM3", 90d, cache);
+            final long baseOpens = cache.getOpenCount();
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++)
+                mappedChunks[(int) (lat[i] - 34d)][(int) (lng[i] + 81d)].sample(lat[i], lng[i]);
+            final long mappedNanos = System.nanoTime() - start;
+            for (int i = 0; i < cells; i++)
+                for (int j = 0; j < cells; j++)
+                    mappedChunks[i][j].dispose();
+
+            System.out.println("MappedElevationChunkTest: " + count + " point profile, gdal "
+                    + (gdalNanos / count) + "ns/sample, " + gdalOpens + " datasets opened; mapped "
+                    + (mappedNanos / count) + "ns/sample, " + (cache.getOpenCount() - baseOpens) + " cells mapped");
+        }
+    }
+}
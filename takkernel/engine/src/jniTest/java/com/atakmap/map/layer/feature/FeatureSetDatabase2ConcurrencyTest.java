@@ -0,0 +1,219 @@
+package com.atakmap.map.layer.feature;
+
+import com.atakmap.android.androidtest.util.FileUtils;
+import com.atakmap.map.layer.feature.datastore.FeatureSetDatabase2;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.feature.geometry.GeometryFactory;
+import com.atakmap.map.layer.feature.geometry.Point;
+import com.atakmap.map.layer.feature.style.BasicPointStyle;
+import com.atakmap.util.Disposer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import gov.tak.test.KernelJniTest;
+
+public class FeatureSetDatabase2ConcurrencyTest extends KernelJniTest
+{
+    private static final boolean BENCHMARK_ENABLED = false;
+
+    @Test
+    public void concurrent_queries_match_serial_queries() throws Exception
+    {
+        try (FileUtils.AutoDeleteFile f = FileUtils.AutoDeleteFile.createTempFile(getTestContext()))
+        {
+            final FeatureSetDatabase2 datastore = new FeatureSetDatabase2(f.file);
+            try (Disposer disposer = new Disposer(datastore))
+            {
+                populate(datastore, 10000);
+
+                final Envelope[] regions = regions(64, 5d, 1L);
+                final int[] expected = new int[regions.length];
+                for (int i = 0; i < regions.length; i++)
+                    expected[i] = count(datastore, regions[i]);
+
+                final int[][] actual = new int[4][];
+                ExecutorService executor = Executors.newFixedThreadPool(actual.length);
+                try
+                {
+                    List<Future<int[]>> results = new ArrayList<>(actual.length);
+                    for (int t = 0; t < actual.length; t++)
+                    {
+                        results.add(executor.submit(new Callable<int[]>()
+                        {
+                            @Override
+                            public int[] call() throws Exception
+                            {
+                                final int[] counts = new int[regions.length];
+                                for (int i = 0; i < regions.length; i++)
+                                    counts[i] = count(datastore, regions[i]);
+                                return counts;
+                            }
+                        }));
+                    }
+                    for (int t = 0; t < actual.length; t++)
+                        actual[t] = results.get(t).get();
+                } finally
+                {
+                    executor.shutdown();
+                }
+
+                for (int[] counts : actual)
+                    Assert.assertArrayEquals(expected, counts);
+            }
+        }
+    }
+
+    @Test
+    public void queries_observe_edits_made_under_modify_lock() throws Exception
+    {
+        try (FileUtils.AutoDeleteFile f = FileUtils.AutoDeleteFile.createTempFile(getTestContext()))
+        {
+            final FeatureSetDatabase2 datastore = new FeatureSetDatabase2(f.file);
+            try (Disposer disposer = new Disposer(datastore))
+            {
+                final long fsid = populate(datastore, 100);
+                final Envelope all = new Envelope(-180d, -90d, 0d, 180d, 90d, 0d);
+                Assert.assertEquals(100, count(datastore, all));
+
+                datastore.acquireModifyLock(true);
+                try
+                {
+                    datastore.insertFeature(new Feature(fsid, FeatureDataStore2.FEATURE_ID_NONE, "inserted",
+                            new Point(0d, 0d), new BasicPointStyle(0xFFFFFFFF, 16f), new AttributeSet(),
+                            FeatureDataStore2.TIMESTAMP_NONE, FeatureDataStore2.FEATURE_VERSION_NONE));
+                    Assert.assertEquals(101, count(datastore, all));
+                } finally
+                {
+                    datastore.releaseModifyLock();
+                }
+                Assert.assertEquals(101, count(datastore, all));
+            }
+        }
+    }
+
+    @Test
+    public void benchmark_concurrent_queries() throws Exception
+    {
+        if (!BENCHMARK_ENABLED)
+            return;
+
+        try (FileUtils.AutoDeleteFile f = FileUtils.AutoDeleteFile.createTempFile(getTestContext()))
+        {
+            final FeatureSetDatabase2 datastore = new FeatureSetDatabase2(f.file);
+            try (Disposer disposer = new Disposer(datastore))
+            {
+                populate(datastore, 1000000);
+
+                final Envelope[] regions = regions(256, 2d, 2L);
+                for (int threads = 1; threads <= 8; threads *= 2)
+                {
+                    ExecutorService executor = Executors.newFixedThreadPool(threads);
+                    try
+                    {
+                        final long start = System.nanoTime();
+                        List<Future<Integer>> results = new ArrayList<>(threads);
+                        for (int t = 0; t < threads; t++)
+                        {
+                            results.add(executor.submit(new Callable<Integer>()
+                            {
+                                @Override
+                                public Integer call() throws Exception
+                                {
+                                    int features = 0;
+                                    for (Envelope region : regions)
+                                        features += count(datastore, region);
+                                    return features;
+                                }
+                            }));
+                        }
+                        long features = 0L;
+                        for (Future<Integer> result : results)
+                            features += result.get();
+                        final long elapsed = System.nanoTime() - start;
+
+                        final int queries = threads * regions.length;
+                        System.out.println("FeatureSetDatabase2ConcurrencyTest: " + threads + " threads "
+                                + queries + " queries " + features + " features in " + (elapsed / 1000000L)
+                                + "ms throughput= " + (queries * 1000000000L / elapsed) + " queries/s");
+                    } finally
+                    {
+                        executor.shutdown();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts the specified number of point features, uniformly distributed over the globe, into a new feature set.
+     */
+    private static long populate(FeatureDataStore2 datastore, int count) throws Exception
+    {
+        datastore.acquireModifyLock(true);
+        try
+        {
+            final long fsid = datastore.insertFeatureSet(new FeatureSet("test", "test", "points", 0d, 0d));
+            final Random random = new Random(0L);
+            for (int i = 0; i < count; i++)
+            {
+                datastore.insertFeature(new Feature(fsid, FeatureDataStore2.FEATURE_ID_NONE, "feature" + i,
+                        new Point(random.nextDouble() * 360d - 180d, random.nextDouble() * 180d - 90d),
+                        new BasicPointStyle(0xFFFFFFFF, 16f), new AttributeSet(),
+                        FeatureDataStore2.TIMESTAMP_NONE, FeatureDataStore2.FEATURE_VERSION_NONE));
+            }
+            return fsid;
+        } finally
+        {
+            datastore.releaseModifyLock();
+        }
+    }
+
+    private static Envelope[] regions(int count, double size, long seed)
+    {
+        final Random random = new Random(seed);
+        final Envelope[] regions = new Envelope[count];
+        for (int i = 0; i < count; i++)
+        {
+            final double x = random.nextDouble() * (360d - size) - 180d;
+            final double y = random.nextDouble() * (180d - size) - 90d;
+            regions[i] = new Envelope(x, y, 0d, x + size, y + size, 0d);
+        }
+        return regions;
+    }
+
+    private static int count(FeatureDataStore2 datastore, Envelope region) throws DataStoreException
+    {
+        FeatureDataStore2.FeatureQueryParameters params = new FeatureDataStore2.FeatureQueryParameters();
+        params.spatialFilter = GeometryFactory.polygonFromQuad(
+                region.minX, region.maxY,
+                region.maxX, region.maxY,
+                region.maxX, region.minY,
+                region.minX, region.minY);
+
+        int retval = 0;
+        FeatureCursor result = null;
+        try
+        {
+            result = datastore.queryFeatures(params);
+            while (result.moveToNext())
+            {
+                result.get();
+                retval++;
+            }
+        } finally
+        {
+            if (result != null)
+                result.close();
+        }
+        return retval;
+    }
+}
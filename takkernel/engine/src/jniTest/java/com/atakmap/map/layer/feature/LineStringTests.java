@@ -10,9 +10,14 @@ import com.atakmap.map.layer.feature.geometry.Point;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
 import java.util.Random;
 
 public class LineStringTests extends AbstractGeometryTests {
+    private static final boolean BENCHMARK_ENABLED = false;
+
     @Override
     Geometry createTestGeometry(int dimension) {
         if (dimension == 2)
@@ -726,5 +731,112 @@ public class LineStringTests extends AbstractGeometryTests {
         }
     }
 
+    @Test
+    public void LineString_bulk_add_appends() {
+        double[] first = RandomUtils.randomDoubleArray(4 * 2);
+        double[] second = RandomUtils.randomDoubleArray(3 * 2);
+        LineString linestring = new LineString(2);
+
+        linestring.addPoints(first, 0, 4, 2);
+        linestring.addPoints(second, 0, 3, 2);
+        Assert.assertEquals(7, linestring.getNumPoints());
+        Assert.assertEquals(first[0], linestring.getX(0), 0.0);
+        Assert.assertEquals(second[0], linestring.getX(4), 0.0);
+        Assert.assertEquals(second[5], linestring.getY(6), 0.0);
+    }
+
+    @Test
+    public void LineString_2d_bulk_get_roundtrip() {
+        Random r = RandomUtils.rng();
+        final int numPoints = 5 + r.nextInt(6);
+        double[] xy = RandomUtils.randomDoubleArray(numPoints * 2);
+        LineString linestring = new LineString(2, xy, 0, numPoints, 2);
+
+        Assert.assertArrayEquals(xy, linestring.getPoints(), 0.0);
+
+        // sub-range, at an offset in the destination
+        double[] dst = new double[2 + (numPoints - 2) * 2];
+        linestring.getPoints(1, numPoints - 2, dst, 2);
+        for (int i = 0; i < (numPoints - 2) * 2; i++)
+            Assert.assertEquals(xy[2 + i], dst[2 + i], 0.0);
+    }
+
+    @Test
+    public void LineString_3d_bulk_get_direct_roundtrip() {
+        Random r = RandomUtils.rng();
+        final int numPoints = 5 + r.nextInt(6);
+        double[] xyz = RandomUtils.randomDoubleArray(numPoints * 3);
+        LineString linestring = new LineString(3, xyz, 0, numPoints, 3);
+
+        DoubleBuffer buf = ByteBuffer.allocateDirect((numPoints * 3 + 1) * 8)
+                .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        buf.put(-1d);
+        linestring.getPoints(0, numPoints, buf);
+        Assert.assertEquals(numPoints * 3 + 1, buf.position());
+        Assert.assertEquals(-1d, buf.get(0), 0.0);
+        for (int i = 0; i < numPoints * 3; i++)
+            Assert.assertEquals(xyz[i], buf.get(i + 1), 0.0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void LineString_bulk_get_out_of_bounds_throws() {
+        double[] xy = RandomUtils.randomDoubleArray(5 * 2);
+        LineString linestring = new LineString(2, xy, 0, 5, 2);
+        linestring.getPoints(3, 3, new double[6], 0);
+        Assert.fail();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void LineString_bulk_get_heap_buffer_throws() {
+        LineString linestring = new LineString(2, new double[] {0, 0, 1, 1}, 0, 2, 2);
+        linestring.getPoints(0, 2, DoubleBuffer.allocate(4));
+        Assert.fail();
+    }
+
+    @Test
+    public void benchmark_bulk_vs_per_vertex() {
+        if (!BENCHMARK_ENABLED)
+            return;
+
+        final int numPoints = 1000000;
+        final double[] xy = RandomUtils.randomDoubleArray(numPoints * 2);
+
+        long start = System.nanoTime();
+        LineString perVertex = new LineString(2);
+        for (int i = 0; i < numPoints; i++)
+            perVertex.addPoint(xy[i * 2], xy[i * 2 + 1]);
+        final long buildPerVertex = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        LineString bulk = new LineString(2, xy, 0, numPoints, 2);
+        final long buildBulk = System.nanoTime() - start;
+
+        double sum = 0d;
+        start = System.nanoTime();
+        for (int i = 0; i < perVertex.getNumPoints(); i++)
+            sum += perVertex.getX(i) + perVertex.getY(i);
+        final long iteratePerVertex = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        final double[] pts = bulk.getPoints();
+        for (int i = 0; i < pts.length; i++)
+            sum -= pts[i];
+        final long iterateBulk = System.nanoTime() - start;
+
+        DoubleBuffer direct = ByteBuffer.allocateDirect(numPoints * 2 * 8)
+                .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        start = System.nanoTime();
+        bulk.getPoints(0, numPoints, direct);
+        final long copyDirect = System.nanoTime() - start;
+
+        System.out.println("LineStringTests: " + numPoints + " vertices"
+                + " build per-vertex=" + (buildPerVertex / 1000000L) + "ms"
+                + " bulk=" + (buildBulk / 1000000L) + "ms"
+                + "; iterate per-vertex=" + (iteratePerVertex / 1000000L) + "ms"
+                + " bulk=" + (iterateBulk / 1000000L) + "ms"
+                + " direct copy=" + (copyDirect / 1000000L) + "ms"
+                + " (" + sum + ")");
+    }
+
     // WKB tests
 }
@@ -60,6 +60,17 @@ public class PolygonTests extends AbstractGeometryTests {
         Polygon polygon = new Polygon(linestring);
     }
 
+    @Test
+    public void Polygon_packed_rings_roundtrip() {
+        final double[] exterior = new double[] {0, 0, 4, 0, 4, 4, 0, 4, 0, 0};
+        final double[] hole = new double[] {1, 1, 2, 1, 2, 2, 1, 2, 1, 1};
+        Polygon polygon = new Polygon(2, new double[][] {exterior, hole});
+        Assert.assertEquals(2, polygon.getDimension());
+        Assert.assertArrayEquals(exterior, polygon.getExteriorRing().getPoints(), 0.0);
+        Assert.assertEquals(1, polygon.getInteriorRings().size());
+        Assert.assertArrayEquals(hole, polygon.getInteriorRings().iterator().next().getPoints(), 0.0);
+    }
+
     @Test(expected = NullPointerException.class)
     public void Polygon_construtor_null_ext_ring_throws() {
         Polygon polygon = new Polygon(null);
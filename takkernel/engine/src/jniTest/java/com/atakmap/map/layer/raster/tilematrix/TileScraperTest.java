@@ -0,0 +1,492 @@
+package com.atakmap.map.layer.raster.tilematrix;
+
+import android.graphics.Bitmap;
+
+import com.atakmap.android.androidtest.util.FileUtils;
+import com.atakmap.map.contentservices.CacheRequest;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.feature.geometry.LineString;
+import com.atakmap.map.layer.feature.geometry.Polygon;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import gov.tak.test.KernelJniTest;
+
+public class TileScraperTest extends KernelJniTest {
+    private static final boolean BENCHMARK_ENABLED = false;
+
+    /**
+     * Stand-in tile server. Serves the request path as the tile content and
+     * counts requests per tile.
+     */
+    private static final class TileServer implements Runnable, AutoCloseable {
+        final ServerSocket socket;
+        final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+        final Thread thread;
+        volatile int failEvery;
+
+        TileServer() throws IOException {
+            socket = new ServerSocket(0, 64, InetAddress.getByName("127.0.0.1"));
+            thread = new Thread(this, "TileServer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        String getBaseUrl() {
+            return "http://127.0.0.1:" + socket.getLocalPort();
+        }
+
+        int getRequestCount() {
+            int retval = 0;
+            for (AtomicInteger n : hits.values())
+                retval += n.get();
+            return retval;
+        }
+
+        @Override
+        public void run() {
+            while (!socket.isClosed()) {
+                final Socket client;
+                try {
+                    client = socket.accept();
+                } catch (IOException e) {
+                    break;
+                }
+                final Thread t = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(client);
+                    }
+                });
+                t.setDaemon(true);
+                t.start();
+            }
+        }
+
+        private void serve(Socket client) {
+            try (Socket s = client) {
+                s.setTcpNoDelay(true);
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(s.getInputStream(),
+                                StandardCharsets.US_ASCII));
+                final String requestLine = reader.readLine();
+                if (requestLine == null)
+                    return;
+                // consume headers
+                String line;
+                do {
+                    line = reader.readLine();
+                } while (line != null && !line.isEmpty());
+
+                final String path = requestLine.split(" ")[1];
+                AtomicInteger n = hits.get(path);
+                if (n == null) {
+                    hits.putIfAbsent(path, new AtomicInteger());
+                    n = hits.get(path);
+                }
+                final int count = n.incrementAndGet();
+
+                final OutputStream out = s.getOutputStream();
+                if (failEvery > 0 && count == 1
+                        && (path.hashCode() % failEvery) == 0) {
+                    out.write(("HTTP/1.1 503 Service Unavailable\r\n"
+                            + "Content-Length: 0\r\nConnection: close\r\n\r\n")
+                                    .getBytes(StandardCharsets.US_ASCII));
+                } else {
+                    final byte[] body = path.getBytes(StandardCharsets.UTF_8);
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Length: "
+                            + body.length + "\r\nConnection: close\r\n\r\n")
+                                    .getBytes(StandardCharsets.US_ASCII));
+                    out.write(body);
+                }
+                out.flush();
+            } catch (IOException ignored) {
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    /**
+     * Fetches tiles from the stand-in server; cancels the request after
+     * <code>cancelAfter</code> fetches.
+     */
+    private static final class HttpTileMatrix implements TileMatrix {
+        final String baseUrl;
+        final ZoomLevel[] levels;
+        final AtomicInteger fetches = new AtomicInteger();
+        CacheRequest request;
+        int cancelAfter = Integer.MAX_VALUE;
+
+        HttpTileMatrix(String baseUrl, ZoomLevel[] levels) {
+            this.baseUrl = baseUrl;
+            this.levels = levels;
+        }
+
+        @Override
+        public String getName() {
+            return "TileScraperTest";
+        }
+
+        @Override
+        public int getSRID() {
+            return 4326;
+        }
+
+        @Override
+        public ZoomLevel[] getZoomLevel() {
+            return levels;
+        }
+
+        @Override
+        public double getOriginX() {
+            return -180d;
+        }
+
+        @Override
+        public double getOriginY() {
+            return 90d;
+        }
+
+        @Override
+        public Bitmap getTile(int zoom, int x, int y, Throwable[] error) {
+            return null;
+        }
+
+        @Override
+        public byte[] getTileData(int zoom, int x, int y, Throwable[] error) {
+            if (fetches.incrementAndGet() >= cancelAfter && request != null)
+                request.canceled = true;
+            try {
+                HttpURLConnection conn = (HttpURLConnection) new URL(
+                        baseUrl + "/" + zoom + "/" + x + "/" + y)
+                                .openConnection();
+                try (InputStream in = conn.getInputStream()) {
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                    byte[] buf = new byte[256];
+                    int n;
+                    while ((n = in.read(buf)) >= 0)
+                        bos.write(buf, 0, n);
+                    return bos.toByteArray();
+                } finally {
+                    conn.disconnect();
+                }
+            } catch (IOException e) {
+                error[0] = e;
+                return null;
+            }
+        }
+
+        @Override
+        public Envelope getBounds() {
+            return new Envelope(-180d, -90d, 0d, 180d, 90d, 0d);
+        }
+
+        @Override
+        public void dispose() {
+        }
+    }
+
+    private static TileMatrix.ZoomLevel[] createLevels(int numLevels) {
+        TileMatrix.ZoomLevel level0 = new TileMatrix.ZoomLevel();
+        level0.level = 0;
+        level0.resolution = 156543d;
+        level0.tileWidth = 256;
+        level0.tileHeight = 256;
+        level0.pixelSizeX = 180d / 256d;
+        level0.pixelSizeY = 180d / 256d;
+        return TileMatrix.Util.createQuadtree(level0, numLevels);
+    }
+
+    private static CacheRequest createRequest(File cacheFile, int maxLevel,
+            int maxThreads) {
+        CacheRequest request = new CacheRequest();
+        request.cacheFile = cacheFile;
+        request.mode = CacheRequest.CacheMode.Append;
+        request.minResolution = 156543d;
+        request.maxResolution = 156543d / (1 << maxLevel);
+        request.maxThreads = maxThreads;
+        request.expirationOffset = 1000L;
+        request.resumable = true;
+
+        LineString ring = new LineString(2);
+        ring.addPoint(-80d, 35d);
+        ring.addPoint(-70d, 35d);
+        ring.addPoint(-70d, 45d);
+        ring.addPoint(-80d, 45d);
+        ring.addPoint(-80d, 35d);
+        request.region = new Polygon(ring);
+        return request;
+    }
+
+    private static MockTileContainer createSink(TileMatrix.ZoomLevel[] levels) {
+        return new MockTileContainer("sink", 4326, levels, -180d, 90d,
+                new Envelope(-180d, -90d, 0d, 180d, 90d, 0d), false);
+    }
+
+    @Test
+    public void interrupted_scrape_resumes_without_refetch()
+            throws IOException {
+        try (FileUtils.AutoDeleteFile testDir = FileUtils.AutoDeleteFile
+                .createTempDir(getTestContext());
+                TileServer server = new TileServer()) {
+            final TileMatrix.ZoomLevel[] levels = createLevels(8);
+            final HttpTileMatrix client = new HttpTileMatrix(
+                    server.getBaseUrl(), levels);
+            final MockTileContainer sink = createSink(levels);
+            final CacheRequest request = createRequest(
+                    new File(testDir.file, "cache.sqlite"), 7, 4);
+
+            final int total = TileScraper.estimateTileCount(
+                    new MockTileClient("client", 4326, levels, -180d, 90d,
+                            client.getBounds()),
+                    request);
+            Assert.assertTrue(total > 20);
+
+            // interrupt part way through
+            client.request = request;
+            client.cancelAfter = total / 2;
+            new TileScraper(client, sink, request, null).run();
+            Assert.assertTrue(request.canceled);
+            final int committed = sink.tileData.size();
+            Assert.assertTrue(committed > 0);
+            Assert.assertTrue(committed < total);
+            final File ledger = TileScrapeLedger.getFile(request.cacheFile);
+            Assert.assertTrue(ledger.exists());
+
+            // resume
+            request.canceled = false;
+            client.request = null;
+            TileScraper scraper = new TileScraper(client, sink, request, null);
+            scraper.run();
+
+            Assert.assertEquals(total, sink.tileData.size());
+            Assert.assertFalse(ledger.exists());
+            Assert.assertTrue(scraper.getTilesPerSecond() > 0d);
+            // only tiles that were in flight when the first run was
+            // interrupted may have been requested twice
+            Assert.assertTrue(server.getRequestCount() - total <= 4);
+            for (Map.Entry<String, byte[]> tile : sink.tileData.entrySet()) {
+                final String[] zyx = tile.getKey().split("/");
+                Assert.assertEquals(
+                        "/" + zyx[0] + "/" + zyx[2] + "/" + zyx[1],
+                        new String(tile.getValue(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void ledger_ignores_partial_record() throws IOException {
+        try (FileUtils.AutoDeleteFile testDir = FileUtils.AutoDeleteFile
+                .createTempDir(getTestContext())) {
+            final File cacheFile = new File(testDir.file, "cache.sqlite");
+            final File file = TileScrapeLedger.getFile(cacheFile);
+            try (TileScrapeLedger ledger = TileScrapeLedger.open(cacheFile,
+                    42)) {
+                ledger.append(new long[] {
+                        TileScrapeLedger.key(3, 1, 2),
+                        TileScrapeLedger.key(3, 2, 2)
+                }, 2);
+            }
+            // simulate a write interrupted mid-record
+            try (FileOutputStream fos = new FileOutputStream(
+                    file, true)) {
+                fos.write(new byte[] {
+                        1, 2, 3
+                });
+            }
+
+            try (TileScrapeLedger ledger = TileScrapeLedger.open(cacheFile,
+                    42)) {
+                Assert.assertEquals(2, ledger.getCompletedCount());
+                Assert.assertTrue(ledger.isComplete(3, 1, 2));
+                Assert.assertTrue(ledger.isComplete(3, 2, 2));
+                Assert.assertFalse(ledger.isComplete(3, 2, 1));
+                ledger.append(new long[] {
+                        TileScrapeLedger.key(4, 0, 0)
+                }, 1);
+            }
+            try (TileScrapeLedger ledger = TileScrapeLedger.open(cacheFile,
+                    42)) {
+                Assert.assertEquals(3, ledger.getCompletedCount());
+            }
+            // a different request starts over
+            try (TileScrapeLedger ledger = TileScrapeLedger.open(cacheFile,
+                    43)) {
+                Assert.assertEquals(0, ledger.getCompletedCount());
+            }
+        }
+    }
+
+    @Test
+    public void ledger_keys_are_unique_on_deep_levels() {
+        final int level = TileScrapeLedger.MAX_LEVEL;
+        final int max = (1 << level) - 1;
+        Assert.assertNotEquals(TileScrapeLedger.key(level, max, 0),
+                TileScrapeLedger.key(level, 0, max));
+        Assert.assertNotEquals(TileScrapeLedger.key(level, max, max),
+                TileScrapeLedger.key(level - 1, max, max));
+        Assert.assertTrue(TileScrapeLedger.isSupported(level));
+        Assert.assertFalse(TileScrapeLedger.isSupported(level + 1));
+    }
+
+    @Test
+    public void ledger_is_discarded_without_cache_file() throws IOException {
+        try (FileUtils.AutoDeleteFile testDir = FileUtils.AutoDeleteFile
+                .createTempDir(getTestContext())) {
+            final File cacheFile = new File(testDir.file, "cache.sqlite");
+            final File file = TileScrapeLedger.getFile(cacheFile);
+            try (TileScrapeLedger ledger = TileScrapeLedger.open(cacheFile,
+                    42)) {
+                ledger.append(new long[] {
+                        TileScrapeLedger.key(3, 1, 2)
+                }, 1);
+            }
+
+            // the ledger is kept while its cache exists
+            Assert.assertTrue(cacheFile.createNewFile());
+            TileScraper.discardStaleLedger(cacheFile);
+            Assert.assertTrue(file.exists());
+
+            // and removed once the cache has been deleted
+            Assert.assertTrue(cacheFile.delete());
+            TileScraper.discardStaleLedger(cacheFile);
+            Assert.assertFalse(file.exists());
+        }
+    }
+
+    @Test
+    public void ledger_is_discarded_when_cache_file_replaced()
+            throws IOException {
+        try (FileUtils.AutoDeleteFile testDir = FileUtils.AutoDeleteFile
+                .createTempDir(getTestContext())) {
+            final File cacheFile = new File(testDir.file, "cache.sqlite");
+            try (FileOutputStream fos = new FileOutputStream(cacheFile)) {
+                fos.write(new byte[4096]);
+            }
+            final long modified = cacheFile.lastModified();
+            try (TileScrapeLedger ledger = TileScrapeLedger.open(cacheFile,
+                    42)) {
+                ledger.append(new long[] {
+                        TileScrapeLedger.key(3, 1, 2)
+                }, 1);
+            }
+
+            // more tiles written to the same container
+            try (FileOutputStream fos = new FileOutputStream(cacheFile,
+                    true)) {
+                fos.write(new byte[4096]);
+            }
+            Assert.assertTrue(cacheFile.setLastModified(modified + 2000L));
+            try (TileScrapeLedger ledger = TileScrapeLedger.open(cacheFile,
+                    42)) {
+                Assert.assertEquals(1, ledger.getCompletedCount());
+                ledger.append(new long[] {
+                        TileScrapeLedger.key(3, 2, 2)
+                }, 1);
+            }
+
+            // replaced by a smaller container
+            try (FileOutputStream fos = new FileOutputStream(cacheFile)) {
+                fos.write(new byte[4096]);
+            }
+            Assert.assertTrue(cacheFile.setLastModified(modified + 4000L));
+            try (TileScrapeLedger ledger = TileScrapeLedger.open(cacheFile,
+                    42)) {
+                Assert.assertEquals(0, ledger.getCompletedCount());
+                ledger.append(new long[] {
+                        TileScrapeLedger.key(3, 1, 2)
+                }, 1);
+            }
+
+            // replaced by an older copy
+            Assert.assertTrue(cacheFile.setLastModified(modified));
+            try (TileScrapeLedger ledger = TileScrapeLedger.open(cacheFile,
+                    42)) {
+                Assert.assertEquals(0, ledger.getCompletedCount());
+            }
+        }
+    }
+
+    @Test
+    public void scrape_recovers_from_server_errors() throws IOException {
+        try (FileUtils.AutoDeleteFile testDir = FileUtils.AutoDeleteFile
+                .createTempDir(getTestContext());
+                TileServer server = new TileServer()) {
+            // the first request for roughly one in five tiles fails
+            server.failEvery = 5;
+            final TileMatrix.ZoomLevel[] levels = createLevels(7);
+            final HttpTileMatrix client = new HttpTileMatrix(
+                    server.getBaseUrl(), levels);
+            final MockTileContainer sink = createSink(levels);
+            final CacheRequest request = createRequest(
+                    new File(testDir.file, "cache.sqlite"), 6, 4);
+
+            final int total = TileScraper.estimateTileCount(
+                    new MockTileClient("client", 4326, levels, -180d, 90d,
+                            client.getBounds()),
+                    request);
+            new TileScraper(client, sink, request, null).run();
+
+            // failed tiles are retried within the download attempt
+            Assert.assertEquals(total, sink.tileData.size());
+        }
+    }
+
+    @Test
+    public void benchmark_scrape_throughput() throws IOException {
+        if (!BENCHMARK_ENABLED)
+            return;
+
+        try (FileUtils.AutoDeleteFile testDir = FileUtils.AutoDeleteFile
+                .createTempDir(getTestContext());
+                TileServer server = new TileServer()) {
+            final TileMatrix.ZoomLevel[] levels = createLevels(10);
+            final HttpTileMatrix client = new HttpTileMatrix(
+                    server.getBaseUrl(), levels);
+
+            CacheRequest request = createRequest(
+                    new File(testDir.file, "legacy.sqlite"), 9, 8);
+            request.resumable = false;
+            MockTileContainer sink = createSink(levels);
+            long start = System.currentTimeMillis();
+            new TileScraper(client, sink, request, null).run();
+            final long legacyMillis = System.currentTimeMillis() - start;
+            final int legacyTiles = sink.tileData.size();
+
+            request = createRequest(new File(testDir.file, "resumable.sqlite"),
+                    9, 8);
+            sink = createSink(levels);
+            TileScraper scraper = new TileScraper(client, sink, request, null);
+            scraper.run();
+
+            System.out.println("TileScraperTest: " + legacyTiles
+                    + " tiles, multi-thread "
+                    + (legacyTiles * 1000d / legacyMillis)
+                    + " tiles/sec; resumable "
+                    + scraper.getTilesPerSecond() + " tiles/sec");
+        }
+    }
+}
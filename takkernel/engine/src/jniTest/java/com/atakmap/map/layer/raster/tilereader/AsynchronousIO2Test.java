@@ -0,0 +1,238 @@
+package com.atakmap.map.layer.raster.tilereader;
+
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import gov.tak.test.KernelJniTest;
+
+public class AsynchronousIO2Test extends KernelJniTest
+{
+    private static final boolean BENCHMARK_ENABLED = false;
+
+    @Test
+    public void requests_stay_on_own_queue_when_stealing_disabled() throws InterruptedException
+    {
+        final TileReader.AsynchronousIO io = new TileReader.AsynchronousIO(0, 0L);
+        try
+        {
+            final SyntheticTileReader reader = new SyntheticTileReader(io, 2L);
+            Assert.assertTrue(readScreen(io, reader, 16, 0, 30000L));
+
+            // every request is level 0 and visible, so a single worker services them all
+            Assert.assertEquals(1, reader.maxConcurrentReads.get());
+            long serviced = 0L;
+            for (TileReader.AsynchronousIO.QueueStatistics stats : io.getQueueStatistics())
+            {
+                serviced += stats.serviced;
+                Assert.assertEquals(0L, stats.stolen);
+            }
+            Assert.assertEquals(16L, serviced);
+        } finally
+        {
+            io.release();
+        }
+    }
+
+    @Test
+    public void stolen_requests_stay_within_budget() throws InterruptedException
+    {
+        final int maxConcurrentReads = 3;
+        final TileReader.AsynchronousIO io = new TileReader.AsynchronousIO(maxConcurrentReads, Long.MAX_VALUE);
+        try
+        {
+            final SyntheticTileReader reader = new SyntheticTileReader(io, 5L);
+            Assert.assertTrue(readScreen(io, reader, 32, 0, 30000L));
+
+            // the worker for the queue is always admitted, in addition to the workers that steal
+            Assert.assertTrue(reader.maxConcurrentReads.get() <= maxConcurrentReads + 1);
+            long serviced = 0L;
+            for (TileReader.AsynchronousIO.QueueStatistics stats : io.getQueueStatistics())
+            {
+                serviced += stats.serviced;
+                Assert.assertTrue(stats.stolen <= stats.serviced);
+                Assert.assertTrue(stats.getMeanLatency() <= stats.maxLatency);
+            }
+            Assert.assertEquals(32L, serviced);
+        } finally
+        {
+            io.release();
+        }
+    }
+
+    @Test
+    public void benchmark_time_to_full_screen() throws InterruptedException
+    {
+        if (!BENCHMARK_ENABLED)
+            return;
+
+        benchmark("no stealing", 0, 0L);
+        benchmark("default budget", AsynchronousIO2.DEFAULT_MAX_CONCURRENT_READS, AsynchronousIO2.DEFAULT_MAX_READ_BYTES);
+        benchmark("unbounded", Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    private static void benchmark(String name, int maxConcurrentReads, long maxReadBytes) throws InterruptedException
+    {
+        final TileReader.AsynchronousIO io = new TileReader.AsynchronousIO(maxConcurrentReads, maxReadBytes);
+        try
+        {
+            final SyntheticTileReader reader = new SyntheticTileReader(io, 4L);
+            final long start = System.nanoTime();
+            // a screen of full resolution tiles, with a backlog of prefetch at a coarser resolution
+            Assert.assertTrue(readScreen(io, reader, 48, 64, 120000L));
+            final long elapsed = System.nanoTime() - start;
+
+            System.out.println("AsynchronousIO2Test: " + name + " time to full screen= " + (elapsed / 1000000L)
+                    + "ms max concurrent reads= " + reader.maxConcurrentReads.get());
+            for (TileReader.AsynchronousIO.QueueStatistics stats : io.getQueueStatistics())
+            {
+                if (stats.serviced == 0L)
+                    continue;
+                System.out.println("AsynchronousIO2Test:   queue cost= " + stats.maxCost + " prefetch= " + stats.prefetch
+                        + " serviced= " + stats.serviced + " stolen= " + stats.stolen + " mean latency= "
+                        + (stats.getMeanLatency() / 1000000L) + "ms max latency= " + (stats.maxLatency / 1000000L)
+                        + "ms");
+            }
+        } finally
+        {
+            io.release();
+        }
+    }
+
+    /**
+     * Queues the specified number of visible level 0 tiles and prefetch level 1 tiles, and waits for the visible tiles
+     * to complete.
+     */
+    private static boolean readScreen(TileReader.AsynchronousIO io, TileReader reader, int visible, int prefetch,
+                                      long timeout) throws InterruptedException
+    {
+        final CountDownLatch screen = new CountDownLatch(visible);
+        io.setCameraLocation(new GeoPoint(0d, 0d));
+        for (int i = 0; i < prefetch; i++)
+        {
+            TileReader.ReadRequest request = new TileReader.ReadRequest(reader, 1, i % 16, i / 16,
+                    new Listener(null));
+            request.isPrefetch = true;
+            io.asyncRead(request, new Envelope(i, 0d, 0d, i + 1d, 1d, 0d));
+        }
+        for (int i = 0; i < visible; i++)
+        {
+            TileReader.ReadRequest request = new TileReader.ReadRequest(reader, 0, i % 16, i / 16,
+                    new Listener(screen));
+            request.isPrefetch = false;
+            io.asyncRead(request, new Envelope(i, 0d, 0d, i + 1d, 1d, 0d));
+        }
+        return screen.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    private final static class Listener implements TileReader.AsynchronousReadRequestListener
+    {
+        final CountDownLatch completed;
+
+        Listener(CountDownLatch completed)
+        {
+            this.completed = completed;
+        }
+
+        @Override
+        public void requestCreated(TileReader.ReadRequest request) {}
+
+        @Override
+        public void requestStarted(int id) {}
+
+        @Override
+        public void requestUpdate(int id, byte[] data, int dstX, int dstY, int dstW, int dstH) {}
+
+        @Override
+        public void requestCompleted(int id)
+        {
+            if (completed != null)
+                completed.countDown();
+        }
+
+        @Override
+        public void requestCanceled(int id) {}
+
+        @Override
+        public void requestError(int id, Throwable error) {}
+    }
+
+    /**
+     * Tile reader that returns blank tiles after a delay proportional to the number of source pixels read.
+     */
+    private final static class SyntheticTileReader extends TileReader
+    {
+        final long millisPerTile;
+        final AtomicInteger concurrentReads = new AtomicInteger(0);
+        final AtomicInteger maxConcurrentReads = new AtomicInteger(0);
+
+        SyntheticTileReader(AsynchronousIO io, long millisPerTile)
+        {
+            super("synthetic", null, Integer.MAX_VALUE, io);
+            this.millisPerTile = millisPerTile;
+        }
+
+        @Override
+        public long getWidth()
+        {
+            return 65536L;
+        }
+
+        @Override
+        public long getHeight()
+        {
+            return 65536L;
+        }
+
+        @Override
+        public int getTileWidth()
+        {
+            return 256;
+        }
+
+        @Override
+        public int getTileHeight()
+        {
+            return 256;
+        }
+
+        @Override
+        public ReadResult read(long srcX, long srcY, long srcW, long srcH, int dstW, int dstH, byte[] buf)
+        {
+            final int concurrent = concurrentReads.incrementAndGet();
+            try
+            {
+                int max;
+                while ((max = maxConcurrentReads.get()) < concurrent)
+                    if (maxConcurrentReads.compareAndSet(max, concurrent))
+                        break;
+                Thread.sleep(millisPerTile * Math.max(1L, (srcW * srcH) / ((long) dstW * dstH)));
+                return ReadResult.SUCCESS;
+            } catch (InterruptedException e)
+            {
+                return ReadResult.CANCELED;
+            } finally
+            {
+                concurrentReads.decrementAndGet();
+            }
+        }
+
+        @Override
+        public Format getFormat()
+        {
+            return Format.RGBA;
+        }
+
+        @Override
+        public Interleave getInterleave()
+        {
+            return Interleave.BIP;
+        }
+    }
+}
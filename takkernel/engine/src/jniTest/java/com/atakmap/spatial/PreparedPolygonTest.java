@@ -0,0 +1,157 @@
+
+package com.atakmap.spatial;
+
+import com.atakmap.coremap.maps.coords.GeoPoint;
+
+import gov.tak.test.KernelJniTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class PreparedPolygonTest extends KernelJniTest
+{
+    private static final boolean BENCHMARK_ENABLED = false;
+
+    @Test
+    public void testSquare() {
+        PreparedPolygon square = new PreparedPolygon(new GeoPoint[] {
+                new GeoPoint(1, -1), new GeoPoint(1, 1),
+                new GeoPoint(-1, 1), new GeoPoint(-1, -1)
+        });
+        Assert.assertTrue(square.contains(0, 0));
+        Assert.assertTrue(square.contains(0.99, -0.99));
+        Assert.assertFalse(square.contains(1.01, 0));
+        Assert.assertFalse(square.contains(0, -1.01));
+        Assert.assertEquals(-1d, square.getMinLongitude(), 0d);
+        Assert.assertEquals(1d, square.getMaxLatitude(), 0d);
+    }
+
+    @Test
+    public void testConcave() {
+        // 'U' shape, opening to the north
+        PreparedPolygon u = new PreparedPolygon(new GeoPoint[] {
+                new GeoPoint(0, 0), new GeoPoint(0, 3), new GeoPoint(3, 3),
+                new GeoPoint(3, 2), new GeoPoint(1, 2), new GeoPoint(1, 1),
+                new GeoPoint(3, 1), new GeoPoint(3, 0), new GeoPoint(0, 0)
+        });
+        Assert.assertTrue(u.contains(0.5, 1.5));
+        Assert.assertTrue(u.contains(2, 0.5));
+        Assert.assertTrue(u.contains(2, 2.5));
+        Assert.assertFalse(u.contains(2, 1.5));
+        Assert.assertFalse(u.contains(4, 1.5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDegenerate() {
+        new PreparedPolygon(new GeoPoint[] {
+                new GeoPoint(0, 0), new GeoPoint(1, 1), new GeoPoint(0, 0)
+        });
+    }
+
+    /**
+     * The prepared polygon should agree with the SpatiaLite containment test
+     * for a ring large enough to be bucketed
+     */
+    @Test
+    public void testAgreesWithSpatialCalculator() {
+        final GeoPoint[] ring = star(38, -77, 0.5, 0.2, 200);
+        final PreparedPolygon prepared = new PreparedPolygon(ring);
+
+        SpatialCalculator calc = new SpatialCalculator.Builder().inMemory()
+                .build();
+        try {
+            final long fence = calc.createPolygon(ring);
+            final Random r = new Random(1);
+            for (int i = 0; i < 1000; i++) {
+                GeoPoint p = new GeoPoint(38 + (r.nextDouble() - 0.5),
+                        -77 + (r.nextDouble() - 0.5));
+                final long point = calc.createPoint(p);
+                Assert.assertEquals(p.toString(),
+                        calc.contains(fence, point), prepared.contains(p));
+                calc.deleteGeometry(point);
+            }
+        } finally {
+            calc.dispose();
+        }
+    }
+
+    @Test
+    public void benchmarkFencesByItems() {
+        if (!BENCHMARK_ENABLED)
+            return;
+
+        final int[] fenceCounts = new int[] {1, 10, 50};
+        final int[] itemCounts = new int[] {100, 1000, 5000};
+        final Random r = new Random(2);
+        for (int numFences : fenceCounts) {
+            for (int numItems : itemCounts) {
+                final GeoPoint[][] rings = new GeoPoint[numFences][];
+                for (int i = 0; i < numFences; i++)
+                    rings[i] = star(38 + r.nextDouble(), -77 + r.nextDouble(),
+                            0.25, 0.1, 64);
+                final GeoPoint[] items = new GeoPoint[numItems];
+                for (int i = 0; i < numItems; i++)
+                    items[i] = new GeoPoint(37.5 + 2 * r.nextDouble(),
+                            -77.5 + 2 * r.nextDouble());
+
+                // SpatiaLite, with point geometries created once as the
+                // monitors previously cached them
+                SpatialCalculator calc = new SpatialCalculator.Builder()
+                        .inMemory().build();
+                int sqlInside = 0;
+                long sqlNanos;
+                try {
+                    final long[] fences = new long[numFences];
+                    for (int i = 0; i < numFences; i++)
+                        fences[i] = calc.createPolygon(rings[i]);
+                    final long[] points = new long[numItems];
+                    for (int i = 0; i < numItems; i++)
+                        points[i] = calc.createPoint(items[i]);
+                    final long start = System.nanoTime();
+                    for (long fence : fences)
+                        for (long point : points)
+                            if (calc.contains(fence, point))
+                                sqlInside++;
+                    sqlNanos = System.nanoTime() - start;
+                } finally {
+                    calc.dispose();
+                }
+
+                final PreparedPolygon[] prepared = new PreparedPolygon[numFences];
+                for (int i = 0; i < numFences; i++)
+                    prepared[i] = new PreparedPolygon(rings[i]);
+                int javaInside = 0;
+                final long start = System.nanoTime();
+                for (PreparedPolygon fence : prepared)
+                    for (GeoPoint item : items)
+                        if (fence.contains(item))
+                            javaInside++;
+                final long javaNanos = System.nanoTime() - start;
+
+                System.out.println("PreparedPolygonTest: " + numFences
+                        + " fences x " + numItems + " items per tick: spatialite="
+                        + (sqlNanos / 1000L) + "us (" + sqlInside
+                        + " inside) prepared=" + (javaNanos / 1000L) + "us ("
+                        + javaInside + " inside)");
+            }
+        }
+    }
+
+    /**
+     * Creates a closed star shaped ring, alternating between the outer and
+     * inner radius
+     */
+    private static GeoPoint[] star(double lat, double lng, double outer,
+            double inner, int numPoints) {
+        final GeoPoint[] ring = new GeoPoint[numPoints + 1];
+        for (int i = 0; i < numPoints; i++) {
+            final double radius = (i % 2 == 0) ? outer : inner;
+            final double theta = 2 * Math.PI * i / numPoints;
+            ring[i] = new GeoPoint(lat + radius * Math.sin(theta),
+                    lng + radius * Math.cos(theta));
+        }
+        ring[numPoints] = ring[0];
+        return ring;
+    }
+}
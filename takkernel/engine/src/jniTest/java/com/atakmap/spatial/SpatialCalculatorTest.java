@@ -15,6 +15,7 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Random;
 
 
 /**
@@ -25,6 +26,8 @@ import java.util.Collection;
  */
 public class SpatialCalculatorTest extends KernelJniTest
 {
+    private static final boolean BENCHMARK_ENABLED = false;
+
     @Test
     public void testIsDisposed() {
         SpatialCalculator local = new SpatialCalculator.Builder()
@@ -295,6 +298,204 @@ public class SpatialCalculatorTest extends KernelJniTest
         local.dispose();
     }
 
+    /**
+     * Returns a copy of the geometry that can only be evaluated by SpatiaLite
+     */
+    private static long spatialiteCopy(SpatialCalculator calc, long handle) {
+        return calc.createGeometry(calc.getGeometryAsBlob(handle));
+    }
+
+    private static GeoPoint[] randomRing(Random r, double lat, double lng, double radius, int numPoints) {
+        GeoPoint[] ring = new GeoPoint[numPoints + 1];
+        for (int i = 0; i < numPoints; i++) {
+            final double theta = (2 * Math.PI * i) / numPoints;
+            final double d = radius * (0.4 + 0.6 * r.nextDouble());
+            ring[i] = new GeoPoint(lat + d * Math.sin(theta), lng + d * Math.cos(theta));
+        }
+        ring[numPoints] = ring[0];
+        return ring;
+    }
+
+    private static GeoPoint[] randomLine(Random r, double lat, double lng, double extent, int numPoints) {
+        GeoPoint[] line = new GeoPoint[numPoints];
+        for (int i = 0; i < numPoints; i++)
+            line[i] = new GeoPoint(lat + extent * (r.nextDouble() - 0.5), lng + extent * (r.nextDouble() - 0.5));
+        return line;
+    }
+
+    @Test
+    public void packed_predicates_agree_with_spatialite() {
+        SpatialCalculator local = new SpatialCalculator.Builder()
+                .inMemory().build();
+        try {
+            final Random r = new Random(20);
+            for (int i = 0; i < 200; i++) {
+                final long[] packed = new long[] {
+                        local.createPoint(new GeoPoint(r.nextDouble(), r.nextDouble())),
+                        local.createLineString(randomLine(r, 0.5, 0.5, 1, 2 + r.nextInt(8))),
+                        local.createPolygon(randomRing(r, r.nextDouble(), r.nextDouble(), 0.5, 3 + r.nextInt(30))),
+                        local.createPolygon(
+                                new GeoPoint(0.25, 0.25), new GeoPoint(0.25, 0.75),
+                                new GeoPoint(0.75, 0.75), new GeoPoint(0.75, 0.25)),
+                };
+                final long[] sql = new long[packed.length];
+                for (int j = 0; j < packed.length; j++)
+                    sql[j] = spatialiteCopy(local, packed[j]);
+
+                for (int a = 0; a < packed.length; a++) {
+                    for (int b = 0; b < packed.length; b++) {
+                        Assert.assertEquals("intersects " + a + "," + b,
+                                local.intersects(sql[a], sql[b]),
+                                local.intersects(packed[a], packed[b]));
+                        Assert.assertEquals("contains " + a + "," + b,
+                                local.contains(sql[a], sql[b]),
+                                local.contains(packed[a], packed[b]));
+                    }
+                }
+                local.clear();
+            }
+        } finally {
+            local.dispose();
+        }
+    }
+
+    @Test
+    public void batched_contains_agrees_with_spatialite() {
+        SpatialCalculator local = new SpatialCalculator.Builder()
+                .inMemory().build();
+        try {
+            final Random r = new Random(21);
+            final long packed = local.createPolygon(randomRing(r, 0, 0, 1, 64));
+            final long sql = spatialiteCopy(local, packed);
+            final GeoPoint[] points = randomLine(r, 0, 0, 2, 500);
+            final boolean[] expected = new boolean[points.length];
+            final boolean[] actual = new boolean[points.length];
+            local.contains(sql, points, expected);
+            local.contains(packed, points, actual);
+            Assert.assertTrue(Arrays.equals(expected, actual));
+        } finally {
+            local.dispose();
+        }
+    }
+
+    @Test
+    public void updated_geometry_is_reevaluated() {
+        SpatialCalculator local = new SpatialCalculator.Builder()
+                .inMemory().build();
+        try {
+            final long poly = local.createPolygon(
+                    new GeoPoint(0, 0), new GeoPoint(0, 1),
+                    new GeoPoint(1, 1), new GeoPoint(1, 0));
+            final long point = local.createPoint(new GeoPoint(0.5, 0.5));
+            Assert.assertTrue(local.contains(poly, point));
+            local.updatePoint(point, new GeoPoint(2, 2));
+            Assert.assertFalse(local.contains(poly, point));
+            local.updatePolygon(poly,
+                    new GeoPoint(0, 0), new GeoPoint(0, 3),
+                    new GeoPoint(3, 3), new GeoPoint(3, 0));
+            Assert.assertTrue(local.contains(poly, point));
+            // result of an operation is evaluated by SpatiaLite
+            local.buffer(poly, 1, poly);
+            local.updatePoint(point, new GeoPoint(3.5, 1.5));
+            Assert.assertTrue(local.contains(poly, point));
+        } finally {
+            local.dispose();
+        }
+    }
+
+    @Test
+    public void simplify_agrees_with_spatialite() {
+        SpatialCalculator local = new SpatialCalculator.Builder()
+                .inMemory().build();
+        try {
+            final Random r = new Random(22);
+            for (int i = 0; i < 50; i++) {
+                final GeoPoint[] line = randomLine(r, 0, 0, 1, 3 + r.nextInt(200));
+                final double tolerance = 0.001 + 0.1 * r.nextDouble();
+                final Collection<GeoPoint> actual = local.simplify(line, tolerance, false);
+
+                final long handle = local.createLineString(line);
+                final long simplified = local.simplify(handle, tolerance, false);
+                final LineString expected = (LineString) local.getGeometry(simplified);
+                Assert.assertEquals(expected.getNumPoints(), actual.size());
+                int idx = 0;
+                for (GeoPoint p : actual) {
+                    Assert.assertEquals(expected.getX(idx), p.getLongitude(), 0d);
+                    Assert.assertEquals(expected.getY(idx), p.getLatitude(), 0d);
+                    idx++;
+                }
+                local.clear();
+            }
+        } finally {
+            local.dispose();
+        }
+    }
+
+    @Test
+    public void benchmark_packed_vs_spatialite() {
+        if (!BENCHMARK_ENABLED)
+            return;
+
+        SpatialCalculator local = new SpatialCalculator.Builder()
+                .inMemory().build();
+        try {
+            final Random r = new Random(23);
+            final int iterations = 10000;
+            final long[] polys = new long[16];
+            final long[] polysSql = new long[polys.length];
+            for (int i = 0; i < polys.length; i++) {
+                polys[i] = local.createPolygon(randomRing(r, r.nextDouble(), r.nextDouble(), 0.25, 64));
+                polysSql[i] = spatialiteCopy(local, polys[i]);
+            }
+            final long[] lines = new long[16];
+            final long[] linesSql = new long[lines.length];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = local.createLineString(randomLine(r, 0.5, 0.5, 1, 32));
+                linesSql[i] = spatialiteCopy(local, lines[i]);
+            }
+            final long point = local.createPoint(new GeoPoint(0.5, 0.5));
+            final long pointSql = spatialiteCopy(local, point);
+
+            for (int pass = 0; pass < 2; pass++) {
+                final boolean packed = (pass == 1);
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++)
+                    local.contains((packed ? polys : polysSql)[i % polys.length], packed ? point : pointSql);
+                final long containsNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int i = 0; i < iterations; i++)
+                    local.intersects((packed ? lines : linesSql)[i % lines.length],
+                            (packed ? polys : polysSql)[(i / lines.length) % polys.length]);
+                final long intersectsNanos = System.nanoTime() - start;
+
+                System.out.println("SpatialCalculatorTest: " + (packed ? "packed" : "spatialite")
+                        + " contains=" + (containsNanos / iterations) + "ns/op"
+                        + " intersects=" + (intersectsNanos / iterations) + "ns/op");
+            }
+
+            final GeoPoint[] line = randomLine(r, 0, 0, 1, 1000);
+            for (int pass = 0; pass < 2; pass++) {
+                final boolean packed = (pass == 1);
+                final long start = System.nanoTime();
+                for (int i = 0; i < 100; i++) {
+                    if (packed) {
+                        local.simplify(line, 0.01, false);
+                    } else {
+                        final long handle = local.createLineString(line);
+                        local.simplify(handle, 0.01, false, handle);
+                        local.getGeometryAsBlob(handle);
+                        local.deleteGeometry(handle);
+                    }
+                }
+                System.out.println("SpatialCalculatorTest: " + (packed ? "packed" : "spatialite")
+                        + " simplify(1000 points)=" + ((System.nanoTime() - start) / 100000L) + "us/op");
+            }
+        } finally {
+            local.dispose();
+        }
+    }
+
     static GeoPoint[] geopointsFromLinestring(LineString linestring) {
         GeoPoint[] ls = new GeoPoint[linestring.getNumPoints()];
         for(int i = 0; i < linestring.getNumPoints(); i++)
@@ -113,6 +113,18 @@ namespace TAK {
                  * @return TE_Ok on success; various codes on failure.
                  */
                 Util::TAKErr getZ(double *value, const std::size_t i) const NOTHROWS;
+                /**
+                 * Copies the coordinates of the specified points, interleaved
+                 * per the dimension of the linestring.
+                 *
+                 * @param value     Returns the coordinates; must have capacity
+                 *                  for 'count' points
+                 * @param offset    The index of the first point
+                 * @param count     The number of points
+                 *
+                 * @return TE_Ok on success; various codes on failure.
+                 */
+                Util::TAKErr getPoints(double *value, const std::size_t offset, const std::size_t count) const NOTHROWS;
                 /**
                  * Returns the specified point. The supplied Point2 will have
                  * its dimension reset to the dimension of this linestring.
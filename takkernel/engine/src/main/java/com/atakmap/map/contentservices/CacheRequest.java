@@ -28,4 +28,9 @@ public class CacheRequest
     public int maxThreads;
     public long expirationOffset;
     public String preferredContainerProvider;
+    /**
+     * If <code>true</code>, the tiles committed to the cache are recorded in a ledger next to the cache file so that
+     * an interrupted request may be resumed without downloading them again.
+     */
+    public boolean resumable;
 }
@@ -0,0 +1,237 @@
+package com.atakmap.map.elevation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of the elevation chunks sampled by the bulk queries of {@link ElevationManager}. Chunks
+ * retain their decoded data once sampled, so reusing the instance for a chunk that was sampled by a previous query
+ * avoids reloading the data for every batch of points along a profile.
+ *
+ * <P>Chunks are keyed on their type and URI. A chunk evicted while it is in use by a query is disposed once the query
+ * releases it. The cache is flushed whenever an elevation source is attached or detached, or reports a change in
+ * content.
+ */
+final class ElevationChunkCache implements ElevationSourceManager.OnSourcesChangedListener,
+        ElevationSource.OnContentChangedListener
+{
+    final static int DEFAULT_CAPACITY = 16;
+
+    private final int capacity;
+    private final Map<String, Entry> entries;
+    /** entries that were evicted while in use */
+    private final Collection<Entry> evicted;
+    private final Object listenLock;
+    private volatile boolean listening;
+
+    private long hits;
+    private long misses;
+
+    ElevationChunkCache(int capacity)
+    {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(capacity, 0.75f, true);
+        this.evicted = new ArrayList<>();
+        this.listenLock = new Object();
+        this.listening = false;
+    }
+
+    /**
+     * Returns the chunk for the current row of the cursor, creating it if it is not cached. The returned chunk must
+     * be passed to {@link #release(ElevationChunk)} when the caller is done sampling it.
+     *
+     * @param cursor The cursor, positioned on a row
+     * @return The chunk for the row, or <code>null</code> if no chunk could be created
+     */
+    ElevationChunk acquire(ElevationSource.Cursor cursor)
+    {
+        final String uri = cursor.getUri();
+        if (uri == null)
+            return cursor.get();
+        final String key = cursor.getType() + '\n' + uri;
+
+        if (!this.listening)
+            this.listen();
+        synchronized (this)
+        {
+            final Entry entry = this.entries.get(key);
+            if (entry != null)
+            {
+                entry.references++;
+                this.hits++;
+                return entry.chunk;
+            }
+            this.misses++;
+        }
+
+        final ElevationChunk chunk = cursor.get();
+        if (chunk == null)
+            return null;
+
+        final Collection<ElevationChunk> disposed = new ArrayList<>(1);
+        final ElevationChunk retval;
+        synchronized (this)
+        {
+            final Entry existing = this.entries.get(key);
+            if (existing != null)
+            {
+                // another query loaded the chunk concurrently
+                existing.references++;
+                disposed.add(chunk);
+                retval = existing.chunk;
+            } else
+            {
+                final Entry entry = new Entry(chunk);
+                entry.references++;
+                this.entries.put(key, entry);
+                this.trim(disposed);
+                retval = chunk;
+            }
+        }
+        for (ElevationChunk e : disposed)
+            e.dispose();
+        return retval;
+    }
+
+    /**
+     * Releases a chunk returned by {@link #acquire(ElevationSource.Cursor)}.
+     */
+    void release(ElevationChunk chunk)
+    {
+        boolean dispose = true;
+        synchronized (this)
+        {
+            for (Entry entry : this.entries.values())
+            {
+                if (entry.chunk == chunk)
+                {
+                    entry.references--;
+                    dispose = false;
+                    break;
+                }
+            }
+            if (dispose)
+            {
+                // evicted while in use, or never cached
+                for (Iterator<Entry> it = this.evicted.iterator(); it.hasNext(); )
+                {
+                    final Entry entry = it.next();
+                    if (entry.chunk != chunk)
+                        continue;
+                    if (--entry.references > 0)
+                        dispose = false;
+                    else
+                        it.remove();
+                    break;
+                }
+            }
+        }
+        if (dispose)
+            chunk.dispose();
+    }
+
+    /**
+     * Disposes all cached chunks that are not in use.
+     */
+    void clear()
+    {
+        final Collection<ElevationChunk> disposed = new ArrayList<>();
+        synchronized (this)
+        {
+            for (Entry entry : this.entries.values())
+                this.evict(entry, disposed);
+            this.entries.clear();
+        }
+        for (ElevationChunk chunk : disposed)
+            chunk.dispose();
+    }
+
+    synchronized int size()
+    {
+        return this.entries.size();
+    }
+
+    synchronized long getHitCount()
+    {
+        return this.hits;
+    }
+
+    synchronized long getMissCount()
+    {
+        return this.misses;
+    }
+
+    @Override
+    public void onSourceAttached(ElevationSource src)
+    {
+        src.addOnContentChangedListener(this);
+        this.clear();
+    }
+
+    @Override
+    public void onSourceDetached(ElevationSource src)
+    {
+        src.removeOnContentChangedListener(this);
+        this.clear();
+    }
+
+    @Override
+    public void onContentChanged(ElevationSource source)
+    {
+        this.clear();
+    }
+
+    /**
+     * Subscribes to source changes on first use, so that a cache that is never queried does not touch the native
+     * source registry. The cache lock is not held, as the registry may dispatch change notifications while holding its
+     * own lock.
+     */
+    private void listen()
+    {
+        synchronized (this.listenLock)
+        {
+            if (this.listening)
+                return;
+            ElevationSourceManager.addOnSourcesChangedListener(this);
+            final Collection<ElevationSource> sources = new ArrayList<>();
+            ElevationSourceManager.getSources(sources);
+            for (ElevationSource src : sources)
+                src.addOnContentChangedListener(this);
+            this.listening = true;
+        }
+    }
+
+    private void trim(Collection<ElevationChunk> disposed)
+    {
+        final Iterator<Entry> it = this.entries.values().iterator();
+        while (this.entries.size() > this.capacity && it.hasNext())
+        {
+            final Entry eldest = it.next();
+            it.remove();
+            this.evict(eldest, disposed);
+        }
+    }
+
+    private void evict(Entry entry, Collection<ElevationChunk> disposed)
+    {
+        if (entry.references > 0)
+            this.evicted.add(entry);
+        else
+            disposed.add(entry.chunk);
+    }
+
+    private final static class Entry
+    {
+        final ElevationChunk chunk;
+        int references;
+
+        Entry(ElevationChunk chunk)
+        {
+            this.chunk = chunk;
+            this.references = 0;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import com.atakmap.interop.Pointer;
 import com.atakmap.coremap.maps.coords.GeoPointMetaData;
 import com.atakmap.map.layer.feature.geometry.Envelope;
 import com.atakmap.map.layer.feature.geometry.Geometry;
+import com.atakmap.map.layer.feature.geometry.GeometryFactory;
 import com.atakmap.map.layer.feature.geometry.Point;
 import com.atakmap.map.layer.raster.DatasetDescriptor;
 import com.atakmap.map.layer.raster.ImageInfo;
@@ -28,6 +29,7 @@ public final class ElevationManager
 
     private final static Map<MosaicDatabase2, ElevationSource> dbs = new IdentityHashMap<MosaicDatabase2, ElevationSource>();
     private final static PriorityServiceProviderRegistry2<ElevationData, ImageInfo, ElevationDataSpi> dataSpiRegistry = new PriorityServiceProviderRegistry2<ElevationData, ImageInfo, ElevationDataSpi>();
+    private final static ElevationChunkCache chunkCache = new ElevationChunkCache(ElevationChunkCache.DEFAULT_CAPACITY);
 
     private ElevationManager()
     {
@@ -408,6 +410,125 @@ public final class ElevationManager
         }
     }
 
+    /**
+     * Returns the elevation, as meters HAE, for each of the specified locations. The elevation sources are queried
+     * once for the bounds of all locations, and each location takes its value from the first chunk with a value at
+     * that location, in the same order as {@link #getElevation(double, double, QueryParameters, GeoPointMetaData)}.
+     * Chunks are retained between calls, so that successive calls covering the same area do not reload their data.
+     *
+     * @param latitudes  The latitudes of the locations
+     * @param longitudes The longitudes of the locations
+     * @param count      The number of locations
+     * @param filter     The filter, may be <code>null</code>
+     * @param hae        Returns the elevation, in meters HAE, at each location or <code>Double.NaN</code> if not
+     *                   available
+     * @param sources    If non-<code>null</code>, returns the type of the source of the elevation at each location, or
+     *                   <code>null</code> if not available
+     * @return <code>true</code> if an elevation was found for every location, <code>false</code> otherwise
+     * @throws IllegalArgumentException if any of the arrays holds fewer than <code>count</code> elements
+     */
+    public static boolean getElevation(double[] latitudes, double[] longitudes, int count, QueryParameters filter, double[] hae, String[] sources)
+    {
+        if (count < 0 || latitudes.length < count || longitudes.length < count || hae.length < count
+                || (sources != null && sources.length < count))
+            throw new IllegalArgumentException();
+
+        // the valid locations, packed as longitude, latitude, HAE triplets for sampling
+        final double[] lla = new double[count * 3];
+        final int[] index = new int[count];
+        int pending = 0;
+        boolean invalid = false;
+        double north = -90;
+        double south = 90;
+        double east = -180;
+        double west = 180;
+        for (int i = 0; i < count; i++)
+        {
+            hae[i] = Double.NaN;
+            if (sources != null)
+                sources[i] = null;
+
+            final double lat = latitudes[i];
+            final double lng = longitudes[i];
+            if (!(Math.abs(lat) <= 90d) || !(Math.abs(lng) <= 180d))
+            {
+                invalid = true;
+                continue;
+            }
+            lla[pending * 3] = lng;
+            lla[pending * 3 + 1] = lat;
+            lla[pending * 3 + 2] = Double.NaN;
+            index[pending++] = i;
+
+            if (lat > north)
+                north = lat;
+            if (lat < south)
+                south = lat;
+            if (lng > east)
+                east = lng;
+            if (lng < west)
+                west = lng;
+        }
+        if (pending == 0)
+            return !invalid;
+
+        filter = (filter != null) ? new QueryParameters(filter) : new QueryParameters();
+        if (pending == 1)
+            filter.spatialFilter = new Point(west, north);
+        else
+            filter.spatialFilter = GeometryFactory.fromEnvelope(new Envelope(west, south, 0d, east, north, 0d));
+        final ElevationSource.QueryParameters params = Adapter.adapt(filter, null);
+
+        ElevationSource.Cursor result = null;
+        try
+        {
+            result = queryElevationSources(params);
+            while (pending > 0 && result.moveToNext())
+            {
+                final ElevationChunk chunk = chunkCache.acquire(result);
+                if (chunk == null)
+                    continue;
+                final String type;
+                try
+                {
+                    chunk.sample(lla, 0, pending);
+                    type = (sources != null) ? chunk.getType() : null;
+                } finally
+                {
+                    chunkCache.release(chunk);
+                }
+
+                // record the sampled values and compact the remaining locations
+                int remaining = 0;
+                for (int i = 0; i < pending; i++)
+                {
+                    final double value = lla[i * 3 + 2];
+                    if (!Double.isNaN(value))
+                    {
+                        hae[index[i]] = value;
+                        if (sources != null)
+                            sources[index[i]] = type;
+                        continue;
+                    }
+                    if (remaining != i)
+                    {
+                        lla[remaining * 3] = lla[i * 3];
+                        lla[remaining * 3 + 1] = lla[i * 3 + 1];
+                        lla[remaining * 3 + 2] = Double.NaN;
+                        index[remaining] = index[i];
+                    }
+                    remaining++;
+                }
+                pending = remaining;
+            }
+        } finally
+        {
+            if (result != null)
+                result.close();
+        }
+        return (pending == 0) && !invalid;
+    }
+
     /**
      * Returns a heightmap for an {@link ElevationSource}.
      * @param value     an array to hold the results
@@ -326,6 +326,7 @@ final class StreamingTileClient implements TileClient, TilesMetadataControl
             return;
         }
 
+        TileScraper.discardStaleLedger(request.cacheFile);
         sink = TileContainerFactory.openOrCreateCompatibleContainer(request.cacheFile.getAbsolutePath(), this, preferredProvider);
         if (sink == null)
         {
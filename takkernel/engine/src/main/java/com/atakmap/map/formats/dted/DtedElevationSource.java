@@ -2,7 +2,22 @@ package com.atakmap.map.formats.dted;
 
 import com.atakmap.map.elevation.ElevationSource;
 
+import java.io.File;
+
 public final class DtedElevationSource
 {
     public static native ElevationSource create(String dir);
+
+    /**
+     * Creates a source for the specified DTED directory that memory maps the cells and samples the posts directly,
+     * rather than opening each cell as a GDAL dataset. Mapped cells are shared through
+     * {@link MappedPostCellCache#getDefault()}.
+     *
+     * @param dir The DTED directory
+     * @return The source
+     */
+    public static ElevationSource createMapped(String dir)
+    {
+        return new MappedDtedElevationSource(new File(dir), MappedPostCellCache.getDefault());
+    }
 }
@@ -0,0 +1,98 @@
+package com.atakmap.map.formats.dted;
+
+import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.coremap.locale.LocaleUtil;
+import com.atakmap.map.elevation.ElevationChunk;
+import com.atakmap.map.elevation.TiledElevationSource;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.raster.tilematrix.TileMatrix;
+
+import java.io.File;
+
+/**
+ * DTED directory source that samples the cells through {@link MappedElevationChunk}. Cells are expected in the
+ * standard <code>&lt;root&gt;/w077/n35.dt2</code> layout; the zoom level of the tile grid is the DTED level.
+ */
+final class MappedDtedElevationSource extends TiledElevationSource
+{
+    private final static TileMatrix.ZoomLevel[] DTED_TILE_MATRIX = new TileMatrix.ZoomLevel[4];
+
+    static
+    {
+        DTED_TILE_MATRIX[0] = oneDegZoomLevel(900d, 0); // DTED0
+        DTED_TILE_MATRIX[1] = oneDegZoomLevel(90d, 1); // DTED1
+        DTED_TILE_MATRIX[2] = oneDegZoomLevel(30d, 2); // DTED2
+        DTED_TILE_MATRIX[3] = oneDegZoomLevel(10d, 3); // DTED3
+    }
+
+    private final File dir;
+    private final MappedPostCellCache cache;
+
+    MappedDtedElevationSource(File dir, MappedPostCellCache cache)
+    {
+        super("DTED", 4326, new Envelope(-180d, -90d, 0d, 180d, 90d, 0d), -180d, 90d, TileScheme.Custom, DTED_TILE_MATRIX, true);
+        this.dir = dir;
+        this.cache = cache;
+    }
+
+    @Override
+    public ElevationChunk getTerrainTile(int zoom, int x, int y)
+    {
+        if (zoom < 0 || zoom > 3)
+            return null;
+        if (x < 0 || x > 359)
+            return null;
+        if (y < 0 || y > 179)
+            return null;
+
+        final int lng = x - 180;
+        final int lat = 89 - y;
+
+        StringBuilder p = new StringBuilder();
+        p.append((lng < 0) ? 'w' : 'e');
+        final int absLng = Math.abs(lng);
+        if (absLng < 10)
+            p.append("00");
+        else if (absLng < 100)
+            p.append("0");
+        p.append(absLng);
+        p.append('/');
+        p.append((lat < 0) ? 's' : 'n');
+        final int absLat = Math.abs(lat);
+        if (absLat < 10)
+            p.append("0");
+        p.append(absLat);
+        p.append(".dt");
+        p.append(zoom);
+
+        final String name = p.toString();
+        File f = new File(dir, name);
+        if (!IOProviderFactory.exists(f))
+            f = new File(dir, name.toUpperCase(LocaleUtil.getCurrent()));
+        if (!IOProviderFactory.exists(f))
+            return null;
+        return MappedElevationChunk.create(f, "DTED" + zoom, DTED_TILE_MATRIX[zoom].resolution, cache);
+    }
+
+    @Override
+    public void addOnContentChangedListener(OnContentChangedListener l)
+    {
+    } // no-op
+
+    @Override
+    public void removeOnContentChangedListener(OnContentChangedListener l)
+    {
+    } // no-op
+
+    static TileMatrix.ZoomLevel oneDegZoomLevel(double gsd, int level)
+    {
+        final TileMatrix.ZoomLevel retval = new TileMatrix.ZoomLevel();
+        retval.level = level;
+        retval.resolution = gsd;
+        retval.pixelSizeX = 1d;
+        retval.pixelSizeY = 1d;
+        retval.tileWidth = 1;
+        retval.tileHeight = 1;
+        return retval;
+    }
+}
@@ -0,0 +1,127 @@
+package com.atakmap.map.formats.dted;
+
+import com.atakmap.coremap.log.Log;
+import com.atakmap.map.elevation.ElevationChunk;
+import com.atakmap.map.elevation.ElevationData;
+import com.atakmap.map.elevation.ElevationManager;
+import com.atakmap.map.layer.feature.geometry.GeometryFactory;
+import com.atakmap.map.layer.feature.geometry.Polygon;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * {@link ElevationChunk} sampler for DTED and SRTM <code>.hgt</code> cells that reads the posts from a
+ * {@link MappedPostCell} instead of a GDAL dataset. The cell is obtained from a {@link MappedPostCellCache} on each
+ * sample call, so the number of mapped cells is bounded by the cache regardless of how many chunks are retained.
+ */
+public final class MappedElevationChunk extends ElevationChunk.Factory.Sampler
+{
+    private final static String TAG = "MappedElevationChunk";
+
+    /** meters per degree of latitude */
+    private final static double METERS_PER_DEGREE = 111319.49079327357d;
+
+    private final File file;
+    private final MappedPostCellCache cache;
+
+    private MappedElevationChunk(File file, MappedPostCellCache cache)
+    {
+        this.file = file;
+        this.cache = cache;
+    }
+
+    @Override
+    public double sample(double latitude, double longitude)
+    {
+        final MappedPostCell cell = getCell();
+        if (cell == null)
+            return Double.NaN;
+        final double msl = cell.sample(latitude, longitude);
+        if (Double.isNaN(msl))
+            return Double.NaN;
+        return msl + ElevationManager.getGeoidHeight(latitude, longitude);
+    }
+
+    @Override
+    public boolean sample(double[] lla, int off, int len)
+    {
+        // resolve the cell once for the whole batch
+        final MappedPostCell cell = getCell();
+        if (cell == null)
+            return false;
+        boolean retval = true;
+        for (int i = 0; i < len; i++)
+        {
+            final int idx = (i + off) * 3;
+            if (!Double.isNaN(lla[idx + 2]))
+                continue;
+            final double msl = cell.sample(lla[idx + 1], lla[idx]);
+            if (Double.isNaN(msl))
+                retval = false;
+            else
+                lla[idx + 2] = msl + ElevationManager.getGeoidHeight(lla[idx + 1], lla[idx]);
+        }
+        return retval;
+    }
+
+    @Override
+    public void dispose()
+    {
+        // the mapping is owned by the cache
+    }
+
+    private MappedPostCell getCell()
+    {
+        try
+        {
+            return this.cache.get(this.file);
+        } catch (IOException e)
+        {
+            Log.w(TAG, "Failed to map " + this.file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Creates a new chunk for the specified DTED or SRTM <code>.hgt</code> cell.
+     *
+     * @param file       The cell
+     * @param type       The chunk type, if <code>null</code> the type is derived from the cell
+     * @param resolution The nominal resolution, in meters; if <code>NaN</code> the resolution is derived from the
+     *                   post spacing
+     * @param cache      The cache the cell is mapped through
+     * @return The chunk, or <code>null</code> if the cell could not be mapped
+     */
+    public static ElevationChunk create(File file, String type, double resolution, MappedPostCellCache cache)
+    {
+        final MappedPostCell cell;
+        try
+        {
+            cell = cache.get(file);
+        } catch (IOException e)
+        {
+            return null;
+        }
+
+        if (type == null)
+            type = cell.isDted() ? "DTED" : "SRTM";
+        if (Double.isNaN(resolution))
+            resolution = cell.getLatInterval() * METERS_PER_DEGREE;
+
+        final double south = cell.getSouth();
+        final double west = cell.getWest();
+        final double north = cell.getNorth();
+        final double east = cell.getEast();
+        return ElevationChunk.Factory.create(
+                type,
+                file.getAbsolutePath(),
+                ElevationData.MODEL_TERRAIN,
+                resolution,
+                (Polygon) GeometryFactory.polygonFromQuad(west, north, east, north, east, south, west, south),
+                Double.NaN,
+                Double.NaN,
+                true,
+                new MappedElevationChunk(file, cache));
+    }
+}
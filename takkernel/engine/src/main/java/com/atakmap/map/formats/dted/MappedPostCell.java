@@ -0,0 +1,348 @@
+package com.atakmap.map.formats.dted;
+
+import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.coremap.locale.LocaleUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A DTED or SRTM <code>.hgt</code> cell, memory mapped and sampled directly from the post data without going through
+ * GDAL.
+ *
+ * <P>Both formats are regular grids of 16-bit posts with fixed layouts:
+ * <UL>
+ * <LI>DTED stores one record per line of longitude, west to east, each record holding the posts from south to north
+ * as signed-magnitude values. The origin, post intervals and post counts are read from the UHL record.</LI>
+ * <LI>SRTM stores rows of posts north to south as two's complement values. The origin is derived from the file name
+ * (e.g. <code>N34W081.hgt</code>) and the post count from the file length.</LI>
+ * </UL>
+ *
+ * <P>Sampled heights are orthometric (MSL). Posts are treated as points; the cell covers the region from the south-west
+ * post through the north-east post.
+ *
+ * <P>Instances are immutable and may be sampled concurrently.
+ */
+public final class MappedPostCell
+{
+    final static int DTED_UHL_LENGTH = 80;
+    final static int DTED_DSI_LENGTH = 648;
+    final static int DTED_ACC_LENGTH = 2700;
+    final static int DTED_DATA_OFFSET = DTED_UHL_LENGTH + DTED_DSI_LENGTH + DTED_ACC_LENGTH;
+    /** sentinel, block count, longitude count, latitude count */
+    final static int DTED_RECORD_HEADER_LENGTH = 8;
+    final static int DTED_RECORD_CHECKSUM_LENGTH = 4;
+
+    final static int DTED_VOID = -32767;
+    final static int SRTM_VOID = -32768;
+
+    private final File file;
+    private final ByteBuffer data;
+    private final boolean dted;
+
+    private final double south;
+    private final double west;
+    private final double latInterval;
+    private final double lonInterval;
+    private final int numLatPoints;
+    private final int numLonLines;
+    private final int recordLength;
+
+    private MappedPostCell(File file, ByteBuffer data, boolean dted, double south, double west, double latInterval,
+                           double lonInterval, int numLatPoints, int numLonLines)
+    {
+        this.file = file;
+        this.data = data;
+        this.dted = dted;
+        this.south = south;
+        this.west = west;
+        this.latInterval = latInterval;
+        this.lonInterval = lonInterval;
+        this.numLatPoints = numLatPoints;
+        this.numLonLines = numLonLines;
+        this.recordLength = DTED_RECORD_HEADER_LENGTH + (numLatPoints * 2) + DTED_RECORD_CHECKSUM_LENGTH;
+    }
+
+    public File getFile()
+    {
+        return this.file;
+    }
+
+    public boolean isDted()
+    {
+        return this.dted;
+    }
+
+    public double getSouth()
+    {
+        return this.south;
+    }
+
+    public double getWest()
+    {
+        return this.west;
+    }
+
+    public double getNorth()
+    {
+        return this.south + (this.numLatPoints - 1) * this.latInterval;
+    }
+
+    public double getEast()
+    {
+        return this.west + (this.numLonLines - 1) * this.lonInterval;
+    }
+
+    public int getNumLatPoints()
+    {
+        return this.numLatPoints;
+    }
+
+    public int getNumLonLines()
+    {
+        return this.numLonLines;
+    }
+
+    /**
+     * Returns the latitude post interval, in degrees.
+     */
+    public double getLatInterval()
+    {
+        return this.latInterval;
+    }
+
+    /**
+     * Returns the longitude post interval, in degrees.
+     */
+    public double getLonInterval()
+    {
+        return this.lonInterval;
+    }
+
+    /**
+     * Returns the post value at the specified index, or <code>NaN</code> if the post is void.
+     *
+     * @param lonIdx The longitude line index, west to east
+     * @param latIdx The latitude point index, south to north
+     */
+    public double getPost(int lonIdx, int latIdx)
+    {
+        if (this.dted)
+        {
+            final int v = this.data.getShort(DTED_DATA_OFFSET + lonIdx * this.recordLength + DTED_RECORD_HEADER_LENGTH + latIdx * 2) & 0xFFFF;
+            // signed magnitude
+            final int el = ((v & 0x8000) != 0) ? -(v & 0x7FFF) : v;
+            return (el == DTED_VOID) ? Double.NaN : el;
+        } else
+        {
+            final int row = (this.numLatPoints - 1) - latIdx;
+            final short el = this.data.getShort((row * this.numLonLines + lonIdx) * 2);
+            return (el == SRTM_VOID) ? Double.NaN : el;
+        }
+    }
+
+    /**
+     * Returns the bilinearly interpolated MSL height at the specified location. Void posts are filled with the average
+     * of the non-void posts contributing to the sample.
+     *
+     * @return The MSL height, in meters, or <code>NaN</code> if the location is outside of the cell or all contributing
+     * posts are void
+     */
+    public double sample(double latitude, double longitude)
+    {
+        double x = (longitude - this.west) / this.lonInterval;
+        double y = (latitude - this.south) / this.latInterval;
+
+        // soft clamp to the post grid
+        final int maxX = this.numLonLines - 1;
+        final int maxY = this.numLatPoints - 1;
+        if (x < 0d && x > -1e-6)
+            x = 0d;
+        else if (x > maxX && x - maxX < 1e-6)
+            x = maxX;
+        if (y < 0d && y > -1e-6)
+            y = 0d;
+        else if (y > maxY && y - maxY < 1e-6)
+            y = maxY;
+        if (x < 0d || x > maxX || y < 0d || y > maxY)
+            return Double.NaN;
+
+        final int ix = Math.min((int) x, maxX - 1);
+        final int iy = Math.min((int) y, maxY - 1);
+        final double wx = x - ix;
+        final double wy = y - iy;
+
+        final double sw = getPost(ix, iy);
+        final double se = getPost(ix + 1, iy);
+        final double nw = getPost(ix, iy + 1);
+        final double ne = getPost(ix + 1, iy + 1);
+
+        final double wsw = (1d - wx) * (1d - wy);
+        final double wse = wx * (1d - wy);
+        final double wnw = (1d - wx) * wy;
+        final double wne = wx * wy;
+
+        int voids = 0;
+        double sum = 0d;
+        double retval = 0d;
+        double voidWeight = 0d;
+        if (Double.isNaN(sw))
+        {
+            voids++;
+            voidWeight += wsw;
+        } else
+        {
+            sum += sw;
+            retval += sw * wsw;
+        }
+        if (Double.isNaN(se))
+        {
+            voids++;
+            voidWeight += wse;
+        } else
+        {
+            sum += se;
+            retval += se * wse;
+        }
+        if (Double.isNaN(nw))
+        {
+            voids++;
+            voidWeight += wnw;
+        } else
+        {
+            sum += nw;
+            retval += nw * wnw;
+        }
+        if (Double.isNaN(ne))
+        {
+            voids++;
+            voidWeight += wne;
+        } else
+        {
+            sum += ne;
+            retval += ne * wne;
+        }
+
+        if (voids == 4)
+            return Double.NaN;
+        // fill any voids with the average
+        if (voids > 0)
+            retval += (sum / (4 - voids)) * voidWeight;
+        return retval;
+    }
+
+    /**
+     * Returns <code>true</code> if the file extension is one of the formats supported by {@link #open(File)}.
+     */
+    public static boolean isSupported(File file)
+    {
+        final String name = file.getName().toLowerCase(LocaleUtil.getCurrent());
+        return name.endsWith(".hgt") || name.matches(".*\\.dt[0-3]$");
+    }
+
+    /**
+     * Opens and maps the specified DTED or SRTM <code>.hgt</code> cell. The format is determined from the file
+     * extension.
+     *
+     * @param file The cell
+     * @return The mapped cell
+     * @throws IOException if the file could not be mapped or is not a valid cell
+     */
+    public static MappedPostCell open(File file) throws IOException
+    {
+        final String name = file.getName().toLowerCase(LocaleUtil.getCurrent());
+        final boolean dted;
+        if (name.endsWith(".hgt"))
+            dted = false;
+        else if (name.matches(".*\\.dt[0-3]$"))
+            dted = true;
+        else
+            throw new IOException("Unsupported cell " + file);
+
+        final ByteBuffer data;
+        try (FileChannel channel = IOProviderFactory.getChannel(file, "r"))
+        {
+            // the mapping remains valid after the channel is closed
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        data.order(ByteOrder.BIG_ENDIAN);
+
+        return dted ? parseDted(file, data) : parseHgt(file, data);
+    }
+
+    static MappedPostCell parseDted(File file, ByteBuffer data) throws IOException
+    {
+        if (data.capacity() < DTED_DATA_OFFSET || data.get(0) != 'U' || data.get(1) != 'H' || data.get(2) != 'L')
+            throw new IOException("Invalid DTED header " + file);
+
+        final double west = parseDmsh(data, 4, 3);
+        final double south = parseDmsh(data, 12, 3);
+        final double lonInterval = parseInt(data, 20, 4) / 36000d;
+        final double latInterval = parseInt(data, 24, 4) / 36000d;
+        final int numLonLines = parseInt(data, 47, 4);
+        final int numLatPoints = parseInt(data, 51, 4);
+        if (lonInterval <= 0d || latInterval <= 0d || numLonLines < 2 || numLatPoints < 2)
+            throw new IOException("Invalid DTED header " + file);
+
+        final long expected = DTED_DATA_OFFSET
+                + (long) numLonLines * (DTED_RECORD_HEADER_LENGTH + numLatPoints * 2 + DTED_RECORD_CHECKSUM_LENGTH);
+        if (data.capacity() < expected)
+            throw new IOException("Truncated DTED cell " + file);
+
+        return new MappedPostCell(file, data, true, south, west, latInterval, lonInterval, numLatPoints, numLonLines);
+    }
+
+    static MappedPostCell parseHgt(File file, ByteBuffer data) throws IOException
+    {
+        final int numPosts = (int) Math.round(Math.sqrt(data.capacity() / 2d));
+        if (numPosts < 2 || numPosts * numPosts * 2 != data.capacity())
+            throw new IOException("Invalid SRTM cell size " + file);
+
+        // e.g. N34W081.hgt
+        final String name = file.getName().toUpperCase(LocaleUtil.getCurrent());
+        final double south;
+        final double west;
+        try
+        {
+            final char ns = name.charAt(0);
+            final char ew = name.charAt(3);
+            if ((ns != 'N' && ns != 'S') || (ew != 'E' && ew != 'W'))
+                throw new IOException("Invalid SRTM cell name " + file);
+            south = Integer.parseInt(name.substring(1, 3)) * ((ns == 'S') ? -1 : 1);
+            west = Integer.parseInt(name.substring(4, 7)) * ((ew == 'W') ? -1 : 1);
+        } catch (IndexOutOfBoundsException | NumberFormatException e)
+        {
+            throw new IOException("Invalid SRTM cell name " + file, e);
+        }
+
+        final double interval = 1d / (numPosts - 1);
+        return new MappedPostCell(file, data, false, south, west, interval, interval, numPosts, numPosts);
+    }
+
+    // DDDMMSSH, where the number of degree digits is specified
+    private static double parseDmsh(ByteBuffer data, int off, int degDigits) throws IOException
+    {
+        final int deg = parseInt(data, off, degDigits);
+        final int min = parseInt(data, off + degDigits, 2);
+        final int sec = parseInt(data, off + degDigits + 2, 2);
+        final char hemi = (char) data.get(off + degDigits + 4);
+        final double retval = deg + (min / 60d) + (sec / 3600d);
+        return (hemi == 'S' || hemi == 'W') ? -retval : retval;
+    }
+
+    private static int parseInt(ByteBuffer data, int off, int len) throws IOException
+    {
+        int retval = 0;
+        for (int i = 0; i < len; i++)
+        {
+            final int c = data.get(off + i);
+            if (c < '0' || c > '9')
+                throw new IOException("Invalid DTED header field");
+            retval = (retval * 10) + (c - '0');
+        }
+        return retval;
+    }
+}
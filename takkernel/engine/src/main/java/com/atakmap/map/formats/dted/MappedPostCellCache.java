@@ -0,0 +1,150 @@
+package com.atakmap.map.formats.dted;
+
+import com.atakmap.coremap.io.IOProviderFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of {@link MappedPostCell} instances, keyed on file path, last modified time and length.
+ * Evicted cells, and cells whose file has been replaced or truncated, are released to the garbage collector, which
+ * unmaps them.
+ */
+public final class MappedPostCellCache
+{
+    public final static int DEFAULT_CAPACITY = 64;
+
+    private final static MappedPostCellCache DEFAULT = new MappedPostCellCache(DEFAULT_CAPACITY);
+
+    private final Map<String, Entry> cells;
+    private int capacity;
+    private long opened;
+
+    public MappedPostCellCache(int capacity)
+    {
+        if (capacity < 1)
+            throw new IllegalArgumentException();
+        this.capacity = capacity;
+        this.cells = new LinkedHashMap<>(16, 0.75f, true);
+        this.opened = 0L;
+    }
+
+    /**
+     * Returns the cache shared by the mapped DTED and SRTM elevation chunks.
+     */
+    public static MappedPostCellCache getDefault()
+    {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the cell for the specified file, mapping it if it is not cached or if the file has been modified since it
+     * was mapped.
+     *
+     * @throws IOException if the cell could not be mapped
+     */
+    public MappedPostCell get(File file) throws IOException
+    {
+        final String key = file.getAbsolutePath();
+        // stamp before mapping, so a change while mapping is picked up on the next call
+        final long lastModified = IOProviderFactory.lastModified(file);
+        final long length = IOProviderFactory.length(file);
+        synchronized (this)
+        {
+            final MappedPostCell cell = this.getCurrent(key, lastModified, length);
+            if (cell != null)
+                return cell;
+        }
+
+        final MappedPostCell cell = MappedPostCell.open(file);
+        synchronized (this)
+        {
+            final MappedPostCell existing = this.getCurrent(key, lastModified, length);
+            // another thread mapped the cell concurrently
+            if (existing != null)
+                return existing;
+            this.opened++;
+            this.cells.put(key, new Entry(cell, lastModified, length));
+            this.trim();
+        }
+        return cell;
+    }
+
+    /**
+     * Returns the cached cell for the key, releasing it if it was mapped from a different version of the file. The
+     * old mapping must not be read, as reading a truncated file raises <code>SIGBUS</code>.
+     */
+    private MappedPostCell getCurrent(String key, long lastModified, long length)
+    {
+        final Entry entry = this.cells.get(key);
+        if (entry == null)
+            return null;
+        if (entry.lastModified != lastModified || entry.length != length)
+        {
+            this.cells.remove(key);
+            return null;
+        }
+        return entry.cell;
+    }
+
+    /**
+     * Sets the maximum number of mapped cells retained by the cache.
+     */
+    public synchronized void setCapacity(int capacity)
+    {
+        if (capacity < 1)
+            throw new IllegalArgumentException();
+        this.capacity = capacity;
+        this.trim();
+    }
+
+    public synchronized int getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the number of cells that have been mapped by the cache since it was created.
+     */
+    public synchronized long getOpenCount()
+    {
+        return this.opened;
+    }
+
+    public synchronized int size()
+    {
+        return this.cells.size();
+    }
+
+    public synchronized void clear()
+    {
+        this.cells.clear();
+    }
+
+    private void trim()
+    {
+        Iterator<Entry> it = this.cells.values().iterator();
+        while (this.cells.size() > this.capacity && it.hasNext())
+        {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private final static class Entry
+    {
+        final MappedPostCell cell;
+        final long lastModified;
+        final long length;
+
+        Entry(MappedPostCell cell, long lastModified, long length)
+        {
+            this.cell = cell;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+}
@@ -203,17 +203,29 @@ public final class MapBoxElevationSource extends TiledElevationSource
                 return null;
             try
             {
-                // decode the bitmap
-                Bitmap data;
-                try (FileInputStream fis = IOProviderFactory.getInputStream(f))
-                {
-                    data = BitmapFactory.decodeStream(fis);
-                } catch (IOException e)
+                // obtain the decoded heightfield, decoding the bitmap if not cached
+                final String key = f.getAbsolutePath() + '@' + f.lastModified();
+                TerrainRGBHeightfield data = TerrainRGBChunkSpi.heightfields.get(key);
+                if (data == null)
                 {
-                    data = null;
+                    Bitmap bitmap;
+                    try (FileInputStream fis = IOProviderFactory.getInputStream(f))
+                    {
+                        bitmap = BitmapFactory.decodeStream(fis);
+                    } catch (IOException e)
+                    {
+                        bitmap = null;
+                    }
+                    if (bitmap == null)
+                        return null;
+                    try
+                    {
+                        data = TerrainRGBChunkSpi.heightfields.put(key, TerrainRGBHeightfield.decode(bitmap));
+                    } finally
+                    {
+                        bitmap.recycle();
+                    }
                 }
-                if (data == null)
-                    return null;
 
                 final double uly = OSMUtils.mapnikTileLat(zoom, y);
                 final double ulx = OSMUtils.mapnikTileLng(zoom, x);
@@ -230,7 +242,7 @@ public final class MapBoxElevationSource extends TiledElevationSource
                                 Double.NaN,
                                 Double.NaN,
                         false,
-                                new TerrainRGB(data, srid, true, x, y, zoom, null));
+                                new TerrainRGB(data, srid, true, x, y, zoom));
             } catch (Throwable t)
             {
                 return null;
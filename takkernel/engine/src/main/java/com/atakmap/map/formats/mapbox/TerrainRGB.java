@@ -1,12 +1,9 @@
 package com.atakmap.map.formats.mapbox;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Color;
 
 import com.atakmap.map.elevation.ElevationChunk;
 import com.atakmap.map.layer.raster.osm.OSMUtils;
-import com.atakmap.math.MathUtils;
 import com.atakmap.util.ResourcePool;
 
 import gov.tak.api.engine.map.coords.GeoCalculations;
@@ -19,26 +16,28 @@ final class TerrainRGB extends ElevationChunk.Factory.Sampler
     final int tileRow;
     final int tileZoom;
 
-    // data and/or the dataArray* members will be null, depending on constructor form used
-    Bitmap data;
+    // heightfield and/or the dataArray* members will be null, depending on constructor form used
+    TerrainRGBHeightfield heightfield;
     byte[] dataArray;
     int dataArrayOffset;
     int dataArrayLen;
     ResourcePool<Bitmap> recyclePool;
+    String cacheKey;
+    TerrainRGBHeightfieldCache cache;
 
-    public TerrainRGB(Bitmap data, int srid, boolean orthometric, int x, int y, int z, ResourcePool<Bitmap> recycleOnDispose)
+    public TerrainRGB(TerrainRGBHeightfield heightfield, int srid, boolean orthometric, int x, int y, int z)
     {
-        this.data = data;
+        this.heightfield = heightfield;
 
         this.srid = srid;
         this.orthometric = orthometric;
         this.tileColumn = x;
         this.tileRow = y;
         this.tileZoom = z;
-        this.recyclePool = recycleOnDispose;
     }
-    // Lazily creates Bitmap from dataArray, off, len against the recyclePool on first sample call
-    public TerrainRGB(byte[] dataArray, int off, int len, int srid, boolean orthometric, int x, int y, int z, ResourcePool<Bitmap> recyclePool)
+    // Lazily obtains the heightfield for dataArray, off, len from the cache on first sample call, decoding it
+    // against the recyclePool if it is not cached
+    public TerrainRGB(byte[] dataArray, int off, int len, int srid, boolean orthometric, int x, int y, int z, ResourcePool<Bitmap> recyclePool, TerrainRGBHeightfieldCache cache, String cacheKey)
     {
         this.dataArray = dataArray;
         this.dataArrayOffset = off;
@@ -50,10 +49,42 @@ final class TerrainRGB extends ElevationChunk.Factory.Sampler
         this.tileRow = y;
         this.tileZoom = z;
         this.recyclePool = recyclePool;
+        this.cache = cache;
+        this.cacheKey = cacheKey;
     }
 
     @Override
     public double sample(double latitude, double longitude)
+    {
+        final TerrainRGBHeightfield hf = getHeightfield();
+        if (hf == null)
+            return Double.NaN;
+        return sample(hf, latitude, longitude);
+    }
+
+    @Override
+    public boolean sample(double[] lla, int off, int len)
+    {
+        // resolve the heightfield once for the whole batch
+        final TerrainRGBHeightfield hf = getHeightfield();
+        if (hf == null)
+            return false;
+        boolean retval = true;
+        for (int i = 0; i < len; i++)
+        {
+            final int idx = (i + off) * 3;
+            if (!Double.isNaN(lla[idx + 2]))
+                continue;
+            final double el = sample(hf, lla[idx + 1], lla[idx]);
+            if (Double.isNaN(el))
+                retval = false;
+            else
+                lla[idx + 2] = el;
+        }
+        return retval;
+    }
+
+    private double sample(TerrainRGBHeightfield hf, double latitude, double longitude)
     {
         final double x;
         final double y;
@@ -74,56 +105,34 @@ final class TerrainRGB extends ElevationChunk.Factory.Sampler
         if (x < 0d || x > 255d || y < 0d || y > 255d)
             return Double.NaN;
 
-        final double weight_l = 1d - (x - (int) x);
-        final double weight_r = (x - (int) x);
-        final double weight_t = 1d - (y - (int) y);
-        final double weight_b = (y - (int) y);
-
-        if (data == null) {
-            BitmapFactory.Options opts = new BitmapFactory.Options();
-            opts.inBitmap = recyclePool.get();
-            opts.inMutable = true;
-            data = BitmapFactory.decodeByteArray(dataArray, dataArrayOffset, dataArrayLen, opts);
-            if (data == null)
-                return Double.NaN;
-        }
-
-        final int lx = MathUtils.clamp((int) x, 0, data.getWidth() - 1);
-        final int uy = MathUtils.clamp((int) y, 0, data.getHeight() - 1);
-        final int rx = MathUtils.clamp((int) Math.ceil(x), 0, data.getWidth() - 1);
-        final int ly = MathUtils.clamp((int) Math.ceil(y), 0, data.getHeight() - 1);
-
-        final double ul = decode(data, lx, uy);
-        final double ur = decode(data, rx, uy);
-        final double lr = decode(data, rx, ly);
-        final double ll = decode(data, lx, ly);
-
-        final double height = (ul * weight_l * weight_t) +
-                (ur * weight_r * weight_t) +
-                (lr * weight_r * weight_b) +
-                (ll * weight_l * weight_b);
+        final double height = hf.sample(x, y);
+        if (Double.isNaN(height))
+            return Double.NaN;
         return orthometric ? GeoCalculations.mslToHae(latitude, longitude, height) : height;
     }
 
-    @Override
-    public void dispose()
+    private synchronized TerrainRGBHeightfield getHeightfield()
     {
-        this.dataArray = null;
-        if(this.data == null)
-            return;
-        if (this.recyclePool == null || !this.recyclePool.put(data))
-            data.recycle();
-        this.data = null;
+        if (heightfield != null || dataArray == null)
+            return heightfield;
+        if (cache != null)
+            heightfield = cache.get(cacheKey);
+        if (heightfield == null)
+        {
+            heightfield = TerrainRGBHeightfield.decode(dataArray, dataArrayOffset, dataArrayLen, recyclePool);
+            if (heightfield != null && cache != null)
+                heightfield = cache.put(cacheKey, heightfield);
+        }
+        // the encoded data is no longer needed once decoded
+        if (heightfield != null)
+            dataArray = null;
+        return heightfield;
     }
 
-    static double decode(Bitmap bitmap, int x, int y)
+    @Override
+    public synchronized void dispose()
     {
-        final int v = bitmap.getPixel(x, y);
-        if(Color.alpha(v) == 0)
-            return Double.NaN;
-        final int R = Color.red(v);
-        final int G = Color.green(v);
-        final int B = Color.blue(v);
-        return -10000 + ((R * 256 * 256 + G * 256 + B) * 0.1);
+        this.dataArray = null;
+        this.heightfield = null;
     }
 }
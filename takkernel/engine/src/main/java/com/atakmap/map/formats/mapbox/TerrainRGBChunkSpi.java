@@ -23,6 +23,8 @@ public final class TerrainRGBChunkSpi implements ElevationChunkSpi
     public final static String MIME_TYPE = "application/vnd.mapbox-terrain-rgb";
 
     final static ResourcePool<Bitmap> chunkBitmapPool = new ResourcePool<>(4);
+    /** decoded heightfields, shared by all TerrainRGB chunks */
+    final static TerrainRGBHeightfieldCache heightfields = new TerrainRGBHeightfieldCache(TerrainRGBHeightfieldCache.DEFAULT_CAPACITY);
 
     @Override
     public ElevationChunk create(ByteBuffer data, Hints hints) {
@@ -85,7 +87,7 @@ public final class TerrainRGBChunkSpi implements ElevationChunkSpi
                 Double.NaN,
                 Double.NaN,
                 false,
-                new TerrainRGB(dataArray, off, len, metadata.srid, metadata.orthometric, metadata.tx, metadata.ty, metadata.tz, chunkBitmapPool));
+                new TerrainRGB(dataArray, off, len, metadata.srid, metadata.orthometric, metadata.tx, metadata.ty, metadata.tz, chunkBitmapPool, heightfields, cacheKey(metadata, dataArray, off, len)));
         return chunk;
     }
 
@@ -94,6 +96,14 @@ public final class TerrainRGBChunkSpi implements ElevationChunkSpi
         return MIME_TYPE;
     }
 
+    // tiles from different containers may share type and index, so the key includes a hash of the encoded tile
+    static String cacheKey(Metadata metadata, byte[] data, int off, int len) {
+        int hash = 1;
+        for(int i = 0; i < len; i++)
+            hash = 31*hash + data[off+i];
+        return metadata.type + '/' + metadata.srid + '/' + metadata.tz + '/' + metadata.tx + '/' + metadata.ty + '/' + len + '/' + hash;
+    }
+
     static class Metadata {
         int srid = 3857;
         int tx = -1;
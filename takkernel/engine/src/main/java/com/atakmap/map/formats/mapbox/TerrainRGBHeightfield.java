@@ -0,0 +1,118 @@
+package com.atakmap.map.formats.mapbox;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.atakmap.math.MathUtils;
+import com.atakmap.util.ResourcePool;
+
+/**
+ * A TerrainRGB tile decoded into a packed heightfield. Heights are stored in row-major order, in meters;
+ * transparent pixels decode to <code>NaN</code>. Instances are immutable once decoded and may be shared between
+ * threads.
+ */
+final class TerrainRGBHeightfield
+{
+    final int width;
+    final int height;
+    final float[] heights;
+
+    TerrainRGBHeightfield(int width, int height, float[] heights)
+    {
+        if (heights.length < width * height)
+            throw new IllegalArgumentException();
+        this.width = width;
+        this.height = height;
+        this.heights = heights;
+    }
+
+    /**
+     * Returns the bilinearly interpolated height at the specified pixel location. The location is clamped to the
+     * extent of the heightfield.
+     *
+     * @param x The pixel x
+     * @param y The pixel y
+     * @return The height, in meters, or <code>NaN</code> if any contributing pixel has no data
+     */
+    double sample(double x, double y)
+    {
+        final double weight_r = (x - (int) x);
+        final double weight_l = 1d - weight_r;
+        final double weight_b = (y - (int) y);
+        final double weight_t = 1d - weight_b;
+
+        final int lx = MathUtils.clamp((int) x, 0, width - 1);
+        final int uy = MathUtils.clamp((int) y, 0, height - 1);
+        final int rx = MathUtils.clamp((int) Math.ceil(x), 0, width - 1);
+        final int ly = MathUtils.clamp((int) Math.ceil(y), 0, height - 1);
+
+        final double ul = heights[uy * width + lx];
+        final double ur = heights[uy * width + rx];
+        final double lr = heights[ly * width + rx];
+        final double ll = heights[ly * width + lx];
+
+        return (ul * weight_l * weight_t) +
+                (ur * weight_r * weight_t) +
+                (lr * weight_r * weight_b) +
+                (ll * weight_l * weight_b);
+    }
+
+    /**
+     * Returns the approximate memory footprint of the heightfield, in bytes.
+     */
+    int getSize()
+    {
+        return heights.length * 4;
+    }
+
+    /**
+     * Decodes packed ARGB pixels, as returned by {@link Bitmap#getPixels(int[], int, int, int, int, int, int)}.
+     */
+    static TerrainRGBHeightfield decode(int[] argb, int width, int height)
+    {
+        final int count = width * height;
+        final float[] heights = new float[count];
+        for (int i = 0; i < count; i++)
+        {
+            final int v = argb[i];
+            if ((v >>> 24) == 0)
+                heights[i] = Float.NaN;
+            else
+                heights[i] = (float) (-10000d + (v & 0xFFFFFF) * 0.1d);
+        }
+        return new TerrainRGBHeightfield(width, height, heights);
+    }
+
+    static TerrainRGBHeightfield decode(Bitmap bitmap)
+    {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final int[] argb = new int[width * height];
+        bitmap.getPixels(argb, 0, width, 0, 0, width, height);
+        return decode(argb, width, height);
+    }
+
+    /**
+     * Decodes the PNG encoded tile. The intermediate bitmap is obtained from and returned to
+     * <code>recyclePool</code>, if non-<code>null</code>.
+     *
+     * @return The heightfield, or <code>null</code> if the data could not be decoded
+     */
+    static TerrainRGBHeightfield decode(byte[] data, int off, int len, ResourcePool<Bitmap> recyclePool)
+    {
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inBitmap = (recyclePool != null) ? recyclePool.get() : null;
+        opts.inMutable = true;
+        final Bitmap bitmap = BitmapFactory.decodeByteArray(data, off, len, opts);
+        if (bitmap == null)
+            return null;
+        try
+        {
+            return decode(bitmap);
+        } finally
+        {
+            if (recyclePool == null || !recyclePool.put(bitmap))
+                bitmap.recycle();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.atakmap.map.formats.mapbox;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of decoded TerrainRGB heightfields, bounded by the total size of the cached
+ * heightfields. Heightfields are immutable, so evicted entries are simply released to the garbage collector.
+ */
+final class TerrainRGBHeightfieldCache
+{
+    /** 64 256x256 tiles */
+    final static int DEFAULT_CAPACITY = 64 * 256 * 256 * 4;
+
+    private final int capacity;
+    private final Map<String, TerrainRGBHeightfield> entries;
+    private int size;
+
+    TerrainRGBHeightfieldCache(int capacity)
+    {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.size = 0;
+    }
+
+    synchronized TerrainRGBHeightfield get(String key)
+    {
+        return this.entries.get(key);
+    }
+
+    /**
+     * Adds the heightfield to the cache, evicting the least recently used heightfields as necessary to stay within
+     * capacity.
+     *
+     * @return The cached heightfield for the key; if another heightfield was already cached for the key, that
+     * heightfield is returned instead of <code>heightfield</code>
+     */
+    synchronized TerrainRGBHeightfield put(String key, TerrainRGBHeightfield heightfield)
+    {
+        final TerrainRGBHeightfield existing = this.entries.get(key);
+        if (existing != null)
+            return existing;
+        if (heightfield.getSize() > this.capacity)
+            return heightfield;
+        this.entries.put(key, heightfield);
+        this.size += heightfield.getSize();
+
+        Iterator<TerrainRGBHeightfield> it = this.entries.values().iterator();
+        while (this.size > this.capacity && it.hasNext())
+        {
+            final TerrainRGBHeightfield eldest = it.next();
+            if (eldest == heightfield)
+                continue;
+            this.size -= eldest.getSize();
+            it.remove();
+        }
+        return heightfield;
+    }
+
+    synchronized int size()
+    {
+        return this.size;
+    }
+
+    synchronized void clear()
+    {
+        this.entries.clear();
+        this.size = 0;
+    }
+}
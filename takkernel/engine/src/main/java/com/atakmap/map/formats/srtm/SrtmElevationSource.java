@@ -3,6 +3,7 @@ package com.atakmap.map.formats.srtm;
 import android.util.LruCache;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -14,6 +15,9 @@ import com.atakmap.map.elevation.ElevationData;
 import com.atakmap.map.elevation.ElevationSource;
 import com.atakmap.map.elevation.ElevationSourceManager;
 import com.atakmap.map.elevation.TiledElevationSource;
+import com.atakmap.map.formats.dted.MappedElevationChunk;
+import com.atakmap.map.formats.dted.MappedPostCell;
+import com.atakmap.map.formats.dted.MappedPostCellCache;
 import com.atakmap.map.gdal.GdalElevationChunk;
 import com.atakmap.map.gdal.GdalLibrary;
 import com.atakmap.map.layer.feature.geometry.Envelope;
@@ -395,6 +399,14 @@ public final class SrtmElevationSource
     {
         if (!IOProviderFactory.exists(f))
             return null;
+        // SRTM 1/3 cells are sampled directly from the mapped file when
+        // possible; zipped cells and non-default IO providers go through GDAL
+        if (!srtm30 && IOProviderFactory.isDefault() && MappedPostCell.isSupported(f))
+        {
+            final ElevationChunk mapped = createMappedSrtm(f);
+            if (mapped != null)
+                return mapped;
+        }
         Dataset dataset = GdalLibrary.openDatasetFromFile(f);
         if (dataset == null)
             return null;
@@ -417,4 +429,28 @@ public final class SrtmElevationSource
 
         return GdalElevationChunk.create(dataset, true, type, resolution, ElevationData.MODEL_TERRAIN);
     }
+
+    private static ElevationChunk createMappedSrtm(File f)
+    {
+        final MappedPostCell cell;
+        try
+        {
+            cell = MappedPostCellCache.getDefault().get(f);
+        } catch (IOException e)
+        {
+            return null;
+        }
+        String type = "SRTM";
+        double resolution = Double.NaN;
+        if (cell.getNumLonLines() == 3601)
+        { // SRTM1
+            type = "SRTM1";
+            resolution = 30d;
+        } else if (cell.getNumLonLines() == 1201)
+        { // SRTM3
+            type = "SRTM3";
+            resolution = 90d;
+        }
+        return MappedElevationChunk.create(f, type, resolution, MappedPostCellCache.getDefault());
+    }
 }
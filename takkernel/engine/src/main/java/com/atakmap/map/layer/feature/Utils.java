@@ -579,7 +579,9 @@ public class Utils
             return false;
         }
 
-        final int numPoints = linestring.getNumPoints();
+        final int dim = linestring.getDimension();
+        final double[] pts = linestring.getPoints();
+        final int numPoints = pts.length / dim;
 
         final double px = point.getLongitude();
         final double py = point.getLatitude();
@@ -592,10 +594,10 @@ public class Utils
         double y1;
         for (int i = 0; i < numPoints - 1; ++i)
         {
-            x0 = linestring.getX(i);
-            y0 = linestring.getY(i);
-            x1 = linestring.getX(i + 1);
-            y1 = linestring.getY(i + 1);
+            x0 = pts[i * dim];
+            y0 = pts[i * dim + 1];
+            x1 = pts[(i + 1) * dim];
+            y1 = pts[(i + 1) * dim + 1];
 
             // construct the minimum bounding box for the segment
             minibounds.minX = Math.min(x0, x1);
@@ -86,6 +86,12 @@ abstract class FDB extends AbstractFeatureDataStore2
 
     DatabaseIface database;
 
+    /**
+     * read-only connections servicing feature queries, <code>null</code> if
+     * queries are serviced by the writer connection
+     */
+    private final ReadConnectionPool readers;
+
     private static class FeatureSetDefn
     {
         boolean visible;
@@ -176,6 +182,8 @@ abstract class FDB extends AbstractFeatureDataStore2
 
         this.featureSets = new HashMap<Long, FeatureSetDefn>();
 
+        this.readers = ReadConnectionPool.create(this.database, dbFile, ReadConnectionPool.DEFAULT_CAPACITY);
+
         this.refresh();
     }
 
@@ -613,12 +621,9 @@ abstract class FDB extends AbstractFeatureDataStore2
             CursorIface result = null;
             try
             {
-                synchronized (this)
-                {
-                    if (checkDisposed())
-                        return FeatureCursor.EMPTY;
-                    result = BindArgument.query(this.database, sql.toString(), args.isEmpty() ? null : args);
-                }
+                result = this.queryFeaturesImpl(sql.toString(), args.isEmpty() ? null : args);
+                if (result == null)
+                    return FeatureCursor.EMPTY;
 
                 final FeatureCursor retval =
                         new FeatureCursorImpl(result,
@@ -727,12 +732,9 @@ abstract class FDB extends AbstractFeatureDataStore2
                 CursorIface result = null;
                 try
                 {
-                    synchronized (this)
-                    {
-                        if (checkDisposed())
-                            return FeatureCursor.EMPTY;
-                        result = BindArgument.query(this.database, subsql.toString(), subargs.isEmpty() ? null : subargs);
-                    }
+                    result = this.queryFeaturesImpl(subsql.toString(), subargs.isEmpty() ? null : subargs);
+                    if (result == null)
+                        return FeatureCursor.EMPTY;
 
                     retval.add(new FeatureCursorImpl(result,
                             idCol,
@@ -801,12 +803,9 @@ abstract class FDB extends AbstractFeatureDataStore2
                 CursorIface result = null;
                 try
                 {
-                    synchronized (this)
-                    {
-                        if (checkDisposed())
-                            return FeatureCursor.EMPTY;
-                        result = BindArgument.query(this.database, subsql.toString(), subargs.isEmpty() ? null : subargs);
-                    }
+                    result = this.queryFeaturesImpl(subsql.toString(), subargs.isEmpty() ? null : subargs);
+                    if (result == null)
+                        return FeatureCursor.EMPTY;
 
                     retval.add(new FeatureCursorImpl(result,
                             idCol,
@@ -1352,6 +1351,8 @@ abstract class FDB extends AbstractFeatureDataStore2
     {
         if (!checkDisposed())
         {
+            if (this.readers != null)
+                this.readers.close();
             this.database.close();
             this.database = null;
         }
@@ -2634,6 +2635,38 @@ abstract class FDB extends AbstractFeatureDataStore2
         return (this.database == null);
     }
 
+    /**
+     * Executes a feature query on a pooled read connection, falling back on the writer connection while a bulk
+     * insertion is in progress or when all read connections are in use.
+     *
+     * @return The results or <code>null</code> if the data store has been disposed
+     */
+    private CursorIface queryFeaturesImpl(String sql, Collection<BindArgument> args)
+    {
+        final DatabaseIface writer = this.database;
+        if (writer == null)
+            return null;
+
+        final ReadConnectionPool.Lease lease = (this.readers != null && !writer.inTransaction()) ? this.readers.acquire() : null;
+        if (lease != null)
+        {
+            try
+            {
+                return lease.track(BindArgument.query(lease.getDatabase(), sql, args));
+            } finally
+            {
+                lease.release();
+            }
+        }
+
+        synchronized (this)
+        {
+            if (checkDisposed())
+                return null;
+            return BindArgument.query(this.database, sql, args);
+        }
+    }
+
     /**************************************************************************/
 
     private static boolean appendOrder(FeatureQueryParameters.Order order, StringBuilder sql, LinkedList<BindArgument> args, boolean first)
@@ -90,6 +90,12 @@ abstract class FDB2 extends AbstractFeatureDataStore3
 
     DatabaseIface database;
 
+    /**
+     * read-only connections servicing feature queries, <code>null</code> if
+     * queries are serviced by the writer connection
+     */
+    private final ReadConnectionPool readers;
+
     private boolean inDbTransaction;
 
     private static class FeatureSetDefn
@@ -175,6 +181,8 @@ abstract class FDB2 extends AbstractFeatureDataStore3
 
         this.featureSets = new HashMap<Long, FeatureSetDefn>();
 
+        this.readers = ReadConnectionPool.create(this.database, dbFile, ReadConnectionPool.DEFAULT_CAPACITY);
+
         this.refreshImpl();
     }
 
@@ -776,11 +784,8 @@ abstract class FDB2 extends AbstractFeatureDataStore3
     }
 
     @Override
-    public synchronized FeatureCursor queryFeatures(FeatureQueryParameters params) throws DataStoreException
+    public FeatureCursor queryFeatures(FeatureQueryParameters params) throws DataStoreException
     {
-        if (this.database == null)
-            throw new DataStoreException("Datastore is closed");
-
         final int ignoredFields = (params == null) ? 0 : params.ignoredFeatureProperties;
 
         final int idCol = 0;
@@ -874,37 +879,99 @@ abstract class FDB2 extends AbstractFeatureDataStore3
         if (!MathUtils.hasBits(ignoredFields, PROPERTY_FEATURE_ATTRIBUTES))
             sql.append(" LEFT JOIN attributes ON features.attribs_id = attributes.id");
 
-        if (params == null)
+        // the statements depend on the state of the feature sets and are built while holding the lock, but are
+        // executed once it has been released
+        final LinkedList<FeatureQuery> queries = new LinkedList<>();
+        final DatabaseIface writer = this.prepareFeatureQueries(params, sql, args, queries);
+        if (queries.isEmpty())
+            return new MultiplexingFeatureCursor(Collections.<FeatureCursor>emptySet());
+
+        // threads holding the modify lock read from the writer to observe their own uncommitted edits
+        final ReadConnectionPool.Lease lease = (this.readers != null && !this.holdsModifyLock()) ? this.readers.acquire() : null;
+        final LinkedList<FeatureCursor> retval = new LinkedList<>();
+        boolean success = false;
+        try
         {
-            CursorIface result = null;
-            try
+            final DatabaseIface database = (lease != null) ? lease.getDatabase() : writer;
+            for (FeatureQuery query : queries)
             {
-                result = BindArgument.query(this.database, sql.toString(), args.isEmpty() ? null : args);
-
-                final FeatureCursor retval =
-                        new FeatureCursorImpl(result,
-                                idCol,
-                                fsidCol,
-                                versionCol,
-                                nameCol,
-                                geomCol,
-                                styleCol,
-                                attribsCol,
-                                altitudeModeCol,
-                                extrudeCol,
-                                lineModeCol);
-                result = null;
-                return retval;
-            } finally
+                CursorIface result = null;
+                try
+                {
+                    result = BindArgument.query(database, query.sql, query.args.isEmpty() ? null : query.args);
+                    if (lease != null)
+                        result = lease.track(result);
+
+                    retval.add(new FeatureCursorImpl(result,
+                            idCol,
+                            fsidCol,
+                            versionCol,
+                            nameCol,
+                            geomCol,
+                            styleCol,
+                            attribsCol,
+                            altitudeModeCol,
+                            extrudeCol,
+                            lineModeCol));
+                    result = null;
+                } finally
+                {
+                    if (result != null)
+                        result.close();
+                }
+            }
+            success = true;
+        } finally
+        {
+            if (!success)
             {
-                if (result != null)
-                    result.close();
+                for (FeatureCursor cursor : retval)
+                    cursor.close();
             }
+            if (lease != null)
+                lease.release();
+        }
+
+        if (params == null || retval.size() == 1)
+        {
+            return retval.getFirst();
+        } else
+        {
+            List<FeatureQueryParameters.Order> order = null;
+            if (params.order != null)
+            {
+                order = new ArrayList<>(params.order);
+            }
+            FeatureCursor cursor = new MultiplexingFeatureCursor(retval, order);
+            if (params.limit > 0)
+                cursor = new BruteForceLimitOffsetFeatureCursor(cursor, params.offset, params.limit);
+            return cursor;
+        }
+    }
+
+    /**
+     * Builds the statements for a feature query against the current state of the feature sets.
+     *
+     * @param params  The query parameters, may be <code>null</code>
+     * @param sql     The statement selecting the feature columns
+     * @param args    The arguments bound to the column selection
+     * @param queries Returns the statements to be executed
+     * @return The writer connection
+     */
+    private synchronized DatabaseIface prepareFeatureQueries(FeatureQueryParameters params, StringBuilder sql, LinkedList<BindArgument> args, List<FeatureQuery> queries) throws DataStoreException
+    {
+        if (this.database == null)
+            throw new DataStoreException("Datastore is closed");
+
+        if (params == null)
+        {
+            queries.add(new FeatureQuery(sql.toString(), args));
+            return this.database;
         }
 
         Collection<FeatureSetDefn> fsNoCheck = this.filterNoSync(params, true);
         if (fsNoCheck.isEmpty())
-            return new MultiplexingFeatureCursor(Collections.<FeatureCursor>emptySet());
+            return this.database;
 
         Collection<FeatureSetDefn> fsCheck = new LinkedList<FeatureSetDefn>();
         if (params.visibleOnly)
@@ -940,7 +1007,6 @@ abstract class FDB2 extends AbstractFeatureDataStore3
             }
         }
 
-        LinkedList<FeatureCursor> retval = new LinkedList<>();
         if (fsCheck != null)
         {
             for (FeatureSetDefn fs : fsCheck)
@@ -988,28 +1054,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3
                     }
                 }
 
-                CursorIface result = null;
-                try
-                {
-                    result = BindArgument.query(this.database, subsql.toString(), subargs.isEmpty() ? null : subargs);
-
-                    retval.add(new FeatureCursorImpl(result,
-                            idCol,
-                            fsidCol,
-                            versionCol,
-                            nameCol,
-                            geomCol,
-                            styleCol,
-                            attribsCol,
-                            altitudeModeCol,
-                            extrudeCol,
-                            lineModeCol));
-                    result = null;
-                } finally
-                {
-                    if (result != null)
-                        result.close();
-                }
+                queries.add(new FeatureQuery(subsql.toString(), subargs));
             }
         }
 
@@ -1060,46 +1105,11 @@ abstract class FDB2 extends AbstractFeatureDataStore3
                     }
                 }
 
-                CursorIface result = null;
-                try
-                {
-                    result = BindArgument.query(this.database, subsql.toString(), subargs.isEmpty() ? null : subargs);
-
-                    retval.add(new FeatureCursorImpl(result,
-                            idCol,
-                            fsidCol,
-                            versionCol,
-                            nameCol,
-                            geomCol,
-                            styleCol,
-                            attribsCol,
-                            altitudeModeCol,
-                            extrudeCol,
-                            lineModeCol));
-                    result = null;
-                } finally
-                {
-                    if (result != null)
-                        result.close();
-                }
+                queries.add(new FeatureQuery(subsql.toString(), subargs));
             } while (false);
         }
 
-        if (retval.size() == 1)
-        {
-            return retval.getFirst();
-        } else
-        {
-            List<FeatureQueryParameters.Order> order = null;
-            if (params.order != null)
-            {
-                order = new ArrayList<>(params.order);
-            }
-            FeatureCursor cursor = new MultiplexingFeatureCursor(retval, order);
-            if (params.limit > 0)
-                cursor = new BruteForceLimitOffsetFeatureCursor(cursor, params.offset, params.limit);
-            return cursor;
-        }
+        return this.database;
     }
 
     @Override
@@ -1578,6 +1588,8 @@ abstract class FDB2 extends AbstractFeatureDataStore3
     {
         if (this.database != null)
         {
+            if (this.readers != null)
+                this.readers.close();
             this.database.close();
             this.database = null;
         }
@@ -3550,6 +3562,18 @@ abstract class FDB2 extends AbstractFeatureDataStore3
     /**************************************************************************/
     // FeatureCursorImpl
 
+    private final static class FeatureQuery
+    {
+        final String sql;
+        final List<BindArgument> args;
+
+        FeatureQuery(String sql, List<BindArgument> args)
+        {
+            this.sql = sql;
+            this.args = args;
+        }
+    }
+
     private final class FeatureCursorImpl extends CursorWrapper implements FeatureCursor, FeatureDefinition4
     {
 
@@ -0,0 +1,205 @@
+package com.atakmap.map.layer.feature.datastore;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.atakmap.coremap.io.DatabaseInformation;
+import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.database.CursorIface;
+import com.atakmap.database.CursorWrapper;
+import com.atakmap.database.DatabaseIface;
+
+/**
+ * Pool of read-only connections to a feature database, allowing queries to be serviced in parallel with each other
+ * and with the connection that performs the edits. The database is switched to write-ahead logging, so that readers
+ * observe the most recently committed snapshot and never block the writer.
+ *
+ * <P>A connection is leased for the duration of a query and is returned to the pool once the query and every cursor
+ * created from it have been closed. When all connections are leased, {@link #acquire()} returns <code>null</code> and
+ * the caller is expected to fall back on the writer connection.
+ */
+final class ReadConnectionPool
+{
+    private final static String TAG = "ReadConnectionPool";
+
+    final static int DEFAULT_CAPACITY = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private final File file;
+    private final int capacity;
+    private final List<DatabaseIface> idle;
+    private int opened;
+    private boolean closed;
+
+    private ReadConnectionPool(File file, int capacity)
+    {
+        this.file = file;
+        this.capacity = capacity;
+        this.idle = new ArrayList<>(capacity);
+        this.opened = 0;
+        this.closed = false;
+    }
+
+    /**
+     * Creates a pool of readers for the database, switching the database to write-ahead logging.
+     *
+     * @param writer   The connection that performs the edits
+     * @param file     The database file, <code>null</code> for an in-memory database
+     * @param capacity The maximum number of read connections
+     * @return The pool or <code>null</code> if the database cannot be read from multiple connections
+     */
+    static ReadConnectionPool create(DatabaseIface writer, File file, int capacity)
+    {
+        // in-memory databases are private to their connection
+        if (file == null || capacity < 1)
+            return null;
+
+        CursorIface result = null;
+        try
+        {
+            result = writer.query("PRAGMA journal_mode = WAL", null);
+            if (!result.moveToNext() || !"wal".equalsIgnoreCase(result.getString(0)))
+                return null;
+        } catch (Throwable t)
+        {
+            Log.w(TAG, "Failed to enable write-ahead logging for " + file, t);
+            return null;
+        } finally
+        {
+            if (result != null)
+                result.close();
+        }
+        return new ReadConnectionPool(file, capacity);
+    }
+
+    /**
+     * @return A lease on a read connection or <code>null</code> if no connection is available
+     */
+    Lease acquire()
+    {
+        DatabaseIface database = null;
+        synchronized (this)
+        {
+            if (this.closed)
+                return null;
+            if (!this.idle.isEmpty())
+                return new Lease(this.idle.remove(this.idle.size() - 1));
+            if (this.opened == this.capacity)
+                return null;
+            this.opened++;
+        }
+
+        try
+        {
+            database = IOProviderFactory.createDatabase(this.file, DatabaseInformation.OPTION_READONLY);
+        } catch (Throwable t)
+        {
+            Log.w(TAG, "Failed to open read connection to " + this.file, t);
+        }
+        if (database == null)
+        {
+            synchronized (this)
+            {
+                this.opened--;
+            }
+            return null;
+        }
+        return new Lease(database);
+    }
+
+    /**
+     * Closes the idle connections. Leased connections are closed as their leases are released.
+     */
+    void close()
+    {
+        final List<DatabaseIface> toClose;
+        synchronized (this)
+        {
+            this.closed = true;
+            toClose = new ArrayList<>(this.idle);
+            this.idle.clear();
+        }
+        for (DatabaseIface database : toClose)
+            database.close();
+    }
+
+    private void recycle(DatabaseIface database)
+    {
+        synchronized (this)
+        {
+            if (!this.closed)
+            {
+                this.idle.add(database);
+                return;
+            }
+            this.opened--;
+        }
+        database.close();
+    }
+
+    /**
+     * A read connection leased from the pool. The lease holds a reference on behalf of the query that acquired it and
+     * one for each cursor that it tracks; the connection is returned to the pool when all have been released.
+     */
+    final class Lease
+    {
+        private final DatabaseIface database;
+        private int references;
+
+        private Lease(DatabaseIface database)
+        {
+            this.database = database;
+            this.references = 1;
+        }
+
+        DatabaseIface getDatabase()
+        {
+            return this.database;
+        }
+
+        /**
+         * Ties the lifetime of the lease to the cursor, which must have been created from the leased connection.
+         */
+        CursorIface track(CursorIface cursor)
+        {
+            synchronized (this)
+            {
+                this.references++;
+            }
+            return new CursorWrapper(cursor)
+            {
+                private boolean released;
+
+                @Override
+                public void close()
+                {
+                    try
+                    {
+                        super.close();
+                    } finally
+                    {
+                        if (!this.released)
+                        {
+                            this.released = true;
+                            release();
+                        }
+                    }
+                }
+            };
+        }
+
+        /**
+         * Releases the reference held by the query that acquired the lease.
+         */
+        void release()
+        {
+            synchronized (this)
+            {
+                if (--this.references > 0)
+                    return;
+            }
+            recycle(this.database);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import gov.tak.api.util.Disposable;
 import com.atakmap.util.ReadWriteLock;
 
 import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
 
 import gov.tak.api.annotation.DontObfuscate;
 import gov.tak.platform.marshal.MarshalManager;
@@ -314,6 +315,10 @@ public abstract class Geometry implements Disposable
 
     static native void Linestring_addPoints(Pointer pointer, double[] pts, int off, int count, int ptsDim);
 
+    static native void Linestring_getPoints(Pointer pointer, int off, int count, double[] dst, int dstOff);
+
+    static native void Linestring_getPointsDirect(Pointer pointer, int off, int count, DoubleBuffer dst, int dstOff);
+
     static native void Linestring_setX(Pointer pointer, int idx, double x);
 
     static native void Linestring_setY(Pointer pointer, int idx, double y);
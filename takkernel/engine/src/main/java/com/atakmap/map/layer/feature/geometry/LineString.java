@@ -1,5 +1,9 @@
 package com.atakmap.map.layer.feature.geometry;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
 import com.atakmap.interop.Pointer;
 
 import gov.tak.api.annotation.DontObfuscate;
@@ -13,6 +17,23 @@ public final class LineString extends Geometry
         this(Linestring_create(dimension));
     }
 
+    /**
+     * Creates a new linestring from packed coordinates. The points are copied
+     * in a single native call.
+     *
+     * @param dimension The dimension of the linestring
+     * @param pts       The coordinates, interleaved per <code>ptsDim</code>
+     * @param off       The offset into <code>pts</code> of the first coordinate
+     * @param numPts    The number of points
+     * @param ptsDim    The dimension of the points in <code>pts</code>
+     */
+    public LineString(int dimension, double[] pts, int off, int numPts, int ptsDim)
+    {
+        this(dimension);
+        if (numPts > 0)
+            this.addPoints(pts, off, numPts, ptsDim);
+    }
+
     LineString(Pointer pointer)
     {
         super(pointer);
@@ -66,6 +87,90 @@ public final class LineString extends Geometry
         }
     }
 
+    /**
+     * Copies the coordinates of the specified points into the array, in a
+     * single native call. Coordinates are interleaved per
+     * {@link #getDimension()}.
+     *
+     * @param offset The index of the first point
+     * @param count  The number of points
+     * @param dst    Returns the coordinates
+     * @param dstOff The offset into <code>dst</code> of the first coordinate
+     */
+    public void getPoints(int offset, int count, double[] dst, int dstOff)
+    {
+        this.rwlock.acquireRead();
+        try
+        {
+            final int dim = getDimension(this.pointer);
+            checkRange(Linestring_getNumPoints(this.pointer), offset, count);
+            if (dstOff < 0 || (dst.length - dstOff) < (count * dim))
+                throw new ArrayIndexOutOfBoundsException();
+            if (count > 0)
+                Linestring_getPoints(this.pointer, offset, count, dst, dstOff);
+        } finally
+        {
+            this.rwlock.releaseRead();
+        }
+    }
+
+    /**
+     * Copies the coordinates of the specified points into the direct buffer,
+     * in a single native call, with no intermediate copy. Coordinates are
+     * interleaved per {@link #getDimension()} and written starting at the
+     * buffer's position; the position is advanced past the coordinates
+     * written.
+     *
+     * @param offset The index of the first point
+     * @param count  The number of points
+     * @param dst    A direct buffer in native byte order
+     */
+    public void getPoints(int offset, int count, DoubleBuffer dst)
+    {
+        if (!dst.isDirect() || dst.order() != ByteOrder.nativeOrder())
+            throw new IllegalArgumentException("buffer must be direct, in native order");
+        this.rwlock.acquireRead();
+        try
+        {
+            final int dim = getDimension(this.pointer);
+            checkRange(Linestring_getNumPoints(this.pointer), offset, count);
+            if (dst.remaining() < (count * dim))
+                throw new BufferOverflowException();
+            if (count > 0)
+                Linestring_getPointsDirect(this.pointer, offset, count, dst, dst.position());
+            dst.position(dst.position() + (count * dim));
+        } finally
+        {
+            this.rwlock.releaseRead();
+        }
+    }
+
+    /**
+     * Returns the coordinates of all points, interleaved per
+     * {@link #getDimension()}.
+     */
+    public double[] getPoints()
+    {
+        this.rwlock.acquireRead();
+        try
+        {
+            final int numPoints = Linestring_getNumPoints(this.pointer);
+            final double[] retval = new double[numPoints * getDimension(this.pointer)];
+            if (numPoints > 0)
+                Linestring_getPoints(this.pointer, 0, numPoints, retval, 0);
+            return retval;
+        } finally
+        {
+            this.rwlock.releaseRead();
+        }
+    }
+
+    private static void checkRange(int numPoints, int offset, int count)
+    {
+        if (offset < 0 || count < 0 || (offset + count) > numPoints)
+            throw new IndexOutOfBoundsException();
+    }
+
     public double getX(int i)
     {
         this.rwlock.acquireRead();
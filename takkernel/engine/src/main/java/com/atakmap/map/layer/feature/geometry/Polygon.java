@@ -37,6 +37,22 @@ public final class Polygon extends Geometry
             this.addRing(ring);
     }
 
+    /**
+     * Creates a new polygon from packed rings. The coordinates of each ring
+     * are copied in a single native call.
+     *
+     * @param dimension The dimension of the polygon
+     * @param rings     The rings, exterior ring first, with coordinates
+     *                  interleaved per <code>dimension</code>
+     */
+    public Polygon(int dimension, double[][] rings)
+    {
+        this(Polygon_create(dimension));
+
+        for (double[] ring : rings)
+            this.addRing(new LineString(dimension, ring, 0, ring.length / dimension, dimension));
+    }
+
     Polygon(Pointer pointer)
     {
         super(pointer);
@@ -413,6 +413,8 @@ public class GLBatchLineString extends GLBatchGeometry
         final int numPoints, skip;
         final boolean compressed;
         final int dim;
+        // linestring coordinates, copied out in a single call
+        final double[] coords;
         _hasInnerRings = numRings > 1;
         if (blob != null)
         {
@@ -448,12 +450,15 @@ public class GLBatchLineString extends GLBatchGeometry
             }
             // skipping 'M'
             skip = MathUtils.hasBits(hi, 0x2) ? (compressed ? 4 : 8) : 0;
+            coords = null;
         } else
         {
             dim = ls.getDimension();
             numPoints = ls.getNumPoints();
             skip = 0;
             compressed = false;
+            coords = new double[numPoints * dim];
+            ls.getPoints(0, numPoints, coords, 0);
         }
 
         if (_hasInnerRings && blob != null)
@@ -517,9 +522,9 @@ public class GLBatchLineString extends GLBatchGeometry
                 long pointsPtr = Unsafe.getBufferPointer(this.points);
                 int pointsPos = 0;
 
-                double x = blob != null ? blob.getDouble() : ls.getX(0);
-                double y = blob != null ? blob.getDouble() : ls.getY(0);
-                double z = (dim > 2) ? (blob != null ? blob.getDouble() : ls.getZ(0)) : 0d;
+                double x = blob != null ? blob.getDouble() : coords[0];
+                double y = blob != null ? blob.getDouble() : coords[1];
+                double z = (dim > 2) ? (blob != null ? blob.getDouble() : coords[2]) : 0d;
 
                 if (skip > 0)
                     blob.position(blob.position() + skip);
@@ -534,7 +539,7 @@ public class GLBatchLineString extends GLBatchGeometry
                 double[] point = new double[] {x, y, z, 0, 0};
                 for (int i = 1; i < this.numPoints; i++)
                 {
-                    _extractPoint(blob, ls, i, compressed, dim, point);
+                    _extractPoint(blob, coords, i, compressed, dim, point);
                     x = point[0];
                     y = point[1];
                     z = point[2];
@@ -1006,16 +1011,16 @@ public class GLBatchLineString extends GLBatchGeometry
     }
 
     /**
-     * Extracts a single point and its delta values from the given spatiaLite blob or LineString.
+     * Extracts a single point and its delta values from the given spatiaLite blob or LineString coordinates.
      *
      * @param blob       The spatiaLite blob containing the points to be extracted, may be null.
-     * @param ls         The LineString containing the point data, may be null.
-     * @param i          The index that the point should be extracted from, only used if ls is null.
+     * @param coords     The LineString coordinates, interleaved per <code>dim</code>, may be null.
+     * @param i          The index that the point should be extracted from, only used if blob is null.
      * @param compressed If true then the spatiaLite blob is compressed.
      * @param dim        The dimmensions of the point, either 2 or 3.
      * @param point      The array of the point data and its x and y delta values [x, y, z, dx, dy].
      */
-    private void _extractPoint(ByteBuffer blob, LineString ls, int i, boolean compressed, int dim, double[] point)
+    private void _extractPoint(ByteBuffer blob, double[] coords, int i, boolean compressed, int dim, double[] point)
     {
         int x = 0, y = 1, z = 2;
         int dx = 3, dy = 4;
@@ -1040,13 +1045,13 @@ public class GLBatchLineString extends GLBatchGeometry
             point[z] = (dim > 2) ? blob.getDouble() : 0d;
         } else
         {
-            final double nx = ls.getX(i);
-            final double ny = ls.getY(i);
+            final double nx = coords[i * dim];
+            final double ny = coords[i * dim + 1];
             point[dx] = nx - x;
             point[dy] = ny - y;
             point[x] = nx;
             point[y] = ny;
-            point[z] = (dim > 2) ? ls.getZ(i) : 0d;
+            point[z] = (dim > 2) ? coords[i * dim + 2] : 0d;
         }
     }
 
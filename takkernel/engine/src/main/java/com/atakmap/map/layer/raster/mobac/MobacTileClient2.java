@@ -17,6 +17,7 @@ import com.atakmap.coremap.maps.coords.GeoBounds;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 import com.atakmap.map.contentservices.CacheRequest;
 import com.atakmap.map.contentservices.CacheRequestListener;
+import com.atakmap.map.layer.control.Controls;
 import com.atakmap.map.layer.feature.geometry.Envelope;
 import com.atakmap.map.layer.raster.controls.TileClientControl;
 import com.atakmap.map.layer.raster.mobileimagery.MobileImageryRasterLayer2;
@@ -26,6 +27,7 @@ import com.atakmap.map.layer.raster.tilematrix.TileClient;
 import com.atakmap.map.layer.raster.tilematrix.TileClientSpi;
 import com.atakmap.map.layer.raster.tilematrix.TileContainer;
 import com.atakmap.map.layer.raster.tilematrix.TileContainerFactory;
+import com.atakmap.map.layer.raster.tilematrix.TileDataCache;
 import com.atakmap.map.layer.raster.tilematrix.TileEncodeException;
 import com.atakmap.map.layer.raster.tilematrix.TileMatrix;
 import com.atakmap.map.layer.raster.tilematrix.TileProxy;
@@ -84,7 +86,7 @@ public class MobacTileClient2 implements TileClient, TileClientControl
                             // the file and create a new cache
                             if (cache == null && IOProviderFactory.exists(new File(offlineCachePath)))
                             {
-                                FileSystemUtils.delete(offlineCachePath);
+                                deleteCache(offlineCachePath);
                                 cache = openOrCreateCache(offlineCachePath, client, hint);
                             }
                         }
@@ -124,6 +126,8 @@ public class MobacTileClient2 implements TileClient, TileClientControl
 
     private final MobacMapSource source;
     TileContainer offlineCache;
+    /** source key for {@link TileDataCache}, shared with any other client of the offline cache */
+    private String memoryCacheKey;
     private boolean offlineMode;
     private Envelope bounds;
     private PointD origin;
@@ -191,12 +195,24 @@ public class MobacTileClient2 implements TileClient, TileClientControl
             // the file and create a new cache
             if (this.offlineCache == null && IOProviderFactory.exists(new File(offlineCachePath)))
             {
-                FileSystemUtils.delete(offlineCachePath);
+                deleteCache(offlineCachePath);
                 this.offlineCache = openOrCreateCache(offlineCachePath, this, hint);
             }
+
+            if (this.offlineCache != null)
+                this.memoryCacheKey = new File(offlineCachePath).getAbsolutePath();
         }
     }
 
+    /**
+     * Deletes an offline cache that could not be opened, along with any of its tiles held in memory.
+     */
+    private static void deleteCache(String path)
+    {
+        FileSystemUtils.delete(path);
+        TileDataCache.getDefault().invalidate(new File(path).getAbsolutePath());
+    }
+
     private synchronized static TileContainer openOrCreateCache(final String path, TileMatrix spec, String preferredProvider)
     {
         // XXX - should cache key be provider+path ??? not sure it's that
@@ -300,6 +316,17 @@ public class MobacTileClient2 implements TileClient, TileClientControl
     @Override
     public byte[] getTileData(int zoom, int x, int y, Throwable[] error)
     {
+        final TileDataCache memoryCache = TileDataCache.getDefault();
+        if (this.memoryCacheKey != null)
+        {
+            // expired data is still served when offline
+            final byte[] cached = this.offlineMode ?
+                    memoryCache.get(this.memoryCacheKey, zoom, x, y) :
+                    memoryCache.get(this.memoryCacheKey, zoom, x, y, System.currentTimeMillis());
+            if (cached != null)
+                return cached;
+        }
+
         byte[] retval = null;
         long expiration = -1;
         if (this.offlineCache != null)
@@ -377,6 +404,9 @@ public class MobacTileClient2 implements TileClient, TileClientControl
             }
         }
 
+        if (retval != null && this.memoryCacheKey != null)
+            memoryCache.put(this.memoryCacheKey, zoom, x, y, retval, expiration);
+
         return retval;
     }
 
@@ -441,6 +471,7 @@ public class MobacTileClient2 implements TileClient, TileClientControl
             return;
         }
 
+        TileScraper.discardStaleLedger(request.cacheFile);
         if (request.preferredContainerProvider == null)
             sink = openOrCreateCache(request.cacheFile.getAbsolutePath(), this, preferredProvider);
         else
@@ -522,7 +553,7 @@ public class MobacTileClient2 implements TileClient, TileClientControl
 
     /*************************************************************************/
 
-    private static class SharedTileContainer implements TileContainer
+    private static class SharedTileContainer implements TileContainer, Controls
     {
 
         private ReferenceCount<TileContainer> impl;
@@ -630,5 +661,20 @@ public class MobacTileClient2 implements TileClient, TileClientControl
             return this.impl.value.getTileExpiration(level, x, y);
         }
 
+        @Override
+        public <T> T getControl(Class<T> controlClazz)
+        {
+            if (this.impl.value instanceof Controls)
+                return ((Controls) this.impl.value).getControl(controlClazz);
+            return null;
+        }
+
+        @Override
+        public void getControls(Collection<Object> controls)
+        {
+            if (this.impl.value instanceof Controls)
+                ((Controls) this.impl.value).getControls(controls);
+        }
+
     }
 }
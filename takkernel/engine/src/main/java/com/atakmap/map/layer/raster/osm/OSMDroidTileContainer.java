@@ -568,6 +568,8 @@ public final class OSMDroidTileContainer implements TileContainer, Controls, Til
             return (T) this.initControl;
         if(controlClazz.isAssignableFrom(getClass()))
             return (T) this;
+        if(DatabaseIface.class.equals(controlClazz))
+            return (T) this.db;
         return null;
     }
 
@@ -181,6 +181,7 @@ public abstract class AbstractTileClient implements TileClient
         {
             preferredProvider = request.preferredContainerProvider;
 
+            TileScraper.discardStaleLedger(request.cacheFile);
             TileContainer sink =
                     TileContainerFactory.openOrCreateCompatibleContainer(request.cacheFile.getAbsolutePath(), this, preferredProvider);
             if (sink == null)
@@ -0,0 +1,88 @@
+package com.atakmap.map.layer.raster.tilematrix;
+
+/**
+ * Additive-increase/multiplicative-decrease limit on the number of in-flight tile requests. The limit grows by one
+ * after a full window of fast responses and is cut back on errors, or when latency climbs well above the best
+ * latency observed, which is the usual sign of the server or link queuing requests.
+ */
+final class AdaptiveConcurrency
+{
+    /** latency, relative to baseline, at which the limit is reduced */
+    private final static double LATENCY_THRESHOLD = 2d;
+    private final static double EWMA_ALPHA = 0.2d;
+    /** rate at which the baseline drifts toward the current latency */
+    private final static double BASELINE_DRIFT = 0.01d;
+
+    private final int min;
+    private final int max;
+
+    private int limit;
+    private double latency;
+    private double baseline;
+    private int successes;
+    /** responses to ignore after a decrease, so one slow window only cuts once */
+    private int cooldown;
+
+    AdaptiveConcurrency(int min, int max)
+    {
+        if (min < 1 || max < min)
+            throw new IllegalArgumentException();
+        this.min = min;
+        this.max = max;
+        this.limit = Math.max(min, (max + 1) / 2);
+        this.latency = Double.NaN;
+        this.baseline = Double.NaN;
+    }
+
+    synchronized int getLimit()
+    {
+        return this.limit;
+    }
+
+    synchronized void onSuccess(long latencyNanos)
+    {
+        final double l = latencyNanos;
+        if (Double.isNaN(this.latency))
+        {
+            this.latency = l;
+            this.baseline = l;
+        } else
+        {
+            this.latency += (l - this.latency) * EWMA_ALPHA;
+            if (this.latency < this.baseline)
+                this.baseline = this.latency;
+            else
+                this.baseline += (this.latency - this.baseline) * BASELINE_DRIFT;
+        }
+
+        if (this.cooldown > 0)
+        {
+            this.cooldown--;
+            return;
+        }
+
+        if (this.latency > this.baseline * LATENCY_THRESHOLD)
+        {
+            this.decrease(0.75d);
+        } else if (++this.successes >= this.limit)
+        {
+            this.successes = 0;
+            if (this.limit < this.max)
+                this.limit++;
+        }
+    }
+
+    synchronized void onError()
+    {
+        if (this.cooldown > 0)
+            return;
+        this.decrease(0.5d);
+    }
+
+    private void decrease(double factor)
+    {
+        this.limit = Math.max(this.min, (int) (this.limit * factor));
+        this.successes = 0;
+        this.cooldown = this.limit;
+    }
+}
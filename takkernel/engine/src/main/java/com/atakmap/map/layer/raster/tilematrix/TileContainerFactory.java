@@ -47,6 +47,12 @@ public final class TileContainerFactory
         if (path == null)
             return null;
 
+        // a container created in place of a deleted one must not be served
+        // the tiles of its predecessor
+        final File file = new File(path);
+        if (!IOProviderFactory.exists(file))
+            TileDataCache.getDefault().invalidate(file.getAbsolutePath());
+
         return openOrCreateCompatibleContainerNative(path, spec, hint);
     }
 
@@ -0,0 +1,261 @@
+package com.atakmap.map.layer.raster.tilematrix;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide, least-recently-used cache of encoded tile data, bounded by the total number of bytes cached. Entries
+ * are keyed by a source identifier and the tile index; clients that resolve to the same source, typically the path
+ * of the backing {@link TileContainer}, share entries.
+ *
+ * <P>The cached data is the encoded tile as stored in, or fetched for, the container. Tile data is treated as
+ * immutable once cached; callers must not modify arrays passed to or obtained from the cache.
+ */
+public final class TileDataCache
+{
+    /** 16MB, several hundred typical 256x256 tiles */
+    public final static long DEFAULT_CAPACITY = 16L * 1024L * 1024L;
+
+    private final static TileDataCache DEFAULT = new TileDataCache(DEFAULT_CAPACITY);
+
+    private final static char NAMESPACE_SEPARATOR = '#';
+
+    private final Map<Key, Entry> entries;
+    private long capacity;
+    private long size;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public TileDataCache(long capacity)
+    {
+        if (capacity < 0L)
+            throw new IllegalArgumentException();
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached data for the tile, regardless of expiration.
+     *
+     * @return The cached data or <code>null</code> if the tile is not cached
+     */
+    public byte[] get(String source, int zoom, int x, int y)
+    {
+        return this.get(source, zoom, x, y, Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns the cached data for the tile, if it has not expired.
+     *
+     * @param now The current time, in epoch milliseconds
+     * @return The cached data or <code>null</code> if the tile is not cached or has expired as of <code>now</code>
+     */
+    public synchronized byte[] get(String source, int zoom, int x, int y, long now)
+    {
+        final Entry entry = this.entries.get(new Key(source, zoom, x, y));
+        if (entry == null || entry.expiration < now)
+        {
+            this.misses++;
+            return null;
+        }
+        this.hits++;
+        return entry.data;
+    }
+
+    /**
+     * Adds or replaces the data for the tile, evicting the least recently used tiles as necessary to stay within
+     * capacity.
+     *
+     * @param data       The encoded tile data
+     * @param expiration The expiration of the data, in epoch milliseconds; {@link Long#MAX_VALUE} if the data does
+     *                   not expire
+     */
+    public synchronized void put(String source, int zoom, int x, int y, byte[] data, long expiration)
+    {
+        final Key key = new Key(source, zoom, x, y);
+        final Entry existing = this.entries.remove(key);
+        if (existing != null)
+            this.size -= existing.data.length;
+
+        // don't let a single tile flush a large part of the cache
+        if (data == null || data.length > (this.capacity / 8L))
+            return;
+
+        this.entries.put(key, new Entry(data, expiration));
+        this.size += data.length;
+        this.trim(this.capacity);
+    }
+
+    /**
+     * Removes the data for the tile.
+     */
+    public synchronized void remove(String source, int zoom, int x, int y)
+    {
+        final Entry entry = this.entries.remove(new Key(source, zoom, x, y));
+        if (entry != null)
+            this.size -= entry.data.length;
+    }
+
+    /**
+     * Removes all tiles for the specified source, including those of any sources in its namespace. Should be invoked
+     * when the container backing the source is deleted or recreated.
+     *
+     * @see #getNamespacedSource(String, String)
+     */
+    public synchronized void invalidate(String source)
+    {
+        final String namespace = source + NAMESPACE_SEPARATOR;
+        Iterator<Map.Entry<Key, Entry>> it = this.entries.entrySet().iterator();
+        while (it.hasNext())
+        {
+            final Map.Entry<Key, Entry> e = it.next();
+            final String s = e.getKey().source;
+            if (s.equals(source) || s.startsWith(namespace))
+            {
+                this.size -= e.getValue().data.length;
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear()
+    {
+        this.entries.clear();
+        this.size = 0L;
+    }
+
+    /**
+     * @return The number of bytes of tile data currently cached
+     */
+    public synchronized long getSize()
+    {
+        return this.size;
+    }
+
+    public synchronized long getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * Sets the capacity, in bytes. Tiles are evicted immediately if the cache exceeds the new capacity.
+     */
+    public synchronized void setCapacity(long capacity)
+    {
+        if (capacity < 0L)
+            throw new IllegalArgumentException();
+        this.capacity = capacity;
+        this.trim(capacity);
+    }
+
+    public synchronized int getTileCount()
+    {
+        return this.entries.size();
+    }
+
+    public synchronized long getHitCount()
+    {
+        return this.hits;
+    }
+
+    public synchronized long getMissCount()
+    {
+        return this.misses;
+    }
+
+    public synchronized long getEvictionCount()
+    {
+        return this.evictions;
+    }
+
+    private void trim(long limit)
+    {
+        Iterator<Entry> it = this.entries.values().iterator();
+        while (this.size > limit && it.hasNext())
+        {
+            final Entry eldest = it.next();
+            this.size -= eldest.data.length;
+            it.remove();
+            this.evictions++;
+        }
+    }
+
+    /**
+     * Returns a source identifier that does not share entries with <code>source</code>, but whose entries are removed
+     * along with it by {@link #invalidate(String)}. Allows clients of the same container that assign different
+     * expirations to their tiles to keep their entries apart.
+     *
+     * @param source    The source, typically the container path
+     * @param namespace The namespace within the source
+     * @return The namespaced source identifier
+     */
+    public static String getNamespacedSource(String source, String namespace)
+    {
+        return source + NAMESPACE_SEPARATOR + namespace;
+    }
+
+    /**
+     * @return The cache shared by the tile clients in the process
+     */
+    public static TileDataCache getDefault()
+    {
+        return DEFAULT;
+    }
+
+    /**************************************************************************/
+
+    private final static class Key
+    {
+        final String source;
+        final int zoom;
+        final int x;
+        final int y;
+
+        Key(String source, int zoom, int x, int y)
+        {
+            this.source = source;
+            this.zoom = zoom;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            final Key other = (Key) o;
+            return this.zoom == other.zoom
+                    && this.x == other.x
+                    && this.y == other.y
+                    && this.source.equals(other.source);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = this.source.hashCode();
+            result = 31 * result + this.zoom;
+            result = 31 * result + this.x;
+            result = 31 * result + this.y;
+            return result;
+        }
+    }
+
+    private final static class Entry
+    {
+        final byte[] data;
+        final long expiration;
+
+        Entry(byte[] data, long expiration)
+        {
+            this.data = data;
+            this.expiration = expiration;
+        }
+    }
+}
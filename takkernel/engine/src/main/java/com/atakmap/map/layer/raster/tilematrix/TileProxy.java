@@ -6,6 +6,7 @@ import com.atakmap.coremap.concurrent.NamedThreadFactory;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 import com.atakmap.map.contentservices.CacheRequest;
 import com.atakmap.map.contentservices.CacheRequestListener;
+import com.atakmap.map.layer.control.Controls;
 import com.atakmap.map.layer.feature.EnvelopeFilter;
 import com.atakmap.map.layer.feature.GeometryFilter;
 import com.atakmap.map.layer.feature.control.SpatialFilterControl;
@@ -21,6 +22,7 @@ import com.atakmap.math.PointD;
 import com.atakmap.spatial.GeometryTransformer;
 import com.atakmap.util.ReferenceCount;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -37,6 +39,12 @@ public final class TileProxy implements TileClient
     final ExecutorService clientExecutor;
     final TileCacheControl.OnTileUpdateListener[] listener;
     final Projection proj;
+    final TileDataCache memoryCache;
+    /**
+     * The source key for {@link #memoryCache}, the path of the cache container; <code>null</code> if the container
+     * does not expose its file, in which case tiles are not cached in memory.
+     */
+    final String memoryCacheKey;
     long expiry;
     boolean offlineOnly = false;
     long refreshInterval = 0L;
@@ -142,6 +150,15 @@ public final class TileProxy implements TileClient
         this.listener = new TileCacheControl.OnTileUpdateListener[1];
 
         this.proj = ProjectionFactory.getProjection(client.getSRID());
+
+        this.memoryCache = TileDataCache.getDefault();
+        File cacheFile = null;
+        if (cache instanceof Controls)
+            cacheFile = ((Controls) cache).getControl(File.class);
+        // entries never expire here, keep them apart from clients that honor
+        // the container expiration
+        this.memoryCacheKey = (cacheFile != null) ?
+                TileDataCache.getNamespacedSource(cacheFile.getAbsolutePath(), "proxy") : null;
     }
 
     /**
@@ -277,7 +294,15 @@ public final class TileProxy implements TileClient
     @Override
     public byte[] getTileData(int zoom, int x, int y, Throwable[] error)
     {
-        final byte[] retval = cache.value.getTileData(zoom, x, y, error);
+        byte[] retval = null;
+        if (memoryCacheKey != null)
+            retval = memoryCache.get(memoryCacheKey, zoom, x, y);
+        if (retval == null)
+        {
+            retval = cache.value.getTileData(zoom, x, y, error);
+            if (retval != null && memoryCacheKey != null)
+                memoryCache.put(memoryCacheKey, zoom, x, y, retval, Long.MAX_VALUE);
+        }
         downloadTile(zoom, x, y);
         return retval;
     }
@@ -411,6 +436,8 @@ public final class TileProxy implements TileClient
                     if (data != null)
                     {
                         cache.value.setTile(z, x, y, data, System.currentTimeMillis());
+                        if (memoryCacheKey != null)
+                            memoryCache.put(memoryCacheKey, z, x, y, data, Long.MAX_VALUE);
                         // signal update
                         synchronized (callback)
                         {
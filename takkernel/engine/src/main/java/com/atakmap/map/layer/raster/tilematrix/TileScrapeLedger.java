@@ -0,0 +1,241 @@
+package com.atakmap.map.layer.raster.tilematrix;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.atakmap.coremap.io.IOProviderFactory;
+
+/**
+ * Append-only record of the tiles a {@link TileScraper} has committed to its container. The ledger lives next to
+ * the cache file and is keyed by a signature of the scrape, so an interrupted job for the same request can skip the
+ * tiles that were already written. Records are fixed length; a partially written trailing record is discarded on
+ * open.
+ * <P>
+ * The ledger also records the length and last modified time of the cache file as of the last append. Tile
+ * containers only grow while tiles are written, so a cache file that is now smaller or older than recorded has been
+ * replaced and the ledger is discarded. Nothing is written to the container itself.
+ */
+final class TileScrapeLedger implements Closeable
+{
+    private final static int MAGIC = 0x54534C33; // 'TSL3'
+    // magic, signature, cache file length and last modified
+    private final static int HEADER_LENGTH = 24;
+    private final static int STAMP_OFFSET = 8;
+    private final static int RECORD_LENGTH = 8;
+
+    /** the highest level that can be keyed; x and y are packed into 29 bits each */
+    final static int MAX_LEVEL = 29;
+
+    private final File file;
+    private final File cacheFile;
+    private final FileChannel channel;
+    private final Set<Long> completed;
+    private final ByteBuffer buffer;
+
+    private TileScrapeLedger(File file, File cacheFile, FileChannel channel, Set<Long> completed)
+    {
+        this.file = file;
+        this.cacheFile = cacheFile;
+        this.channel = channel;
+        this.completed = completed;
+        this.buffer = ByteBuffer.allocate(RECORD_LENGTH * 256).order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * @return <code>true</code> if the tile was committed by this or a previous run
+     */
+    boolean isComplete(int zoom, int x, int y)
+    {
+        return this.completed.contains(key(zoom, x, y));
+    }
+
+    /**
+     * @return The number of tiles committed by this and any previous runs
+     */
+    int getCompletedCount()
+    {
+        return this.completed.size();
+    }
+
+    /**
+     * Records the specified tiles as committed. Should only be invoked once the tiles are durable in the container.
+     *
+     * @param keys  The tile keys, as returned by {@link #key(int, int, int)}
+     * @param count The number of keys
+     */
+    void append(long[] keys, int count) throws IOException
+    {
+        int i = 0;
+        while (i < count)
+        {
+            this.buffer.clear();
+            while (i < count && this.buffer.remaining() >= RECORD_LENGTH)
+            {
+                this.buffer.putLong(keys[i]);
+                this.completed.add(keys[i]);
+                i++;
+            }
+            this.buffer.flip();
+            while (this.buffer.hasRemaining())
+                this.channel.write(this.buffer);
+        }
+        writeStamp(this.channel, this.cacheFile);
+        this.channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.channel.close();
+    }
+
+    /**
+     * Closes and removes the ledger. Invoked once the scrape has run to completion.
+     */
+    void delete() throws IOException
+    {
+        this.close();
+        IOProviderFactory.delete(this.file);
+    }
+
+    /**************************************************************************/
+
+    static File getFile(File cacheFile)
+    {
+        return new File(cacheFile.getParentFile(), cacheFile.getName() + ".scrape");
+    }
+
+    /**
+     * @return <code>true</code> if tiles on the specified level can be recorded in the ledger
+     */
+    static boolean isSupported(int zoom)
+    {
+        return zoom >= 0 && zoom <= MAX_LEVEL;
+    }
+
+    /**
+     * Packs the tile index into a key. Only valid for levels where {@link #isSupported(int)} returns
+     * <code>true</code>.
+     */
+    static long key(int zoom, int x, int y)
+    {
+        return ((long) zoom << 58) | ((long) x << 29) | (long) y;
+    }
+
+    /**
+     * Removes the ledger for the specified cache file.
+     */
+    static void delete(File cacheFile)
+    {
+        final File file = getFile(cacheFile);
+        if (IOProviderFactory.exists(file))
+            IOProviderFactory.delete(file);
+    }
+
+    /**
+     * Opens the ledger for the specified cache file. If the existing ledger was written for a different signature or
+     * the cache file has been replaced since it was last appended, it is discarded and a new ledger is started.
+     *
+     * @param cacheFile The cache file for the scrape
+     * @param signature The signature of the scrape
+     * @return The ledger
+     */
+    static TileScrapeLedger open(File cacheFile, int signature) throws IOException
+    {
+        final File file = getFile(cacheFile);
+        final File parent = file.getParentFile();
+        if (parent != null && !IOProviderFactory.exists(parent))
+            IOProviderFactory.mkdirs(parent);
+
+        final FileChannel channel = IOProviderFactory.getChannel(file, "rw");
+        boolean success = false;
+        try
+        {
+            final Set<Long> completed = new HashSet<>();
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.BIG_ENDIAN);
+            final long size = channel.size();
+            boolean valid = false;
+            if (size >= HEADER_LENGTH)
+            {
+                readFully(channel, header, 0L);
+                header.flip();
+                valid = (header.getInt() == MAGIC) && (header.getInt() == signature);
+                if (valid)
+                {
+                    final long length = header.getLong();
+                    final long lastModified = header.getLong();
+                    valid = IOProviderFactory.length(cacheFile) >= length
+                            && IOProviderFactory.lastModified(cacheFile) >= lastModified;
+                }
+            }
+
+            if (valid)
+            {
+                // drop any partially written trailing record
+                final long records = (size - HEADER_LENGTH) / RECORD_LENGTH;
+                final long end = HEADER_LENGTH + records * RECORD_LENGTH;
+                if (end != size)
+                    channel.truncate(end);
+                final ByteBuffer buf = ByteBuffer.allocate(RECORD_LENGTH * 4096).order(ByteOrder.BIG_ENDIAN);
+                long pos = HEADER_LENGTH;
+                while (pos < end)
+                {
+                    buf.clear();
+                    buf.limit((int) Math.min(buf.capacity(), end - pos));
+                    readFully(channel, buf, pos);
+                    pos += buf.limit();
+                    buf.flip();
+                    while (buf.remaining() >= RECORD_LENGTH)
+                        completed.add(buf.getLong());
+                }
+                channel.position(end);
+            } else
+            {
+                channel.truncate(0L);
+                header.clear();
+                header.putInt(MAGIC);
+                header.putInt(signature);
+                header.flip();
+                while (header.hasRemaining())
+                    channel.write(header, header.position());
+                writeStamp(channel, cacheFile);
+                channel.position(HEADER_LENGTH);
+                channel.force(false);
+            }
+
+            success = true;
+            return new TileScrapeLedger(file, cacheFile, channel, completed);
+        } finally
+        {
+            if (!success)
+                channel.close();
+        }
+    }
+
+    private static void writeStamp(FileChannel channel, File cacheFile) throws IOException
+    {
+        final ByteBuffer stamp = ByteBuffer.allocate(HEADER_LENGTH - STAMP_OFFSET).order(ByteOrder.BIG_ENDIAN);
+        stamp.putLong(IOProviderFactory.length(cacheFile));
+        stamp.putLong(IOProviderFactory.lastModified(cacheFile));
+        stamp.flip();
+        while (stamp.hasRemaining())
+            channel.write(stamp, STAMP_OFFSET + stamp.position());
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long pos) throws IOException
+    {
+        while (buf.hasRemaining())
+        {
+            final int n = channel.read(buf, pos);
+            if (n < 0)
+                throw new IOException("Unexpected end of ledger");
+            pos += n;
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.atakmap.map.layer.raster.tilematrix;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -13,10 +17,13 @@ import java.util.concurrent.atomic.AtomicInteger;
 import android.graphics.Point;
 import android.util.SparseBooleanArray;
 
+import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.coremap.maps.coords.Vector2D;
+import com.atakmap.database.DatabaseIface;
 import com.atakmap.map.contentservices.CacheRequest;
 import com.atakmap.map.contentservices.CacheRequestListener;
+import com.atakmap.map.layer.control.Controls;
 import com.atakmap.map.layer.feature.geometry.Envelope;
 import com.atakmap.map.layer.feature.geometry.Geometry;
 import com.atakmap.map.layer.feature.geometry.LineString;
@@ -46,11 +53,19 @@ public final class TileScraper
 
     private final static int DOWNLOAD_ATTEMPTS = 2;
 
+    /** maximum number of tiles written to the container per transaction */
+    private final static int COMMIT_BATCH_SIZE = 64;
+    /** maximum time downloaded tiles are held before being committed */
+    private final static long COMMIT_INTERVAL_MS = 250L;
+    private final static long THROUGHPUT_LOG_INTERVAL_MS = 5000L;
+
     private final TileMatrix client;
     private final TileContainer sink;
     private final CacheRequest request;
     private final CacheRequestListener callback;
 
+    private volatile double tilesPerSecond;
+
     public TileScraper(TileMatrix client, TileContainer sink, CacheRequest request, CacheRequestListener callback)
     {
         this.client = client;
@@ -67,7 +82,9 @@ public final class TileScraper
     public void run()
     {
         Downloader downloader;
-        if (request.maxThreads > 1)
+        if (request.resumable && request.cacheFile != null)
+            downloader = new ResumableDownloader(Math.max(request.maxThreads, 1));
+        else if (request.maxThreads > 1)
             downloader = new MultiThreadDownloader(request.maxThreads);
         else
             downloader = new LegacyDownloader();
@@ -75,6 +92,31 @@ public final class TileScraper
         downloader.download(new ScrapeContext(client, sink, request));
     }
 
+    /**
+     * Returns the rate at which tiles were downloaded and committed to the container. Only available for
+     * {@link CacheRequest#resumable resumable} requests; tiles skipped because they were committed by a previous run
+     * are not counted.
+     *
+     * @return The download rate, in tiles per second
+     */
+    public double getTilesPerSecond()
+    {
+        return this.tilesPerSecond;
+    }
+
+    /**
+     * Discards the record of a previous {@link CacheRequest#resumable resumable} request if the cache file does not
+     * exist, so that tiles committed to a since deleted container are downloaded again. Should be invoked before the
+     * container for the request is opened or created.
+     *
+     * @param cacheFile The cache file for the request
+     */
+    public static void discardStaleLedger(File cacheFile)
+    {
+        if (cacheFile != null && !IOProviderFactory.exists(cacheFile))
+            TileScrapeLedger.delete(cacheFile);
+    }
+
     public static int estimateTileCount(TileClient client, CacheRequest request)
     {
         ScrapeContext ctx = new ScrapeContext(client, null, request);
@@ -418,6 +460,18 @@ public final class TileScraper
         {
         }
 
+        /**
+         * Invoked once all tiles have been issued, before completion is
+         * reported.
+         *
+         * @param context The current download context
+         * @return <code>true</code> if the download completed successfully
+         */
+        protected boolean onDownloadComplete(ScrapeContext context)
+        {
+            return true;
+        }
+
         protected abstract void downloadTileImpl(ScrapeContext context,
                                                  int tileLevel, int tileX, int tileY);
 
@@ -535,6 +589,9 @@ public final class TileScraper
                     }
                 }
 
+                if (!this.onDownloadComplete(downloadContext))
+                    return false;
+
                 if (callback != null)
                     callback.onRequestComplete();
 
@@ -550,7 +607,7 @@ public final class TileScraper
             }
         }
 
-        private boolean checkRequestCancelled()
+        protected boolean checkRequestCancelled()
         {
             if (request.canceled)
             {
@@ -649,6 +706,352 @@ public final class TileScraper
         }
     }
 
+    /**
+     * Downloads tiles on a pool of <code>maxThreads</code> threads, but only
+     * keeps as many requests in flight as {@link AdaptiveConcurrency} allows.
+     * Downloaded tiles are handed back to the scraping thread, which writes
+     * them to the container in batches -- inside a transaction if the
+     * container exposes its database -- and then records them in a
+     * {@link TileScrapeLedger}. If the request is interrupted, a subsequent
+     * request for the same cache skips the tiles in the ledger.
+     */
+    private class ResumableDownloader extends Downloader
+    {
+        private final ThreadPoolExecutor downloadService;
+        private final BlockingQueue<FetchResult> results;
+        private final AdaptiveConcurrency concurrency;
+
+        private TileScrapeLedger ledger;
+        private DatabaseIface db;
+        private int inFlight;
+        private final List<FetchResult> batch;
+        private final long[] batchKeys;
+        private long lastCommit;
+
+        private int fetched;
+        private int failed;
+        private long startTime;
+        private long lastThroughputLog;
+
+        ResumableDownloader(int numDownloadThreads)
+        {
+            this.results = new LinkedBlockingQueue<>();
+            this.concurrency = new AdaptiveConcurrency(1, numDownloadThreads);
+            this.batch = new ArrayList<>(COMMIT_BATCH_SIZE);
+            this.batchKeys = new long[COMMIT_BATCH_SIZE];
+
+            this.downloadService = new ThreadPoolExecutor(
+                    numDownloadThreads,
+                    numDownloadThreads,
+                    500,
+                    TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    DOWNLOAD_SERVICE_THREAD_FACTORY);
+        }
+
+        @Override
+        protected void onDownloadEnter(ScrapeContext context)
+        {
+            if (sink instanceof Controls)
+                this.db = ((Controls) sink).getControl(DatabaseIface.class);
+
+            // a newly created cache never resumes a previous scrape
+            if (request.mode == CacheRequest.CacheMode.Create)
+                TileScrapeLedger.delete(request.cacheFile);
+
+            final File ledgerFile = TileScrapeLedger.getFile(request.cacheFile);
+            try
+            {
+                this.ledger = TileScrapeLedger.open(request.cacheFile, signature(context));
+                if (this.ledger.getCompletedCount() > 0)
+                    Log.d(TAG, "Resuming download of " + client.getName() + ", " + this.ledger.getCompletedCount() + " of " + context.totalTiles + " tiles previously cached");
+            } catch (IOException e)
+            {
+                // proceed without resume support
+                Log.w(TAG, "Failed to open scrape ledger " + ledgerFile, e);
+                this.ledger = null;
+            }
+
+            this.startTime = System.currentTimeMillis();
+            this.lastThroughputLog = this.startTime;
+            this.lastCommit = this.startTime;
+        }
+
+        @Override
+        protected boolean checkReadyForDownload(ScrapeContext context)
+        {
+            // wait for a slot to open up, committing tiles as they arrive
+            final long timeout = System.currentTimeMillis() + 500L;
+            do
+            {
+                final boolean full = (this.inFlight >= this.concurrency.getLimit());
+                this.drain(context, full ? 50L : 0L);
+                if (this.inFlight < this.concurrency.getLimit())
+                    return true;
+            } while (!request.canceled && System.currentTimeMillis() < timeout);
+            return false;
+        }
+
+        @Override
+        protected void downloadTileImpl(ScrapeContext context, int tileLevel, int tileX, int tileY)
+        {
+            if (this.ledger != null && TileScrapeLedger.isSupported(tileLevel) && this.ledger.isComplete(tileLevel, tileX, tileY))
+            {
+                context.downloadComplete(true);
+                return;
+            }
+            this.inFlight++;
+            this.downloadService.execute(new FetchTask(tileLevel, tileX, tileY));
+        }
+
+        @Override
+        protected boolean onDownloadComplete(ScrapeContext context)
+        {
+            while (this.inFlight > 0)
+            {
+                if (this.checkRequestCancelled())
+                    return false;
+                this.drain(context, 50L);
+                this.reportStatus(context);
+            }
+            this.commit(context);
+            this.reportStatus(context);
+
+            Log.d(TAG, "Downloaded " + this.fetched + " tiles from " + client.getName() + " at " + String.format(Locale.US, "%.1f", tilesPerSecond) + " tiles/sec, " + this.failed + " failed");
+
+            // retain the ledger if any tiles failed, so that a subsequent
+            // request only needs to retry those
+            if (this.ledger != null && this.failed == 0)
+            {
+                try
+                {
+                    this.ledger.delete();
+                } catch (IOException e)
+                {
+                    Log.w(TAG, "Failed to delete scrape ledger", e);
+                }
+                this.ledger = null;
+            }
+            return true;
+        }
+
+        @Override
+        protected void onDownloadExit(ScrapeContext context, int jobStatus)
+        {
+            this.downloadService.shutdown();
+            try
+            {
+                this.downloadService.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored)
+            {
+            }
+
+            // commit anything that made it back so it is not downloaded again
+            // on resume
+            try
+            {
+                this.drain(context, 0L);
+                this.commit(context);
+            } catch (Exception e)
+            {
+                Log.w(TAG, "Failed to commit downloaded tiles", e);
+            }
+
+            if (this.ledger != null)
+            {
+                try
+                {
+                    this.ledger.close();
+                } catch (IOException ignored)
+                {
+                }
+                this.ledger = null;
+            }
+        }
+
+        /**
+         * Processes any downloaded tiles, waiting up to <code>timeout</code>
+         * milliseconds for the first.
+         */
+        private void drain(ScrapeContext context, long timeout)
+        {
+            FetchResult result = null;
+            if (timeout > 0L)
+            {
+                try
+                {
+                    result = this.results.poll(timeout, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ignored)
+                {
+                }
+            }
+            if (result == null)
+                result = this.results.poll();
+            while (result != null)
+            {
+                this.inFlight--;
+                if (result.error)
+                {
+                    this.failed++;
+                    this.concurrency.onError();
+                    context.downloadComplete(false);
+                } else
+                {
+                    this.concurrency.onSuccess(result.latency);
+                    this.batch.add(result);
+                    if (this.batch.size() == COMMIT_BATCH_SIZE)
+                        this.commit(context);
+                }
+                result = this.results.poll();
+            }
+
+            if (System.currentTimeMillis() - this.lastCommit >= COMMIT_INTERVAL_MS)
+                this.commit(context);
+        }
+
+        private void commit(ScrapeContext context)
+        {
+            final long now = System.currentTimeMillis();
+            this.lastCommit = now;
+            if (this.batch.isEmpty())
+                return;
+
+            final int count = this.batch.size();
+            int keys = 0;
+            final long expiration = now + request.expirationOffset;
+            if (this.db != null)
+                this.db.beginTransaction();
+            try
+            {
+                for (int i = 0; i < count; i++)
+                {
+                    final FetchResult tile = this.batch.get(i);
+                    // no data, the server does not have the tile
+                    if (tile.data != null)
+                        sink.setTile(tile.zoom, tile.x, tile.y, tile.data, expiration);
+                    if (TileScrapeLedger.isSupported(tile.zoom))
+                        this.batchKeys[keys++] = TileScrapeLedger.key(tile.zoom, tile.x, tile.y);
+                }
+                if (this.db != null)
+                    this.db.setTransactionSuccessful();
+            } finally
+            {
+                if (this.db != null)
+                    this.db.endTransaction();
+            }
+            this.batch.clear();
+
+            if (this.ledger != null)
+            {
+                try
+                {
+                    this.ledger.append(this.batchKeys, keys);
+                } catch (IOException e)
+                {
+                    Log.w(TAG, "Failed to update scrape ledger, download will not be resumable", e);
+                    try
+                    {
+                        this.ledger.close();
+                    } catch (IOException ignored)
+                    {
+                    }
+                    this.ledger = null;
+                }
+            }
+
+            for (int i = 0; i < count; i++)
+                context.downloadComplete(true);
+
+            this.fetched += count;
+            final long elapsed = now - this.startTime;
+            if (elapsed > 0L)
+                tilesPerSecond = (this.fetched * 1000d) / elapsed;
+            if (now - this.lastThroughputLog >= THROUGHPUT_LOG_INTERVAL_MS)
+            {
+                this.lastThroughputLog = now;
+                Log.d(TAG, client.getName() + ": " + String.format(Locale.US, "%.1f", tilesPerSecond) + " tiles/sec, " + this.concurrency.getLimit() + " concurrent requests");
+            }
+        }
+
+        private int signature(ScrapeContext context)
+        {
+            int result = client.getName().hashCode();
+            result = 31 * result + context.totalTiles;
+            for (int l = 0; l < context.levels.length; l++)
+            {
+                final List<TilePoint> tiles = context.tiles.get(context.levels[l]);
+                if (tiles == null)
+                    continue;
+                result = 31 * result + context.levels[l];
+                for (TilePoint tile : tiles)
+                {
+                    result = 31 * result + tile.r;
+                    result = 31 * result + tile.c;
+                }
+            }
+            return result;
+        }
+
+        private final class FetchTask implements Runnable
+        {
+            private final int zoom;
+            private final int x;
+            private final int y;
+
+            FetchTask(int zoom, int x, int y)
+            {
+                this.zoom = zoom;
+                this.x = x;
+                this.y = y;
+            }
+
+            @Override
+            public void run()
+            {
+                final FetchResult result = new FetchResult(this.zoom, this.x, this.y);
+                final long start = System.nanoTime();
+                try
+                {
+                    Throwable[] err = new Throwable[1];
+                    int attempts = 0;
+                    while (attempts < DOWNLOAD_ATTEMPTS)
+                    {
+                        err[0] = null;
+                        result.data = client.getTileData(this.zoom, this.x, this.y, err);
+                        if (result.data != null || err[0] == null)
+                            break;
+                        attempts++;
+                    }
+                    result.error = (result.data == null && err[0] != null);
+                } catch (RuntimeException e)
+                {
+                    result.error = true;
+                } finally
+                {
+                    result.latency = System.nanoTime() - start;
+                    results.add(result);
+                }
+            }
+        }
+    }
+
+    private final static class FetchResult
+    {
+        final int zoom;
+        final int x;
+        final int y;
+        byte[] data;
+        boolean error;
+        long latency;
+
+        FetchResult(int zoom, int x, int y)
+        {
+            this.zoom = zoom;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
     private class LegacyDownloader extends Downloader
     {
 
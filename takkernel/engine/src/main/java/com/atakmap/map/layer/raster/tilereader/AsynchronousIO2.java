@@ -12,6 +12,11 @@ import java.util.List;
 
 final class AsynchronousIO2 implements Runnable
 {
+    final static int DEFAULT_MAX_CONCURRENT_READS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    final static long DEFAULT_MAX_READ_BYTES = 32L * 1024L * 1024L;
+
+    private final static double[] QUEUE_COSTS = new double[] {2d, 17d, 257d, Double.MAX_VALUE};
+
     private Collection<TileReader.ReadRequest> tasks;
     private List<RequestQueue> queues;
 
@@ -20,17 +25,41 @@ final class AsynchronousIO2 implements Runnable
     private Collection<RequestServiceWorker> serviceWorkers;
     private Thread sortWorkerThread;
 
+    // read budget, guarded by `queues`
+    private final int maxConcurrentReads;
+    private final long maxReadBytes;
+    private int activeReads;
+    private long activeBytes;
+    private boolean stealDeferred;
+
     AsynchronousIO2()
     {
+        this(DEFAULT_MAX_CONCURRENT_READS, DEFAULT_MAX_READ_BYTES);
+    }
+
+    /**
+     * @param maxConcurrentReads The number of reads that may be in progress before idle workers stop picking up jobs
+     *                           from queues other than their own; <code>0</code> disables work stealing
+     * @param maxReadBytes       The total transfer size of the reads in progress before idle workers stop picking up
+     *                           jobs from queues other than their own
+     */
+    AsynchronousIO2(int maxConcurrentReads, long maxReadBytes)
+    {
+        this.maxConcurrentReads = maxConcurrentReads;
+        this.maxReadBytes = maxReadBytes;
+
         this.queues = new LinkedList<>();
 
         this.tasks = new ArrayList<>();
 
-        double[] queueCosts = new double[] {2d, 17d, 257d, Double.MAX_VALUE};
-        for (double maxCost : queueCosts)
-            this.queues.add(new RequestQueue(maxCost, true));
-        for (double maxCost : queueCosts)
-            this.queues.add(new RequestQueue(maxCost, false));
+        final List<RequestQueue> visible = new ArrayList<>(QUEUE_COSTS.length);
+        final List<RequestQueue> prefetch = new ArrayList<>(QUEUE_COSTS.length);
+        for (double maxCost : QUEUE_COSTS)
+            prefetch.add(new RequestQueue(maxCost, true));
+        for (double maxCost : QUEUE_COSTS)
+            visible.add(new RequestQueue(maxCost, false));
+        this.queues.addAll(prefetch);
+        this.queues.addAll(visible);
 
         Collections.sort(this.queues, new Comparator<RequestQueue>()
         {
@@ -50,16 +79,31 @@ final class AsynchronousIO2 implements Runnable
         {
             RequestServiceWorker worker = new RequestServiceWorker();
             worker.queueLock = this.queues;
-            // NOTE: as designed, the worker allows for multiple queues, allowing for work patterns
-            // such that idle workers for high cost or prefetch queues may pick up lower cost or
-            // non-prefetch jobs. This feature is not currently utilized as there is some concern
-            // regarding the implications on concurrent memory consumption in the resource
-            // constrained Android environment
-            worker.queues = Collections.singleton(queue);
+            worker.scheduler = this;
+            worker.home = queue;
+            // an idle worker may pick up jobs from the other queues, subject to the read budget. Jobs for the visible
+            // scene are picked up ahead of prefetch jobs, and jobs of similar cost ahead of those with dissimilar cost
+            final int band = (queue.prefetch ? prefetch : visible).indexOf(queue);
+            final List<RequestQueue> order = new ArrayList<>(this.queues.size());
+            order.add(queue);
+            appendByDistance(order, visible, band);
+            appendByDistance(order, prefetch, band);
+            worker.queues = order;
             serviceWorkers.add(worker);
         }
     }
 
+    private static void appendByDistance(List<RequestQueue> order, List<RequestQueue> band, int from)
+    {
+        for (int d = 0; d < band.size(); d++)
+        {
+            if (from - d >= 0 && !order.contains(band.get(from - d)))
+                order.add(band.get(from - d));
+            if (from + d < band.size() && !order.contains(band.get(from + d)))
+                order.add(band.get(from + d));
+        }
+    }
+
     /**
      * Aborts all unserviced tasks and kills the thread. If a task is
      * currently being serviced, it will complete before the thread exits.
@@ -126,9 +170,12 @@ final class AsynchronousIO2 implements Runnable
 
     void enqueue(TileReader.ReadRequest request, Envelope bounds)
     {
+        final int transferSize = request.owner.getTransferSize(request.dstW, request.dstH);
         synchronized (this.tasks)
         {
             request.bounds = new Envelope(bounds);
+            request.transferSize = transferSize;
+            request.enqueueTime = System.nanoTime();
             tasks.add(request);
 
             if (this.sortWorkerThread == null)
@@ -155,6 +202,67 @@ final class AsynchronousIO2 implements Runnable
         }
     }
 
+    /**
+     * Returns the statistics for each of the request queues.
+     */
+    Collection<TileReader.AsynchronousIO.QueueStatistics> getQueueStatistics()
+    {
+        synchronized (this.queues)
+        {
+            Collection<TileReader.AsynchronousIO.QueueStatistics> retval = new ArrayList<>(this.queues.size());
+            for (RequestQueue queue : this.queues)
+            {
+                retval.add(new TileReader.AsynchronousIO.QueueStatistics(
+                        queue.maxCost,
+                        queue.prefetch,
+                        queue.queue.size(),
+                        queue.serviced,
+                        queue.stolen,
+                        queue.latency,
+                        queue.maxLatency));
+            }
+            return retval;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if a worker may pick up the request from a queue other than its own without exceeding
+     * the read budget. Must be invoked while holding the queue lock.
+     */
+    boolean admitSteal(TileReader.ReadRequest request)
+    {
+        if (this.maxConcurrentReads <= 0)
+            return false;
+        if (this.activeReads < this.maxConcurrentReads && this.activeBytes + request.transferSize <= this.maxReadBytes)
+            return true;
+        this.stealDeferred = true;
+        return false;
+    }
+
+    /**
+     * Must be invoked while holding the queue lock.
+     */
+    void readStarted(TileReader.ReadRequest request)
+    {
+        this.activeReads++;
+        this.activeBytes += request.transferSize;
+    }
+
+    /**
+     * Must be invoked while holding the queue lock.
+     */
+    void readFinished(TileReader.ReadRequest request)
+    {
+        this.activeReads--;
+        this.activeBytes -= request.transferSize;
+        // wake any worker that passed over a job because the budget was exhausted
+        if (this.stealDeferred)
+        {
+            this.stealDeferred = false;
+            this.queues.notifyAll();
+        }
+    }
+
     public void run()
     {
         while (true)
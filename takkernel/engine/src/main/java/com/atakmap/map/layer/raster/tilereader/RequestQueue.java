@@ -8,10 +8,33 @@ class RequestQueue
     boolean prefetch;
     ArrayList<TileReader.ReadRequest> queue;
 
+    // statistics, guarded by the queue lock
+    long serviced;
+    long stolen;
+    long latency;
+    long maxLatency;
+
     public RequestQueue(double v, boolean p)
     {
         this.maxCost = v;
         this.prefetch = p;
         this.queue = new ArrayList<>();
     }
+
+    /**
+     * Records the dispatch of a request from the queue.
+     *
+     * @param request The request
+     * @param stolen  <code>true</code> if the request was picked up by the worker for another queue
+     */
+    void dispatched(TileReader.ReadRequest request, boolean stolen)
+    {
+        final long wait = System.nanoTime() - request.enqueueTime;
+        this.serviced++;
+        if (stolen)
+            this.stolen++;
+        this.latency += wait;
+        if (wait > this.maxLatency)
+            this.maxLatency = wait;
+    }
 }
\ No newline at end of file
@@ -2,11 +2,13 @@ package com.atakmap.map.layer.raster.tilereader;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 
 final class RequestServiceWorker implements Runnable
 {
+    /** the queues serviced, in order of preference, starting with the worker's own queue */
     Collection<RequestQueue> queues;
+    RequestQueue home;
+    AsynchronousIO2 scheduler;
     TileReader.ReadRequest servicing;
     boolean shutdown;
     Object queueLock;
@@ -15,17 +17,27 @@ final class RequestServiceWorker implements Runnable
     {
         while (true)
         {
+            final TileReader.ReadRequest request;
             synchronized (queueLock)
             {
+                if (servicing != null)
+                    scheduler.readFinished(servicing);
                 servicing = null;
                 if (this.shutdown)
                     break;
-                ArrayList<TileReader.ReadRequest> dispatchFrom = null;
+                RequestQueue dispatchFrom = null;
                 for (RequestQueue queue : queues)
                 {
-                    if (!queue.queue.isEmpty())
+                    final ArrayList<TileReader.ReadRequest> pending = queue.queue;
+                    // discard canceled jobs at the head of the queue before considering the budget
+                    while (!pending.isEmpty() && pending.get(pending.size() - 1).canceled)
+                        pending.remove(pending.size() - 1);
+                    if (pending.isEmpty())
+                        continue;
+                    if (queue == home || scheduler.admitSteal(pending.get(pending.size() - 1)))
                     {
-                        dispatchFrom = queue.queue;
+                        dispatchFrom = queue;
+                        break;
                     }
                 }
                 if (dispatchFrom == null)
@@ -37,14 +49,14 @@ final class RequestServiceWorker implements Runnable
                     continue;
                 }
 
-                final TileReader.ReadRequest request = dispatchFrom.remove(dispatchFrom.size() - 1);
-                if (request.canceled)
-                    continue;
+                request = dispatchFrom.queue.remove(dispatchFrom.queue.size() - 1);
+                dispatchFrom.dispatched(request, dispatchFrom != home);
+                scheduler.readStarted(request);
                 servicing = request;
             }
 
             // execute read
-            servicing.run();
+            request.run();
         }
     }
 }
@@ -1009,6 +1009,10 @@ public abstract class TileReader implements Controls
         final double subsample;
         Envelope bounds;
         final TileReader owner;
+        /** the transfer size, in bytes, recorded when the request is queued */
+        int transferSize;
+        /** the time the request was queued, per {@link System#nanoTime()} */
+        long enqueueTime;
 
         final AsynchronousReadRequestListener callback;
 
@@ -1228,6 +1232,27 @@ public abstract class TileReader implements Controls
             impl = new AsynchronousIO2();
         }
 
+        /**
+         * Creates a new instance with the specified budget for work stealing.
+         * Requests are distributed into queues by cost and by whether they are
+         * for the visible scene or prefetch, each queue having its own worker.
+         * A worker whose queue is empty picks up requests from the other
+         * queues, visible requests first, so long as the number of reads in
+         * progress and their total transfer size remain within the budget.
+         *
+         * @param maxConcurrentReads The maximum number of reads in progress
+         *                           for a worker to pick up a request from
+         *                           another queue. <code>0</code> disables
+         *                           work stealing.
+         * @param maxReadBytes       The maximum total transfer size, in
+         *                           bytes, of the reads in progress,
+         *                           including the request to be picked up
+         */
+        public AsynchronousIO(int maxConcurrentReads, long maxReadBytes)
+        {
+            impl = new AsynchronousIO2(maxConcurrentReads, maxReadBytes);
+        }
+
         private byte[] getReadBuffer(int size)
         {
             final byte[][] b = readBuffer.get();
@@ -1280,5 +1305,75 @@ public abstract class TileReader implements Controls
         {
             impl.setCameraLocation(geo);
         }
+
+        /**
+         * Returns a snapshot of the statistics for each request queue.
+         *
+         * @return The statistics for each request queue
+         */
+        public Collection<QueueStatistics> getQueueStatistics()
+        {
+            return impl.getQueueStatistics();
+        }
+
+        /**
+         * Statistics for a request queue.
+         */
+        public final static class QueueStatistics
+        {
+            /**
+             * The maximum cost of the requests in the queue.
+             */
+            public final double maxCost;
+            /**
+             * <code>true</code> if the queue holds prefetch requests,
+             * <code>false</code> if it holds requests for the visible scene.
+             */
+            public final boolean prefetch;
+            /**
+             * The number of requests waiting in the queue.
+             */
+            public final int pending;
+            /**
+             * The number of requests dispatched from the queue.
+             */
+            public final long serviced;
+            /**
+             * The number of requests dispatched from the queue to the worker
+             * of another queue.
+             */
+            public final long stolen;
+            /**
+             * The total time, in nanoseconds, that the dispatched requests
+             * waited between being queued and being dispatched.
+             */
+            public final long latency;
+            /**
+             * The longest time, in nanoseconds, that a dispatched request
+             * waited between being queued and being dispatched.
+             */
+            public final long maxLatency;
+
+            QueueStatistics(double maxCost, boolean prefetch, int pending, long serviced, long stolen, long latency,
+                            long maxLatency)
+            {
+                this.maxCost = maxCost;
+                this.prefetch = prefetch;
+                this.pending = pending;
+                this.serviced = serviced;
+                this.stolen = stolen;
+                this.latency = latency;
+                this.maxLatency = maxLatency;
+            }
+
+            /**
+             * Returns the mean time, in nanoseconds, that the dispatched
+             * requests waited between being queued and being dispatched.
+             */
+            public long getMeanLatency()
+            {
+                return (serviced > 0L) ? latency / serviced : 0L;
+            }
+        }
     } // AsynchronousIO
 } // TileReader
@@ -0,0 +1,408 @@
+package com.atakmap.spatial;
+
+import com.atakmap.map.layer.feature.geometry.Geometry;
+import com.atakmap.map.layer.feature.geometry.LineString;
+import com.atakmap.map.layer.feature.geometry.Point;
+import com.atakmap.map.layer.feature.geometry.Polygon;
+
+/**
+ * Planar predicates and simplification for simple geometries held in packed coordinate arrays. This is the fast path
+ * used by {@link SpatialCalculator} for the operations that do not need a full overlay engine; the semantics follow
+ * the OGC/GEOS definitions used by SpatiaLite, with coordinates treated as planar longitude/latitude.
+ */
+final class GeometryKernel
+{
+    final static int TYPE_POINT = 1;
+    final static int TYPE_LINESTRING = 2;
+    final static int TYPE_POLYGON = 3;
+
+    private final static int OUTSIDE = -1;
+    private final static int BOUNDARY = 0;
+    private final static int INSIDE = 1;
+
+    private GeometryKernel()
+    {
+    }
+
+    /**
+     * A point, linestring or polygon. Coordinates are interleaved x,y. Polygon rings are always closed; the first
+     * ring is the exterior.
+     */
+    final static class Shape
+    {
+        final int type;
+        final double[][] rings;
+        final double minX;
+        final double minY;
+        final double maxX;
+        final double maxY;
+
+        Shape(int type, double[][] rings)
+        {
+            this.type = type;
+            this.rings = rings;
+
+            double mnx = Double.POSITIVE_INFINITY;
+            double mny = Double.POSITIVE_INFINITY;
+            double mxx = Double.NEGATIVE_INFINITY;
+            double mxy = Double.NEGATIVE_INFINITY;
+            // holes are within the exterior
+            final double[] xy = rings[0];
+            for (int i = 0; i < xy.length; i += 2)
+            {
+                mnx = Math.min(mnx, xy[i]);
+                mny = Math.min(mny, xy[i + 1]);
+                mxx = Math.max(mxx, xy[i]);
+                mxy = Math.max(mxy, xy[i + 1]);
+            }
+            this.minX = mnx;
+            this.minY = mny;
+            this.maxX = mxx;
+            this.maxY = mxy;
+        }
+    }
+
+    static Shape point(double x, double y)
+    {
+        return new Shape(TYPE_POINT, new double[][] {{x, y}});
+    }
+
+    /**
+     * @return The shape, or <code>null</code> if the geometry is not a valid point, linestring or polygon
+     */
+    static Shape create(Geometry geometry)
+    {
+        if (geometry instanceof Point)
+            return point(((Point) geometry).getX(), ((Point) geometry).getY());
+        if (geometry instanceof LineString)
+        {
+            final LineString ls = (LineString) geometry;
+            if (ls.getNumPoints() < 2)
+                return null;
+            return new Shape(TYPE_LINESTRING, new double[][] {pack(ls, false)});
+        }
+        if (geometry instanceof Polygon)
+        {
+            final Polygon poly = (Polygon) geometry;
+            final LineString exterior = poly.getExteriorRing();
+            if (exterior == null)
+                return null;
+            final double[][] rings = new double[1 + poly.getInteriorRings().size()][];
+            int idx = 0;
+            rings[idx++] = pack(exterior, true);
+            for (LineString ring : poly.getInteriorRings())
+                rings[idx++] = pack(ring, true);
+            return polygon(rings);
+        }
+        return null;
+    }
+
+    /**
+     * @param rings The closed rings, exterior first
+     * @return The shape, or <code>null</code> if any ring is degenerate
+     */
+    static Shape polygon(double[][] rings)
+    {
+        for (double[] ring : rings)
+            if (ring.length < 8) // three distinct points plus closure
+                return null;
+        return new Shape(TYPE_POLYGON, rings);
+    }
+
+    private static double[] pack(LineString ls, boolean close)
+    {
+        final int dim = ls.getDimension();
+        final double[] pts = ls.getPoints();
+        final int n = pts.length / dim;
+        final boolean closed = n > 0 && pts[0] == pts[(n - 1) * dim] && pts[1] == pts[(n - 1) * dim + 1];
+        final int count = (close && !closed) ? n + 1 : n;
+        if (dim == 2 && count == n)
+            return pts;
+        final double[] xy = new double[count * 2];
+        for (int i = 0; i < n; i++)
+        {
+            xy[i * 2] = pts[i * dim];
+            xy[i * 2 + 1] = pts[i * dim + 1];
+        }
+        if (count > n)
+        {
+            xy[n * 2] = xy[0];
+            xy[n * 2 + 1] = xy[1];
+        }
+        return xy;
+    }
+
+    /**************************************************************************/
+    // predicates
+
+    static boolean intersects(Shape a, Shape b)
+    {
+        if (a.maxX < b.minX || a.minX > b.maxX || a.maxY < b.minY || a.minY > b.maxY)
+            return false;
+        if (a.type > b.type)
+        {
+            final Shape t = a;
+            a = b;
+            b = t;
+        }
+
+        switch (a.type)
+        {
+            case TYPE_POINT:
+            {
+                final double px = a.rings[0][0];
+                final double py = a.rings[0][1];
+                if (b.type == TYPE_POINT)
+                    return px == b.rings[0][0] && py == b.rings[0][1];
+                else if (b.type == TYPE_LINESTRING)
+                    return onLine(b.rings[0], px, py);
+                else
+                    return locate(b, px, py) != OUTSIDE;
+            }
+            case TYPE_LINESTRING:
+            {
+                for (double[] ring : b.rings)
+                    if (linesIntersect(a.rings[0], ring))
+                        return true;
+                return (b.type == TYPE_POLYGON) && locate(b, a.rings[0][0], a.rings[0][1]) != OUTSIDE;
+            }
+            default:
+            {
+                for (double[] ringA : a.rings)
+                    for (double[] ringB : b.rings)
+                        if (linesIntersect(ringA, ringB))
+                            return true;
+                return locate(b, a.rings[0][0], a.rings[0][1]) != OUTSIDE
+                        || locate(a, b.rings[0][0], b.rings[0][1]) != OUTSIDE;
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if {@link #contains(Shape, Shape)} can evaluate the pair
+     */
+    static boolean canEvaluateContains(Shape a, Shape b)
+    {
+        return b.type == TYPE_POINT && (a.type == TYPE_POINT || a.type == TYPE_POLYGON);
+    }
+
+    /**
+     * Evaluates containment for the pairs accepted by {@link #canEvaluateContains(Shape, Shape)}. Per the OGC
+     * definition, a point on the boundary of a polygon is not contained.
+     */
+    static boolean contains(Shape a, Shape b)
+    {
+        if (!canEvaluateContains(a, b))
+            throw new IllegalArgumentException();
+        final double px = b.rings[0][0];
+        final double py = b.rings[0][1];
+        if (a.type == TYPE_POINT)
+            return a.rings[0][0] == px && a.rings[0][1] == py;
+        return containsPoint(a, px, py);
+    }
+
+    static boolean containsPoint(Shape polygon, double x, double y)
+    {
+        if (x < polygon.minX || x > polygon.maxX || y < polygon.minY || y > polygon.maxY)
+            return false;
+        return locate(polygon, x, y) == INSIDE;
+    }
+
+    private static int locate(Shape polygon, double x, double y)
+    {
+        final int ext = locate(polygon.rings[0], x, y);
+        if (ext != INSIDE)
+            return ext;
+        for (int i = 1; i < polygon.rings.length; i++)
+        {
+            final int hole = locate(polygon.rings[i], x, y);
+            if (hole == BOUNDARY)
+                return BOUNDARY;
+            if (hole == INSIDE)
+                return OUTSIDE;
+        }
+        return INSIDE;
+    }
+
+    /** locates the point against a closed ring, by crossing number */
+    private static int locate(double[] ring, double x, double y)
+    {
+        boolean inside = false;
+        final int n = ring.length / 2 - 1;
+        for (int i = 0; i < n; i++)
+        {
+            final double x0 = ring[i * 2];
+            final double y0 = ring[i * 2 + 1];
+            final double x1 = ring[i * 2 + 2];
+            final double y1 = ring[i * 2 + 3];
+            if (onSegment(x0, y0, x1, y1, x, y))
+                return BOUNDARY;
+            if ((y0 > y) != (y1 > y))
+            {
+                final double cross = x0 + (y - y0) * (x1 - x0) / (y1 - y0);
+                if (x < cross)
+                    inside = !inside;
+            }
+        }
+        return inside ? INSIDE : OUTSIDE;
+    }
+
+    private static boolean onLine(double[] line, double x, double y)
+    {
+        final int n = line.length / 2 - 1;
+        for (int i = 0; i < n; i++)
+            if (onSegment(line[i * 2], line[i * 2 + 1], line[i * 2 + 2], line[i * 2 + 3], x, y))
+                return true;
+        return false;
+    }
+
+    private static boolean linesIntersect(double[] a, double[] b)
+    {
+        final int na = a.length / 2 - 1;
+        final int nb = b.length / 2 - 1;
+        for (int i = 0; i < na; i++)
+        {
+            final double ax0 = a[i * 2];
+            final double ay0 = a[i * 2 + 1];
+            final double ax1 = a[i * 2 + 2];
+            final double ay1 = a[i * 2 + 3];
+            final double aminX = Math.min(ax0, ax1);
+            final double amaxX = Math.max(ax0, ax1);
+            final double aminY = Math.min(ay0, ay1);
+            final double amaxY = Math.max(ay0, ay1);
+            for (int j = 0; j < nb; j++)
+            {
+                final double bx0 = b[j * 2];
+                final double by0 = b[j * 2 + 1];
+                final double bx1 = b[j * 2 + 2];
+                final double by1 = b[j * 2 + 3];
+                if (Math.max(bx0, bx1) < aminX || Math.min(bx0, bx1) > amaxX
+                        || Math.max(by0, by1) < aminY || Math.min(by0, by1) > amaxY)
+                    continue;
+                if (segmentsIntersect(ax0, ay0, ax1, ay1, bx0, by0, bx1, by1))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean segmentsIntersect(double ax0, double ay0, double ax1, double ay1,
+                                             double bx0, double by0, double bx1, double by1)
+    {
+        final double d1 = orientation(bx0, by0, bx1, by1, ax0, ay0);
+        final double d2 = orientation(bx0, by0, bx1, by1, ax1, ay1);
+        final double d3 = orientation(ax0, ay0, ax1, ay1, bx0, by0);
+        final double d4 = orientation(ax0, ay0, ax1, ay1, bx1, by1);
+        if (((d1 > 0d && d2 < 0d) || (d1 < 0d && d2 > 0d))
+                && ((d3 > 0d && d4 < 0d) || (d3 < 0d && d4 > 0d)))
+            return true;
+        return (d1 == 0d && inBounds(bx0, by0, bx1, by1, ax0, ay0))
+                || (d2 == 0d && inBounds(bx0, by0, bx1, by1, ax1, ay1))
+                || (d3 == 0d && inBounds(ax0, ay0, ax1, ay1, bx0, by0))
+                || (d4 == 0d && inBounds(ax0, ay0, ax1, ay1, bx1, by1));
+    }
+
+    private static boolean onSegment(double x0, double y0, double x1, double y1, double x, double y)
+    {
+        return inBounds(x0, y0, x1, y1, x, y) && orientation(x0, y0, x1, y1, x, y) == 0d;
+    }
+
+    private static boolean inBounds(double x0, double y0, double x1, double y1, double x, double y)
+    {
+        return x >= Math.min(x0, x1) && x <= Math.max(x0, x1)
+                && y >= Math.min(y0, y1) && y <= Math.max(y0, y1);
+    }
+
+    private static double orientation(double ax, double ay, double bx, double by, double cx, double cy)
+    {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+
+    /**************************************************************************/
+    // simplification
+
+    /**
+     * Douglas-Peucker simplification, matching the non topology preserving simplification in SpatiaLite: interior
+     * points are discarded while their distance to the simplifying segment is within the tolerance, and the end
+     * points are always retained.
+     *
+     * @param xy        The line, as interleaved x,y
+     * @param count     The number of points
+     * @param tolerance The distance tolerance
+     * @param keep      Receives the points that are retained; must have at least <code>count</code> elements
+     * @return The number of points retained
+     */
+    static int simplify(double[] xy, int count, double tolerance, boolean[] keep)
+    {
+        if (count < 3)
+        {
+            for (int i = 0; i < count; i++)
+                keep[i] = true;
+            return count;
+        }
+        for (int i = 0; i < count; i++)
+            keep[i] = false;
+        keep[0] = true;
+        keep[count - 1] = true;
+        int retained = 2;
+
+        // explicit stack of [first, last] sections
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+        while (top > 0)
+        {
+            final int last = stack[--top];
+            final int first = stack[--top];
+            if (last - first < 2)
+                continue;
+
+            double maxDistance = -1d;
+            int maxIndex = first;
+            for (int i = first + 1; i < last; i++)
+            {
+                final double d = segmentDistance(
+                        xy[first * 2], xy[first * 2 + 1],
+                        xy[last * 2], xy[last * 2 + 1],
+                        xy[i * 2], xy[i * 2 + 1]);
+                if (d > maxDistance)
+                {
+                    maxDistance = d;
+                    maxIndex = i;
+                }
+            }
+            if (maxDistance <= tolerance)
+                continue;
+
+            keep[maxIndex] = true;
+            retained++;
+            if (top + 4 > stack.length)
+            {
+                final int[] grown = new int[stack.length * 2];
+                System.arraycopy(stack, 0, grown, 0, top);
+                stack = grown;
+            }
+            stack[top++] = first;
+            stack[top++] = maxIndex;
+            stack[top++] = maxIndex;
+            stack[top++] = last;
+        }
+        return retained;
+    }
+
+    private static double segmentDistance(double x0, double y0, double x1, double y1, double x, double y)
+    {
+        final double dx = x1 - x0;
+        final double dy = y1 - y0;
+        final double len2 = dx * dx + dy * dy;
+        if (len2 == 0d)
+            return Math.hypot(x - x0, y - y0);
+        final double t = ((x - x0) * dx + (y - y0) * dy) / len2;
+        if (t <= 0d)
+            return Math.hypot(x - x0, y - y0);
+        if (t >= 1d)
+            return Math.hypot(x - x1, y - y1);
+        return Math.abs(dx * (y - y0) - dy * (x - x0)) / Math.sqrt(len2);
+    }
+}
@@ -0,0 +1,237 @@
+package com.atakmap.spatial;
+
+import java.util.Collection;
+
+import com.atakmap.coremap.maps.coords.GeoPoint;
+
+/**
+ * A polygon prepared for repeated point containment tests. The ring is held in packed coordinate arrays and its edges
+ * are bucketed into horizontal bands, so a test only visits the edges that span the latitude of the point instead of
+ * every edge of the ring.
+ *
+ * <P>Coordinates are treated as planar longitude/latitude, consistent with the polygons created by
+ * {@link SpatialCalculator}. Instances are immutable and may be shared between threads.
+ */
+public final class PreparedPolygon
+{
+    private final static int MAX_BANDS = 256;
+
+    private final double[] xs;
+    private final double[] ys;
+    private final int numEdges;
+
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+
+    private final int numBands;
+    private final double bandHeight;
+    /** indices of the edges spanning each band */
+    private final int[][] bands;
+
+    /**
+     * Creates a new prepared polygon. The ring may or may not repeat the first point as the last.
+     *
+     * @param ring The exterior ring
+     * @throws IllegalArgumentException if the ring has fewer than three distinct points
+     */
+    public PreparedPolygon(GeoPoint[] ring)
+    {
+        this(pack(ring, ring.length));
+    }
+
+    /**
+     * Creates a new prepared polygon. The ring may or may not repeat the first point as the last.
+     *
+     * @param ring The exterior ring
+     * @throws IllegalArgumentException if the ring has fewer than three distinct points
+     */
+    public PreparedPolygon(Collection<GeoPoint> ring)
+    {
+        this(ring.toArray(new GeoPoint[0]));
+    }
+
+    /**
+     * Creates a new prepared polygon from packed coordinates. The ring may or may not repeat the first point as the
+     * last.
+     *
+     * @param longitudes The longitudes of the ring
+     * @param latitudes  The latitudes of the ring
+     * @param count      The number of points in the ring
+     * @throws IllegalArgumentException if the ring has fewer than three distinct points
+     */
+    public PreparedPolygon(double[] longitudes, double[] latitudes, int count)
+    {
+        this(pack(longitudes, latitudes, count));
+    }
+
+    private PreparedPolygon(double[][] ring)
+    {
+        this.xs = ring[0];
+        this.ys = ring[1];
+        this.numEdges = this.xs.length - 1;
+        if (this.numEdges < 3)
+            throw new IllegalArgumentException("Polygon requires at least 3 points");
+
+        double mnx = this.xs[0];
+        double mny = this.ys[0];
+        double mxx = this.xs[0];
+        double mxy = this.ys[0];
+        for (int i = 1; i < this.numEdges; i++)
+        {
+            mnx = Math.min(mnx, this.xs[i]);
+            mny = Math.min(mny, this.ys[i]);
+            mxx = Math.max(mxx, this.xs[i]);
+            mxy = Math.max(mxy, this.ys[i]);
+        }
+        this.minX = mnx;
+        this.minY = mny;
+        this.maxX = mxx;
+        this.maxY = mxy;
+
+        // small rings are tested directly
+        final int numBands = (this.maxY > this.minY) ? Math.min(MAX_BANDS, this.numEdges / 4) : 0;
+        if (numBands < 2)
+        {
+            this.numBands = 0;
+            this.bandHeight = 0d;
+            this.bands = null;
+            return;
+        }
+
+        this.numBands = numBands;
+        this.bandHeight = (this.maxY - this.minY) / numBands;
+        final int[] counts = new int[numBands];
+        for (int i = 0; i < this.numEdges; i++)
+        {
+            final int first = this.band(Math.min(this.ys[i], this.ys[i + 1]));
+            final int last = this.band(Math.max(this.ys[i], this.ys[i + 1]));
+            for (int b = first; b <= last; b++)
+                counts[b]++;
+        }
+        this.bands = new int[numBands][];
+        for (int b = 0; b < numBands; b++)
+            this.bands[b] = new int[counts[b]];
+        for (int i = 0; i < this.numEdges; i++)
+        {
+            final int first = this.band(Math.min(this.ys[i], this.ys[i + 1]));
+            final int last = this.band(Math.max(this.ys[i], this.ys[i + 1]));
+            for (int b = first; b <= last; b++)
+                this.bands[b][--counts[b]] = i;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the point is in the interior of the polygon
+     */
+    public boolean contains(GeoPoint point)
+    {
+        return this.contains(point.getLatitude(), point.getLongitude());
+    }
+
+    /**
+     * @return <code>true</code> if the point is in the interior of the polygon
+     */
+    public boolean contains(double latitude, double longitude)
+    {
+        if (longitude < this.minX || longitude > this.maxX || latitude < this.minY || latitude > this.maxY)
+            return false;
+
+        boolean inside = false;
+        if (this.bands == null)
+        {
+            for (int i = 0; i < this.numEdges; i++)
+                if (this.crosses(i, longitude, latitude))
+                    inside = !inside;
+        } else
+        {
+            for (int i : this.bands[this.band(latitude)])
+                if (this.crosses(i, longitude, latitude))
+                    inside = !inside;
+        }
+        return inside;
+    }
+
+    public double getMinLongitude()
+    {
+        return this.minX;
+    }
+
+    public double getMinLatitude()
+    {
+        return this.minY;
+    }
+
+    public double getMaxLongitude()
+    {
+        return this.maxX;
+    }
+
+    public double getMaxLatitude()
+    {
+        return this.maxY;
+    }
+
+    /**
+     * Returns <code>true</code> if a ray cast from the point in the direction of increasing longitude crosses the edge.
+     */
+    private boolean crosses(int edge, double x, double y)
+    {
+        final double y0 = this.ys[edge];
+        final double y1 = this.ys[edge + 1];
+        if ((y0 > y) == (y1 > y))
+            return false;
+        final double x0 = this.xs[edge];
+        final double x1 = this.xs[edge + 1];
+        return x < x0 + (y - y0) * (x1 - x0) / (y1 - y0);
+    }
+
+    private int band(double y)
+    {
+        final int b = (int) ((y - this.minY) / this.bandHeight);
+        return Math.max(0, Math.min(this.numBands - 1, b));
+    }
+
+    private static double[][] pack(GeoPoint[] ring, int count)
+    {
+        final double[] longitudes = new double[count];
+        final double[] latitudes = new double[count];
+        for (int i = 0; i < count; i++)
+        {
+            longitudes[i] = ring[i].getLongitude();
+            latitudes[i] = ring[i].getLatitude();
+        }
+        return pack(longitudes, latitudes, count);
+    }
+
+    /**
+     * Packs the ring into closed coordinate arrays, dropping consecutive duplicate points.
+     */
+    private static double[][] pack(double[] longitudes, double[] latitudes, int count)
+    {
+        final double[] xs = new double[count + 1];
+        final double[] ys = new double[count + 1];
+        int n = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (n > 0 && xs[n - 1] == longitudes[i] && ys[n - 1] == latitudes[i])
+                continue;
+            xs[n] = longitudes[i];
+            ys[n] = latitudes[i];
+            n++;
+        }
+        // drop the explicit closing point, if present
+        if (n > 1 && xs[n - 1] == xs[0] && ys[n - 1] == ys[0])
+            n--;
+        if (n < 3)
+            throw new IllegalArgumentException("Polygon requires at least 3 points");
+
+        final double[][] retval = new double[][] {new double[n + 1], new double[n + 1]};
+        System.arraycopy(xs, 0, retval[0], 0, n);
+        System.arraycopy(ys, 0, retval[1], 0, n);
+        retval[0][n] = xs[0];
+        retval[1][n] = ys[0];
+        return retval;
+    }
+}
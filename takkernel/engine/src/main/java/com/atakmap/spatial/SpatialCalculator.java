@@ -9,7 +9,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 import android.content.Context;
 import android.database.sqlite.SQLiteException;
@@ -70,6 +72,14 @@ import gov.tak.api.engine.map.coords.IGeoPoint;
  * all instructions issued during the batch are undone and the calculator is in
  * the same state as it was prior to the batch.
  *
+ * <P>Points, linestrings and polygons created or updated from coordinates are
+ * also retained in packed form. The {@link #intersects(long, long)},
+ * point-in-polygon {@link #contains(long, long)} and non topology preserving
+ * linestring simplification operations are evaluated directly against the
+ * packed coordinates when possible, avoiding the SQL round trip; all other
+ * operations, and geometries created from blobs or well-known text, are
+ * evaluated by SpatiaLite.
+ *
  * <H2>Thread Safety</H2>
  *
  * <P>This class is <B>NOT</B> thread-safe. Care needs to be taken to ensure
@@ -135,6 +145,12 @@ public final class SpatialCalculator
     private String[] arr2;
     private QuadBlob quad;
 
+    /**
+     * Packed coordinates for the geometries in memory that may be evaluated
+     * without SpatiaLite, keyed by handle
+     */
+    private final Map<Long, GeometryKernel.Shape> shapes = new HashMap<>();
+
     private StatementIface insertGeomWkt;
     private StatementIface insertGeomBlob;
     private StatementIface insertGeomWkb;
@@ -388,6 +404,7 @@ public final class SpatialCalculator
             } finally
             {
                 this.database = null;
+                this.shapes.clear();
                 if (this.spatialdbFile != null)
                     FileSystemUtils.delete(this.spatialdbFile);
             }
@@ -428,6 +445,7 @@ public final class SpatialCalculator
         if (this.clear == null)
             this.clear = this.database.compileStatement("DELETE FROM Calculator");
         this.clear.execute();
+        this.shapes.clear();
     }
 
     /**
@@ -461,6 +479,10 @@ public final class SpatialCalculator
         if (commit)
             this.database.setTransactionSuccessful();
         this.database.endTransaction();
+        // the packed geometries are not transactional; discard everything
+        // rather than attempt to roll back
+        if (!commit)
+            this.shapes.clear();
     }
 
     /**
@@ -538,7 +560,7 @@ public final class SpatialCalculator
 
             this.insertPoint.execute();
 
-            return Databases.lastInsertRowId(this.database);
+            return this.track(Databases.lastInsertRowId(this.database), GeometryKernel.point(point.getX(), point.getY()));
         } finally
         {
             if (this.insertPoint != null)
@@ -755,7 +777,7 @@ public final class SpatialCalculator
                 ring.addPoint(fn.getLongitude(geo), fn.getLatitude(geo));
             polygon.addRing(ring);
         }
-        return this.createGeometry(createPolygonBlob(polygon));
+        return this.track(this.createGeometry(createPolygonBlob(polygon)), GeometryKernel.create(polygon));
     }
 
     public long createGeometry(byte[] blob)
@@ -778,7 +800,7 @@ public final class SpatialCalculator
 
     public long createGeometry(Geometry geometry)
     {
-        return this.createGeometry(createGeometryBlob(geometry));
+        return this.track(this.createGeometry(createGeometryBlob(geometry)), GeometryKernel.create(geometry));
     }
 
     public long createWkbGeometry(byte[] blob)
@@ -830,8 +852,14 @@ public final class SpatialCalculator
      */
     public long createPolygon(GeoPoint a, GeoPoint b, GeoPoint c, GeoPoint d)
     {
-        return this.createGeometry(
-                this.createQuadBlob(
+        return this.track(
+                this.createGeometry(
+                        this.createQuadBlob(
+                                a.getLatitude(), a.getLongitude(),
+                                b.getLatitude(), b.getLongitude(),
+                                c.getLatitude(), c.getLongitude(),
+                                d.getLatitude(), d.getLongitude())),
+                createQuadShape(
                         a.getLatitude(), a.getLongitude(),
                         b.getLatitude(), b.getLongitude(),
                         c.getLatitude(), c.getLongitude(),
@@ -851,8 +879,14 @@ public final class SpatialCalculator
      */
     public long createPolygon(IGeoPoint a, IGeoPoint b, IGeoPoint c, IGeoPoint d)
     {
-        return this.createGeometry(
-                this.createQuadBlob(
+        return this.track(
+                this.createGeometry(
+                        this.createQuadBlob(
+                                a.getLatitude(), a.getLongitude(),
+                                b.getLatitude(), b.getLongitude(),
+                                c.getLatitude(), c.getLongitude(),
+                                d.getLatitude(), d.getLongitude())),
+                createQuadShape(
                         a.getLatitude(), a.getLongitude(),
                         b.getLatitude(), b.getLongitude(),
                         c.getLatitude(), c.getLongitude(),
@@ -872,6 +906,7 @@ public final class SpatialCalculator
                 this.deleteGeom = this.database.compileStatement("DELETE FROM Calculator WHERE id = ?");
             this.deleteGeom.bind(1, handle);
             this.deleteGeom.execute();
+            this.shapes.remove(handle);
         } finally
         {
             if (this.deleteGeom != null)
@@ -1003,6 +1038,11 @@ public final class SpatialCalculator
      */
     public boolean intersects(long geom1, long geom2)
     {
+        final GeometryKernel.Shape shape1 = this.shapes.get(geom1);
+        final GeometryKernel.Shape shape2 = (shape1 != null) ? this.shapes.get(geom2) : null;
+        if (shape2 != null)
+            return GeometryKernel.intersects(shape1, shape2);
+
         CursorIface result = null;
         try
         {
@@ -1032,6 +1072,11 @@ public final class SpatialCalculator
      */
     public boolean contains(long geom1, long geom2)
     {
+        final GeometryKernel.Shape shape1 = this.shapes.get(geom1);
+        final GeometryKernel.Shape shape2 = (shape1 != null) ? this.shapes.get(geom2) : null;
+        if (shape2 != null && GeometryKernel.canEvaluateContains(shape1, shape2))
+            return GeometryKernel.contains(shape1, shape2);
+
         CursorIface result = null;
         try
         {
@@ -1050,6 +1095,89 @@ public final class SpatialCalculator
         }
     }
 
+    /**
+     * Tests a geometry for intersection with each of the specified geometries.
+     *
+     * @param geom    A handle to the geometry in the calculator's memory
+     * @param others  Handles to the geometries to test against
+     *                <code>geom</code>
+     * @param results Receives the result for each element of
+     *                <code>others</code>
+     */
+    public void intersects(long geom, long[] others, boolean[] results)
+    {
+        if (results.length < others.length)
+            throw new IllegalArgumentException();
+        for (int i = 0; i < others.length; i++)
+            results[i] = this.intersects(geom, others[i]);
+    }
+
+    /**
+     * Tests each of the specified points for containment in a geometry. When
+     * the geometry is a polygon created from coordinates, the points are
+     * evaluated without being written to the calculator's memory.
+     *
+     * @param geom    A handle to the geometry in the calculator's memory
+     * @param points  The points to test
+     * @param results Receives the result for each element of
+     *                <code>points</code>
+     */
+    public void contains(long geom, GeoPoint[] points, boolean[] results)
+    {
+        this.contains(geom, new ArrayIterator<>(points), points.length, results, GeoPointInterop.GEOPOINT);
+    }
+
+    /**
+     * Tests each of the specified points for containment in a geometry. When
+     * the geometry is a polygon created from coordinates, the points are
+     * evaluated without being written to the calculator's memory.
+     *
+     * @param geom    A handle to the geometry in the calculator's memory
+     * @param points  The points to test
+     * @param results Receives the result for each element of
+     *                <code>points</code>
+     */
+    public void contains(long geom, IGeoPoint[] points, boolean[] results)
+    {
+        this.contains(geom, new ArrayIterator<>(points), points.length, results, GeoPointInterop.IGEOPOINT);
+    }
+
+    private <T> void contains(long geom, Iterator<T> points, int numPoints, boolean[] results, GeoPointInterop<T> fn)
+    {
+        if (results.length < numPoints)
+            throw new IllegalArgumentException();
+
+        final GeometryKernel.Shape shape = this.shapes.get(geom);
+        if (shape != null && shape.type == GeometryKernel.TYPE_POLYGON)
+        {
+            for (int i = 0; i < numPoints; i++)
+            {
+                final T p = points.next();
+                results[i] = GeometryKernel.containsPoint(shape, fn.getLongitude(p), fn.getLatitude(p));
+            }
+            return;
+        }
+
+        // reuse a single point in memory for the SpatiaLite evaluation
+        long handle = 0L;
+        try
+        {
+            for (int i = 0; i < numPoints; i++)
+            {
+                final T p = points.next();
+                if (handle == 0L)
+                    handle = this.createPoint(new Point(fn.getLongitude(p), fn.getLatitude(p)));
+                else
+                    this.updatePoint(handle, fn.getLatitude(p), fn.getLongitude(p));
+                results[i] = this.contains(geom, handle);
+            }
+        } finally
+        {
+            if (handle != 0L)
+                this.deleteGeometry(handle);
+        }
+    }
+
     /**
      * Returns the intersection of the specified geometries as a new geometry in
      * the calculator's memory.
@@ -1102,6 +1230,7 @@ public final class SpatialCalculator
             this.intersectionUpdate.bind(2, result);
 
             this.intersectionUpdate.execute();
+            this.shapes.remove(result);
         } finally
         {
             if (this.intersectionUpdate != null)
@@ -1160,6 +1289,7 @@ public final class SpatialCalculator
             this.unionUpdate.bind(2, geom2);
             this.unionUpdate.bind(3, result);
             this.unionUpdate.execute();
+            this.shapes.remove(result);
         } finally
         {
             if (this.unionUpdate != null)
@@ -1194,6 +1324,7 @@ public final class SpatialCalculator
             this.unionUpdate.bind(4, result);
 
             this.unionUpdate.execute();
+            this.shapes.remove(result);
         } finally
         {
             if (this.unionUpdate != null)
@@ -1240,6 +1371,7 @@ public final class SpatialCalculator
             this.unaryUnionUpdate.bind(1, geom);
             this.unaryUnionUpdate.bind(2, result);
             this.unaryUnionUpdate.execute();
+            this.shapes.remove(result);
         } finally
         {
             if (this.unaryUnionUpdate != null)
@@ -1299,6 +1431,7 @@ public final class SpatialCalculator
             this.differenceUpdate.bind(3, result);
 
             this.differenceUpdate.execute();
+            this.shapes.remove(result);
         } finally
         {
             if (this.differenceUpdate != null)
@@ -1386,6 +1519,7 @@ public final class SpatialCalculator
             stmt.bind(3, result);
 
             stmt.execute();
+            this.shapes.remove(result);
         } finally
         {
             if (stmt != null)
@@ -1469,6 +1603,9 @@ public final class SpatialCalculator
 
     private <T> Collection<T> simplify(int numPoints, Iterator<T> points, double tolerance, boolean preserveTopology, GeoPointInterop<T> fn)
     {
+        if (!preserveTopology && numPoints >= 2)
+            return simplify(numPoints, points, tolerance, fn);
+
         long handle = 0L;
         try
         {
@@ -1486,6 +1623,29 @@ public final class SpatialCalculator
         return null;
     }
 
+    /**
+     * Douglas-Peucker simplification of the linestring, evaluated on packed
+     * coordinates.
+     */
+    private static <T> Collection<T> simplify(int numPoints, Iterator<T> points, double tolerance, GeoPointInterop<T> fn)
+    {
+        final double[] xy = new double[numPoints * 2];
+        for (int i = 0; i < numPoints; i++)
+        {
+            final T p = points.next();
+            xy[i * 2] = fn.getLongitude(p);
+            xy[i * 2 + 1] = fn.getLatitude(p);
+        }
+
+        final boolean[] keep = new boolean[numPoints];
+        final int retained = GeometryKernel.simplify(xy, numPoints, tolerance, keep);
+        final Collection<T> retval = new ArrayList<>(retained);
+        for (int i = 0; i < numPoints; i++)
+            if (keep[i])
+                retval.add(fn.create(xy[i * 2 + 1], xy[i * 2]));
+        return retval;
+    }
+
     /**
      * Returns the buffer of the specified geometry as a new geometry in the
      * calculator's memory.
@@ -1540,6 +1700,7 @@ public final class SpatialCalculator
             this.bufferUpdate.bind(3, result);
 
             this.bufferUpdate.execute();
+            this.shapes.remove(result);
         } finally
         {
             if (this.bufferUpdate != null)
@@ -1620,6 +1781,27 @@ public final class SpatialCalculator
         return this.quad.getBlob(alat, alng, blat, blng, clat, clng, dlat, dlng);
     }
 
+    private static GeometryKernel.Shape createQuadShape(double alat, double alng, double blat, double blng, double clat, double clng, double dlat, double dlng)
+    {
+        return GeometryKernel.polygon(new double[][] {{alng, alat, blng, blat, clng, clat, dlng, dlat, alng, alat}});
+    }
+
+    /**
+     * Records the packed form of the geometry for the handle. If
+     * <code>shape</code> is <code>null</code>, the geometry will be evaluated
+     * by SpatiaLite.
+     *
+     * @return <code>handle</code>
+     */
+    private long track(long handle, GeometryKernel.Shape shape)
+    {
+        if (shape != null)
+            this.shapes.put(handle, shape);
+        else
+            this.shapes.remove(handle);
+        return handle;
+    }
+
     /**
      * Updated polygon in the calculator's memory.
      *
@@ -1724,6 +1906,7 @@ public final class SpatialCalculator
         }
 
         this.updateGeometry(handle, createPolygonBlob(polygon));
+        this.track(handle, GeometryKernel.create(polygon));
     }
 
     /**
@@ -1758,6 +1941,13 @@ public final class SpatialCalculator
                         fn.getLatitude(c), fn.getLongitude(c),
                         fn.getLatitude(d), fn.getLongitude(d))
         );
+        this.track(
+                handle,
+                createQuadShape(
+                        fn.getLatitude(a), fn.getLongitude(a),
+                        fn.getLatitude(b), fn.getLongitude(b),
+                        fn.getLatitude(c), fn.getLongitude(c),
+                        fn.getLatitude(d), fn.getLongitude(d)));
     }
 
     private void updateGeometry(long handle, byte[] blob)
@@ -1771,6 +1961,7 @@ public final class SpatialCalculator
             this.updateGeomBlob.bind(2, handle);
 
             this.updateGeomBlob.execute();
+            this.shapes.remove(handle);
         } finally
         {
             if (this.updateGeomBlob != null)
@@ -1800,6 +1991,7 @@ public final class SpatialCalculator
             this.updatePoint.bind(3, handle);
 
             this.updatePoint.execute();
+            this.track(handle, GeometryKernel.point(longitude, latitude));
         } finally
         {
             if (this.updatePoint != null)
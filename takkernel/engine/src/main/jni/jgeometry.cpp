@@ -357,6 +357,40 @@ JNIEXPORT void JNICALL Java_com_atakmap_map_layer_feature_geometry_Geometry_Line
   if(ATAKMapEngineJNI_checkOrThrow(env, code))
       return;
 }
+JNIEXPORT void JNICALL Java_com_atakmap_map_layer_feature_geometry_Geometry_Linestring_1getPoints
+  (JNIEnv *env, jclass clazz, jobject jpointer, jint off, jint count, jdoubleArray jarr, jint dstOff)
+{
+  Geometry2 *geom = Pointer_get<Geometry2>(env, jpointer);
+  if(!geom) {
+      ATAKMapEngineJNI_checkOrThrow(env, TE_InvalidArg);
+      return;
+  }
+
+  JNIDoubleArray arr(*env, jarr, 0);
+  jdouble *pts = arr;
+
+  TAKErr code(TE_Ok);
+  LineString2 &linestring = static_cast<LineString2 &>(*geom);
+  code = linestring.getPoints(reinterpret_cast<double *>(pts)+dstOff, off, count);
+  if(ATAKMapEngineJNI_checkOrThrow(env, code))
+      return;
+}
+JNIEXPORT void JNICALL Java_com_atakmap_map_layer_feature_geometry_Geometry_Linestring_1getPointsDirect
+  (JNIEnv *env, jclass clazz, jobject jpointer, jint off, jint count, jobject jbuf, jint dstOff)
+{
+  Geometry2 *geom = Pointer_get<Geometry2>(env, jpointer);
+  double *pts = GET_BUFFER_POINTER(double, jbuf);
+  if(!geom || !pts) {
+      ATAKMapEngineJNI_checkOrThrow(env, TE_InvalidArg);
+      return;
+  }
+
+  TAKErr code(TE_Ok);
+  LineString2 &linestring = static_cast<LineString2 &>(*geom);
+  code = linestring.getPoints(pts+dstOff, off, count);
+  if(ATAKMapEngineJNI_checkOrThrow(env, code))
+      return;
+}
 JNIEXPORT void JNICALL Java_com_atakmap_map_layer_feature_geometry_Geometry_Linestring_1setX
   (JNIEnv *env, jclass clazz, jobject jpointer, jint idx, jdouble x)
 {
@@ -0,0 +1,215 @@
+package com.atakmap.map.formats.dted;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MappedPostCellTest {
+    // posts rise 1m per post east and 2m per post north from 100m
+    private static double expectedPost(int lonIdx, int latIdx) {
+        return 100d + lonIdx + 2d * latIdx;
+    }
+
+    private static File writeDted(File dir, String name, int numLon,
+            int numLat, int voidLon, int voidLat) throws IOException {
+        final int recordLength = 8 + numLat * 2 + 4;
+        final ByteBuffer buf = ByteBuffer
+                .allocate(MappedPostCell.DTED_DATA_OFFSET
+                        + numLon * recordLength)
+                .order(ByteOrder.BIG_ENDIAN);
+        for (int i = 0; i < MappedPostCell.DTED_DATA_OFFSET; i++)
+            buf.put(i, (byte) ' ');
+        // origin 77W 35N, 1 second intervals
+        final int lonInterval = (int) Math.round(36000d / (numLon - 1));
+        final int latInterval = (int) Math.round(36000d / (numLat - 1));
+        putAscii(buf, 0, "UHL1");
+        putAscii(buf, 4, "0770000W");
+        putAscii(buf, 12, "0350000N");
+        putAscii(buf, 20, String.format("%04d", lonInterval));
+        putAscii(buf, 24, String.format("%04d", latInterval));
+        putAscii(buf, 47, String.format("%04d", numLon));
+        putAscii(buf, 51, String.format("%04d", numLat));
+        for (int i = 0; i < numLon; i++) {
+            final int record = MappedPostCell.DTED_DATA_OFFSET
+                    + i * recordLength;
+            buf.put(record, (byte) 0xAA);
+            for (int j = 0; j < numLat; j++) {
+                int v;
+                if (i == voidLon && j == voidLat)
+                    v = 0x8000 | 32767;
+                else
+                    v = (int) expectedPost(i, j);
+                buf.putShort(record + 8 + j * 2, (short) v);
+            }
+        }
+        return write(new File(dir, name), buf);
+    }
+
+    private static File writeHgt(File dir, String name, int numPosts)
+            throws IOException {
+        final ByteBuffer buf = ByteBuffer.allocate(numPosts * numPosts * 2)
+                .order(ByteOrder.BIG_ENDIAN);
+        for (int row = 0; row < numPosts; row++)
+            for (int col = 0; col < numPosts; col++)
+                buf.putShort((row * numPosts + col) * 2,
+                        (short) expectedPost(col, numPosts - 1 - row));
+        return write(new File(dir, name), buf);
+    }
+
+    private static void putAscii(ByteBuffer buf, int off, String s) {
+        final byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < b.length; i++)
+            buf.put(off + i, b[i]);
+    }
+
+    private static File write(File f, ByteBuffer buf) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(f)) {
+            fos.write(buf.array());
+        }
+        return f;
+    }
+
+    @Test
+    public void dted_header_and_posts() throws IOException {
+        final File dir = Files.createTempDirectory("dted").toFile();
+        final File f = writeDted(dir, "n35.dt1", 11, 21, -1, -1);
+        final MappedPostCell cell = MappedPostCell.open(f);
+        assertTrue(cell.isDted());
+        assertEquals(35d, cell.getSouth(), 1e-9);
+        assertEquals(-77d, cell.getWest(), 1e-9);
+        assertEquals(36d, cell.getNorth(), 1e-9);
+        assertEquals(-76d, cell.getEast(), 1e-9);
+        assertEquals(11, cell.getNumLonLines());
+        assertEquals(21, cell.getNumLatPoints());
+        for (int i = 0; i < 11; i++)
+            for (int j = 0; j < 21; j++)
+                assertEquals(expectedPost(i, j), cell.getPost(i, j), 0d);
+    }
+
+    @Test
+    public void dted_sample_is_bilinear() throws IOException {
+        final File dir = Files.createTempDirectory("dted").toFile();
+        final MappedPostCell cell = MappedPostCell
+                .open(writeDted(dir, "n35.dt1", 11, 21, -1, -1));
+        // posts are planar, so bilinear interpolation is exact
+        for (double lat = 35d; lat <= 36d; lat += 0.0137d) {
+            for (double lng = -77d; lng <= -76d; lng += 0.0191d) {
+                final double x = (lng + 77d) * 10d;
+                final double y = (lat - 35d) * 20d;
+                assertEquals(100d + x + 2d * y, cell.sample(lat, lng), 1e-6);
+            }
+        }
+        assertEquals(expectedPost(10, 20), cell.sample(36d, -76d), 1e-6);
+        assertTrue(Double.isNaN(cell.sample(36.01d, -76.5d)));
+        assertTrue(Double.isNaN(cell.sample(35.5d, -77.01d)));
+    }
+
+    @Test
+    public void dted_voids_are_filled_with_average() throws IOException {
+        final File dir = Files.createTempDirectory("dted").toFile();
+        final MappedPostCell cell = MappedPostCell
+                .open(writeDted(dir, "n35.dt1", 11, 11, 5, 5));
+        assertTrue(Double.isNaN(cell.getPost(5, 5)));
+        // sample centered on the void post's cell; the void takes the
+        // average of the other three posts
+        final double avg = (expectedPost(4, 4) + expectedPost(5, 4)
+                + expectedPost(4, 5)) / 3d;
+        final double expected = (expectedPost(4, 4) + expectedPost(5, 4)
+                + expectedPost(4, 5) + avg) / 4d;
+        assertEquals(expected, cell.sample(35.45d, -76.55d), 1e-6);
+        assertFalse(Double.isNaN(cell.sample(35.5d, -76.5d)));
+    }
+
+    @Test
+    public void hgt_origin_and_posts() throws IOException {
+        final File dir = Files.createTempDirectory("srtm").toFile();
+        final MappedPostCell cell = MappedPostCell
+                .open(writeHgt(dir, "S13W081.hgt", 121));
+        assertFalse(cell.isDted());
+        assertEquals(-13d, cell.getSouth(), 1e-9);
+        assertEquals(-81d, cell.getWest(), 1e-9);
+        assertEquals(-12d, cell.getNorth(), 1e-9);
+        assertEquals(-80d, cell.getEast(), 1e-9);
+        assertEquals(expectedPost(0, 0), cell.sample(-13d, -81d), 1e-6);
+        assertEquals(expectedPost(120, 120), cell.sample(-12d, -80d), 1e-6);
+        assertEquals(100d + 60d + 2d * 30d, cell.sample(-12.75d, -80.5d),
+                1e-6);
+    }
+
+    @Test(expected = IOException.class)
+    public void invalid_hgt_size_throws() throws IOException {
+        final File dir = Files.createTempDirectory("srtm").toFile();
+        final File f = new File(dir, "N34W081.hgt");
+        write(f, ByteBuffer.allocate(1001));
+        MappedPostCell.open(f);
+    }
+
+    @Test
+    public void cache_maps_each_cell_once() throws IOException {
+        final File dir = Files.createTempDirectory("srtm").toFile();
+        final File a = writeHgt(dir, "N34W081.hgt", 11);
+        final File b = writeHgt(dir, "N34W080.hgt", 11);
+        final File c = writeHgt(dir, "N34W079.hgt", 11);
+        final MappedPostCellCache cache = new MappedPostCellCache(2);
+
+        final MappedPostCell cellA = cache.get(a);
+        assertSame(cellA, cache.get(a));
+        cache.get(b);
+        assertEquals(2L, cache.getOpenCount());
+
+        // touch 'a' so 'b' is evicted
+        cache.get(a);
+        cache.get(c);
+        assertEquals(3L, cache.getOpenCount());
+        assertEquals(2, cache.size());
+        assertSame(cellA, cache.get(a));
+        assertEquals(3L, cache.getOpenCount());
+        cache.get(b);
+        assertEquals(4L, cache.getOpenCount());
+
+        cache.setCapacity(1);
+        assertEquals(1, cache.size());
+        assertNotSame(cellA, cache.get(a));
+    }
+
+    @Test
+    public void cache_remaps_modified_cell() throws IOException {
+        final File dir = Files.createTempDirectory("srtm").toFile();
+        final File a = writeHgt(dir, "N34W081.hgt", 11);
+        final MappedPostCellCache cache = new MappedPostCellCache(2);
+
+        final MappedPostCell cellA = cache.get(a);
+        assertEquals(11, cache.get(a).getNumLatPoints());
+
+        // re-imported in place
+        writeHgt(dir, "N34W081.hgt", 13);
+        assertTrue(a.setLastModified(a.lastModified() + 2000L));
+        final MappedPostCell reimported = cache.get(a);
+        assertNotSame(cellA, reimported);
+        assertEquals(13, reimported.getNumLatPoints());
+        assertEquals(2L, cache.getOpenCount());
+        assertSame(reimported, cache.get(a));
+
+        // truncated; the old mapping is released rather than read
+        write(a, ByteBuffer.allocate(1001));
+        try {
+            cache.get(a);
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals(0, cache.size());
+    }
+}
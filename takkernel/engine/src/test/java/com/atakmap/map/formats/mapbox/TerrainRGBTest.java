@@ -0,0 +1,151 @@
+package com.atakmap.map.formats.mapbox;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TerrainRGBTest {
+    private static int encode(double height) {
+        final int v = (int) Math.round((height + 10000d) * 10d);
+        return 0xFF000000 | (v & 0xFFFFFF);
+    }
+
+    // the per-pixel decode previously applied to every bilinear sample
+    private static double decodeReference(int v) {
+        if ((v >>> 24) == 0)
+            return Double.NaN;
+        final int R = (v >> 16) & 0xFF;
+        final int G = (v >> 8) & 0xFF;
+        final int B = v & 0xFF;
+        return -10000 + ((R * 256 * 256 + G * 256 + B) * 0.1);
+    }
+
+    private static int[] createTile(int size, long seed) {
+        final Random r = new Random(seed);
+        final int[] argb = new int[size * size];
+        for (int y = 0; y < size; y++)
+            for (int x = 0; x < size; x++)
+                argb[y * size + x] = encode(
+                        1000d + 500d * Math.sin(x / 17d) * Math.cos(y / 23d)
+                                + r.nextDouble());
+        return argb;
+    }
+
+    @Test
+    public void decode_matches_rgb_encoding() {
+        final int[] argb = new int[] {
+                encode(-10000d), encode(0d), encode(8848.8d), 0x00FFFFFF,
+        };
+        final TerrainRGBHeightfield hf = TerrainRGBHeightfield.decode(argb, 2,
+                2);
+        for (int i = 0; i < argb.length - 1; i++)
+            assertEquals(decodeReference(argb[i]), hf.heights[i], 1e-3);
+        assertTrue(Float.isNaN(hf.heights[3]));
+    }
+
+    @Test
+    public void sample_matches_reference_bilinear() {
+        final int size = 256;
+        final int[] argb = createTile(size, 1L);
+        final TerrainRGBHeightfield hf = TerrainRGBHeightfield.decode(argb,
+                size, size);
+        final Random r = new Random(2L);
+        for (int i = 0; i < 10000; i++) {
+            final double x = r.nextDouble() * 255d;
+            final double y = r.nextDouble() * 255d;
+
+            final int lx = (int) x;
+            final int uy = (int) y;
+            final int rx = Math.min((int) Math.ceil(x), size - 1);
+            final int ly = Math.min((int) Math.ceil(y), size - 1);
+            final double wr = x - lx;
+            final double wb = y - uy;
+            final double expected = decodeReference(argb[uy * size + lx])
+                    * (1d - wr) * (1d - wb)
+                    + decodeReference(argb[uy * size + rx]) * wr * (1d - wb)
+                    + decodeReference(argb[ly * size + rx]) * wr * wb
+                    + decodeReference(argb[ly * size + lx]) * (1d - wr) * wb;
+            assertEquals(expected, hf.sample(x, y), 1e-3);
+        }
+    }
+
+    @Test
+    public void sample_with_no_data_is_nan() {
+        final int[] argb = createTile(4, 3L);
+        argb[5] = 0;
+        final TerrainRGBHeightfield hf = TerrainRGBHeightfield.decode(argb, 4,
+                4);
+        assertTrue(Double.isNaN(hf.sample(1.5d, 1.5d)));
+        assertFalse(Double.isNaN(hf.sample(2.5d, 2.5d)));
+    }
+
+    @Test
+    public void bulk_sample_matches_point_sample() {
+        final int[] argb = createTile(256, 4L);
+        final TerrainRGB sampler = new TerrainRGB(
+                TerrainRGBHeightfield.decode(argb, 256, 256), 4326, false, 0,
+                0, 1);
+        // tile 0,0 at zoom 1 covers [-180, 0] x [0, 90] in 4326
+        final Random r = new Random(5L);
+        final int count = 1000;
+        final double[] lla = new double[count * 3];
+        for (int i = 0; i < count; i++) {
+            lla[i * 3] = -180d + r.nextDouble() * 90d;
+            lla[i * 3 + 1] = r.nextDouble() * 90d;
+            lla[i * 3 + 2] = Double.NaN;
+        }
+        assertTrue(sampler.sample(lla, 0, count));
+        for (int i = 0; i < count; i++)
+            assertEquals(sampler.sample(lla[i * 3 + 1], lla[i * 3]),
+                    lla[i * 3 + 2], 0d);
+
+        // points outside of the tile are left unset
+        final double[] outside = new double[] {
+                10d, 10d, Double.NaN
+        };
+        assertFalse(sampler.sample(outside, 0, 1));
+        assertTrue(Double.isNaN(outside[2]));
+    }
+
+    @Test
+    public void cache_evicts_least_recently_used() {
+        final TerrainRGBHeightfield a = TerrainRGBHeightfield
+                .decode(createTile(16, 6L), 16, 16);
+        final TerrainRGBHeightfield b = TerrainRGBHeightfield
+                .decode(createTile(16, 7L), 16, 16);
+        final TerrainRGBHeightfield c = TerrainRGBHeightfield
+                .decode(createTile(16, 8L), 16, 16);
+        final TerrainRGBHeightfieldCache cache = new TerrainRGBHeightfieldCache(
+                a.getSize() * 2);
+
+        assertSame(a, cache.put("a", a));
+        assertSame(b, cache.put("b", b));
+        assertNotNull(cache.get("a"));
+        assertSame(c, cache.put("c", c));
+
+        assertSame(a, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertSame(c, cache.get("c"));
+        assertEquals(a.getSize() * 2, cache.size());
+    }
+
+    @Test
+    public void cache_returns_existing_entry() {
+        final TerrainRGBHeightfield a = TerrainRGBHeightfield
+                .decode(createTile(16, 9L), 16, 16);
+        final TerrainRGBHeightfield b = TerrainRGBHeightfield
+                .decode(createTile(16, 9L), 16, 16);
+        final TerrainRGBHeightfieldCache cache = new TerrainRGBHeightfieldCache(
+                TerrainRGBHeightfieldCache.DEFAULT_CAPACITY);
+        assertSame(a, cache.put("tile", a));
+        assertSame(a, cache.put("tile", b));
+        assertEquals(a.getSize(), cache.size());
+    }
+}
@@ -0,0 +1,102 @@
+package com.atakmap.map.layer.raster.tilematrix;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TileDataCacheTest {
+    @Test
+    public void sources_share_entries_by_key() {
+        final TileDataCache cache = new TileDataCache(1024);
+        final byte[] tile = new byte[16];
+        cache.put("/cache/a.sqlite", 3, 1, 2, tile, Long.MAX_VALUE);
+        assertSame(tile, cache.get("/cache/a.sqlite", 3, 1, 2));
+        assertNull(cache.get("/cache/b.sqlite", 3, 1, 2));
+        assertNull(cache.get("/cache/a.sqlite", 3, 2, 1));
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(2L, cache.getMissCount());
+    }
+
+    @Test
+    public void expired_entries_miss() {
+        final TileDataCache cache = new TileDataCache(1024);
+        final byte[] tile = new byte[16];
+        cache.put("src", 0, 0, 0, tile, 1000L);
+        assertSame(tile, cache.get("src", 0, 0, 0, 999L));
+        assertNull(cache.get("src", 0, 0, 0, 1001L));
+        // expiration is ignored when not specified
+        assertSame(tile, cache.get("src", 0, 0, 0));
+    }
+
+    @Test
+    public void evicts_least_recently_used_within_budget() {
+        final TileDataCache cache = new TileDataCache(800);
+        for (int i = 0; i < 8; i++)
+            cache.put("src", 5, i, 0, new byte[100], Long.MAX_VALUE);
+        assertEquals(800L, cache.getSize());
+
+        // touch tile 0 so tile 1 is the eldest
+        cache.get("src", 5, 0, 0);
+        cache.put("src", 5, 8, 0, new byte[100], Long.MAX_VALUE);
+        assertEquals(800L, cache.getSize());
+        assertEquals(8, cache.getTileCount());
+        assertEquals(1L, cache.getEvictionCount());
+        assertNull(cache.get("src", 5, 1, 0));
+        assertEquals(100, cache.get("src", 5, 0, 0).length);
+
+        cache.setCapacity(400);
+        assertEquals(400L, cache.getSize());
+        assertEquals(4, cache.getTileCount());
+    }
+
+    @Test
+    public void replace_updates_size() {
+        final TileDataCache cache = new TileDataCache(1024);
+        cache.put("src", 1, 0, 0, new byte[100], Long.MAX_VALUE);
+        cache.put("src", 1, 0, 0, new byte[50], Long.MAX_VALUE);
+        assertEquals(50L, cache.getSize());
+        assertEquals(1, cache.getTileCount());
+
+        // oversized tiles are not cached and drop any stale entry
+        cache.put("src", 1, 0, 0, new byte[512], Long.MAX_VALUE);
+        assertEquals(0L, cache.getSize());
+        assertNull(cache.get("src", 1, 0, 0));
+    }
+
+    @Test
+    public void invalidate_removes_source() {
+        final TileDataCache cache = new TileDataCache(1024);
+        cache.put("a", 1, 0, 0, new byte[10], Long.MAX_VALUE);
+        cache.put("a", 1, 1, 0, new byte[10], Long.MAX_VALUE);
+        cache.put("b", 1, 0, 0, new byte[10], Long.MAX_VALUE);
+        cache.invalidate("a");
+        assertEquals(10L, cache.getSize());
+        assertNull(cache.get("a", 1, 0, 0));
+        assertEquals(10, cache.get("b", 1, 0, 0).length);
+
+        cache.remove("b", 1, 0, 0);
+        assertEquals(0L, cache.getSize());
+        assertEquals(0, cache.getTileCount());
+    }
+
+    @Test
+    public void namespaced_sources_are_separate_until_invalidated() {
+        final TileDataCache cache = new TileDataCache(1024);
+        final String proxy = TileDataCache.getNamespacedSource("a", "proxy");
+        cache.put("a", 1, 0, 0, new byte[10], 1000L);
+        cache.put(proxy, 1, 0, 0, new byte[20], Long.MAX_VALUE);
+        cache.put("ab", 1, 0, 0, new byte[30], Long.MAX_VALUE);
+
+        // an expired tile is not served from the namespaced entry
+        assertNull(cache.get("a", 1, 0, 0, 2000L));
+        assertEquals(20, cache.get(proxy, 1, 0, 0, 2000L).length);
+
+        cache.invalidate("a");
+        assertNull(cache.get("a", 1, 0, 0));
+        assertNull(cache.get(proxy, 1, 0, 0));
+        assertEquals(30, cache.get("ab", 1, 0, 0).length);
+        assertEquals(30L, cache.getSize());
+    }
+}
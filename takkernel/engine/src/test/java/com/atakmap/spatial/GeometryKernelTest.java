@@ -0,0 +1,108 @@
+package com.atakmap.spatial;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GeometryKernelTest {
+    private static GeometryKernel.Shape square(double minX, double minY, double maxX, double maxY) {
+        return GeometryKernel.polygon(new double[][] {
+                {minX, minY, maxX, minY, maxX, maxY, minX, maxY, minX, minY}
+        });
+    }
+
+    private static GeometryKernel.Shape line(double... xy) {
+        return new GeometryKernel.Shape(GeometryKernel.TYPE_LINESTRING, new double[][] {xy});
+    }
+
+    @Test
+    public void polygon_contains_interior_point_only() {
+        final GeometryKernel.Shape sq = square(0, 0, 2, 2);
+        assertTrue(GeometryKernel.contains(sq, GeometryKernel.point(1, 1)));
+        // boundary is not contained, but intersects
+        assertFalse(GeometryKernel.contains(sq, GeometryKernel.point(2, 1)));
+        assertTrue(GeometryKernel.intersects(sq, GeometryKernel.point(2, 1)));
+        assertFalse(GeometryKernel.contains(sq, GeometryKernel.point(3, 1)));
+        assertFalse(GeometryKernel.intersects(sq, GeometryKernel.point(3, 1)));
+    }
+
+    @Test
+    public void holes_are_excluded() {
+        final GeometryKernel.Shape donut = GeometryKernel.polygon(new double[][] {
+                {0, 0, 4, 0, 4, 4, 0, 4, 0, 0},
+                {1, 1, 3, 1, 3, 3, 1, 3, 1, 1}
+        });
+        assertTrue(GeometryKernel.contains(donut, GeometryKernel.point(0.5, 0.5)));
+        assertFalse(GeometryKernel.contains(donut, GeometryKernel.point(2, 2)));
+        assertFalse(GeometryKernel.intersects(donut, GeometryKernel.point(2, 2)));
+        // hole boundary
+        assertTrue(GeometryKernel.intersects(donut, GeometryKernel.point(1, 2)));
+        assertFalse(GeometryKernel.contains(donut, GeometryKernel.point(1, 2)));
+        // polygon inside the hole does not intersect
+        assertFalse(GeometryKernel.intersects(donut, square(1.5, 1.5, 2.5, 2.5)));
+    }
+
+    @Test
+    public void lines_intersect_on_crossing_and_touching() {
+        assertTrue(GeometryKernel.intersects(line(0, 0, 2, 2), line(0, 2, 2, 0)));
+        // touching end points
+        assertTrue(GeometryKernel.intersects(line(0, 0, 1, 1), line(1, 1, 2, 0)));
+        // collinear overlap
+        assertTrue(GeometryKernel.intersects(line(0, 0, 2, 0), line(1, 0, 3, 0)));
+        // collinear disjoint
+        assertFalse(GeometryKernel.intersects(line(0, 0, 1, 0), line(2, 0, 3, 0)));
+        // parallel
+        assertFalse(GeometryKernel.intersects(line(0, 0, 2, 0), line(0, 1, 2, 1)));
+        assertTrue(GeometryKernel.intersects(line(0, 0, 2, 0), GeometryKernel.point(1, 0)));
+        assertFalse(GeometryKernel.intersects(line(0, 0, 2, 0), GeometryKernel.point(1, 0.1)));
+    }
+
+    @Test
+    public void line_and_polygon_containment_intersects() {
+        final GeometryKernel.Shape sq = square(0, 0, 4, 4);
+        // wholly within, no boundary crossing
+        assertTrue(GeometryKernel.intersects(line(1, 1, 2, 2), sq));
+        assertTrue(GeometryKernel.intersects(line(-1, 2, 5, 2), sq));
+        assertFalse(GeometryKernel.intersects(line(5, 0, 5, 4), sq));
+        // polygon within polygon
+        assertTrue(GeometryKernel.intersects(sq, square(1, 1, 2, 2)));
+        assertTrue(GeometryKernel.intersects(square(1, 1, 2, 2), sq));
+        assertFalse(GeometryKernel.intersects(sq, square(5, 5, 6, 6)));
+    }
+
+    @Test
+    public void only_point_containment_is_evaluated() {
+        final GeometryKernel.Shape sq = square(0, 0, 1, 1);
+        assertTrue(GeometryKernel.canEvaluateContains(sq, GeometryKernel.point(0, 0)));
+        assertTrue(GeometryKernel.canEvaluateContains(GeometryKernel.point(0, 0), GeometryKernel.point(0, 0)));
+        assertFalse(GeometryKernel.canEvaluateContains(sq, sq));
+        assertFalse(GeometryKernel.canEvaluateContains(line(0, 0, 1, 1), GeometryKernel.point(0, 0)));
+    }
+
+    @Test
+    public void degenerate_polygon_is_not_packed() {
+        assertNull(GeometryKernel.polygon(new double[][] {{0, 0, 1, 1, 0, 0}}));
+    }
+
+    @Test
+    public void simplify_drops_points_within_tolerance() {
+        final double[] xy = new double[] {0, 0, 1, 0.05, 2, -0.05, 3, 0, 4, 2, 5, 0};
+        final boolean[] keep = new boolean[6];
+        final int retained = GeometryKernel.simplify(xy, 6, 0.1, keep);
+        assertEquals(4, retained);
+        assertTrue(keep[0]);
+        assertFalse(keep[1]);
+        assertFalse(keep[2]);
+        assertTrue(keep[3]);
+        assertTrue(keep[4]);
+        assertTrue(keep[5]);
+
+        // zero tolerance keeps everything off the line
+        assertEquals(6, GeometryKernel.simplify(xy, 6, 0d, keep));
+        // large tolerance keeps only the end points
+        assertEquals(2, GeometryKernel.simplify(xy, 6, 10d, keep));
+    }
+}
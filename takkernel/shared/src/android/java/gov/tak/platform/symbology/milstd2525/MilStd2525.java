@@ -24,6 +24,7 @@ public final class MilStd2525 extends MilStd2525Base
             if(!cacheDir.exists())
                 cacheDir.mkdirs();
             armyc2.c2sd.renderer.MilStdIconRenderer.getInstance().init(context, cacheDir.getAbsolutePath());
+            MilSymIconCache.getInstance().setCacheDirectory(new File(cacheDir, "icons"));
             // XXX - R8 re-packaging is preventing `MilStd2525` from invoking
             //       `MilStd2525cSymbolTable`. We'll do a recursive invocation here which will skip
             //       the primary invocation and give us access to initialize the table
@@ -35,6 +35,8 @@ import gov.tak.api.symbology.Status;
 
 final class MilStd2525cInterop implements IMilStd2525cInterop<SymbolDef, MilStdSymbol, ShapeInfo>
 {
+    // renderer library version, keep in sync with milSymRendererAndroid in gradle/versions.gradle
+    final static String RENDERER_VERSION = "0.2.1";
     final static String UNIT_MODIFIERS;
     static {
         StringBuilder sb = new StringBuilder();
@@ -242,6 +244,11 @@ final class MilStd2525cInterop implements IMilStd2525cInterop<SymbolDef, MilStdS
         return bs.getDashArray();
     }
 
+    @Override
+    public String getRendererVersion() {
+        return RENDERER_VERSION;
+    }
+
     @Override
     public String getDescription(SymbolDef msInfo) {
         return msInfo.getDescription();
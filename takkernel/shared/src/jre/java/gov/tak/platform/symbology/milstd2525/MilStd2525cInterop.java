@@ -31,6 +31,8 @@ import java.util.logging.Level;
 
 final class MilStd2525cInterop implements IMilStd2525cInterop<SymbolDef, MilStdSymbol, ShapeInfo>
 {
+    // renderer library version, keep in sync with milSymRendererJava in gradle/versions.gradle
+    final static String RENDERER_VERSION = "0.1.41";
     final static String UNIT_MODIFIERS;
     static {
         StringBuilder sb = new StringBuilder();
@@ -369,6 +371,11 @@ final class MilStd2525cInterop implements IMilStd2525cInterop<SymbolDef, MilStdS
     }
 
 
+    @Override
+    public String getRendererVersion() {
+        return RENDERER_VERSION;
+    }
+
     @Override
     public String getDescription(SymbolDef msInfo) {
         return msInfo.getDescription();
@@ -0,0 +1,242 @@
+package gov.tak.platform.symbology.milstd2525;
+
+import com.atakmap.math.PointD;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import gov.tak.api.commons.graphics.Bitmap;
+import gov.tak.api.symbology.ISymbologyProvider;
+import gov.tak.api.util.AttributeSet;
+import gov.tak.test.KernelTest;
+
+public class MilSymIconCacheTest extends KernelTest
+{
+    private static final boolean BENCHMARK_ENABLED = false;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static Bitmap newBitmap(int width, int height, int seed)
+    {
+        int[] argb = new int[width * height];
+        for (int i = 0; i < argb.length; i++)
+            argb[i] = (i % 7 == 0) ? 0 : (0xFF000000 | (seed * 31 + i));
+        return new Bitmap(argb, 0, width, width, height);
+    }
+
+    private static void assertPixelsEqual(Bitmap expected, Bitmap actual)
+    {
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(expected.getWidth(), actual.getWidth());
+        Assert.assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++)
+            for (int x = 0; x < expected.getWidth(); x++)
+                Assert.assertEquals(expected.getPixel(x, y), actual.getPixel(x, y));
+    }
+
+    @Test
+    public void encode_decode_roundtrip()
+    {
+        Bitmap bitmap = newBitmap(17, 9, 1);
+        byte[] encoded = MilSymIconCache.encode(bitmap, new PointD(8.5d, 4d));
+        Assert.assertNotNull(encoded);
+
+        PointD offset = new PointD();
+        assertPixelsEqual(bitmap, MilSymIconCache.decode(encoded, offset));
+        Assert.assertEquals(8.5d, offset.x, 0d);
+        Assert.assertEquals(4d, offset.y, 0d);
+    }
+
+    @Test
+    public void key_independent_of_modifier_order()
+    {
+        Map<String, String> a = new LinkedHashMap<>();
+        a.put("T", "ALPHA");
+        a.put("H", "1");
+        Map<String, String> b = new LinkedHashMap<>();
+        b.put("H", "1");
+        b.put("T", "ALPHA");
+        Map<String, String> attrs = Collections.singletonMap("PixelSize", "32");
+
+        Assert.assertEquals(MilSymIconCache.key("2525D11", "10031000001211000000", a, attrs, 12),
+                MilSymIconCache.key("2525D11", "10031000001211000000", b, attrs, 12));
+        Assert.assertNotEquals(MilSymIconCache.key("2525D11", "10031000001211000000", a, attrs, 12),
+                MilSymIconCache.key("2525D11", "10031000001211000000", a, attrs, 14));
+        Assert.assertNotEquals(MilSymIconCache.key("2525D11", "10031000001211000000", a, attrs, 12),
+                MilSymIconCache.key("2525D11", "10031000001211000000", Collections.<String, String>emptyMap(), attrs, 12));
+    }
+
+    @Test
+    public void memory_hits_and_eviction()
+    {
+        Bitmap bitmap = newBitmap(32, 32, 2);
+        final int size = MilSymIconCache.encode(bitmap, null).length;
+        MilSymIconCache cache = new MilSymIconCache(size * 2L, 16);
+
+        Assert.assertNull(cache.get("a", null));
+        cache.put("a", bitmap, null);
+        cache.put("b", newBitmap(32, 32, 3), null);
+        assertPixelsEqual(bitmap, cache.get("a", null));
+
+        // "b" is least recently used
+        cache.put("c", newBitmap(32, 32, 4), null);
+        Assert.assertNull(cache.get("b", null));
+        Assert.assertNotNull(cache.get("a", null));
+        Assert.assertNotNull(cache.get("c", null));
+
+        Assert.assertEquals(3L, cache.getMemoryHits());
+        Assert.assertEquals(0L, cache.getDiskHits());
+        Assert.assertEquals(2L, cache.getMisses());
+        Assert.assertEquals(0.6d, cache.getHitRate(), 1e-9);
+
+        cache.resetStatistics();
+        Assert.assertEquals(0d, cache.getHitRate(), 0d);
+    }
+
+    @Test
+    public void hits_return_new_bitmaps()
+    {
+        MilSymIconCache cache = new MilSymIconCache(1024L * 1024L, 16);
+        Bitmap bitmap = newBitmap(8, 8, 5);
+        cache.put("a", bitmap, null);
+
+        Bitmap hit = cache.get("a", null);
+        hit.setPixel(0, 0, 0xFF00FF00);
+        assertPixelsEqual(bitmap, cache.get("a", null));
+    }
+
+    @Test
+    public void disk_store_survives_new_cache() throws Exception
+    {
+        File dir = tmp.newFolder("icons");
+        Bitmap bitmap = newBitmap(24, 20, 6);
+
+        MilSymIconCache cache = new MilSymIconCache(1024L * 1024L, 16);
+        cache.setCacheDirectory(dir);
+        cache.put("a", bitmap, new PointD(12d, 10d));
+        cache.awaitWrites();
+        Assert.assertEquals(1, dir.listFiles().length);
+
+        // simulates a restart
+        MilSymIconCache restarted = new MilSymIconCache(1024L * 1024L, 16);
+        restarted.setCacheDirectory(dir);
+        PointD offset = new PointD();
+        assertPixelsEqual(bitmap, restarted.get("a", offset));
+        Assert.assertEquals(12d, offset.x, 0d);
+        Assert.assertEquals(1L, restarted.getDiskHits());
+
+        // promoted to memory
+        Assert.assertNotNull(restarted.get("a", null));
+        Assert.assertEquals(1L, restarted.getMemoryHits());
+
+        restarted.clear();
+        Assert.assertEquals(0, dir.listFiles().length);
+        Assert.assertNull(restarted.get("a", null));
+    }
+
+    @Test
+    public void disk_store_is_trimmed() throws Exception
+    {
+        File dir = tmp.newFolder("icons");
+        MilSymIconCache cache = new MilSymIconCache(1024L * 1024L, 16);
+        cache.setCacheDirectory(dir);
+        for (int i = 0; i < 40; i++) {
+            cache.put("icon" + i, newBitmap(4, 4, i), null);
+            cache.awaitWrites();
+            // trimmed back to the limit once it grows past it by an eighth
+            Assert.assertTrue(dir.listFiles().length <= 18);
+        }
+        Assert.assertTrue(dir.listFiles().length >= 16);
+
+        new MilSymIconCache(1024L * 1024L, 8).setCacheDirectory(dir);
+        Assert.assertEquals(8, dir.listFiles().length);
+    }
+
+    @Test
+    public void clear_drops_queued_writes() throws Exception
+    {
+        File dir = tmp.newFolder("icons");
+        MilSymIconCache cache = new MilSymIconCache(1024L * 1024L, 64);
+        cache.setCacheDirectory(dir);
+        for (int i = 0; i < 32; i++)
+            cache.put("icon" + i, newBitmap(16, 16, i), null);
+        cache.clear();
+        cache.awaitWrites();
+        Assert.assertEquals(0, dir.listFiles().length);
+    }
+
+    /**
+     * Renders a unit picture feed of 100 distinct symbol and modifier
+     * combinations per provider 10 times each through the JRE providers, with
+     * the shared cache cleared before every render and with the cache in
+     * place. Disabled by default; enable locally to collect timings.
+     */
+    @Test
+    public void benchmark_render_with_cache()
+    {
+        if (!BENCHMARK_ENABLED)
+            return;
+
+        MilStd2525.init();
+        final Map<ISymbologyProvider, String[]> feeds = new LinkedHashMap<>();
+        feeds.put(new MilStd2525cSymbologyProvider(), new String[] {
+                "SFGPUCI----D---",
+                "SHGPUCA----D---",
+                "SNAPMF---------",
+                "SUSPXM---------",
+        });
+        feeds.put(new MilStd2525dSymbologyProvider(), new String[] {
+                "10031000001211000000",
+                "10061000001211000000",
+                "10030100001101000000",
+                "10043000001202000000",
+        });
+        final int designations = 25;
+        final int repetitions = 10;
+
+        ISymbologyProvider.RendererHints hints = new ISymbologyProvider.RendererHints();
+        hints.iconSize = 32;
+        hints.fontSize = 12;
+        hints.iconCenterOffset = new PointD();
+
+        final MilSymIconCache cache = MilSymIconCache.getInstance();
+        for (Map.Entry<ISymbologyProvider, String[]> feed : feeds.entrySet()) {
+            final ISymbologyProvider provider = feed.getKey();
+            Map<String, Long> timings = new HashMap<>();
+            for (boolean cached : new boolean[] { false, true }) {
+                cache.clear();
+                cache.resetStatistics();
+                long start = System.nanoTime();
+                for (int r = 0; r < repetitions; r++) {
+                    for (String code : feed.getValue()) {
+                        for (int d = 0; d < designations; d++) {
+                            AttributeSet attrs = new AttributeSet();
+                            attrs.setAttribute(MilSymStandardAttributes.MILSYM_MODIFIER_PREFIX + "T", "UNIT " + d);
+                            if (!cached)
+                                cache.clear();
+                            Bitmap bitmap = provider.renderSinglePointIcon(code, attrs, hints);
+                            Assume.assumeNotNull(bitmap);
+                        }
+                    }
+                }
+                timings.put(cached ? "cached" : "uncached", System.nanoTime() - start);
+                if (cached)
+                    System.out.println(provider.getName() + " hit rate: " + cache.getHitRate());
+            }
+            System.out.println(provider.getName() + " uncached: " + (timings.get("uncached") / 1000000L) + "ms, cached: "
+                    + (timings.get("cached") / 1000000L) + "ms");
+        }
+        cache.clear();
+        cache.resetStatistics();
+    }
+}
@@ -40,26 +40,8 @@ final class CotContentHandler {
             context.innerTextBuilder = null;
 
             context.editor = editor;
-            if (parserFactory == null) {
-                parserFactory = XmlPullParserFactory.newInstance();
-                try {
-                    parserFactory
-                            .setFeature(
-                                    "http://xml.org/sax/features/external-parameter-entities",
-                                    false);
-                } catch (Exception ignored) {
-                }
-
-                try {
-                    parserFactory
-                            .setFeature(
-                                    "http://xml.org/sax/features/external-general-entities",
-                                    false);
-                } catch (Exception ignored) {
-                }
-            }
             if (context.parser == null)
-                context.parser = parserFactory.newPullParser();
+                context.parser = _newPullParser();
 
             context.parser.setInput(new StringReader(xml));
             do {
@@ -82,12 +64,48 @@ final class CotContentHandler {
             Log.v(TAG, "Bad message encountered: " + xml);
             Log.e(TAG, "error: ", e);
         } finally {
-            if (context != null)
+            if (context != null) {
+                // do not retain the parsed event or its detail tree while pooled
+                context.editor = null;
+                context.detailStack.clear();
+                context.innerTextBuilder = null;
                 _parsePool.put(context);
+            }
         }
         return editor;
     }
 
+    /**
+     * Creates a new pull parser for a {@link ParseContext}. Parsers are only created when the
+     * pool is exhausted, so the factory lock is taken at most once per pooled context rather than
+     * once per message.
+     */
+    private static XmlPullParser _newPullParser() throws Exception {
+        synchronized (CotContentHandler.class) {
+            if (parserFactory == null) {
+                XmlPullParserFactory factory = XmlPullParserFactory
+                        .newInstance();
+                try {
+                    factory
+                            .setFeature(
+                                    "http://xml.org/sax/features/external-parameter-entities",
+                                    false);
+                } catch (Exception ignored) {
+                }
+
+                try {
+                    factory
+                            .setFeature(
+                                    "http://xml.org/sax/features/external-general-entities",
+                                    false);
+                } catch (Exception ignored) {
+                }
+                parserFactory = factory;
+            }
+            return parserFactory.newPullParser();
+        }
+    }
+
     void endElement(final ParseContext context) {
         final int detailDepth = context.detailStack.size();
         if (detailDepth > 0) {
@@ -34,7 +34,7 @@ public class CotEvent implements Parcelable {
     final static CotContentHandler cotHandler = new CotContentHandler();
 
     public static final String TAG = "CotEvent";
-    static PrintWriter fileWriter = null;
+    static volatile PrintWriter fileWriter = null;
 
     // required
     private String _uid;
@@ -531,7 +531,7 @@ public class CotEvent implements Parcelable {
     }
 
     /**
-     * Parse a event from an XML string
+     * Parse a event from an XML string. Safe to call concurrently from multiple threads.
      * 
      * @param xml
      * @return a CoT Event that can either be valid or invalid.
@@ -540,12 +540,14 @@ public class CotEvent implements Parcelable {
         CotEvent e = cotHandler.parseXML(xml);
 
         //If the CotEvent is not valid, we should probably record it to a file if CotLogging is
-        // enabled.
-        synchronized (CotEvent.class) {
-            if (fileWriter != null) {
-                if (!e.isValid()) {
+        // enabled. Only take the lock when there is something to log so that concurrent parsing
+        // of valid events never serializes here.
+        if (fileWriter != null && !e.isValid()) {
+            synchronized (CotEvent.class) {
+                final PrintWriter writer = fileWriter;
+                if (writer != null) {
                     try {
-                        fileWriter.println(xml);
+                        writer.println(xml);
                     } catch (Exception ex) {
                         // instead of synchronizing this to death, just catch the
                         // potential npe.
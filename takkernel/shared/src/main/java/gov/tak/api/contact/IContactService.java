@@ -1,6 +1,7 @@
 package gov.tak.api.contact;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import gov.tak.api.annotation.NonNull;
@@ -88,6 +89,32 @@ public interface IContactService
      */
     List<IContact> getAllContacts();
 
+    /**
+     * Returns an immutable snapshot of the contacts currently in the store. Unlike {@link #getAllContacts()}, the
+     * returned list may be shared between callers and reused until the store is next modified, so it is suitable for
+     * frequent reads.
+     *
+     * @return An unmodifiable list of the contacts currently in the store
+     */
+    @NonNull
+    default List<IContact> getContactsSnapshot()
+    {
+        return Collections.unmodifiableList(getAllContacts());
+    }
+
+    /**
+     * Returns a counter that changes whenever a contact is added to, updated in, or removed from the store. Callers
+     * may use the version to determine whether state derived from a {@link #getContactsSnapshot() snapshot} is still
+     * current.
+     *
+     * @return The current version of the store, or {@code -1} if the store does not track versions, in which case
+     * derived state must always be considered stale
+     */
+    default long getContactsVersion()
+    {
+        return -1L;
+    }
+
     /**
      * Obtain a collection of all contacts of the given type.
      *
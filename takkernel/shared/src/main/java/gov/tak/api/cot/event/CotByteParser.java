@@ -0,0 +1,926 @@
+package gov.tak.api.cot.event;
+
+import com.atakmap.coremap.log.Log;
+import com.atakmap.util.ResourcePool;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import gov.tak.api.annotation.NonNull;
+
+/**
+ * Purpose-built, allocation-light parser for CoT messages encoded as UTF-8 XML.
+ * <p>
+ * The parser reads directly from a {@code byte[]} or {@link ByteBuffer} without first materializing the message as a
+ * {@link String}. Element and attribute names are interned into a per-parser name table so that the common CoT
+ * vocabulary never allocates, attribute and text content is decoded into a reusable scratch buffer, and the tokens
+ * are fed to the same {@link CotContentHandler} used by {@link CotEvent#parse(String)}. The resulting
+ * {@link CotEvent}/{@link CotDetail} content is therefore identical to the SAX path.
+ * <p>
+ * Only the subset of XML used by CoT is supported: elements, attributes, character data, the five predefined entities,
+ * character references, CDATA sections, comments and processing instructions. Document type declarations are
+ * rejected, so no entity expansion (internal or external) can occur. The encoding declaration is ignored; input is
+ * always decoded as UTF-8.
+ * <p>
+ * Instances are not thread-safe. Use one instance per thread, or the pooled {@link CotEvent#parse(ByteBuffer)} and
+ * {@link CotEvent#parse(byte[], int, int)} entry points.
+ */
+public final class CotByteParser
+{
+    private static final String TAG = "CotByteParser";
+
+    /**
+     * Maximum number of idle parsers retained for {@link #parseEvent(byte[], int, int)}
+     */
+    private static final int POOL_CAPACITY = 16;
+
+    private static final ResourcePool<CotByteParser> parserPool = new ResourcePool<>(POOL_CAPACITY);
+
+    /**
+     * Element and attribute names that are pre-populated into every name table.
+     */
+    private static final String[] COMMON_NAMES = {
+            // event
+            "event", "version", "uid", "type", "time", "start", "stale", "how", "opex", "qos", "access", "caveat",
+            "releasableTo",
+            // point
+            "point", "lat", "lon", "hae", "ce", "le",
+            // common details
+            "detail", "contact", "callsign", "endpoint", "phone", "emailAddress", "__group", "name", "role",
+            "status", "battery", "readiness", "takv", "device", "platform", "os", "track", "course", "speed",
+            "precisionlocation", "geopointsrc", "altsrc", "Droid", "link", "relation", "parent_callsign",
+            "production_time", "remarks", "source", "to", "color", "argb", "value", "usericon", "iconsetpath",
+            "_flow-tags_", "__chat", "chatgrp", "chatroom", "groupOwner", "id", "senderCallsign", "messageId",
+            "__serverdestination", "destinations", "marti", "dest", "archive", "labels_on", "height", "unit",
+            "strokeColor", "strokeWeight", "fillColor", "shape", "ellipse", "major", "minor", "angle",
+            "__video", "ConnectionEntry", "url", "_radio", "__milsym", "__milicon", "tog",
+            "hierarchy", "group", "sensor", "fov", "range", "azimuth", "elevation", "model", "mode",
+    };
+
+    private final CotContentHandler handler = new CotContentHandler();
+    private final NameTable names = new NameTable();
+    private final AttributeList attributes = new AttributeList();
+
+    private char[] chars = new char[256];
+    private int charCount;
+
+    private String[] openElements = new String[16];
+    private int depth;
+
+    private byte[] scratch;
+
+    private byte[] in;
+    private int pos;
+    private int limit;
+    private int documentStart;
+
+    /**
+     * Creates a new parser. Parsers are cheap to reuse but not to create; keep one around per parsing thread.
+     */
+    public CotByteParser()
+    {
+        for (String name : COMMON_NAMES)
+            names.add(name);
+    }
+
+    /**
+     * Parse a UTF-8 encoded CoT message into a new {@link CotEvent}.
+     *
+     * @param data   The encoded message
+     * @param offset The offset of the message in {@code data}
+     * @param length The length of the message, in bytes
+     * @return a new CotEvent that can either be valid or invalid.
+     */
+    @NonNull
+    public CotEvent parse(@NonNull byte[] data, int offset, int length)
+    {
+        return parse(data, offset, length, new CotEvent());
+    }
+
+    /**
+     * Parse a UTF-8 encoded CoT message into the given {@link CotEvent}. All attributes carried by the {@code event}
+     * element as well as the point and detail are overwritten; {@code caveat} and {@code releasableTo} are cleared.
+     *
+     * @param data   The encoded message
+     * @param offset The offset of the message in {@code data}
+     * @param length The length of the message, in bytes
+     * @param into   The event to populate
+     * @return {@code into}, which can either be valid or invalid.
+     */
+    @NonNull
+    public CotEvent parse(@NonNull byte[] data, int offset, int length, @NonNull CotEvent into)
+    {
+        if (offset < 0 || length < 0 || offset + length > data.length)
+            throw new IndexOutOfBoundsException();
+
+        in = data;
+        pos = offset;
+        limit = offset + length;
+        depth = 0;
+
+        into.setCaveat(null);
+        into.setReleasableTo(null);
+        handler.begin(into);
+        try
+        {
+            parseDocument();
+        } catch (Exception e)
+        {
+            Log.w(TAG, "Invalid CoT message: " + e.getMessage());
+            Log.d(TAG, "message: " + new String(data, offset, length, StandardCharsets.UTF_8));
+        } finally
+        {
+            in = null;
+            while (depth > 0)
+                openElements[--depth] = null;
+            attributes.clear();
+        }
+        return handler.end();
+    }
+
+    /**
+     * Parse the remaining bytes of the given buffer into a new {@link CotEvent}. The buffer position is not modified.
+     *
+     * @param buffer The buffer containing the UTF-8 encoded message between its position and limit
+     * @return a new CotEvent that can either be valid or invalid.
+     */
+    @NonNull
+    public CotEvent parse(@NonNull ByteBuffer buffer)
+    {
+        return parse(buffer, new CotEvent());
+    }
+
+    /**
+     * Parse the remaining bytes of the given buffer into the given {@link CotEvent}. The buffer position is not
+     * modified.
+     *
+     * @param buffer The buffer containing the UTF-8 encoded message between its position and limit
+     * @param into   The event to populate
+     * @return {@code into}, which can either be valid or invalid.
+     * @see #parse(byte[], int, int, CotEvent)
+     */
+    @NonNull
+    public CotEvent parse(@NonNull ByteBuffer buffer, @NonNull CotEvent into)
+    {
+        final int length = buffer.remaining();
+        if (buffer.hasArray())
+            return parse(buffer.array(), buffer.arrayOffset() + buffer.position(), length, into);
+
+        // direct buffer, bulk copy into reusable scratch
+        if (scratch == null || scratch.length < length)
+            scratch = new byte[Math.max(length, 1024)];
+        final int position = buffer.position();
+        buffer.get(scratch, 0, length);
+        buffer.position(position);
+        return parse(scratch, 0, length, into);
+    }
+
+    /**
+     * Parse a UTF-8 encoded message using a pooled parser. Safe to call concurrently from multiple threads.
+     */
+    @NonNull
+    static CotEvent parseEvent(@NonNull byte[] data, int offset, int length)
+    {
+        final CotByteParser parser = acquire();
+        try
+        {
+            return parser.parse(data, offset, length);
+        } finally
+        {
+            parserPool.put(parser);
+        }
+    }
+
+    /**
+     * Parse a UTF-8 encoded message using a pooled parser. Safe to call concurrently from multiple threads.
+     */
+    @NonNull
+    static CotEvent parseEvent(@NonNull ByteBuffer buffer)
+    {
+        final CotByteParser parser = acquire();
+        try
+        {
+            return parser.parse(buffer);
+        } finally
+        {
+            parserPool.put(parser);
+        }
+    }
+
+    private static CotByteParser acquire()
+    {
+        final CotByteParser parser = parserPool.get();
+        return (parser != null) ? parser : new CotByteParser();
+    }
+
+    /**
+     * Parse UTF-8 encoded XML as the content of a {@code detail} element, as if it were wrapped in
+     * {@code <detail>...</detail>}, and install the resulting detail on the given event. No other property of the
+     * event is modified.
+     *
+     * @param data   The encoded detail content
+     * @param offset The offset of the content in {@code data}
+     * @param length The length of the content, in bytes
+     * @param into   The event to receive the detail
+     * @return the parsed detail
+     * @throws SAXException if the content is not well-formed
+     */
+    @NonNull
+    CotDetail parseDetail(@NonNull byte[] data, int offset, int length, @NonNull CotEvent into) throws SAXException
+    {
+        if (offset < 0 || length < 0 || offset + length > data.length)
+            throw new IndexOutOfBoundsException();
+
+        in = data;
+        pos = offset;
+        limit = offset + length;
+        // there is no document prolog, so an XML declaration is never permitted
+        documentStart = -1;
+
+        handler.begin(into);
+        try
+        {
+            attributes.clear();
+            handler.startElement("", CotDetail.DETAIL, CotDetail.DETAIL, attributes);
+            openElements[0] = CotDetail.DETAIL;
+            depth = 1;
+
+            parseContent(true);
+            if (depth != 1)
+                throw error("unexpected end tag " + CotDetail.DETAIL);
+
+            depth = 0;
+            handler.endElement("", CotDetail.DETAIL, CotDetail.DETAIL);
+            return into.getDetail();
+        } finally
+        {
+            in = null;
+            while (depth > 0)
+                openElements[--depth] = null;
+            attributes.clear();
+            handler.end();
+        }
+    }
+
+    /**************************************************************************/
+    // document structure
+
+    private void parseDocument() throws SAXException
+    {
+        // skip the UTF-8 BOM, if present
+        if (limit - pos >= 3 && in[pos] == (byte) 0xEF && in[pos + 1] == (byte) 0xBB && in[pos + 2] == (byte) 0xBF)
+            pos += 3;
+        documentStart = pos;
+
+        if (!parseContent(false))
+            throw error("premature end of file");
+        if (depth > 0)
+            throw error("element " + openElements[depth - 1] + " is not closed");
+    }
+
+    /**
+     * Consume markup and character data up to the end of the input.
+     *
+     * @param sawRoot Whether the root element has already been opened
+     * @return whether the root element was seen
+     */
+    private boolean parseContent(boolean sawRoot) throws SAXException
+    {
+        while (pos < limit)
+        {
+            if (in[pos] == '<')
+            {
+                if (lookingAt("<?"))
+                {
+                    skipProcessingInstruction();
+                } else if (lookingAt("<!--"))
+                {
+                    skipPast("-->", 4);
+                } else if (lookingAt("<![CDATA["))
+                {
+                    if (depth == 0)
+                        throw error("CDATA outside of root element");
+                    parseCData();
+                } else if (lookingAt("<!"))
+                {
+                    throw error("document type declarations are not supported");
+                } else if (lookingAt("</"))
+                {
+                    parseEndTag();
+                } else
+                {
+                    if (depth == 0 && sawRoot)
+                        throw error("markup after root element");
+                    parseStartTag();
+                    sawRoot = true;
+                }
+            } else if (depth > 0)
+            {
+                parseText();
+            } else if (isWhitespace(in[pos]))
+            {
+                pos++;
+            } else
+            {
+                throw error("content is not allowed outside of root element");
+            }
+        }
+        return sawRoot;
+    }
+
+    private void parseStartTag() throws SAXException
+    {
+        pos++; // '<'
+        final String name = readName();
+        attributes.clear();
+
+        boolean empty = false;
+        while (true)
+        {
+            final boolean separated = skipWhitespace();
+            final byte b = peek();
+            if (b == '>')
+            {
+                pos++;
+                break;
+            } else if (b == '/')
+            {
+                pos++;
+                expect('>');
+                empty = true;
+                break;
+            }
+            if (!separated)
+                throw error("whitespace required before attributes in element " + name);
+
+            final String attrName = readName();
+            skipWhitespace();
+            expect('=');
+            skipWhitespace();
+            final byte quote = peek();
+            if (quote != '"' && quote != '\'')
+                throw error("attribute value must be quoted in element " + name);
+            pos++;
+            readAttributeValue(quote);
+            if (attributes.getIndex(attrName) >= 0)
+                throw error("duplicate attribute " + attrName + " in element " + name);
+            attributes.add(attrName, new String(chars, 0, charCount));
+        }
+
+        handler.startElement("", name, name, attributes);
+        if (empty)
+        {
+            handler.endElement("", name, name);
+        } else
+        {
+            if (depth == openElements.length)
+            {
+                final String[] grown = new String[depth * 2];
+                System.arraycopy(openElements, 0, grown, 0, depth);
+                openElements = grown;
+            }
+            openElements[depth++] = name;
+        }
+    }
+
+    private void parseEndTag() throws SAXException
+    {
+        pos += 2; // "</"
+        final String name = readName();
+        skipWhitespace();
+        expect('>');
+        if (depth == 0 || !openElements[depth - 1].equals(name))
+            throw error("unexpected end tag " + name);
+        openElements[--depth] = null;
+        handler.endElement("", name, name);
+    }
+
+    private void parseText() throws SAXException
+    {
+        charCount = 0;
+        while (pos < limit)
+        {
+            final byte b = in[pos];
+            if (b == '<')
+            {
+                break;
+            } else if (b == '&')
+            {
+                // references are reported as separate character runs
+                flushCharacters();
+                appendCodePoint(readReference());
+                flushCharacters();
+            } else if (b == '\r')
+            {
+                pos++;
+                if (pos < limit && in[pos] == '\n')
+                    pos++;
+                appendChar('\n');
+            } else
+            {
+                decodeChar();
+            }
+        }
+        flushCharacters();
+    }
+
+    private void parseCData() throws SAXException
+    {
+        pos += 9; // "<![CDATA["
+        charCount = 0;
+        while (true)
+        {
+            if (pos >= limit)
+                throw error("unterminated CDATA section");
+            if (lookingAt("]]>"))
+            {
+                pos += 3;
+                break;
+            }
+            if (in[pos] == '\r')
+            {
+                pos++;
+                if (pos < limit && in[pos] == '\n')
+                    pos++;
+                appendChar('\n');
+            } else
+            {
+                decodeChar();
+            }
+        }
+        flushCharacters();
+    }
+
+    private void skipProcessingInstruction() throws SAXException
+    {
+        final int start = pos;
+        pos += 2; // "<?"
+        if (limit - pos >= 3 && (in[pos] | 0x20) == 'x' && (in[pos + 1] | 0x20) == 'm' && (in[pos + 2] | 0x20) == 'l'
+                && (pos + 3 == limit || isWhitespace(in[pos + 3]) || in[pos + 3] == '?'))
+        {
+            // the XML declaration is only permitted at the very start of the document
+            if (start != documentStart)
+                throw error("XML declaration is only allowed at the start of the document");
+        }
+        skipPast("?>", 0);
+    }
+
+    private void flushCharacters()
+    {
+        if (charCount > 0)
+        {
+            handler.characters(chars, 0, charCount);
+            charCount = 0;
+        }
+    }
+
+    /**************************************************************************/
+    // tokens
+
+    private String readName() throws SAXException
+    {
+        final int start = pos;
+        while (pos < limit)
+        {
+            final byte b = in[pos];
+            if (isWhitespace(b) || b == '=' || b == '/' || b == '>' || b == '<' || b == '"' || b == '\'')
+                break;
+            pos++;
+        }
+        if (pos == start)
+            throw error("expected name");
+        return names.intern(in, start, pos - start);
+    }
+
+    private void readAttributeValue(byte quote) throws SAXException
+    {
+        charCount = 0;
+        while (true)
+        {
+            if (pos >= limit)
+                throw error("unterminated attribute value");
+            final byte b = in[pos];
+            if (b == quote)
+            {
+                pos++;
+                return;
+            } else if (b == '<')
+            {
+                throw error("'<' is not allowed in attribute values");
+            } else if (b == '&')
+            {
+                appendCodePoint(readReference());
+            } else if (b == '\r')
+            {
+                // attribute value normalization, CRLF counts as a single line break
+                pos++;
+                if (pos < limit && in[pos] == '\n')
+                    pos++;
+                appendChar(' ');
+            } else if (b == '\n' || b == '\t')
+            {
+                pos++;
+                appendChar(' ');
+            } else
+            {
+                decodeChar();
+            }
+        }
+    }
+
+    /**
+     * Reads an entity or character reference, positioned at the {@code '&'}
+     *
+     * @return The referenced code point
+     */
+    private int readReference() throws SAXException
+    {
+        pos++; // '&'
+        final int start = pos;
+        while (pos < limit && in[pos] != ';')
+        {
+            if (pos - start > 10)
+                throw error("malformed reference");
+            pos++;
+        }
+        if (pos >= limit)
+            throw error("unterminated reference");
+        final int end = pos++;
+        final int len = end - start;
+
+        if (len > 1 && in[start] == '#')
+        {
+            int radix = 10;
+            int i = start + 1;
+            if (in[i] == 'x')
+            {
+                radix = 16;
+                i++;
+            }
+            if (i == end)
+                throw error("malformed character reference");
+            int cp = 0;
+            for (; i < end; i++)
+            {
+                final int digit = Character.digit((char) in[i], radix);
+                if (digit < 0)
+                    throw error("malformed character reference");
+                cp = (cp * radix) + digit;
+                if (cp > Character.MAX_CODE_POINT)
+                    throw error("invalid character reference");
+            }
+            if (!isXmlChar(cp))
+                throw error("invalid character reference");
+            return cp;
+        } else if (matches(start, len, "lt"))
+        {
+            return '<';
+        } else if (matches(start, len, "gt"))
+        {
+            return '>';
+        } else if (matches(start, len, "amp"))
+        {
+            return '&';
+        } else if (matches(start, len, "quot"))
+        {
+            return '"';
+        } else if (matches(start, len, "apos"))
+        {
+            return '\'';
+        }
+        throw error("undeclared entity " + new String(in, start, len, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a single UTF-8 encoded code point at the current position into the scratch buffer
+     */
+    private void decodeChar() throws SAXException
+    {
+        final int b0 = in[pos] & 0xFF;
+        if (b0 < 0x80)
+        {
+            pos++;
+            appendChar((char) b0);
+            return;
+        }
+
+        final int extra;
+        int cp;
+        if ((b0 & 0xE0) == 0xC0)
+        {
+            extra = 1;
+            cp = b0 & 0x1F;
+        } else if ((b0 & 0xF0) == 0xE0)
+        {
+            extra = 2;
+            cp = b0 & 0x0F;
+        } else if ((b0 & 0xF8) == 0xF0)
+        {
+            extra = 3;
+            cp = b0 & 0x07;
+        } else
+        {
+            throw error("invalid UTF-8 sequence");
+        }
+        if (limit - pos <= extra)
+            throw error("truncated UTF-8 sequence");
+        for (int i = 1; i <= extra; i++)
+        {
+            final int b = in[pos + i] & 0xFF;
+            if ((b & 0xC0) != 0x80)
+                throw error("invalid UTF-8 sequence");
+            cp = (cp << 6) | (b & 0x3F);
+        }
+        pos += extra + 1;
+        appendCodePoint(cp);
+    }
+
+    private void appendCodePoint(int cp)
+    {
+        if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT)
+        {
+            appendChar((char) cp);
+        } else
+        {
+            appendChar(Character.highSurrogate(cp));
+            appendChar(Character.lowSurrogate(cp));
+        }
+    }
+
+    private void appendChar(char c)
+    {
+        if (charCount == chars.length)
+        {
+            final char[] grown = new char[chars.length * 2];
+            System.arraycopy(chars, 0, grown, 0, charCount);
+            chars = grown;
+        }
+        chars[charCount++] = c;
+    }
+
+    /**************************************************************************/
+    // scanning utilities
+
+    private byte peek() throws SAXException
+    {
+        if (pos >= limit)
+            throw error("premature end of file");
+        return in[pos];
+    }
+
+    private void expect(char c) throws SAXException
+    {
+        if (peek() != c)
+            throw error("expected '" + c + "'");
+        pos++;
+    }
+
+    private boolean skipWhitespace()
+    {
+        final int start = pos;
+        while (pos < limit && isWhitespace(in[pos]))
+            pos++;
+        return pos > start;
+    }
+
+    private void skipPast(String terminator, int skip) throws SAXException
+    {
+        pos += skip;
+        while (pos < limit)
+        {
+            if (lookingAt(terminator))
+            {
+                pos += terminator.length();
+                return;
+            }
+            pos++;
+        }
+        throw error("expected '" + terminator + "'");
+    }
+
+    private boolean lookingAt(String s)
+    {
+        final int len = s.length();
+        if (limit - pos < len)
+            return false;
+        for (int i = 0; i < len; i++)
+        {
+            if (in[pos + i] != s.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean matches(int start, int len, String s)
+    {
+        if (len != s.length())
+            return false;
+        for (int i = 0; i < len; i++)
+        {
+            if (in[start + i] != s.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private SAXException error(String msg)
+    {
+        return new SAXException(msg + " (offset " + pos + ")");
+    }
+
+    private static boolean isWhitespace(byte b)
+    {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static boolean isXmlChar(int cp)
+    {
+        return cp == 0x9 || cp == 0xA || cp == 0xD || (cp >= 0x20 && cp <= 0xD7FF)
+                || (cp >= 0xE000 && cp <= 0xFFFD) || (cp >= 0x10000 && cp <= 0x10FFFF);
+    }
+
+    /**
+     * Open-addressed table mapping the UTF-8 encoding of a name to its {@link String}. Lookups hash and compare the
+     * encoded bytes in place, so names that are already present are resolved without allocating.
+     */
+    private static final class NameTable
+    {
+        private static final int CAPACITY = 1024;
+        private static final int MAX_SIZE = CAPACITY / 2;
+
+        private final byte[][] keys = new byte[CAPACITY][];
+        private final String[] values = new String[CAPACITY];
+        private int size;
+
+        void add(String name)
+        {
+            final byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+            intern(encoded, 0, encoded.length, name);
+        }
+
+        String intern(byte[] b, int off, int len)
+        {
+            return intern(b, off, len, null);
+        }
+
+        private String intern(byte[] b, int off, int len, String value)
+        {
+            int h = 0;
+            for (int i = 0; i < len; i++)
+                h = (31 * h) + b[off + i];
+            int idx = (h ^ (h >>> 16)) & (CAPACITY - 1);
+            while (true)
+            {
+                final byte[] key = keys[idx];
+                if (key == null)
+                    break;
+                if (equals(key, b, off, len))
+                    return values[idx];
+                idx = (idx + 1) & (CAPACITY - 1);
+            }
+
+            if (value == null)
+                value = new String(b, off, len, StandardCharsets.UTF_8);
+            // once the table is half full, stop interning; arbitrary names must not grow it without bound
+            if (size < MAX_SIZE)
+            {
+                final byte[] key = new byte[len];
+                System.arraycopy(b, off, key, 0, len);
+                keys[idx] = key;
+                values[idx] = value;
+                size++;
+            }
+            return value;
+        }
+
+        private static boolean equals(byte[] key, byte[] b, int off, int len)
+        {
+            if (key.length != len)
+                return false;
+            for (int i = 0; i < len; i++)
+            {
+                if (key[i] != b[off + i])
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Reusable, non-namespace-aware {@link Attributes} for a single element.
+     */
+    private static final class AttributeList implements Attributes
+    {
+        private static final String CDATA = "CDATA";
+
+        private String[] names = new String[8];
+        private String[] values = new String[8];
+        private int count;
+
+        void clear()
+        {
+            for (int i = 0; i < count; i++)
+            {
+                names[i] = null;
+                values[i] = null;
+            }
+            count = 0;
+        }
+
+        void add(String name, String value)
+        {
+            if (count == names.length)
+            {
+                final String[] grownNames = new String[count * 2];
+                final String[] grownValues = new String[count * 2];
+                System.arraycopy(names, 0, grownNames, 0, count);
+                System.arraycopy(values, 0, grownValues, 0, count);
+                names = grownNames;
+                values = grownValues;
+            }
+            names[count] = name;
+            values[count] = value;
+            count++;
+        }
+
+        @Override
+        public int getLength()
+        {
+            return count;
+        }
+
+        @Override
+        public String getURI(int index)
+        {
+            return (index >= 0 && index < count) ? "" : null;
+        }
+
+        @Override
+        public String getLocalName(int index)
+        {
+            return (index >= 0 && index < count) ? names[index] : null;
+        }
+
+        @Override
+        public String getQName(int index)
+        {
+            return (index >= 0 && index < count) ? names[index] : null;
+        }
+
+        @Override
+        public String getType(int index)
+        {
+            return (index >= 0 && index < count) ? CDATA : null;
+        }
+
+        @Override
+        public String getValue(int index)
+        {
+            return (index >= 0 && index < count) ? values[index] : null;
+        }
+
+        @Override
+        public int getIndex(String uri, String localName)
+        {
+            return (uri == null || uri.isEmpty()) ? getIndex(localName) : -1;
+        }
+
+        @Override
+        public int getIndex(String qName)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                if (names[i].equals(qName))
+                    return i;
+            }
+            return -1;
+        }
+
+        @Override
+        public String getType(String uri, String localName)
+        {
+            return getType(getIndex(uri, localName));
+        }
+
+        @Override
+        public String getType(String qName)
+        {
+            return getType(getIndex(qName));
+        }
+
+        @Override
+        public String getValue(String uri, String localName)
+        {
+            return getValue(getIndex(uri, localName));
+        }
+
+        @Override
+        public String getValue(String qName)
+        {
+            return getValue(getIndex(qName));
+        }
+    }
+}
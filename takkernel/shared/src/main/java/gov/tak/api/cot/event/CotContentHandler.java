@@ -5,6 +5,7 @@ import static gov.tak.api.cot.CotParseUtils.getStringOrThrow;
 import static gov.tak.api.cot.CotParseUtils.timeOrDefault;
 
 import com.atakmap.coremap.log.Log;
+import com.atakmap.util.ResourcePool;
 
 import gov.tak.api.cot.CotFormatting;
 import gov.tak.api.engine.map.coords.GeoPoint;
@@ -40,6 +41,14 @@ public class CotContentHandler implements ContentHandler
     public static final String FEATURES_EXTERNAL_GENERAL_ENTITIES = SAX_FEATURES + "external-general-entities";
     public static final String FEATURES_EXTERNAL_PARAMETER_ENTITIES = SAX_FEATURES + "external-parameter-entities";
 
+    /**
+     * Maximum number of idle handlers retained by {@link #parse(String)}. Roughly matches the number of threads that
+     * are expected to be parsing concurrently (comms receivers plus the dispatch workers).
+     */
+    private static final int POOL_CAPACITY = 16;
+
+    private static final ResourcePool<CotContentHandler> handlerPool = new ResourcePool<>(POOL_CAPACITY);
+
     private final Deque<CotDetail> detailStack = new ArrayDeque<>();
     private volatile boolean finishedDetail;
     private final StringBuilder innerTextBuilder = new StringBuilder();
@@ -49,19 +58,40 @@ public class CotContentHandler implements ContentHandler
     /**
      * Parse the given XML string into a {@link CotEvent}.
      * <p>
-     * Makes use of internal buffers so must be synchronized to avoid concurrent use.
+     * Handlers are thread-confined for the duration of a parse and recycled through a small pool, so any number of
+     * threads may parse concurrently without contending on a shared lock.
      *
      * @param xml XML to parse
      * @return a new CotEvent that can either be valid or invalid.
      */
     @NonNull
-    synchronized CotEvent parseXML(@NonNull final String xml)
+    static CotEvent parse(@NonNull final String xml)
     {
-        detailStack.clear();
-        finishedDetail = false;
-        innerTextBuilder.setLength(0);
+        CotContentHandler handler = handlerPool.get();
+        if (handler == null)
+            handler = new CotContentHandler();
+        try
+        {
+            return handler.parseXML(xml);
+        } finally
+        {
+            handlerPool.put(handler);
+        }
+    }
 
-        event = new CotEvent();
+    /**
+     * Parse the given XML string into a {@link CotEvent}.
+     * <p>
+     * Makes use of internal buffers so must be synchronized to avoid concurrent use. The lock is per handler
+     * instance; callers wanting concurrency should use {@link #parse(String)}.
+     *
+     * @param xml XML to parse
+     * @return a new CotEvent that can either be valid or invalid.
+     */
+    @NonNull
+    synchronized CotEvent parseXML(@NonNull final String xml)
+    {
+        begin(new CotEvent());
         try
         {
             if (reader == null)
@@ -77,7 +107,36 @@ public class CotContentHandler implements ContentHandler
             Log.d("message: {}", xml);
         }
 
-        return event;
+        return end();
+    }
+
+    /**
+     * Prepares the handler to receive the content of a new document, populating the given event.
+     *
+     * @param into The event to populate
+     */
+    void begin(@NonNull CotEvent into)
+    {
+        detailStack.clear();
+        finishedDetail = false;
+        innerTextBuilder.setLength(0);
+
+        event = into;
+    }
+
+    /**
+     * Completes the current document.
+     *
+     * @return The event that was populated
+     */
+    @NonNull
+    CotEvent end()
+    {
+        // do not retain the parsed event or its detail tree while idle
+        final CotEvent parsed = event;
+        event = null;
+        detailStack.clear();
+        return parsed;
     }
 
     @Override
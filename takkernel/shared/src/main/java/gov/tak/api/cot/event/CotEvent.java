@@ -7,6 +7,7 @@ import gov.tak.api.cot.CotFormatting;
 import gov.tak.api.engine.map.coords.GeoPoint;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import gov.tak.api.annotation.NonNull;
 import gov.tak.api.cot.detail.DetailConstants;
@@ -42,8 +43,6 @@ public class CotEvent
     public static final String UID = "uid";
     public static final String VERSION = "version";
 
-    final static CotContentHandler cotHandler = new CotContentHandler();
-
     private final AttributeSet attributeSet = new AttributeSet();
 
     // required
@@ -516,7 +515,7 @@ public class CotEvent
     }
 
     /**
-     * Parse an event from an XML string
+     * Parse an event from an XML string. Safe to call concurrently from multiple threads.
      *
      * @param xml CoT XML to parse
      * @return a CoT Event that can either be valid or invalid.
@@ -524,7 +523,38 @@ public class CotEvent
     @NonNull
     public static CotEvent parse(final String xml)
     {
-        return cotHandler.parseXML(xml);
+        return CotContentHandler.parse(xml);
+    }
+
+    /**
+     * Parse an event from UTF-8 encoded XML, without first decoding the message to a {@link String}. Safe to call
+     * concurrently from multiple threads.
+     *
+     * @param data   The encoded message
+     * @param offset The offset of the message in {@code data}
+     * @param length The length of the message, in bytes
+     * @return a CoT Event that can either be valid or invalid.
+     * @see CotByteParser
+     */
+    @NonNull
+    public static CotEvent parse(@NonNull byte[] data, int offset, int length)
+    {
+        return CotByteParser.parseEvent(data, offset, length);
+    }
+
+    /**
+     * Parse an event from the UTF-8 encoded XML between the buffer's position and limit, without first decoding the
+     * message to a {@link String}. The buffer position is not modified. Safe to call concurrently from multiple
+     * threads.
+     *
+     * @param buffer The encoded message
+     * @return a CoT Event that can either be valid or invalid.
+     * @see CotByteParser
+     */
+    @NonNull
+    public static CotEvent parse(@NonNull ByteBuffer buffer)
+    {
+        return CotByteParser.parseEvent(buffer);
     }
 
     @Override
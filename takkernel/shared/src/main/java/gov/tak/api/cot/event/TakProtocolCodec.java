@@ -0,0 +1,1037 @@
+package gov.tak.api.cot.event;
+
+import static gov.tak.api.cot.CotConstants.UNKNOWN_VALUE;
+
+import com.atakmap.coremap.log.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import gov.tak.api.annotation.NonNull;
+import gov.tak.api.annotation.Nullable;
+import gov.tak.api.cot.CoordinatedTime;
+import gov.tak.api.engine.map.coords.GeoPoint;
+import gov.tak.api.engine.map.coords.IGeoPoint;
+
+/**
+ * Codec for TAK protocol version 1 payloads, the protobuf encoding of CoT described by {@code takproto/*.proto}.
+ * <p>
+ * Messages are decoded directly into a {@link CotEvent}. The event attributes, point and the structured details
+ * ({@code contact}, {@code __group}, {@code precisionlocation}, {@code status}, {@code takv} and {@code track}) are
+ * mapped straight from the wire; only the {@code xmlDetail} field is handed to a {@link CotByteParser}, in place, as
+ * the content of the {@code detail} element. Encoding does the reverse: a structured detail is used only when the
+ * event carries exactly one such element and every one of its attributes has a protobuf field, otherwise the element
+ * travels as XML. The mapping rules are the same as those applied by the commo library, so events round trip through
+ * either implementation unchanged.
+ * <p>
+ * Extension encoded details ({@code Detail.extensionDetails}) require a registered extension to decode and are
+ * skipped, as are {@code TakControl} messages.
+ * <p>
+ * Instances are not thread-safe. Use one instance per thread.
+ */
+public final class TakProtocolCodec
+{
+    private static final String TAG = "TakProtocolCodec";
+
+    /**
+     * The TAK protocol version implemented by this codec.
+     */
+    public static final int PROTOCOL_VERSION = 1;
+
+    /**
+     * The byte that delimits the TAK protocol header.
+     */
+    public static final byte MAGIC = (byte) 0xbf;
+
+    private static final int WIRETYPE_VARINT = 0;
+    private static final int WIRETYPE_FIXED64 = 1;
+    private static final int WIRETYPE_LENGTH_DELIMITED = 2;
+    private static final int WIRETYPE_FIXED32 = 5;
+
+    // TakMessage
+    private static final int TAK_MESSAGE_COT_EVENT = 2;
+
+    // CotEvent
+    private static final int EVENT_TYPE = 1;
+    private static final int EVENT_ACCESS = 2;
+    private static final int EVENT_QOS = 3;
+    private static final int EVENT_OPEX = 4;
+    private static final int EVENT_UID = 5;
+    private static final int EVENT_SEND_TIME = 6;
+    private static final int EVENT_START_TIME = 7;
+    private static final int EVENT_STALE_TIME = 8;
+    private static final int EVENT_HOW = 9;
+    private static final int EVENT_LAT = 10;
+    private static final int EVENT_LON = 11;
+    private static final int EVENT_HAE = 12;
+    private static final int EVENT_CE = 13;
+    private static final int EVENT_LE = 14;
+    private static final int EVENT_DETAIL = 15;
+    private static final int EVENT_CAVEAT = 16;
+    private static final int EVENT_RELEASABLE_TO = 17;
+
+    // Detail
+    private static final int DETAIL_XML_DETAIL = 1;
+    private static final int DETAIL_CONTACT = 2;
+    private static final int DETAIL_GROUP = 3;
+    private static final int DETAIL_PRECISION_LOCATION = 4;
+    private static final int DETAIL_STATUS = 5;
+    private static final int DETAIL_TAKV = 6;
+    private static final int DETAIL_TRACK = 7;
+
+    private static final String CONTACT = "contact";
+    private static final String GROUP = "__group";
+    private static final String PRECISION_LOCATION = "precisionlocation";
+    private static final String STATUS = "status";
+    private static final String TAKV = "takv";
+    private static final String TRACK = "track";
+
+    /**
+     * Attribute names of each structured detail, indexed by protobuf field number - 1.
+     */
+    private static final String[] CONTACT_FIELDS = {"endpoint", "callsign", "altendpoints"};
+    private static final String[] GROUP_FIELDS = {"name", "role"};
+    private static final String[] PRECISION_LOCATION_FIELDS = {"geopointsrc", "altsrc"};
+    private static final String[] TAKV_FIELDS = {"device", "platform", "os", "version"};
+    private static final String BATTERY = "battery";
+    private static final String SPEED = "speed";
+    private static final String COURSE = "course";
+    private static final String[] TRACK_FIELDS = {SPEED, COURSE};
+
+    private final CotByteParser xmlParser = new CotByteParser();
+    private final StringBuilder xmlDetail = new StringBuilder();
+
+    private byte[] out = new byte[1024];
+    private int outPos;
+
+    private byte[] in;
+    private int pos;
+    private int limit;
+
+    /**************************************************************************/
+    // decode
+
+    /**
+     * Decode a {@code TakMessage} that is not preceded by a TAK protocol header.
+     *
+     * @param data   The encoded message
+     * @param offset The offset of the message in {@code data}
+     * @param length The length of the message, in bytes
+     * @return a new CotEvent that can either be valid or invalid. Messages that do not carry a {@code cotEvent}, such
+     * as {@code TakControl} messages, produce an invalid event.
+     */
+    @NonNull
+    public CotEvent decode(@NonNull byte[] data, int offset, int length)
+    {
+        if (offset < 0 || length < 0 || offset + length > data.length)
+            throw new IndexOutOfBoundsException();
+
+        in = data;
+        pos = offset;
+        limit = offset + length;
+        try
+        {
+            final CotEvent event = new CotEvent();
+            while (pos < limit)
+            {
+                final int tag = readVarint32();
+                if (tag == ((TAK_MESSAGE_COT_EVENT << 3) | WIRETYPE_LENGTH_DELIMITED))
+                    decodeEvent(readLength(), event);
+                else
+                    skipField(tag);
+            }
+            return event;
+        } catch (Exception e)
+        {
+            Log.w(TAG, "Invalid TAK protocol message: " + e.getMessage());
+            return new CotEvent();
+        } finally
+        {
+            in = null;
+        }
+    }
+
+    /**
+     * Decode a {@code TakMessage} from between the buffer's position and limit. The buffer position is not modified.
+     *
+     * @param buffer The encoded message, which must not be preceded by a TAK protocol header
+     * @return a new CotEvent that can either be valid or invalid.
+     * @see #decode(byte[], int, int)
+     */
+    @NonNull
+    public CotEvent decode(@NonNull ByteBuffer buffer)
+    {
+        if (buffer.hasArray())
+            return decode(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+
+        final byte[] copy = new byte[buffer.remaining()];
+        buffer.duplicate().get(copy);
+        return decode(copy, 0, copy.length);
+    }
+
+    /**
+     * Decode a mesh (UDP) message, a {@code TakMessage} preceded by the header
+     * {@code <magic> <protocol version> <magic>}.
+     *
+     * @param data   The datagram
+     * @param offset The offset of the datagram in {@code data}
+     * @param length The length of the datagram, in bytes
+     * @return a new CotEvent, or {@code null} if the datagram does not carry a TAK protocol version 1 header
+     */
+    @Nullable
+    public CotEvent decodeMeshMessage(@NonNull byte[] data, int offset, int length)
+    {
+        if (length < 3 || data[offset] != MAGIC || data[offset + 1] != PROTOCOL_VERSION || data[offset + 2] != MAGIC)
+            return null;
+        return decode(data, offset + 3, length - 3);
+    }
+
+    /**
+     * Returns the total length of the streaming message, a {@code TakMessage} preceded by the header
+     * {@code <magic> <varint payload length>}, that starts at the given offset.
+     *
+     * @param data   The received bytes
+     * @param offset The offset of the message header in {@code data}
+     * @param length The number of bytes available, starting at {@code offset}
+     * @return the length of the header plus payload; {@code 0} if more bytes are required to read the header; or
+     * {@code -1} if the data does not start with a streaming header
+     */
+    public static int getStreamMessageLength(@NonNull byte[] data, int offset, int length)
+    {
+        if (length < 1)
+            return 0;
+        if (data[offset] != MAGIC)
+            return -1;
+
+        long payload = 0;
+        for (int i = 1, shift = 0; i < length && shift < 35; i++, shift += 7)
+        {
+            final byte b = data[offset + i];
+            payload |= (long) (b & 0x7f) << shift;
+            if (b >= 0)
+                return (payload > Integer.MAX_VALUE - i - 1) ? -1 : (int) payload + i + 1;
+        }
+        return (length >= 6) ? -1 : 0;
+    }
+
+    /**
+     * Decode a complete streaming (TCP) message, a {@code TakMessage} preceded by the header
+     * {@code <magic> <varint payload length>}.
+     *
+     * @param data   The received bytes
+     * @param offset The offset of the message header in {@code data}
+     * @param length The length of the message, including the header, as given by
+     *               {@link #getStreamMessageLength(byte[], int, int)}
+     * @return a new CotEvent, or {@code null} if the data is not a complete streaming message
+     */
+    @Nullable
+    public CotEvent decodeStreamMessage(@NonNull byte[] data, int offset, int length)
+    {
+        if (getStreamMessageLength(data, offset, length) != length)
+            return null;
+        int header = 2;
+        while (data[offset + header - 1] < 0)
+            header++;
+        return decode(data, offset + header, length - header);
+    }
+
+    private void decodeEvent(int end, CotEvent event) throws IOException
+    {
+        double lat = 0d, lon = 0d, hae = 0d, ce = 0d, le = 0d;
+        int detailEnd = -1;
+        int detailStart = -1;
+
+        // proto3 does not distinguish between zero and absent times; an absent type, uid or how leaves the event
+        // invalid
+        event.setVersion(CotEvent.VERSION_2_0);
+        event.setTime(new CoordinatedTime(0L));
+        event.setStart(new CoordinatedTime(0L));
+        event.setStale(new CoordinatedTime(0L));
+
+        while (pos < end)
+        {
+            final int tag = readVarint32();
+            switch (tag)
+            {
+                case (EVENT_TYPE << 3) | WIRETYPE_LENGTH_DELIMITED:
+                    event.setType(readString());
+                    break;
+                case (EVENT_ACCESS << 3) | WIRETYPE_LENGTH_DELIMITED:
+                    event.setAccess(emptyToNull(readString()));
+                    break;
+                case (EVENT_QOS << 3) | WIRETYPE_LENGTH_DELIMITED:
+                    event.setQos(emptyToNull(readString()));
+                    break;
+                case (EVENT_OPEX << 3) | WIRETYPE_LENGTH_DELIMITED:
+                    event.setOpex(emptyToNull(readString()));
+                    break;
+                case (EVENT_UID << 3) | WIRETYPE_LENGTH_DELIMITED:
+                    event.setUID(readString());
+                    break;
+                case (EVENT_SEND_TIME << 3) | WIRETYPE_VARINT:
+                    event.setTime(new CoordinatedTime(readVarint64()));
+                    break;
+                case (EVENT_START_TIME << 3) | WIRETYPE_VARINT:
+                    event.setStart(new CoordinatedTime(readVarint64()));
+                    break;
+                case (EVENT_STALE_TIME << 3) | WIRETYPE_VARINT:
+                    event.setStale(new CoordinatedTime(readVarint64()));
+                    break;
+                case (EVENT_HOW << 3) | WIRETYPE_LENGTH_DELIMITED:
+                    event.setHow(readString());
+                    break;
+                case (EVENT_LAT << 3) | WIRETYPE_FIXED64:
+                    lat = readDouble();
+                    break;
+                case (EVENT_LON << 3) | WIRETYPE_FIXED64:
+                    lon = readDouble();
+                    break;
+                case (EVENT_HAE << 3) | WIRETYPE_FIXED64:
+                    hae = readDouble();
+                    break;
+                case (EVENT_CE << 3) | WIRETYPE_FIXED64:
+                    ce = readDouble();
+                    break;
+                case (EVENT_LE << 3) | WIRETYPE_FIXED64:
+                    le = readDouble();
+                    break;
+                case (EVENT_DETAIL << 3) | WIRETYPE_LENGTH_DELIMITED:
+                    // the detail is decoded last, it may need the XML parser
+                    detailEnd = readLength();
+                    detailStart = pos;
+                    pos = detailEnd;
+                    break;
+                case (EVENT_CAVEAT << 3) | WIRETYPE_LENGTH_DELIMITED:
+                    event.setCaveat(emptyToNull(readString()));
+                    break;
+                case (EVENT_RELEASABLE_TO << 3) | WIRETYPE_LENGTH_DELIMITED:
+                    event.setReleasableTo(emptyToNull(readString()));
+                    break;
+                default:
+                    skipField(tag);
+                    break;
+            }
+        }
+        checkEnd(end);
+
+        event.setPoint(new GeoPoint(lat, lon, usableValue(hae), GeoPoint.AltitudeReference.HAE, usableValue(ce),
+                usableValue(le)));
+
+        if (detailStart >= 0)
+        {
+            pos = detailStart;
+            decodeDetail(detailEnd, event);
+            pos = end;
+        }
+    }
+
+    private void decodeDetail(int end, CotEvent event) throws IOException
+    {
+        int xmlStart = -1, xmlEnd = -1;
+        int contact = -1, group = -1, precisionLocation = -1, status = -1, takv = -1, track = -1;
+
+        // record the extent of each field on a first pass; a field repeated on the wire replaces the earlier one
+        while (pos < end)
+        {
+            final int tag = readVarint32();
+            final int field = tag >>> 3;
+            if ((tag & 0x7) != WIRETYPE_LENGTH_DELIMITED || field > DETAIL_TRACK)
+            {
+                skipField(tag);
+                continue;
+            }
+            final int start = pos;
+            final int fieldEnd = readLength();
+            final int payload = pos;
+            pos = fieldEnd;
+            switch (field)
+            {
+                case DETAIL_XML_DETAIL:
+                    xmlStart = payload;
+                    xmlEnd = fieldEnd;
+                    break;
+                case DETAIL_CONTACT:
+                    contact = start;
+                    break;
+                case DETAIL_GROUP:
+                    group = start;
+                    break;
+                case DETAIL_PRECISION_LOCATION:
+                    precisionLocation = start;
+                    break;
+                case DETAIL_STATUS:
+                    status = start;
+                    break;
+                case DETAIL_TAKV:
+                    takv = start;
+                    break;
+                case DETAIL_TRACK:
+                    track = start;
+                    break;
+                default:
+                    break;
+            }
+        }
+        checkEnd(end);
+
+        final CotDetail detail;
+        if (xmlEnd > xmlStart)
+        {
+            try
+            {
+                detail = xmlParser.parseDetail(in, xmlStart, xmlEnd - xmlStart, event);
+            } catch (org.xml.sax.SAXException e)
+            {
+                throw new IOException("invalid xmlDetail: " + e.getMessage());
+            }
+        } else
+        {
+            detail = new CotDetail();
+            event.setDetail(detail);
+        }
+
+        // structured details never replace an element carried as XML
+        if (contact >= 0 && detail.getFirstChildByName(CONTACT) == null)
+        {
+            final CotDetail c = decodeStrings(contact, CONTACT, CONTACT_FIELDS);
+            // endpoint and altendpoints are optional, callsign is not
+            if (c.getAttribute(CONTACT_FIELDS[0]).isEmpty())
+                c.removeAttribute(CONTACT_FIELDS[0]);
+            if (c.getAttribute(CONTACT_FIELDS[2]).isEmpty())
+                c.removeAttribute(CONTACT_FIELDS[2]);
+            detail.addChild(c);
+        }
+        if (group >= 0 && detail.getFirstChildByName(GROUP) == null)
+            detail.addChild(decodeStrings(group, GROUP, GROUP_FIELDS));
+        if (precisionLocation >= 0 && detail.getFirstChildByName(PRECISION_LOCATION) == null)
+            detail.addChild(decodeStrings(precisionLocation, PRECISION_LOCATION, PRECISION_LOCATION_FIELDS));
+        if (status >= 0 && detail.getFirstChildByName(STATUS) == null)
+            detail.addChild(decodeStatus(status));
+        if (takv >= 0 && detail.getFirstChildByName(TAKV) == null)
+            detail.addChild(decodeStrings(takv, TAKV, TAKV_FIELDS));
+        if (track >= 0 && detail.getFirstChildByName(TRACK) == null)
+            detail.addChild(decodeTrack(track));
+    }
+
+    /**
+     * Decode a message made up only of string fields into an element with one attribute per field.
+     *
+     * @param start  The offset of the length prefix of the message
+     * @param name   The element name
+     * @param fields The attribute name of each field, indexed by field number - 1
+     */
+    private CotDetail decodeStrings(int start, String name, String[] fields) throws IOException
+    {
+        final String[] values = new String[fields.length];
+        pos = start;
+        final int end = readLength();
+        while (pos < end)
+        {
+            final int tag = readVarint32();
+            final int field = tag >>> 3;
+            if ((tag & 0x7) == WIRETYPE_LENGTH_DELIMITED && field >= 1 && field <= fields.length)
+                values[field - 1] = readString();
+            else
+                skipField(tag);
+        }
+        checkEnd(end);
+
+        final CotDetail detail = new CotDetail(name);
+        for (int i = 0; i < fields.length; i++)
+            detail.setAttribute(fields[i], (values[i] != null) ? values[i] : "");
+        return detail;
+    }
+
+    private CotDetail decodeStatus(int start) throws IOException
+    {
+        long battery = 0L;
+        pos = start;
+        final int end = readLength();
+        while (pos < end)
+        {
+            final int tag = readVarint32();
+            if (tag == ((1 << 3) | WIRETYPE_VARINT))
+                battery = readVarint64() & 0xffffffffL;
+            else
+                skipField(tag);
+        }
+        checkEnd(end);
+        return new CotDetail(STATUS, BATTERY, Integer.toString((int) Math.min(battery, Integer.MAX_VALUE)));
+    }
+
+    private CotDetail decodeTrack(int start) throws IOException
+    {
+        double speed = 0d, course = 0d;
+        pos = start;
+        final int end = readLength();
+        while (pos < end)
+        {
+            final int tag = readVarint32();
+            if (tag == ((1 << 3) | WIRETYPE_FIXED64))
+                speed = readDouble();
+            else if (tag == ((2 << 3) | WIRETYPE_FIXED64))
+                course = readDouble();
+            else
+                skipField(tag);
+        }
+        checkEnd(end);
+
+        final CotDetail detail = new CotDetail(TRACK);
+        detail.setAttribute(SPEED, Double.toString(speed));
+        detail.setAttribute(COURSE, Double.toString(course));
+        return detail;
+    }
+
+    /**************************************************************************/
+    // encode
+
+    /**
+     * Encode an event as a {@code TakMessage}, without a TAK protocol header.
+     *
+     * @param event The event to encode
+     * @return the encoded message
+     * @throws IllegalArgumentException if the event is not valid
+     */
+    @NonNull
+    public byte[] encode(@NonNull CotEvent event)
+    {
+        outPos = 0;
+        encodeMessage(event);
+        final byte[] message = new byte[outPos];
+        System.arraycopy(out, 0, message, 0, outPos);
+        return message;
+    }
+
+    /**
+     * Encode an event as a mesh (UDP) message, a {@code TakMessage} preceded by the header
+     * {@code <magic> <protocol version> <magic>}.
+     *
+     * @param event The event to encode
+     * @return the encoded datagram
+     * @throws IllegalArgumentException if the event is not valid
+     */
+    @NonNull
+    public byte[] encodeMeshMessage(@NonNull CotEvent event)
+    {
+        outPos = 0;
+        writeByte(MAGIC);
+        writeVarint(PROTOCOL_VERSION);
+        writeByte(MAGIC);
+        encodeMessage(event);
+        final byte[] message = new byte[outPos];
+        System.arraycopy(out, 0, message, 0, outPos);
+        return message;
+    }
+
+    /**
+     * Encode an event as a streaming (TCP) message, a {@code TakMessage} preceded by the header
+     * {@code <magic> <varint payload length>}.
+     *
+     * @param event The event to encode
+     * @return the encoded message
+     * @throws IllegalArgumentException if the event is not valid
+     */
+    @NonNull
+    public byte[] encodeStreamMessage(@NonNull CotEvent event)
+    {
+        outPos = 0;
+        encodeMessage(event);
+        final int payload = outPos;
+        final byte[] message = new byte[1 + varintSize(payload) + payload];
+        message[0] = MAGIC;
+        int i = 1;
+        for (int v = payload; ; v >>>= 7)
+        {
+            if ((v & ~0x7f) == 0)
+            {
+                message[i++] = (byte) v;
+                break;
+            }
+            message[i++] = (byte) ((v & 0x7f) | 0x80);
+        }
+        System.arraycopy(out, 0, message, i, payload);
+        return message;
+    }
+
+    private void encodeMessage(CotEvent event)
+    {
+        if (!event.isValid())
+            throw new IllegalArgumentException("cannot encode an invalid event");
+
+        final int message = beginMessage(TAK_MESSAGE_COT_EVENT);
+
+        writeString(EVENT_TYPE, event.getType());
+        writeString(EVENT_ACCESS, event.getAccess());
+        writeString(EVENT_QOS, event.getQos());
+        writeString(EVENT_OPEX, event.getOpex());
+        writeString(EVENT_UID, event.getUID());
+        writeTime(EVENT_SEND_TIME, event.getTime());
+        writeTime(EVENT_START_TIME, event.getStart());
+        writeTime(EVENT_STALE_TIME, event.getStale());
+        writeString(EVENT_HOW, event.getHow());
+
+        final IGeoPoint point = event.getPoint();
+        writeDouble(EVENT_LAT, point.getLatitude());
+        writeDouble(EVENT_LON, point.getLongitude());
+        writeDouble(EVENT_HAE, wireValue(point.getAltitude()));
+        writeDouble(EVENT_CE, wireValue(point.getCE()));
+        writeDouble(EVENT_LE, wireValue(point.getLE()));
+
+        final CotDetail detail = event.getDetail();
+        if (detail != null)
+            encodeDetail(detail);
+
+        writeString(EVENT_CAVEAT, event.getCaveat());
+        writeString(EVENT_RELEASABLE_TO, event.getReleasableTo());
+
+        endMessage(message);
+    }
+
+    private void encodeDetail(CotDetail detail)
+    {
+        final int message = beginMessage(EVENT_DETAIL);
+        final List<CotDetail> children = detail.getChildren();
+
+        final CotDetail contact = mappable(children, CONTACT);
+        final CotDetail group = mappable(children, GROUP);
+        final CotDetail precisionLocation = mappable(children, PRECISION_LOCATION);
+        final CotDetail status = mappable(children, STATUS);
+        final CotDetail takv = mappable(children, TAKV);
+        final CotDetail track = mappable(children, TRACK);
+
+        final boolean contactMapped = contact != null && contact.getAttribute(CONTACT_FIELDS[1]) != null
+                && hasOnly(contact, CONTACT_FIELDS);
+        final boolean groupMapped = group != null && hasAll(group, GROUP_FIELDS);
+        final boolean precisionLocationMapped = precisionLocation != null
+                && hasAll(precisionLocation, PRECISION_LOCATION_FIELDS);
+        final int battery = (status != null && status.getAttributeCount() == 1) ? parseBattery(status) : -1;
+        final boolean takvMapped = takv != null && hasAll(takv, TAKV_FIELDS);
+        double speed = Double.NaN, course = Double.NaN;
+        if (track != null && hasAll(track, TRACK_FIELDS))
+        {
+            speed = parseDouble(track.getAttribute(SPEED));
+            course = parseDouble(track.getAttribute(COURSE));
+        }
+        final boolean trackMapped = !Double.isNaN(speed) && !Double.isNaN(course);
+
+        // everything that does not map to a structured field is sent as XML
+        xmlDetail.setLength(0);
+        for (CotDetail child : children)
+        {
+            if ((contactMapped && child == contact) || (groupMapped && child == group)
+                    || (precisionLocationMapped && child == precisionLocation)
+                    || (battery >= 0 && child == status) || (takvMapped && child == takv)
+                    || (trackMapped && child == track))
+                continue;
+            child.buildXml(xmlDetail);
+        }
+        if (xmlDetail.length() > 0)
+            writeString(DETAIL_XML_DETAIL, xmlDetail);
+
+        if (contactMapped)
+        {
+            final int m = beginMessage(DETAIL_CONTACT);
+            for (int i = 0; i < CONTACT_FIELDS.length; i++)
+                writeString(i + 1, contact.getAttribute(CONTACT_FIELDS[i]));
+            endMessage(m);
+        }
+        if (groupMapped)
+            writeStrings(DETAIL_GROUP, group, GROUP_FIELDS);
+        if (precisionLocationMapped)
+            writeStrings(DETAIL_PRECISION_LOCATION, precisionLocation, PRECISION_LOCATION_FIELDS);
+        if (battery >= 0)
+        {
+            final int m = beginMessage(DETAIL_STATUS);
+            if (battery != 0)
+            {
+                writeTag(1, WIRETYPE_VARINT);
+                writeVarint(battery);
+            }
+            endMessage(m);
+        }
+        if (takvMapped)
+            writeStrings(DETAIL_TAKV, takv, TAKV_FIELDS);
+        if (trackMapped)
+        {
+            final int m = beginMessage(DETAIL_TRACK);
+            writeDouble(1, speed);
+            writeDouble(2, course);
+            endMessage(m);
+        }
+
+        endMessage(message);
+    }
+
+    /**
+     * @return the only child with the given name, provided it has no children or inner text of its own, otherwise
+     * {@code null}
+     */
+    private static CotDetail mappable(List<CotDetail> children, String name)
+    {
+        CotDetail found = null;
+        for (CotDetail child : children)
+        {
+            if (!name.equals(child.getElementName()))
+                continue;
+            if (found != null)
+                return null;
+            found = child;
+        }
+        if (found == null || found.childCount() > 0 || found.getInnerText() != null)
+            return null;
+        return found;
+    }
+
+    /**
+     * @return {@code true} if the detail carries exactly the given attributes
+     */
+    private static boolean hasAll(CotDetail detail, String[] names)
+    {
+        if (detail.getAttributeCount() != names.length)
+            return false;
+        for (String name : names)
+        {
+            if (!detail.hasAttribute(name))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code true} if the detail carries no attributes other than the given ones
+     */
+    private static boolean hasOnly(CotDetail detail, String[] names)
+    {
+        int count = 0;
+        for (String name : names)
+        {
+            if (detail.hasAttribute(name))
+                count++;
+        }
+        return count == detail.getAttributeCount();
+    }
+
+    /**
+     * @return the battery level, or {@code -1} if the status cannot be mapped
+     */
+    private static int parseBattery(CotDetail status)
+    {
+        final String battery = status.getAttribute(BATTERY);
+        if (battery == null)
+            return -1;
+        try
+        {
+            final int value = Integer.parseInt(battery.trim());
+            return (value >= 0) ? value : -1;
+        } catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    private static double parseDouble(String value)
+    {
+        try
+        {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e)
+        {
+            return Double.NaN;
+        }
+    }
+
+    /**************************************************************************/
+    // wire format
+
+    private int readVarint32() throws IOException
+    {
+        final long v = readVarint64();
+        if ((v >>> 32) != 0)
+            throw new IOException("malformed varint");
+        return (int) v;
+    }
+
+    private long readVarint64() throws IOException
+    {
+        long result = 0L;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            if (pos >= limit)
+                throw new IOException("truncated varint");
+            final byte b = in[pos++];
+            result |= (long) (b & 0x7f) << shift;
+            if (b >= 0)
+                return result;
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private double readDouble() throws IOException
+    {
+        if (limit - pos < 8)
+            throw new IOException("truncated double");
+        long bits = 0L;
+        for (int i = 7; i >= 0; i--)
+            bits = (bits << 8) | (in[pos + i] & 0xffL);
+        pos += 8;
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * Read the length prefix of a length delimited field.
+     *
+     * @return the offset of the end of the field
+     */
+    private int readLength() throws IOException
+    {
+        final int length = readVarint32();
+        if (length < 0 || length > limit - pos)
+            throw new IOException("truncated message");
+        return pos + length;
+    }
+
+    /**
+     * Verify that the fields of an embedded message did not extend past its end.
+     */
+    private void checkEnd(int end) throws IOException
+    {
+        if (pos != end)
+            throw new IOException("truncated message");
+    }
+
+    private String readString() throws IOException
+    {
+        final int end = readLength();
+        final String s = new String(in, pos, end - pos, StandardCharsets.UTF_8);
+        pos = end;
+        return s;
+    }
+
+    private void skipField(int tag) throws IOException
+    {
+        switch (tag & 0x7)
+        {
+            case WIRETYPE_VARINT:
+                readVarint64();
+                break;
+            case WIRETYPE_FIXED64:
+                if (limit - pos < 8)
+                    throw new IOException("truncated field");
+                pos += 8;
+                break;
+            case WIRETYPE_LENGTH_DELIMITED:
+                pos = readLength();
+                break;
+            case WIRETYPE_FIXED32:
+                if (limit - pos < 4)
+                    throw new IOException("truncated field");
+                pos += 4;
+                break;
+            default:
+                throw new IOException("unsupported wire type " + (tag & 0x7));
+        }
+    }
+
+    private void ensureCapacity(int bytes)
+    {
+        if (out.length - outPos < bytes)
+        {
+            final byte[] grown = new byte[Math.max(out.length * 2, outPos + bytes)];
+            System.arraycopy(out, 0, grown, 0, outPos);
+            out = grown;
+        }
+    }
+
+    private void writeByte(byte b)
+    {
+        ensureCapacity(1);
+        out[outPos++] = b;
+    }
+
+    private void writeVarint(long v)
+    {
+        ensureCapacity(10);
+        while ((v & ~0x7fL) != 0)
+        {
+            out[outPos++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out[outPos++] = (byte) v;
+    }
+
+    private void writeTag(int field, int wireType)
+    {
+        writeVarint((field << 3) | wireType);
+    }
+
+    private void writeTime(int field, CoordinatedTime time)
+    {
+        final long millis = time.getMilliseconds();
+        if (millis == 0L)
+            return;
+        writeTag(field, WIRETYPE_VARINT);
+        writeVarint(millis);
+    }
+
+    private void writeDouble(int field, double value)
+    {
+        // proto3 omits default values
+        if (Double.doubleToRawLongBits(value) == 0L)
+            return;
+        writeTag(field, WIRETYPE_FIXED64);
+        ensureCapacity(8);
+        final long bits = Double.doubleToRawLongBits(value);
+        for (int i = 0; i < 8; i++)
+            out[outPos++] = (byte) (bits >>> (8 * i));
+    }
+
+    private void writeString(int field, @Nullable CharSequence s)
+    {
+        if (s == null || s.length() == 0)
+            return;
+        final int length = s.length();
+        int encoded = 0;
+        for (int i = 0; i < length; i++)
+        {
+            final char c = s.charAt(i);
+            if (c < 0x80)
+            {
+                encoded += 1;
+            } else if (c < 0x800)
+            {
+                encoded += 2;
+            } else if (isSurrogatePair(s, i))
+            {
+                encoded += 4;
+                i++;
+            } else if (Character.isSurrogate(c))
+            {
+                encoded += 1;
+            } else
+            {
+                encoded += 3;
+            }
+        }
+
+        writeTag(field, WIRETYPE_LENGTH_DELIMITED);
+        writeVarint(encoded);
+        ensureCapacity(encoded);
+        for (int i = 0; i < length; i++)
+        {
+            final char c = s.charAt(i);
+            if (c < 0x80)
+            {
+                out[outPos++] = (byte) c;
+            } else if (c < 0x800)
+            {
+                out[outPos++] = (byte) (0xc0 | (c >> 6));
+                out[outPos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (isSurrogatePair(s, i))
+            {
+                final int cp = Character.toCodePoint(c, s.charAt(++i));
+                out[outPos++] = (byte) (0xf0 | (cp >> 18));
+                out[outPos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                out[outPos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                out[outPos++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c))
+            {
+                // unpaired surrogate, replaced as by String.getBytes
+                out[outPos++] = (byte) '?';
+            } else
+            {
+                out[outPos++] = (byte) (0xe0 | (c >> 12));
+                out[outPos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                out[outPos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    private static boolean isSurrogatePair(CharSequence s, int i)
+    {
+        return Character.isHighSurrogate(s.charAt(i)) && i + 1 < s.length()
+                && Character.isLowSurrogate(s.charAt(i + 1));
+    }
+
+    private void writeStrings(int field, CotDetail detail, String[] fields)
+    {
+        final int m = beginMessage(field);
+        for (int i = 0; i < fields.length; i++)
+            writeString(i + 1, detail.getAttribute(fields[i]));
+        endMessage(m);
+    }
+
+    /**
+     * Write the tag of an embedded message and reserve a single byte for its length.
+     *
+     * @return the offset of the reserved length byte
+     */
+    private int beginMessage(int field)
+    {
+        writeTag(field, WIRETYPE_LENGTH_DELIMITED);
+        writeByte((byte) 0);
+        return outPos - 1;
+    }
+
+    /**
+     * Fill in the length of the embedded message started at the given offset, moving the content if the length does
+     * not fit in the reserved byte.
+     */
+    private void endMessage(int lengthOffset)
+    {
+        final int start = lengthOffset + 1;
+        final int length = outPos - start;
+        final int extra = varintSize(length) - 1;
+        if (extra > 0)
+        {
+            ensureCapacity(extra);
+            System.arraycopy(out, start, out, start + extra, length);
+            outPos += extra;
+        }
+        int i = lengthOffset;
+        int v = length;
+        while ((v & ~0x7f) != 0)
+        {
+            out[i++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out[i] = (byte) v;
+    }
+
+    private static int varintSize(int v)
+    {
+        int size = 1;
+        while ((v & ~0x7f) != 0)
+        {
+            v >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**************************************************************************/
+    // values
+
+    @Nullable
+    private static String emptyToNull(String s)
+    {
+        return s.isEmpty() ? null : s;
+    }
+
+    /**
+     * @return the point value read from the wire, with the CoT "unknown" value replaced by {@link GeoPoint#UNKNOWN}
+     */
+    private static double usableValue(double value)
+    {
+        return (Double.isNaN(value) || value == UNKNOWN_VALUE) ? GeoPoint.UNKNOWN : value;
+    }
+
+    /**
+     * @return the point value to place on the wire, with an unknown value replaced by the CoT "unknown" value
+     */
+    private static double wireValue(double value)
+    {
+        return Double.isNaN(value) ? UNKNOWN_VALUE : value;
+    }
+}
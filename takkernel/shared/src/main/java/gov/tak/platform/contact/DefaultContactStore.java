@@ -17,6 +17,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Responsible for storing and managing {@link IContact}s for the Contacts API. See {@link ContactStore}
@@ -32,6 +33,11 @@ class DefaultContactStore extends ContactStore
     private final Map<String, IContact> allContacts = new ConcurrentHashMap<>();
     private final ExecutorService executorService;
 
+    /** incremented on every modification of {@link #allContacts} */
+    private final AtomicLong version = new AtomicLong();
+    /** the most recently published snapshot; rebuilt lazily on read once {@link #version} moves past it */
+    private volatile Snapshot snapshot = new Snapshot(0L, Collections.<IContact>emptyList());
+
     DefaultContactStore()
     {
         this(Executors.newSingleThreadExecutor());
@@ -56,6 +62,7 @@ class DefaultContactStore extends ContactStore
         }
 
         allContacts.put(contactUid, contact);
+        version.incrementAndGet();
 
         Log.d(TAG, "Added contact with UID \"" + contactUid + "\".");
 
@@ -76,6 +83,7 @@ class DefaultContactStore extends ContactStore
         }
 
         allContacts.replace(contactUid, contact);
+        version.incrementAndGet();
 
         Log.d(TAG, "Updated contact with UID \"" + contactUid + "\".");
 
@@ -99,6 +107,7 @@ class DefaultContactStore extends ContactStore
             Log.d(TAG, "Attempted to remove IContact that does not currently exist in the contact store.");
             return;
         }
+        version.incrementAndGet();
 
         Log.d(TAG, "Removed contact with UID \"" + uniqueContactId + "\".");
 
@@ -126,6 +135,28 @@ class DefaultContactStore extends ContactStore
         return new ArrayList<>(allContacts.values());
     }
 
+    @Override
+    public List<IContact> getContactsSnapshot()
+    {
+        Snapshot current = snapshot;
+        final long currentVersion = version.get();
+        if (current.version != currentVersion)
+        {
+            // The version is sampled before copying, so a modification racing with the copy leaves the snapshot
+            // tagged as stale and it is simply rebuilt on the next read. Readers never wait on writers.
+            current = new Snapshot(currentVersion,
+                    Collections.unmodifiableList(new ArrayList<>(allContacts.values())));
+            snapshot = current;
+        }
+        return current.contacts;
+    }
+
+    @Override
+    public long getContactsVersion()
+    {
+        return version.get();
+    }
+
     @Override
     public void registerContactListener(@NonNull IContactListener contactListener)
     {
@@ -173,6 +204,18 @@ class DefaultContactStore extends ContactStore
         return contactListeners.contains(contactListener);
     }
 
+    private static final class Snapshot
+    {
+        final long version;
+        final List<IContact> contacts;
+
+        Snapshot(long version, List<IContact> contacts)
+        {
+            this.version = version;
+            this.contacts = contacts;
+        }
+    }
+
     private void notifyListeners(IContact contact, ContactNotificationType notificationType)
     {
         for (IContactListener listener : contactListeners)
@@ -12,6 +12,7 @@ import java.util.Map;
 
 interface IMilStd2525cInterop<SymbolDef, MilStdSymbol, ShapeInfo>
 {
+    String getRendererVersion();
     String getDescription(SymbolDef msInfo);
     String getFullPath(SymbolDef msInfo);
     int getDrawCategory(SymbolDef msInfo);
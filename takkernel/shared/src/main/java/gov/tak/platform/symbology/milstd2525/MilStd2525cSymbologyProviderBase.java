@@ -20,6 +20,7 @@ import com.atakmap.map.layer.feature.ogr.style.FeatureStyleParser;
 import com.atakmap.map.layer.feature.style.Style;
 import com.atakmap.map.layer.raster.osm.OSMUtils;
 import com.atakmap.map.opengl.GLRenderGlobals;
+import com.atakmap.math.PointD;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -570,11 +571,26 @@ abstract class MilStd2525cSymbologyProviderBase<SymbolDef, MilStdSymbol, ShapeIn
                     break;
             }
         }
-        return interop.renderSinglePointIcon(
-                code,
-                getModifiers(sym, attrs, true, (hints != null) ? hints.controlPoint : null),
-                symRenderAttribs,
-                (hints != null) ? hints.iconCenterOffset : null, "serif", 0, fontSize);
+        final Map<String, String> modifiers = getModifiers(sym, attrs, true, (hints != null) ? hints.controlPoint : null);
+        final String cacheKey = MilSymIconCache.key(getName() + interop.getRendererVersion(), code, modifiers, symRenderAttribs, fontSize);
+
+        PointD centerOffset = new PointD();
+        final MilSymIconCache iconCache = MilSymIconCache.getInstance();
+        Bitmap bitmap = iconCache.get(cacheKey, centerOffset);
+        if(bitmap == null) {
+            bitmap = interop.renderSinglePointIcon(
+                    code,
+                    modifiers,
+                    symRenderAttribs,
+                    centerOffset, "serif", 0, fontSize);
+            if(bitmap != null)
+                iconCache.put(cacheKey, bitmap, centerOffset);
+        }
+        if(bitmap != null && hints != null && hints.iconCenterOffset != null) {
+            hints.iconCenterOffset.x = centerOffset.x;
+            hints.iconCenterOffset.y = centerOffset.y;
+        }
+        return bitmap;
     }
 
     @Override
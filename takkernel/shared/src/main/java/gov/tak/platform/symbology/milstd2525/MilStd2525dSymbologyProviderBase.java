@@ -457,15 +457,24 @@ class MilStd2525dSymbologyProviderBase implements ISymbologyProvider2 {
                 break;
         }
 
+        final Map<String, String> modifiers = getModifiers(info, attrs, true, (hints != null) ? hints.controlPoint : null);
+        final String cacheKey = MilSymIconCache.key(getName() + version, code, modifiers, symRenderAttribs, fontSize);
+
         PointD centerOffset = new PointD();
-        Bitmap bitmap = interop.renderSinglePointIcon(
-                code,
-                getModifiers(info, attrs, true, (hints != null) ? hints.controlPoint : null),
-                symRenderAttribs,
-                centerOffset,
-                "serif",
-                0,
-                fontSize);
+        final MilSymIconCache iconCache = MilSymIconCache.getInstance();
+        Bitmap bitmap = iconCache.get(cacheKey, centerOffset);
+        if(bitmap == null) {
+            bitmap = interop.renderSinglePointIcon(
+                    code,
+                    modifiers,
+                    symRenderAttribs,
+                    centerOffset,
+                    "serif",
+                    0,
+                    fontSize);
+            if(bitmap != null)
+                iconCache.put(cacheKey, bitmap, centerOffset);
+        }
         if(bitmap != null && hints != null && hints.iconCenterOffset != null) {
             hints.iconCenterOffset.x = centerOffset.x;
             hints.iconCenterOffset.y = centerOffset.y;
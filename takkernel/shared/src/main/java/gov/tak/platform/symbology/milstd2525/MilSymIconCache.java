@@ -0,0 +1,529 @@
+package gov.tak.platform.symbology.milstd2525;
+
+import com.atakmap.coremap.concurrent.NamedThreadFactory;
+import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.coremap.locale.LocaleUtil;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.filesystem.HashingUtils;
+import com.atakmap.math.PointD;
+import com.atakmap.util.zip.IoUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import gov.tak.api.commons.graphics.Bitmap;
+import gov.tak.api.cot.CotUtils;
+import gov.tak.api.util.AttributeSet;
+import gov.tak.platform.symbology.SymbologyProvider;
+
+/**
+ * Two level cache of rendered single point MIL-STD-2525 icons. Icons are stored
+ * compressed in a memory LRU and, if a cache directory has been set, in files
+ * named by the hash of the symbol code, modifiers and render attributes. Files
+ * are written on a background thread and the directory is trimmed back to the
+ * disk limit once it grows past it by an eighth. Each hit returns a new
+ * {@link Bitmap}, so callers may modify the icon freely.
+ */
+public final class MilSymIconCache
+{
+    private static final String TAG = "MilSymIconCache";
+
+    // Bump when the encoding or the rendered output changes
+    private static final int FORMAT_VERSION = 1;
+    private static final String FILE_EXTENSION = ".icon";
+    // version, width, height, center offset x and y
+    private static final int HEADER_SIZE = 3 * 4 + 2 * 8;
+
+    private static final long DEFAULT_MEMORY_LIMIT = 4L * 1024L * 1024L;
+    private static final int DEFAULT_DISK_LIMIT = 4096;
+    private static final int MAX_PRERENDER_TYPES = 1024;
+
+    private static final MilSymIconCache instance = new MilSymIconCache(DEFAULT_MEMORY_LIMIT, DEFAULT_DISK_LIMIT);
+
+    private final Map<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final long memoryLimit;
+    private long memorySize;
+
+    private final int diskLimit;
+    private volatile File cacheDir;
+
+    // guards the cache directory contents against concurrent writes and clears
+    private final Object diskLock = new Object();
+    // approximate number of files in the cache directory
+    private int diskCount;
+    // incremented on clear so queued writes are dropped
+    private int diskGeneration;
+    private ThreadPoolExecutor diskQueue;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // CoT types which have been queued for pre-rendering
+    private final Set<String> prerenderTypes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private ThreadPoolExecutor prerenderQueue;
+
+    MilSymIconCache(long memoryLimit, int diskLimit)
+    {
+        this.memoryLimit = memoryLimit;
+        this.diskLimit = diskLimit;
+    }
+
+    public static MilSymIconCache getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Set the directory used to persist rendered icons. Files beyond the disk
+     * limit are removed, least recently written first.
+     *
+     * @param dir   The cache directory or {@code null} to only cache in memory
+     */
+    public void setCacheDirectory(File dir)
+    {
+        if (dir != null && !IOProviderFactory.exists(dir) && !IOProviderFactory.mkdirs(dir)) {
+            Log.w(TAG, "Failed to create icon cache directory " + dir);
+            dir = null;
+        }
+        synchronized (this.diskLock) {
+            this.cacheDir = dir;
+            if (dir != null)
+                this.diskCount = trimDisk(dir);
+        }
+    }
+
+    /**
+     * @return  The directory used to persist rendered icons, {@code null} if disabled
+     */
+    public File getCacheDirectory()
+    {
+        return this.cacheDir;
+    }
+
+    /**
+     * Build the cache key for a single point icon.
+     *
+     * @param provider      The provider name and version
+     * @param code          The symbol code
+     * @param modifiers     The modifiers passed to the renderer
+     * @param attributes    The render attributes passed to the renderer
+     * @param fontSize      The label font size
+     *
+     * @return  The cache key
+     */
+    static String key(String provider, String code, Map<String, String> modifiers, Map<String, String> attributes, int fontSize)
+    {
+        StringBuilder key = new StringBuilder(provider);
+        key.append('|').append(code.toUpperCase(LocaleUtil.US));
+        key.append('|').append(fontSize);
+        append(key, modifiers);
+        append(key, attributes);
+        return key.toString();
+    }
+
+    private static void append(StringBuilder key, Map<String, String> values)
+    {
+        key.append('|');
+        if (values == null)
+            return;
+        for (Map.Entry<String, String> e : new TreeMap<>(values).entrySet())
+            key.append(e.getKey()).append('=').append(e.getValue()).append(';');
+    }
+
+    /**
+     * Look up a cached icon.
+     *
+     * @param key           The cache key
+     * @param centerOffset  If non-{@code null}, returns the icon center offset
+     *
+     * @return  A new bitmap holding the icon or {@code null} if not cached
+     */
+    Bitmap get(String key, PointD centerOffset)
+    {
+        byte[] encoded;
+        synchronized (this.memory) {
+            encoded = this.memory.get(key);
+        }
+        if (encoded != null) {
+            Bitmap bitmap = decode(encoded, centerOffset);
+            if (bitmap != null) {
+                this.memoryHits.incrementAndGet();
+                return bitmap;
+            }
+        }
+
+        final File dir = this.cacheDir;
+        if (dir != null) {
+            encoded = read(new File(dir, fileName(key)));
+            Bitmap bitmap = (encoded != null) ? decode(encoded, centerOffset) : null;
+            if (bitmap != null) {
+                putMemory(key, encoded);
+                this.diskHits.incrementAndGet();
+                return bitmap;
+            }
+        }
+
+        this.misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Store a rendered icon. The icon is available from memory immediately and
+     * is written to the cache directory in the background.
+     *
+     * @param key           The cache key
+     * @param bitmap        The rendered icon
+     * @param centerOffset  The icon center offset
+     */
+    void put(final String key, Bitmap bitmap, PointD centerOffset)
+    {
+        final byte[] encoded = encode(bitmap, centerOffset);
+        if (encoded == null)
+            return;
+        putMemory(key, encoded);
+
+        final File dir = this.cacheDir;
+        if (dir == null)
+            return;
+        final int generation;
+        synchronized (this.diskLock) {
+            generation = this.diskGeneration;
+        }
+        getDiskQueue().execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                synchronized (diskLock) {
+                    // cleared or moved since the icon was queued
+                    if (generation != diskGeneration || dir != cacheDir)
+                        return;
+                    write(new File(dir, fileName(key)), encoded);
+                    diskCount++;
+                    if (diskCount > diskLimit + diskLimit / 8)
+                        diskCount = trimDisk(dir);
+                }
+            }
+        });
+    }
+
+    /**
+     * Wait for all queued writes to the cache directory to complete.
+     */
+    void awaitWrites() throws InterruptedException
+    {
+        try {
+            getDiskQueue().submit(new Runnable() {
+                @Override
+                public void run()
+                {
+                }
+            }).get();
+        } catch (ExecutionException e) {
+            // the task is empty
+        }
+    }
+
+    private void putMemory(String key, byte[] encoded)
+    {
+        if (encoded.length > this.memoryLimit)
+            return;
+        synchronized (this.memory) {
+            final byte[] old = this.memory.put(key, encoded);
+            if (old != null)
+                this.memorySize -= old.length;
+            this.memorySize += encoded.length;
+
+            Iterator<byte[]> it = this.memory.values().iterator();
+            while (this.memorySize > this.memoryLimit && it.hasNext()) {
+                this.memorySize -= it.next().length;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all cached icons from memory and from the cache directory.
+     */
+    public void clear()
+    {
+        synchronized (this.memory) {
+            this.memory.clear();
+            this.memorySize = 0L;
+        }
+        synchronized (this.diskLock) {
+            this.diskGeneration++;
+            final File dir = this.cacheDir;
+            if (dir == null)
+                return;
+            this.diskCount = 0;
+            final File[] files = IOProviderFactory.listFiles(dir);
+            if (files == null)
+                return;
+            for (File f : files) {
+                if (f.getName().endsWith(FILE_EXTENSION))
+                    IOProviderFactory.delete(f);
+                else
+                    this.diskCount++;
+            }
+        }
+    }
+
+    /**
+     * @return  The number of lookups served from memory
+     */
+    public long getMemoryHits()
+    {
+        return this.memoryHits.get();
+    }
+
+    /**
+     * @return  The number of lookups served from the cache directory
+     */
+    public long getDiskHits()
+    {
+        return this.diskHits.get();
+    }
+
+    /**
+     * @return  The number of lookups which required the icon to be rendered
+     */
+    public long getMisses()
+    {
+        return this.misses.get();
+    }
+
+    /**
+     * @return  The fraction of lookups served from memory or disk, {@code 0} if there were none
+     */
+    public double getHitRate()
+    {
+        final long hits = this.memoryHits.get() + this.diskHits.get();
+        final long total = hits + this.misses.get();
+        return (total > 0L) ? (double) hits / (double) total : 0d;
+    }
+
+    public void resetStatistics()
+    {
+        this.memoryHits.set(0L);
+        this.diskHits.set(0L);
+        this.misses.set(0L);
+    }
+
+    /**
+     * Queue the default icon for the given CoT type to be rendered in the
+     * background, so it is already cached when the marker is created. Each
+     * type is only queued once.
+     *
+     * @param cotType   The CoT type, i.e. {@code a-f-G-U-C}
+     */
+    public void prerenderCotType(final String cotType)
+    {
+        if (cotType == null || !cotType.startsWith("a-"))
+            return;
+        if (this.prerenderTypes.size() >= MAX_PRERENDER_TYPES || !this.prerenderTypes.add(cotType))
+            return;
+        getPrerenderQueue().execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                try {
+                    final String code = CotUtils.mil2525cFromCotType(cotType);
+                    if (code != null && !code.isEmpty())
+                        SymbologyProvider.renderSinglePointIcon(code.toUpperCase(LocaleUtil.US), new AttributeSet(), null);
+                } catch (Throwable t) {
+                    Log.w(TAG, "Failed to pre-render icon for " + cotType, t);
+                }
+            }
+        });
+    }
+
+    private synchronized ThreadPoolExecutor getPrerenderQueue()
+    {
+        if (this.prerenderQueue == null) {
+            // single worker which exits when idle
+            this.prerenderQueue = new ThreadPoolExecutor(1, 1, 30L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("MilSymPrerender"));
+            this.prerenderQueue.allowCoreThreadTimeOut(true);
+        }
+        return this.prerenderQueue;
+    }
+
+    private synchronized ThreadPoolExecutor getDiskQueue()
+    {
+        if (this.diskQueue == null) {
+            // single writer, so files are written in order, which exits when idle
+            this.diskQueue = new ThreadPoolExecutor(1, 1, 30L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("MilSymIconWriter"));
+            this.diskQueue.allowCoreThreadTimeOut(true);
+        }
+        return this.diskQueue;
+    }
+
+    /**************************************************************************/
+    // Encoding
+
+    static byte[] encode(Bitmap bitmap, PointD centerOffset)
+    {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final int[] argb = new int[width * height];
+        bitmap.getPixels(argb, 0, width, 0, 0, width, height);
+
+        final ByteBuffer pixels = ByteBuffer.allocate(argb.length * 4);
+        pixels.asIntBuffer().put(argb);
+
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(argb.length);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeDouble((centerOffset != null) ? centerOffset.x : 0d);
+            out.writeDouble((centerOffset != null) ? centerOffset.y : 0d);
+
+            deflater.setInput(pixels.array());
+            deflater.finish();
+            final byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                final int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            return null;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static Bitmap decode(byte[] encoded, PointD centerOffset)
+    {
+        final Inflater inflater = new Inflater();
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+            if (in.readInt() != FORMAT_VERSION)
+                return null;
+            final int width = in.readInt();
+            final int height = in.readInt();
+            final double offsetX = in.readDouble();
+            final double offsetY = in.readDouble();
+            if (width <= 0 || height <= 0)
+                return null;
+
+            final byte[] pixels = new byte[width * height * 4];
+            inflater.setInput(encoded, HEADER_SIZE, encoded.length - HEADER_SIZE);
+            if (inflater.inflate(pixels) != pixels.length)
+                return null;
+
+            final int[] argb = new int[width * height];
+            ByteBuffer.wrap(pixels).asIntBuffer().get(argb);
+            if (centerOffset != null) {
+                centerOffset.x = offsetX;
+                centerOffset.y = offsetY;
+            }
+            return new Bitmap(argb, 0, width, width, height);
+        } catch (IOException | DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**************************************************************************/
+    // Disk store
+
+    private static String fileName(String key)
+    {
+        return HashingUtils.sha256sum(key) + FILE_EXTENSION;
+    }
+
+    private static byte[] read(File file)
+    {
+        if (!IOProviderFactory.exists(file))
+            return null;
+        InputStream in = null;
+        try {
+            in = IOProviderFactory.getInputStream(file);
+            final byte[] data = new byte[(int) IOProviderFactory.length(file)];
+            new DataInputStream(in).readFully(data);
+            return data;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            IoUtils.close(in);
+        }
+    }
+
+    private static void write(File file, byte[] data)
+    {
+        // write to a temporary file so readers never see a partial icon
+        final File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = IOProviderFactory.getOutputStream(tmp);
+            out.write(data);
+            out.close();
+            out = null;
+            if (!IOProviderFactory.renameTo(tmp, file))
+                IOProviderFactory.delete(tmp);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write icon " + file.getName(), e);
+            IOProviderFactory.delete(tmp);
+        } finally {
+            IoUtils.close(out);
+        }
+    }
+
+    /**
+     * Remove the least recently written files beyond the disk limit.
+     *
+     * @param dir   The cache directory
+     *
+     * @return  The number of files remaining
+     */
+    private int trimDisk(File dir)
+    {
+        final File[] files = IOProviderFactory.listFiles(dir);
+        if (files == null)
+            return 0;
+        if (files.length <= this.diskLimit)
+            return files.length;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs)
+            {
+                return Long.compare(IOProviderFactory.lastModified(lhs), IOProviderFactory.lastModified(rhs));
+            }
+        });
+        for (int i = 0; i < files.length - this.diskLimit; i++)
+            IOProviderFactory.delete(files[i]);
+        return this.diskLimit;
+    }
+}
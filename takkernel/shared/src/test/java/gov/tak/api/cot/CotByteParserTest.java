@@ -0,0 +1,231 @@
+package gov.tak.api.cot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gov.tak.api.cot.event.CotByteParser;
+import gov.tak.api.cot.event.CotDetail;
+import gov.tak.api.cot.event.CotEvent;
+
+/**
+ * Differential tests of {@link CotByteParser} against the SAX based {@link CotEvent#parse(String)}.
+ */
+public class CotByteParserTest
+{
+    private static final String TAG = "CotByteParserTest";
+
+    /**
+     * Set to <code>true</code> to report per-message latency and allocation for both parsers.
+     */
+    private static final boolean BENCHMARK_ENABLED = false;
+    private static final int BENCHMARK_ITERATIONS = 200000;
+
+    private static final File CORPUS_DIR = new File("../../takcot/examples");
+
+    private static final String START_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+    private static final String START_EVENT = "<event version='2.0' uid='the-uid' type='a-f-G' " +
+            "time='2021-04-03T14:40:00.677Z' start='2021-04-03T14:40:00.677Z' stale='2021-04-03T14:45:00.677Z' " +
+            "how='m-g'>";
+    private static final String POINT = "<point lat='41.11903' lon='-75.42835' hae='12.5' ce='4' le='9999999'/>";
+
+    private static final List<String> MESSAGES = Arrays.asList(
+            START_XML + START_EVENT + POINT +
+                    "<detail><contact callsign='TAKX' endpoint='*:-1:stcp'/><__group name='Cyan' role='Team Member'/>" +
+                    "<takv device='dev' platform='ATAK-CIV' os='29' version='5.5'/>" +
+                    "<track course='12.5' speed='3.0'/></detail></event>",
+            // entities, character references, attribute normalization, CDATA and non-ASCII content
+            START_EVENT + POINT + "<detail><remarks source='a&amp;b'>a &amp; b &lt;c&gt; &#65;&#x42; d</remarks>" +
+                    "<x a='q&quot;\n\tz&#10;'/><y>\u00e9\u4e2d\uD83D\uDE00</y><z><![CDATA[<raw> & ]]></z></detail></event>",
+            // mixed content, comments and processing instructions inside of detail
+            START_EVENT + POINT + "<detail>\n  <a>hello<b/></a>\n <c>  </c><!-- c --><d>x<!--c-->y</d><?pi x?></detail>" +
+                    "</event>",
+            // line endings
+            START_EVENT + POINT + "<detail><a>line1\r\nline2\rline3</a></detail></event>",
+            // leading declaration, comments and trailing whitespace
+            "<?xml version='1.0'?>\n<!-- lead -->\n" + START_EVENT + POINT + "<detail><a>&lt; &gt;</a></detail>" +
+                    "</event>\n",
+            // only the first detail is captured
+            START_EVENT + POINT + "<detail/><detail><a/></detail></event>",
+            // invalid messages
+            "not xml",
+            "",
+            "<event uid='x'/>",
+            START_EVENT + "<point lon='-75.42835'/></event>",
+            START_EVENT + POINT + "<detail><a></b></detail></event>",
+            START_EVENT + POINT + "<detail><a x='1' x='2'/></detail></event>",
+            START_EVENT + POINT + "<detail><a>&bogus;</a></detail></event>",
+            START_EVENT + POINT + "<detail></detail>",
+            " <?xml version='1.0'?>" + START_EVENT + POINT + "</event>");
+
+    @Test
+    public void test_matches_sax_parser()
+    {
+        for (String xml : MESSAGES)
+            assertSameAsSax(xml);
+    }
+
+    @Test
+    public void test_matches_sax_parser_on_examples() throws Exception
+    {
+        for (String xml : loadCorpus())
+            assertSameAsSax(xml);
+    }
+
+    @Test
+    public void test_direct_buffer()
+    {
+        final String xml = MESSAGES.get(1);
+        final byte[] encoded = xml.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length + 4);
+        buffer.put(new byte[] {1, 2});
+        buffer.put(encoded);
+        buffer.flip();
+        buffer.position(2);
+
+        final CotEvent event = CotEvent.parse(buffer);
+
+        assertThat(buffer.position()).isEqualTo(2);
+        assertThat(describe(event)).isEqualTo(describe(CotEvent.parse(xml)));
+    }
+
+    @Test
+    public void test_offset_and_byte_order_mark()
+    {
+        final String xml = MESSAGES.get(0);
+        final byte[] encoded = xml.getBytes(StandardCharsets.UTF_8);
+        final byte[] padded = new byte[encoded.length + 8];
+        padded[5] = (byte) 0xEF;
+        padded[6] = (byte) 0xBB;
+        padded[7] = (byte) 0xBF;
+        System.arraycopy(encoded, 0, padded, 8, encoded.length);
+
+        final CotEvent event = CotEvent.parse(padded, 5, encoded.length + 3);
+
+        assertThat(event.isValid()).isTrue();
+        assertThat(describe(event)).isEqualTo(describe(CotEvent.parse(xml)));
+    }
+
+    @Test
+    public void test_reuse_event()
+    {
+        final CotByteParser parser = new CotByteParser();
+        final CotEvent event = new CotEvent();
+        event.setCaveat("CUI");
+
+        final byte[] first = MESSAGES.get(0).getBytes(StandardCharsets.UTF_8);
+        final byte[] second = (START_EVENT.replace("the-uid", "other-uid") + POINT + "</event>")
+                .getBytes(StandardCharsets.UTF_8);
+
+        assertThat(parser.parse(first, 0, first.length, event)).isSameAs(event);
+        assertThat(event.getDetail()).isNotNull();
+        assertThat(event.getCaveat()).isNull();
+
+        parser.parse(second, 0, second.length, event);
+        assertThat(event.getUID()).isEqualTo("other-uid");
+        assertThat(event.getDetail()).isNull();
+        assertThat(event.getPoint().getLatitude()).isEqualTo(41.11903);
+    }
+
+    @Test
+    public void benchmark_allocation_per_message() throws Exception
+    {
+        if (!BENCHMARK_ENABLED)
+            return;
+
+        final List<String> corpus = loadCorpus();
+        corpus.add(MESSAGES.get(0));
+        final List<byte[]> encoded = new ArrayList<>();
+        for (String xml : corpus)
+            encoded.add(xml.getBytes(StandardCharsets.UTF_8));
+
+        final ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (!(mx instanceof com.sun.management.ThreadMXBean))
+            return;
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) mx;
+        final CotByteParser parser = new CotByteParser();
+
+        for (int round = 0; round < 3; round++)
+        {
+            long bytes = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_ITERATIONS; i++)
+            {
+                // include the decode that the String path requires
+                final byte[] msg = encoded.get(i % encoded.size());
+                CotEvent.parse(new String(msg, StandardCharsets.UTF_8));
+            }
+            final long saxNanos = System.nanoTime() - start;
+            final long saxBytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+
+            bytes = threads.getCurrentThreadAllocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_ITERATIONS; i++)
+            {
+                final byte[] msg = encoded.get(i % encoded.size());
+                parser.parse(msg, 0, msg.length);
+            }
+            final long byteNanos = System.nanoTime() - start;
+            final long byteBytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+
+            System.out.println(TAG + ": SAX " + (saxNanos / BENCHMARK_ITERATIONS) + "ns " +
+                    (saxBytes / BENCHMARK_ITERATIONS) + "B/msg, bytes " + (byteNanos / BENCHMARK_ITERATIONS) + "ns " +
+                    (byteBytes / BENCHMARK_ITERATIONS) + "B/msg");
+        }
+    }
+
+    private static void assertSameAsSax(String xml)
+    {
+        final CotEvent expected = CotEvent.parse(xml);
+        final byte[] encoded = xml.getBytes(StandardCharsets.UTF_8);
+        final CotEvent actual = CotEvent.parse(encoded, 0, encoded.length);
+
+        assertThat(describe(actual)).as(xml).isEqualTo(describe(expected));
+    }
+
+    /**
+     * @return a string capturing every parsed property of the event, including inner text that
+     * {@link CotEvent#toString()} would escape
+     */
+    private static String describe(CotEvent event)
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(event.isValid()).append('|').append(event).append('|').append(event.getPoint());
+        describe(event.getDetail(), sb);
+        return sb.toString();
+    }
+
+    private static void describe(CotDetail detail, StringBuilder sb)
+    {
+        if (detail == null)
+            return;
+        sb.append('[').append(detail.getElementName()).append(':').append(detail.getInnerText());
+        for (CotDetail child : detail.getChildren())
+            describe(child, sb);
+        sb.append(']');
+    }
+
+    private static List<String> loadCorpus() throws Exception
+    {
+        final List<String> corpus = new ArrayList<>();
+        final File[] files = CORPUS_DIR.listFiles();
+        if (files == null)
+            return corpus;
+        for (File f : files)
+        {
+            if (f.getName().endsWith(".cot"))
+                corpus.add(new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8));
+        }
+        return corpus;
+    }
+}
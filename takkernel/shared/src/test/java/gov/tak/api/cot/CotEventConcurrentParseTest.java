@@ -0,0 +1,159 @@
+package gov.tak.api.cot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import gov.tak.api.cot.event.CotDetail;
+import gov.tak.api.cot.event.CotEvent;
+
+/**
+ * Validate that {@link CotEvent#parse(String)} may be invoked concurrently and that the parse throughput scales with
+ * the number of parsing threads.
+ *
+ * @since 6.0.0
+ */
+public class CotEventConcurrentParseTest
+{
+    private static final String TAG = "CotEventConcurrentParseTest";
+
+    /**
+     * Set to <code>true</code> to run the throughput benchmark against the captured corpus in
+     * <code>takcot/examples</code>.
+     */
+    private static final boolean BENCHMARK_ENABLED = false;
+    private static final File CORPUS_DIR = new File("../../takcot/examples");
+    private static final int BENCHMARK_ITERATIONS = 200000;
+
+    private static final int THREADS = 8;
+    private static final int EVENTS_PER_THREAD = 500;
+
+    @Test
+    public void test_concurrent_parse_produces_independent_events() throws Exception
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try
+        {
+            final List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++)
+            {
+                final int thread = t;
+                results.add(executor.submit(new Callable<Integer>()
+                {
+                    @Override
+                    public Integer call()
+                    {
+                        int parsed = 0;
+                        for (int i = 0; i < EVENTS_PER_THREAD; i++)
+                        {
+                            final String uid = "uid-" + thread + "-" + i;
+                            final CotEvent event = CotEvent.parse(makeEvent(uid, i));
+
+                            assertThat(event.isValid()).isTrue();
+                            assertThat(event.getUID()).isEqualTo(uid);
+
+                            final CotDetail contact = event.getDetail().getFirstChildByName(0, "contact");
+                            assertThat(contact).isNotNull();
+                            assertThat(contact.getAttribute("callsign")).isEqualTo(uid);
+                            assertThat(event.getDetail().childCount()).isEqualTo(2);
+                            parsed++;
+                        }
+                        return parsed;
+                    }
+                }));
+            }
+
+            for (Future<Integer> result : results)
+                assertThat(result.get(60, TimeUnit.SECONDS)).isEqualTo(EVENTS_PER_THREAD);
+        } finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void benchmark_parse_scaling() throws Exception
+    {
+        if (!BENCHMARK_ENABLED)
+            return;
+
+        final List<String> corpus = loadCorpus();
+        assertThat(corpus).isNotEmpty();
+
+        // warm up
+        runParse(1, corpus, BENCHMARK_ITERATIONS / 4);
+
+        for (int threads = 1; threads <= THREADS; threads *= 2)
+        {
+            final long elapsed = runParse(threads, corpus, BENCHMARK_ITERATIONS);
+            final double perSecond = BENCHMARK_ITERATIONS / (elapsed / 1e9);
+            System.out.println(TAG + ": " + threads + " thread(s) parsed " + BENCHMARK_ITERATIONS +
+                    " events in " + (elapsed / 1000000L) + "ms (" + (long) perSecond + " events/s)");
+        }
+    }
+
+    private static long runParse(int threads, final List<String> corpus, final int iterations) throws Exception
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            final int perThread = iterations / threads;
+            final List<Future<?>> results = new ArrayList<>();
+            final long start = System.nanoTime();
+            for (int t = 0; t < threads; t++)
+            {
+                final int offset = t;
+                results.add(executor.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        for (int i = 0; i < perThread; i++)
+                            CotEvent.parse(corpus.get((offset + i) % corpus.size()));
+                    }
+                }));
+            }
+            for (Future<?> result : results)
+                result.get();
+            return System.nanoTime() - start;
+        } finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<String> loadCorpus() throws Exception
+    {
+        final List<String> corpus = new ArrayList<>();
+        final File[] files = CORPUS_DIR.listFiles();
+        if (files == null)
+            return corpus;
+        for (File f : files)
+        {
+            if (f.getName().endsWith(".cot"))
+                corpus.add(new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8));
+        }
+        return corpus;
+    }
+
+    private static String makeEvent(String uid, int i)
+    {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<event version=\"2.0\" uid=\"" + uid + "\" type=\"a-f-G\" time=\"2021-04-03T14:40:00.677Z\"" +
+                " start=\"2021-04-03T14:40:00.677Z\" stale=\"2021-04-03T14:45:00.677Z\" how=\"m-g\">" +
+                "<point lat=\"" + (i % 90) + "\" lon=\"" + (i % 180) + "\" hae=\"0\" ce=\"10\" le=\"10\"/>" +
+                "<detail><contact callsign=\"" + uid + "\"/><remarks>remark " + i + "</remarks></detail>" +
+                "</event>";
+    }
+}
@@ -0,0 +1,451 @@
+package gov.tak.api.cot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import gov.tak.api.cot.event.CotByteParser;
+import gov.tak.api.cot.event.CotDetail;
+import gov.tak.api.cot.event.CotEvent;
+import gov.tak.api.cot.event.TakProtocolCodec;
+
+/**
+ * Round trip conformance tests of {@link TakProtocolCodec} against the XML representation of the same events.
+ */
+public class TakProtocolCodecTest
+{
+    private static final String TAG = "TakProtocolCodecTest";
+
+    /**
+     * Set to <code>true</code> to compare the decode throughput against the XML parsers.
+     */
+    private static final boolean BENCHMARK_ENABLED = false;
+    private static final int BENCHMARK_ITERATIONS = 200000;
+
+    private static final File CORPUS_DIR = new File("../../takcot/examples");
+
+    private static final String START_EVENT = "<event version='2.0' uid='the-uid' type='a-f-G-U-C' " +
+            "time='2021-04-03T14:40:00.677Z' start='2021-04-03T14:40:00.677Z' stale='2021-04-03T14:45:00.677Z' " +
+            "how='m-g'>";
+    private static final String POINT = "<point lat='41.11903' lon='-75.42835' hae='12.5' ce='4.0' le='9999999'/>";
+
+    private static final String SA = START_EVENT + POINT +
+            "<detail><takv device='dev' platform='ATAK-CIV' os='29' version='5.5'/>" +
+            "<contact callsign='TAKX' endpoint='*:-1:stcp'/><uid Droid='TAKX'/>" +
+            "<precisionlocation altsrc='GPS' geopointsrc='GPS'/><__group name='Cyan' role='Team Member'/>" +
+            "<status battery='87'/><track course='12.5' speed='3.0'/></detail></event>";
+
+    private static final List<String> MESSAGES = Arrays.asList(
+            SA,
+            // no detail
+            START_EVENT + POINT + "</event>",
+            // empty detail
+            START_EVENT + POINT + "<detail/></event>",
+            // optional event attributes and unknown point values
+            "<event version='2.0' uid='u' type='b-t-f' time='2021-04-03T14:40:00.677Z' " +
+                    "start='2021-04-03T14:40:00.677Z' stale='2021-04-04T14:40:00.677Z' how='h-e' access='Undefined' " +
+                    "qos='1-r-c' opex='e-x' caveat='FOUO' releasableTo='USA'>" +
+                    "<point lat='-41.1' lon='175.2' hae='9999999' ce='9999999' le='9999999'/>" +
+                    "<detail><remarks source='a&amp;b'>a &amp; b &lt;c&gt; \u00e9\u4e2d\uD83D\uDE00</remarks>" +
+                    "<link uid='x' relation='p-p'/></detail></event>",
+            // structured elements that can not be mapped stay as XML
+            START_EVENT + POINT + "<detail><contact callsign='A' phone='555'/><__group name='Red'/>" +
+                    "<status battery='87' readiness='true'/><track course='bad' speed='1.0'/>" +
+                    "<takv device='d' platform='p' os='o' version='v'><extra/></takv></detail></event>",
+            START_EVENT + POINT + "<detail><contact callsign='A'/><contact callsign='B'/></detail></event>");
+
+    @Test
+    public void test_round_trip()
+    {
+        for (String xml : MESSAGES)
+            assertRoundTrip(xml);
+    }
+
+    @Test
+    public void test_round_trip_examples() throws Exception
+    {
+        for (String xml : loadCorpus())
+            assertRoundTrip(xml);
+    }
+
+    @Test
+    public void test_structured_details_are_not_sent_as_xml()
+    {
+        final String xmlDetail = xmlDetailOf(SA);
+        assertThat(xmlDetail).isEqualTo("<uid Droid='TAKX'/>");
+    }
+
+    @Test
+    public void test_unmappable_details_are_sent_as_xml()
+    {
+        final String xmlDetail = xmlDetailOf(MESSAGES.get(4));
+        assertThat(xmlDetail).contains("<contact ");
+        assertThat(xmlDetail).contains("<__group ");
+        assertThat(xmlDetail).contains("<status ");
+        assertThat(xmlDetail).contains("<track ");
+        assertThat(xmlDetail).contains("<takv ");
+
+        assertThat(xmlDetailOf(MESSAGES.get(5))).contains("callsign='A'").contains("callsign='B'");
+    }
+
+    @Test
+    public void test_decode_wire_format()
+    {
+        // a message written field by field, as a protobuf library would
+        final Writer detail = new Writer()
+                .string(1, "<remarks>hi</remarks>")
+                .message(2, new Writer().string(1, "*:-1:stcp").string(2, "TAKX"))
+                .message(3, new Writer().string(1, "Cyan").string(2, "Team Member"))
+                .message(5, new Writer().varint(1, 55))
+                .message(7, new Writer().fixed64(1, 2.5).fixed64(2, 90d));
+        final Writer event = new Writer()
+                .string(1, "a-f-G")
+                .string(5, "the-uid")
+                .varint(6, 1617460800677L)
+                .varint(7, 1617460800677L)
+                .varint(8, 1617461100677L)
+                .string(9, "m-g")
+                .fixed64(10, 41.5)
+                .fixed64(11, -75.25)
+                .fixed64(12, 9999999d)
+                .fixed64(13, 4d)
+                .message(15, detail)
+                // unknown fields are skipped
+                .varint(99, 1)
+                .string(100, "ignored");
+        final byte[] message = new Writer().message(2, event).toByteArray();
+
+        final CotEvent decoded = new TakProtocolCodec().decode(message, 0, message.length);
+
+        assertThat(decoded.isValid()).isTrue();
+        assertThat(decoded.getType()).isEqualTo("a-f-G");
+        assertThat(decoded.getUID()).isEqualTo("the-uid");
+        assertThat(decoded.getHow()).isEqualTo("m-g");
+        assertThat(decoded.getTime().getMilliseconds()).isEqualTo(1617460800677L);
+        assertThat(decoded.getStale().getMilliseconds()).isEqualTo(1617461100677L);
+        assertThat(decoded.getAccess()).isNull();
+        assertThat(decoded.getPoint().getLatitude()).isEqualTo(41.5);
+        assertThat(decoded.getPoint().getLongitude()).isEqualTo(-75.25);
+        assertThat(Double.isNaN(decoded.getPoint().getAltitude())).isTrue();
+        assertThat(decoded.getPoint().getCE()).isEqualTo(4d);
+        assertThat(decoded.getPoint().getLE()).isEqualTo(0d);
+
+        final CotDetail d = decoded.getDetail();
+        assertThat(d.getChild(0).getElementName()).isEqualTo("remarks");
+        assertThat(d.getChild(0).getInnerText()).isEqualTo("hi");
+        assertThat(d.getFirstChildByName("contact").getAttribute("callsign")).isEqualTo("TAKX");
+        assertThat(d.getFirstChildByName("contact").getAttribute("endpoint")).isEqualTo("*:-1:stcp");
+        assertThat(d.getFirstChildByName("contact").hasAttribute("altendpoints")).isFalse();
+        assertThat(d.getFirstChildByName("__group").getAttribute("role")).isEqualTo("Team Member");
+        assertThat(d.getFirstChildByName("status").getAttribute("battery")).isEqualTo("55");
+        assertThat(d.getFirstChildByName("track").getAttribute("speed")).isEqualTo("2.5");
+        assertThat(d.getFirstChildByName("track").getAttribute("course")).isEqualTo("90.0");
+    }
+
+    @Test
+    public void test_xml_detail_takes_precedence()
+    {
+        final Writer detail = new Writer()
+                .string(1, "<contact callsign='FROM_XML'/>")
+                .message(2, new Writer().string(2, "FROM_PROTO"));
+        final byte[] message = new Writer().message(2, minimalEvent().message(15, detail)).toByteArray();
+
+        final CotDetail d = new TakProtocolCodec().decode(message, 0, message.length).getDetail();
+
+        assertThat(d.childCount()).isEqualTo(1);
+        assertThat(d.getChild(0).getAttribute("callsign")).isEqualTo("FROM_XML");
+    }
+
+    @Test
+    public void test_headers()
+    {
+        final TakProtocolCodec codec = new TakProtocolCodec();
+        final CotEvent event = CotEvent.parse(SA);
+        final byte[] payload = codec.encode(event);
+
+        final byte[] mesh = codec.encodeMeshMessage(event);
+        assertThat(mesh.length).isEqualTo(payload.length + 3);
+        assertThat(Arrays.copyOfRange(mesh, 0, 3)).isEqualTo(new byte[] {(byte) 0xbf, 1, (byte) 0xbf});
+        assertThat(describe(codec.decodeMeshMessage(mesh, 0, mesh.length))).isEqualTo(describe(codec.decode(payload,
+                0, payload.length)));
+        assertThat(codec.decodeMeshMessage(SA.getBytes(StandardCharsets.UTF_8), 0, SA.length())).isNull();
+
+        final byte[] stream = codec.encodeStreamMessage(event);
+        assertThat(stream[0]).isEqualTo((byte) 0xbf);
+        assertThat(TakProtocolCodec.getStreamMessageLength(stream, 0, stream.length)).isEqualTo(stream.length);
+        assertThat(TakProtocolCodec.getStreamMessageLength(stream, 0, 1)).isEqualTo(0);
+        assertThat(TakProtocolCodec.getStreamMessageLength(new byte[] {'<'}, 0, 1)).isEqualTo(-1);
+        assertThat(describe(codec.decodeStreamMessage(stream, 0, stream.length))).isEqualTo(describe(codec.decode(
+                payload, 0, payload.length)));
+        assertThat(codec.decodeStreamMessage(stream, 0, stream.length - 1)).isNull();
+    }
+
+    @Test
+    public void test_malformed_messages()
+    {
+        final TakProtocolCodec codec = new TakProtocolCodec();
+        final byte[] valid = codec.encode(CotEvent.parse(SA));
+
+        // every truncation either fails to decode or yields an invalid event, but never throws
+        for (int length = 0; length < valid.length; length++)
+            codec.decode(valid, 0, length);
+
+        final byte[] badXml = new Writer().message(2, minimalEvent().message(15, new Writer()
+                .string(1, "<a></b>"))).toByteArray();
+        assertThat(codec.decode(badXml, 0, badXml.length).isValid()).isFalse();
+
+        final byte[] closesDetail = new Writer().message(2, minimalEvent().message(15, new Writer()
+                .string(1, "</detail><x/>"))).toByteArray();
+        assertThat(codec.decode(closesDetail, 0, closesDetail.length).isValid()).isFalse();
+    }
+
+    @Test
+    public void benchmark_decode_throughput() throws Exception
+    {
+        if (!BENCHMARK_ENABLED)
+            return;
+
+        final List<String> corpus = loadCorpus();
+        corpus.add(SA);
+        final TakProtocolCodec codec = new TakProtocolCodec();
+        final CotByteParser parser = new CotByteParser();
+        final List<byte[]> xml = new ArrayList<>();
+        final List<byte[]> proto = new ArrayList<>();
+        for (String message : corpus)
+        {
+            xml.add(message.getBytes(StandardCharsets.UTF_8));
+            proto.add(codec.encode(CotEvent.parse(message)));
+        }
+
+        for (int round = 0; round < 3; round++)
+        {
+            long start = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_ITERATIONS; i++)
+                CotEvent.parse(new String(xml.get(i % xml.size()), StandardCharsets.UTF_8));
+            final long saxNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_ITERATIONS; i++)
+            {
+                final byte[] msg = xml.get(i % xml.size());
+                parser.parse(msg, 0, msg.length);
+            }
+            final long byteNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_ITERATIONS; i++)
+            {
+                final byte[] msg = proto.get(i % proto.size());
+                codec.decode(msg, 0, msg.length);
+            }
+            final long protoNanos = System.nanoTime() - start;
+
+            System.out.println(TAG + ": SAX " + (saxNanos / BENCHMARK_ITERATIONS) + "ns/msg, bytes " +
+                    (byteNanos / BENCHMARK_ITERATIONS) + "ns/msg, protobuf " + (protoNanos / BENCHMARK_ITERATIONS) +
+                    "ns/msg");
+        }
+    }
+
+    private static void assertRoundTrip(String xml)
+    {
+        final TakProtocolCodec codec = new TakProtocolCodec();
+        final CotEvent expected = CotEvent.parse(xml);
+        assertThat(expected.isValid()).as(xml).isTrue();
+
+        final byte[] encoded = codec.encode(expected);
+        final CotEvent actual = codec.decode(encoded, 0, encoded.length);
+
+        assertThat(actual.isValid()).as(xml).isTrue();
+        assertThat(describe(actual)).as(xml).isEqualTo(describe(expected));
+
+        // a second trip must be lossless on the wire
+        assertThat(codec.encode(actual)).as(xml).isEqualTo(encoded);
+    }
+
+    /**
+     * @return the xmlDetail string carried by the encoded form of the given event
+     */
+    private static String xmlDetailOf(String xml)
+    {
+        final byte[] encoded = new TakProtocolCodec().encode(CotEvent.parse(xml));
+        final byte[] xmlDetail = field(field(field(encoded, 2), 15), 1);
+        return (xmlDetail != null) ? new String(xmlDetail, StandardCharsets.UTF_8) : "";
+    }
+
+    /**
+     * @return the value of the given length delimited field of a message, or {@code null} if not present
+     */
+    private static byte[] field(byte[] message, int field)
+    {
+        if (message == null)
+            return null;
+        final ByteBuffer buffer = ByteBuffer.wrap(message);
+        while (buffer.hasRemaining())
+        {
+            final long tag = readVarint(buffer);
+            switch ((int) (tag & 0x7))
+            {
+                case 0:
+                    readVarint(buffer);
+                    break;
+                case 1:
+                    buffer.position(buffer.position() + 8);
+                    break;
+                case 2:
+                    final byte[] value = new byte[(int) readVarint(buffer)];
+                    buffer.get(value);
+                    if ((tag >>> 3) == field)
+                        return value;
+                    break;
+                default:
+                    throw new IllegalStateException("unexpected wire type " + tag);
+            }
+        }
+        return null;
+    }
+
+    private static long readVarint(ByteBuffer buffer)
+    {
+        long result = 0L;
+        for (int shift = 0; ; shift += 7)
+        {
+            final byte b = buffer.get();
+            result |= (long) (b & 0x7f) << shift;
+            if (b >= 0)
+                return result;
+        }
+    }
+
+    /**
+     * @return a string capturing every property of the event. The order of the detail children is not significant,
+     * as structured details are always placed after those carried as XML.
+     */
+    private static String describe(CotEvent event)
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(event.getVersion()).append('|').append(event.getUID()).append('|').append(event.getType())
+                .append('|').append(event.getTime()).append('|').append(event.getStart()).append('|')
+                .append(event.getStale()).append('|').append(event.getHow()).append('|').append(event.getOpex())
+                .append('|').append(event.getQos()).append('|').append(event.getAccess()).append('|')
+                .append(event.getCaveat()).append('|').append(event.getReleasableTo()).append('|')
+                .append(CotFormatting.toCotPointXml(event.getPoint()));
+        describe(event.getDetail(), sb);
+        return sb.toString();
+    }
+
+    private static void describe(CotDetail detail, StringBuilder sb)
+    {
+        if (detail == null)
+            return;
+        sb.append('[').append(detail.getElementName());
+        final List<String> attributes = new ArrayList<>();
+        for (gov.tak.api.cot.event.CotAttribute attribute : detail.getAttributes())
+            attributes.add(attribute.getName() + "=" + attribute.getValue());
+        Collections.sort(attributes);
+        sb.append(attributes).append(':').append(detail.getInnerText());
+
+        final List<String> children = new ArrayList<>();
+        for (CotDetail child : detail.getChildren())
+        {
+            final StringBuilder c = new StringBuilder();
+            describe(child, c);
+            children.add(c.toString());
+        }
+        Collections.sort(children);
+        for (String child : children)
+            sb.append(child);
+        sb.append(']');
+    }
+
+    private static Writer minimalEvent()
+    {
+        return new Writer()
+                .string(1, "a-f-G")
+                .string(5, "the-uid")
+                .varint(6, 1617460800677L)
+                .varint(7, 1617460800677L)
+                .varint(8, 1617461100677L)
+                .string(9, "m-g");
+    }
+
+    private static List<String> loadCorpus() throws Exception
+    {
+        final List<String> corpus = new ArrayList<>();
+        final File[] files = CORPUS_DIR.listFiles();
+        if (files == null)
+            return corpus;
+        for (File f : files)
+        {
+            if (f.getName().endsWith(".cot"))
+                corpus.add(new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8));
+        }
+        return corpus;
+    }
+
+    /**
+     * Minimal protobuf writer, independent of the codec under test.
+     */
+    private static final class Writer
+    {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Writer varint(int field, long value)
+        {
+            writeVarint((field << 3));
+            writeVarint(value);
+            return this;
+        }
+
+        Writer fixed64(int field, double value)
+        {
+            writeVarint((field << 3) | 1);
+            final long bits = Double.doubleToLongBits(value);
+            for (int i = 0; i < 8; i++)
+                out.write((int) (bits >>> (8 * i)));
+            return this;
+        }
+
+        Writer string(int field, String value)
+        {
+            return bytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Writer message(int field, Writer message)
+        {
+            return bytes(field, message.toByteArray());
+        }
+
+        private Writer bytes(int field, byte[] value)
+        {
+            writeVarint((field << 3) | 2);
+            writeVarint(value.length);
+            out.write(value, 0, value.length);
+            return this;
+        }
+
+        private void writeVarint(long v)
+        {
+            while ((v & ~0x7fL) != 0)
+            {
+                out.write((int) ((v & 0x7f) | 0x80));
+                v >>>= 7;
+            }
+            out.write((int) v);
+        }
+
+        byte[] toByteArray()
+        {
+            return out.toByteArray();
+        }
+    }
+}
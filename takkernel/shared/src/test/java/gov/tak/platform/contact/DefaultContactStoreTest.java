@@ -14,8 +14,11 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
@@ -38,6 +41,7 @@ public class DefaultContactStoreTest
     private static final String DEFAULT_CONTACT_ID = "Goose123";
     private static final String DEFAULT_CONTACT_DISPLAY_NAME = "GooseTheGreat";
     private static final String ALTERNATE_CONTACT_ID = "Falcon456";
+    private static final boolean BENCHMARK_ENABLED = false;
 
     private DefaultContactStore contactStoreUnderTest;
 
@@ -413,6 +417,134 @@ public class DefaultContactStoreTest
                 .containsOnly(gc1, gc2);
     }
 
+    @Test
+    public void getContactsSnapshot_ReturnsSameInstance_WhenStoreHasNotChanged()
+    {
+        contactStoreUnderTest.addContact(new IndividualContactBuilder().build());
+
+        final List<IContact> snapshot = contactStoreUnderTest.getContactsSnapshot();
+
+        Assertions.assertThat(contactStoreUnderTest.getContactsSnapshot()).isSameAs(snapshot);
+    }
+
+    @Test
+    public void getContactsSnapshot_ReflectsAddUpdateAndRemove()
+    {
+        final IIndividualContact ic1 = new IndividualContactBuilder().build();
+        final IIndividualContact ic2 = new IndividualContactBuilder().build();
+
+        final long initialVersion = contactStoreUnderTest.getContactsVersion();
+        contactStoreUnderTest.addContact(ic1);
+        contactStoreUnderTest.addContact(ic2);
+        Assertions.assertThat(contactStoreUnderTest.getContactsSnapshot()).containsOnly(ic1, ic2);
+
+        final long addedVersion = contactStoreUnderTest.getContactsVersion();
+        Assertions.assertThat(addedVersion).isGreaterThan(initialVersion);
+
+        final IIndividualContact ic1Updated = mock(IIndividualContact.class);
+        when(ic1Updated.getUid()).thenReturn(ic1.getUid());
+        contactStoreUnderTest.updateContact(ic1Updated);
+        Assertions.assertThat(contactStoreUnderTest.getContactsVersion()).isGreaterThan(addedVersion);
+        Assertions.assertThat(contactStoreUnderTest.getContactsSnapshot()).containsOnly(ic1Updated, ic2);
+
+        contactStoreUnderTest.removeContact(ic2.getUid());
+        Assertions.assertThat(contactStoreUnderTest.getContactsSnapshot()).containsOnly(ic1Updated);
+    }
+
+    @Test
+    public void getContactsVersion_DoesNotChange_WhenModificationIsIgnored()
+    {
+        final IIndividualContact ic = new IndividualContactBuilder().build();
+        contactStoreUnderTest.addContact(ic);
+
+        final long version = contactStoreUnderTest.getContactsVersion();
+        contactStoreUnderTest.addContact(ic);
+        contactStoreUnderTest.removeContact(ALTERNATE_CONTACT_ID);
+
+        assertThat(contactStoreUnderTest.getContactsVersion(), is(version));
+    }
+
+    @Test
+    public void getContactsSnapshot_IsNotAffectedByLaterModifications()
+    {
+        final IIndividualContact ic1 = new IndividualContactBuilder().build();
+        contactStoreUnderTest.addContact(ic1);
+
+        final List<IContact> snapshot = contactStoreUnderTest.getContactsSnapshot();
+        contactStoreUnderTest.addContact(new IndividualContactBuilder().build());
+        contactStoreUnderTest.removeContact(ic1.getUid());
+
+        Assertions.assertThat(snapshot).containsOnly(ic1);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getContactsSnapshot_ThrowsUnsupportedOperationException_WhenModified()
+    {
+        contactStoreUnderTest.getContactsSnapshot().add(new IndividualContactBuilder().build());
+    }
+
+    /**
+     * Compares per-read cost of {@link DefaultContactStore#getContactsSnapshot()} against
+     * {@link DefaultContactStore#getAllContacts()} with 5,000 contacts while another thread continually updates
+     * contacts, approximating a busy network. Disabled by default; enable locally to collect timings.
+     */
+    @Test
+    public void getContactsSnapshot_Benchmark() throws InterruptedException
+    {
+        if (!BENCHMARK_ENABLED)
+            return;
+
+        final int numContacts = 5000;
+        final int numReads = 20000;
+        final List<IIndividualContact> contacts = new ArrayList<>(numContacts);
+        for (int i = 0; i < numContacts; i++)
+        {
+            final IIndividualContact ic = new IndividualContactBuilder().build();
+            contacts.add(ic);
+            contactStoreUnderTest.addContact(ic);
+        }
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final Thread churn = new Thread(() -> {
+            int i = 0;
+            while (running.get())
+            {
+                final IIndividualContact ic = contacts.get(i++ % numContacts);
+                contactStoreUnderTest.updateContact(ic);
+                // roughly one update per millisecond, a heavily loaded network
+                try
+                {
+                    Thread.sleep(1L);
+                } catch (InterruptedException ignored)
+                {
+                    return;
+                }
+            }
+        });
+        churn.start();
+        try
+        {
+            long count = 0L;
+            long start = System.nanoTime();
+            for (int i = 0; i < numReads; i++)
+                count += contactStoreUnderTest.getAllContacts().size();
+            final long copyNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < numReads; i++)
+                count += contactStoreUnderTest.getContactsSnapshot().size();
+            final long snapshotNanos = System.nanoTime() - start;
+
+            System.out.println("getAllContacts      " + (copyNanos / numReads) + "ns/read");
+            System.out.println("getContactsSnapshot " + (snapshotNanos / numReads) + "ns/read");
+            System.out.println(count);
+        } finally
+        {
+            running.set(false);
+            churn.join();
+        }
+    }
+
     // Concrete implementation of GroupContactBuilderBase2
     private static class TestConcreteBuilder extends GroupContactBuilderBase2<IGroupContact, TestConcreteBuilder>
     {